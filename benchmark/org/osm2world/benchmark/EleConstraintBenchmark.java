@@ -0,0 +1,172 @@
+package org.osm2world.benchmark;
+
+import static org.osm2world.core.map_elevation.data.GroundState.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
+import org.osm2world.core.map_elevation.creation.SimpleEleConstraintEnforcer;
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * scaling benchmark for {@link SimpleEleConstraintEnforcer}.
+ *
+ * Creates synthetic connectors resembling those of a street network
+ * for several problem sizes, and measures the time per connector for
+ * adding and joining the connectors, for additional same-elevation
+ * constraints, and for enforcing the constraints.
+ *
+ * As all these steps should scale linearly, the time per connector
+ * should be roughly the same for all sizes. If the time per connector
+ * for the largest size exceeds that for the smallest size by more
+ * than the factor {@value #MAX_GROWTH_KEY}, the benchmark exits with
+ * a non-zero status.
+ */
+public class EleConstraintBenchmark {
+
+	/** comma-separated numbers of connectors, default 10^4, 10^5 and 10^6 */
+	public static final String SIZES_KEY = "benchmark.eleSizes";
+	/** number of runs for each size before measurements start, default 2 */
+	public static final String WARMUP_KEY = "benchmark.warmupRuns";
+	/** number of measured runs for each size, default 3 */
+	public static final String RUNS_KEY = "benchmark.runs";
+	/** allowed growth of the time per connector, default 4 */
+	public static final String MAX_GROWTH_KEY = "benchmark.maxGrowth";
+
+	/** number of connectors sharing each position */
+	private static final int CONNECTORS_PER_POS = 4;
+
+	public static void main(String[] args) {
+
+		String[] sizeStrings = System.getProperty(SIZES_KEY,
+				"10000,100000,1000000").split(",");
+
+		int warmupRuns = Integer.getInteger(WARMUP_KEY, 2);
+		int runs = Integer.getInteger(RUNS_KEY, 3);
+		double maxGrowth = Double.parseDouble(
+				System.getProperty(MAX_GROWTH_KEY, "4"));
+
+		double[] totalNanosPerConnector = new double[sizeStrings.length];
+
+		System.out.printf("%12s %12s %12s %12s %12s%n", "connectors",
+				"add ns/c", "same ns/c", "enforce ns/c", "total ns/c");
+
+		for (int i = 0; i < sizeStrings.length; i++) {
+
+			int size = Integer.parseInt(sizeStrings[i].trim());
+
+			for (int r = 0; r < warmupRuns; r++) {
+				run(size);
+			}
+
+			/* use the fastest run to reduce the effects of garbage collection */
+
+			long[] best = null;
+
+			for (int r = 0; r < runs; r++) {
+				long[] nanos = run(size);
+				if (best == null || nanos[3] < best[3]) {
+					best = nanos;
+				}
+			}
+
+			System.out.printf("%12d %12.1f %12.1f %12.1f %12.1f%n", size,
+					best[0] / (double)size, best[1] / (double)size,
+					best[2] / (double)size, best[3] / (double)size);
+
+			totalNanosPerConnector[i] = best[3] / (double)size;
+
+		}
+
+		double growth = totalNanosPerConnector[sizeStrings.length - 1]
+				/ totalNanosPerConnector[0];
+
+		System.out.printf("growth of time per connector: %.2f (maximum %.2f)%n",
+				growth, maxGrowth);
+
+		if (growth > maxGrowth) {
+			System.out.println("REGRESSION: constraint enforcement does not scale linearly");
+			System.exit(1);
+		}
+
+	}
+
+	/**
+	 * runs the enforcer for a number of connectors
+	 *
+	 * @return  nanoseconds for addConnectors, requireSameEle,
+	 *          enforceConstraints and in total
+	 */
+	private static long[] run(int size) {
+
+		List<EleConnector> connectors = createConnectors(size);
+
+		EleConstraintEnforcer enforcer = new SimpleEleConstraintEnforcer();
+
+		long start = System.nanoTime();
+
+		enforcer.addConnectors(connectors);
+
+		long afterAdd = System.nanoTime();
+
+		/* like network segments, require the same elevation for
+		 * connectors from different objects at neighboring positions */
+
+		for (int i = 0; i + CONNECTORS_PER_POS + 1 < connectors.size(); i += CONNECTORS_PER_POS) {
+			enforcer.requireSameEle(connectors.get(i), connectors.get(i + CONNECTORS_PER_POS + 1));
+		}
+
+		long afterSameEle = System.nanoTime();
+
+		enforcer.enforceConstraints();
+
+		long afterEnforce = System.nanoTime();
+
+		return new long[] {afterAdd - start, afterSameEle - afterAdd,
+				afterEnforce - afterSameEle, afterEnforce - start};
+
+	}
+
+	/**
+	 * creates connectors on a square grid of positions. At each position,
+	 * there are two connectors on the ground from different objects
+	 * (e.g. crossing roads) and two connectors above the ground from the
+	 * same object (e.g. a bridge's start and end).
+	 */
+	private static List<EleConnector> createConnectors(int size) {
+
+		Random random = new Random(size);
+
+		int positions = size / CONNECTORS_PER_POS;
+		int gridSize = (int)Math.ceil(Math.sqrt(positions));
+
+		List<EleConnector> result = new ArrayList<EleConnector>(size);
+
+		for (int p = 0; p < positions; p++) {
+
+			VectorXZ pos = new VectorXZ((p % gridSize) * 10, (p / gridSize) * 10);
+			Object bridge = new Object();
+
+			EleConnector[] cs = {
+					new EleConnector(pos, new Object(), ON),
+					new EleConnector(pos, new Object(), ON),
+					new EleConnector(pos, bridge, ABOVE),
+					new EleConnector(pos, bridge, ABOVE)
+			};
+
+			for (EleConnector c : cs) {
+				c.setPosXYZ(new VectorXYZ(pos.x, random.nextDouble() * 100, pos.z));
+				result.add(c);
+			}
+
+		}
+
+		return result;
+
+	}
+
+}
@@ -0,0 +1,305 @@
+package org.osm2world.benchmark;
+
+import static java.util.Collections.emptyList;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.osm2world.benchmark.MicroBenchmarkRunner.Benchmark;
+import org.osm2world.benchmark.MicroBenchmarkRunner.Result;
+import org.osm2world.benchmark.PolygonCorpus.Category;
+import org.osm2world.core.math.GeometryUtil;
+import org.osm2world.core.math.LineSegmentXZ;
+import org.osm2world.core.math.PolygonWithHolesXZ;
+import org.osm2world.core.math.PolygonXZ;
+import org.osm2world.core.math.SimplePolygonXZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.math.algorithms.CAGUtil;
+import org.osm2world.core.math.algorithms.EarClippingTriangulationUtil;
+import org.osm2world.core.math.algorithms.JTSTriangulationUtil;
+import org.osm2world.core.math.algorithms.Poly2TriTriangulationUtil;
+
+/**
+ * benchmarks for the geometry and triangulation kernels,
+ * using polygons of buildings and landuse areas from OSM files.
+ *
+ * Triangulation benchmarks are run separately for several ranges of
+ * polygon sizes, so that they can be used to choose between algorithms
+ * depending on the size of a polygon.
+ *
+ * Usage: GeometryBenchmarks osmFile... Runs can be configured with the
+ * system properties of {@link MicroBenchmarkRunner}, as well as
+ * {@value #FILTER_KEY} (a regular expression for benchmark names)
+ * and {@value #OUTPUT_KEY} (a CSV file for the results).
+ */
+public class GeometryBenchmarks {
+
+	public static final String FILTER_KEY = "benchmark.filter";
+	public static final String OUTPUT_KEY = "benchmark.output";
+
+	/** ranges of outer polygon vertex counts for triangulation benchmarks */
+	private static final int[][] SIZE_RANGES = {
+		{3, 30}, {31, 100}, {101, 300}, {301, Integer.MAX_VALUE}
+	};
+
+	/** number of following segments each segment is intersected with */
+	private static final int SEGMENT_WINDOW = 32;
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length == 0) {
+			System.err.println("usage: GeometryBenchmarks osmFile...");
+			System.exit(1);
+		}
+
+		List<File> osmFiles = new ArrayList<File>();
+		for (String arg : args) {
+			osmFiles.add(new File(arg));
+		}
+
+		PolygonCorpus corpus = PolygonCorpus.load(osmFiles);
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+		for (Category category : Category.values()) {
+
+			List<PolygonWithHolesXZ> polygons = corpus.getPolygons(category);
+
+			System.out.println(category + ": " + polygons.size() + " polygons");
+
+			if (polygons.isEmpty()) continue;
+
+			for (int[] range : SIZE_RANGES) {
+
+				List<PolygonWithHolesXZ> rangePolygons =
+						corpus.getPolygons(category, range[0], range[1]);
+
+				if (rangePolygons.isEmpty()) continue;
+
+				String suffix = category + "." + range[0] + "-"
+						+ (range[1] == Integer.MAX_VALUE ? "" : range[1]);
+
+				benchmarks.add(earClipping(suffix, rangePolygons));
+				benchmarks.add(poly2Tri(suffix, rangePolygons));
+				benchmarks.add(jts(suffix, rangePolygons));
+
+			}
+
+			benchmarks.add(subtractPolygons(category.toString(), polygons));
+			benchmarks.add(isSelfIntersecting(category.toString(), polygons));
+			benchmarks.add(lineSegmentIntersection(category.toString(), polygons));
+
+		}
+
+		String filter = System.getProperty(FILTER_KEY);
+		Pattern filterPattern = (filter != null) ? Pattern.compile(filter) : null;
+
+		MicroBenchmarkRunner runner = MicroBenchmarkRunner.fromSystemProperties();
+
+		List<Result> results = new ArrayList<Result>();
+
+		for (Benchmark benchmark : benchmarks) {
+			if (filterPattern == null
+					|| filterPattern.matcher(benchmark.getName()).find()) {
+				results.add(runner.run(benchmark, System.out));
+			}
+		}
+
+		System.out.println();
+
+		for (Result result : results) {
+			System.out.println(result);
+		}
+
+		String output = System.getProperty(OUTPUT_KEY);
+
+		if (output != null) {
+
+			PrintWriter writer = new PrintWriter(new FileWriter(output));
+
+			try {
+				writer.println("benchmark,operations,meanNanosPerOp,stdDevNanosPerOp");
+				for (Result result : results) {
+					writer.println(result.name + "," + result.operations
+							+ "," + result.meanNanosPerOp
+							+ "," + result.stdDevNanosPerOp);
+				}
+			} finally {
+				writer.close();
+			}
+
+		}
+
+	}
+
+	/*
+	 * Each benchmark operation processes all polygons of a list.
+	 * Failures of an algorithm are counted rather than aborting the
+	 * benchmark, as the algorithms are expected to fail for some inputs.
+	 */
+
+	private static Benchmark earClipping(final String suffix,
+			final List<PolygonWithHolesXZ> polygons) {
+		return new Benchmark() {
+			@Override public String getName() {
+				return "earClipping." + suffix;
+			}
+			@Override public Object run() {
+				int triangles = 0;
+				for (PolygonWithHolesXZ p : polygons) {
+					try {
+						triangles += EarClippingTriangulationUtil.triangulate(
+								p.getOuter(), p.getHoles()).size();
+					} catch (RuntimeException e) {
+						triangles -= 1;
+					}
+				}
+				return triangles;
+			}
+		};
+	}
+
+	private static Benchmark poly2Tri(final String suffix,
+			final List<PolygonWithHolesXZ> polygons) {
+		return new Benchmark() {
+			@Override public String getName() {
+				return "poly2Tri." + suffix;
+			}
+			@Override public Object run() {
+				int triangles = 0;
+				for (PolygonWithHolesXZ p : polygons) {
+					try {
+						triangles += Poly2TriTriangulationUtil.triangulate(
+								p.getOuter(), p.getHoles(),
+								EMPTY_SEGMENTS, EMPTY_POINTS).size();
+					} catch (Exception e) {
+						triangles -= 1;
+					}
+				}
+				return triangles;
+			}
+		};
+	}
+
+	private static Benchmark jts(final String suffix,
+			final List<PolygonWithHolesXZ> polygons) {
+		return new Benchmark() {
+			@Override public String getName() {
+				return "jts." + suffix;
+			}
+			@Override public Object run() {
+				int triangles = 0;
+				for (PolygonWithHolesXZ p : polygons) {
+					try {
+						triangles += JTSTriangulationUtil.triangulate(
+								p.getOuter(), p.getHoles()).size();
+					} catch (RuntimeException e) {
+						triangles -= 1;
+					}
+				}
+				return triangles;
+			}
+		};
+	}
+
+	/**
+	 * subtracts from each polygon its holes and a copy of itself which
+	 * has been shifted by a quarter of its diameter, resembling the
+	 * partial overlaps between areas that are handled during conversion
+	 */
+	private static Benchmark subtractPolygons(final String suffix,
+			final List<PolygonWithHolesXZ> polygons) {
+
+		final List<List<SimplePolygonXZ>> subtractPolygons =
+				new ArrayList<List<SimplePolygonXZ>>();
+
+		for (PolygonWithHolesXZ p : polygons) {
+			List<SimplePolygonXZ> s = new ArrayList<SimplePolygonXZ>(p.getHoles());
+			s.add(p.getOuter().shift(new VectorXZ(p.getOuter().getDiameter() / 4, 0)));
+			subtractPolygons.add(s);
+		}
+
+		return new Benchmark() {
+			@Override public String getName() {
+				return "subtractPolygons." + suffix;
+			}
+			@Override public Object run() {
+				int results = 0;
+				for (int i = 0; i < polygons.size(); i++) {
+					try {
+						results += CAGUtil.subtractPolygons(
+								polygons.get(i).getOuter(),
+								subtractPolygons.get(i)).size();
+					} catch (RuntimeException e) {
+						results -= 1;
+					}
+				}
+				return results;
+			}
+		};
+
+	}
+
+	private static Benchmark isSelfIntersecting(final String suffix,
+			final List<PolygonWithHolesXZ> polygons) {
+		return new Benchmark() {
+			@Override public String getName() {
+				return "isSelfIntersecting." + suffix;
+			}
+			@Override public Object run() {
+				int results = 0;
+				for (PolygonWithHolesXZ p : polygons) {
+					if (PolygonXZ.isSelfIntersecting(p.getOuter().getVertexLoop())) {
+						results += 1;
+					}
+				}
+				return results;
+			}
+		};
+	}
+
+	/**
+	 * intersects each segment of the outer polygons with the
+	 * {@value #SEGMENT_WINDOW} following segments
+	 */
+	private static Benchmark lineSegmentIntersection(final String suffix,
+			final List<PolygonWithHolesXZ> polygons) {
+
+		final List<List<LineSegmentXZ>> segments = new ArrayList<List<LineSegmentXZ>>();
+
+		for (PolygonWithHolesXZ p : polygons) {
+			segments.add(p.getOuter().getSegments());
+		}
+
+		return new Benchmark() {
+			@Override public String getName() {
+				return "lineSegmentIntersection." + suffix;
+			}
+			@Override public Object run() {
+				int results = 0;
+				for (List<LineSegmentXZ> s : segments) {
+					for (int i = 0; i < s.size(); i++) {
+						LineSegmentXZ a = s.get(i);
+						for (int j = i + 2; j < s.size() && j <= i + SEGMENT_WINDOW; j++) {
+							LineSegmentXZ b = s.get(j);
+							if (GeometryUtil.getLineSegmentIntersection(
+									a.p1, a.p2, b.p1, b.p2) != null) {
+								results += 1;
+							}
+						}
+					}
+				}
+				return results;
+			}
+		};
+
+	}
+
+	private static final List<LineSegmentXZ> EMPTY_SEGMENTS = emptyList();
+	private static final List<VectorXZ> EMPTY_POINTS = emptyList();
+
+}
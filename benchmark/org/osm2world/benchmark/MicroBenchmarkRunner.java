@@ -0,0 +1,162 @@
+package org.osm2world.benchmark;
+
+import java.io.PrintStream;
+import java.util.Collection;
+
+/**
+ * runs small benchmarks in the style of JMH:
+ * Each benchmark is first executed for a number of warm-up iterations,
+ * then for a number of measurement iterations. Each iteration repeats
+ * the benchmark's operation until the iteration time has passed.
+ *
+ * Results of the operations are consumed by the runner, so that the JIT
+ * cannot eliminate the benchmarked code as dead code. Benchmarks are not
+ * forked into separate JVMs, so running them in a fixed order is
+ * recommended for comparable results.
+ */
+public class MicroBenchmarkRunner {
+
+	/**
+	 * a benchmarked operation
+	 */
+	public static interface Benchmark {
+
+		public String getName();
+
+		/**
+		 * performs one operation
+		 *
+		 * @return  the operation's result, to prevent dead code elimination
+		 */
+		public Object run() throws Exception;
+
+	}
+
+	/**
+	 * the measurements of a benchmark
+	 */
+	public static final class Result {
+
+		public final String name;
+		public final long operations;
+		public final double meanNanosPerOp;
+		public final double stdDevNanosPerOp;
+
+		private Result(String name, long operations,
+				double meanNanosPerOp, double stdDevNanosPerOp) {
+			this.name = name;
+			this.operations = operations;
+			this.meanNanosPerOp = meanNanosPerOp;
+			this.stdDevNanosPerOp = stdDevNanosPerOp;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-48s %14.1f +- %12.1f ns/op (%d ops)",
+					name, meanNanosPerOp, stdDevNanosPerOp, operations);
+		}
+
+	}
+
+	public static final String WARMUP_KEY = "benchmark.warmupIterations";
+	public static final String ITERATIONS_KEY = "benchmark.iterations";
+	public static final String ITERATION_MS_KEY = "benchmark.iterationMs";
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationMs;
+
+	/** consumes results; volatile so that writes cannot be eliminated */
+	private volatile int sink;
+
+	public MicroBenchmarkRunner(int warmupIterations,
+			int measurementIterations, long iterationMs) {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationMs = iterationMs;
+	}
+
+	/**
+	 * creates a runner configured with system properties,
+	 * using defaults for properties that have not been set
+	 */
+	public static MicroBenchmarkRunner fromSystemProperties() {
+		return new MicroBenchmarkRunner(
+				Integer.getInteger(WARMUP_KEY, 5),
+				Integer.getInteger(ITERATIONS_KEY, 5),
+				Long.getLong(ITERATION_MS_KEY, 1000));
+	}
+
+	/**
+	 * runs a benchmark, printing each measurement iteration's result
+	 */
+	public Result run(Benchmark benchmark, PrintStream log) throws Exception {
+
+		for (int i = 0; i < warmupIterations; i++) {
+			runIteration(benchmark);
+		}
+
+		double[] nanosPerOp = new double[measurementIterations];
+		long totalOperations = 0;
+
+		for (int i = 0; i < measurementIterations; i++) {
+
+			long[] iteration = runIteration(benchmark);
+
+			nanosPerOp[i] = iteration[1] / (double)iteration[0];
+			totalOperations += iteration[0];
+
+			if (log != null) {
+				log.printf("  %s iteration %d: %.1f ns/op%n",
+						benchmark.getName(), i + 1, nanosPerOp[i]);
+			}
+
+		}
+
+		double mean = 0;
+		for (double n : nanosPerOp) {
+			mean += n / nanosPerOp.length;
+		}
+
+		double variance = 0;
+		for (double n : nanosPerOp) {
+			variance += (n - mean) * (n - mean) / nanosPerOp.length;
+		}
+
+		return new Result(benchmark.getName(), totalOperations,
+				mean, Math.sqrt(variance));
+
+	}
+
+	/**
+	 * @return  the number of operations and their total duration
+	 */
+	private long[] runIteration(Benchmark benchmark) throws Exception {
+
+		long iterationNanos = iterationMs * 1000000;
+		long operations = 0;
+
+		long start = System.nanoTime();
+		long elapsed;
+
+		do {
+			consume(benchmark.run());
+			operations += 1;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+
+		return new long[] {operations, elapsed};
+
+	}
+
+	private void consume(Object result) {
+		if (result instanceof Number) {
+			sink += ((Number)result).intValue();
+		} else if (result instanceof Collection<?>) {
+			sink += ((Collection<?>)result).size();
+		} else {
+			sink += System.identityHashCode(result);
+		}
+	}
+
+}
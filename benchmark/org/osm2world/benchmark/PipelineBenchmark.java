@@ -0,0 +1,559 @@
+package org.osm2world.benchmark;
+
+import static org.osm2world.core.target.statistics.StatisticsTarget.Stat.TOTAL_TRIANGLE_COUNT;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.osm2world.benchmark.SyntheticDatasets.Dataset;
+import org.osm2world.core.ConversionFacade;
+import org.osm2world.core.ConversionFacade.Phase;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.map_data.data.MapElement;
+import org.osm2world.core.osm.creation.OSMFileReader;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.target.TargetUtil;
+import org.osm2world.core.target.obj.ObjWriter;
+import org.osm2world.core.target.povray.POVRayWriter;
+import org.osm2world.core.target.statistics.StatisticsTarget;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Metrics.Timer;
+import org.osm2world.core.util.metrics.Metrics.TimerNode;
+
+/**
+ * end-to-end benchmark of the conversion pipeline.
+ *
+ * Runs {@link ConversionFacade#createRepresentations(OSMData, List,
+ * Configuration, List)} followed by the OBJ and POV-Ray writers for the
+ * {@link SyntheticDatasets} and any additional OSM files.
+ * After warm-up runs, it reports latency percentiles for each phase,
+ * the throughput in elements and triangles per second, and the
+ * allocation rate.
+ *
+ * The results are compared with a baseline file. Any phase whose
+ * median time exceeds the baseline by more than the tolerance is reported
+ * as a regression, and the benchmark exits with a non-zero status.
+ * A missing baseline file is an error as well. Only if
+ * {@value #UPDATE_BASELINE_KEY} is set, the results are stored as the
+ * new baseline instead.
+ *
+ * To make baselines usable on other machines, times are stored as
+ * multiples of the time of a calibration workload, which does not use
+ * OSM2World code and is measured in the same run. This compensates for
+ * differences in speed, but not in e.g. cache sizes, so a baseline
+ * recorded from the unchanged code on the same machine remains the most
+ * reliable reference. Baseline files list the keys in sorted order
+ * and contain no timestamp, so updates only change the values.
+ *
+ * The benchmark is configured with the system properties listed
+ * as constants of this class.
+ */
+public class PipelineBenchmark {
+
+	/** number of runs before measurements start, default 2 */
+	public static final String WARMUP_KEY = "benchmark.warmupRuns";
+	/** number of measured runs, default 5 */
+	public static final String RUNS_KEY = "benchmark.runs";
+	/** additional OSM files, separated by the path separator */
+	public static final String DATASETS_KEY = "benchmark.datasets";
+	/** OSM2World config file, default is single-threaded conversion */
+	public static final String CONFIG_KEY = "benchmark.config";
+	/** directory for generated datasets and output files */
+	public static final String WORK_DIR_KEY = "benchmark.workDir";
+	/** baseline file, default benchmark/baseline.properties */
+	public static final String BASELINE_KEY = "benchmark.baseline";
+	/** if true, the baseline is overwritten with the results */
+	public static final String UPDATE_BASELINE_KEY = "benchmark.updateBaseline";
+	/** allowed relative slowdown compared to the baseline, default 0.2 */
+	public static final String TOLERANCE_KEY = "benchmark.tolerance";
+	/** slowdowns below this number of milliseconds are ignored, default 10 */
+	public static final String MIN_REGRESSION_MS_KEY = "benchmark.minRegressionMs";
+
+	/** number of points processed by the calibration workload */
+	private static final int CALIBRATION_SIZE = 200000;
+
+	/** number of calibration runs before and after the datasets */
+	private static final int CALIBRATION_RUNS = 5;
+
+	/** results of the calibration workload, kept so it is not optimized away */
+	private static volatile long calibrationChecksum = 0;
+
+	/** names of the timed steps, in the order they are reported */
+	private static final List<String> STEPS = new ArrayList<String>();
+
+	static {
+		for (Phase phase : Phase.values()) {
+			if (phase != Phase.FINISHED) {
+				STEPS.add(phase.name());
+			}
+		}
+		STEPS.add("OBJ");
+		STEPS.add("POV");
+		STEPS.add("total");
+	}
+
+	/**
+	 * the measurements of all measured runs for one dataset
+	 */
+	private static class DatasetResult {
+
+		final String name;
+
+		long elements;
+		long triangles;
+
+		final Map<String, List<Long>> stepNanos = new LinkedHashMap<String, List<Long>>();
+		final List<Double> allocatedBytesPerSecond = new ArrayList<Double>();
+
+		DatasetResult(String name) {
+			this.name = name;
+			for (String step : STEPS) {
+				stepNanos.put(step, new ArrayList<Long>());
+			}
+		}
+
+		double getPercentileMs(String step, double percentile) {
+			return percentile(stepNanos.get(step), percentile) / 1e6;
+		}
+
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		int warmupRuns = Integer.getInteger(WARMUP_KEY, 2);
+		int runs = Integer.getInteger(RUNS_KEY, 5);
+
+		File workDir = new File(System.getProperty(WORK_DIR_KEY,
+				new File(System.getProperty("java.io.tmpdir"),
+						"osm2world-benchmark").getPath()));
+		workDir.mkdirs();
+
+		Configuration config = loadConfig();
+
+		if (ParallelIterationUtil.getThreadCount(config) != 1) {
+			System.out.println("warning: allocation rates only include "
+					+ "the main thread's allocations");
+		}
+
+		/* collect the datasets */
+
+		Map<String, File> datasets = new LinkedHashMap<String, File>();
+
+		for (Dataset dataset : Dataset.values()) {
+			File file = new File(workDir, dataset.getFileName());
+			SyntheticDatasets.write(dataset, file);
+			datasets.put(dataset.name(), file);
+		}
+
+		String extraDatasets = System.getProperty(DATASETS_KEY);
+
+		if (extraDatasets != null && !extraDatasets.trim().isEmpty()) {
+			for (String path : extraDatasets.split(File.pathSeparator)) {
+				File file = new File(path.trim());
+				datasets.put(file.getName(), file);
+			}
+		}
+
+		/* run the benchmark, with calibration runs before and after it */
+
+		List<Long> calibrationNanos = new ArrayList<Long>();
+
+		calibrate(calibrationNanos);
+
+		List<DatasetResult> results = new ArrayList<DatasetResult>();
+
+		for (Map.Entry<String, File> dataset : datasets.entrySet()) {
+			results.add(benchmark(dataset.getKey(), dataset.getValue(),
+					config, workDir, warmupRuns, runs));
+		}
+
+		calibrate(calibrationNanos);
+
+		double calibrationMs = percentile(calibrationNanos, 50) / 1e6;
+
+		System.out.printf("%ncalibration: %.1f ms%n", calibrationMs);
+
+		/* compare with or update the baseline */
+
+		File baselineFile = new File(System.getProperty(BASELINE_KEY,
+				"benchmark" + File.separator + "baseline.properties"));
+
+		Properties current = toProperties(results, calibrationMs);
+
+		if (Boolean.getBoolean(UPDATE_BASELINE_KEY)) {
+
+			storeBaseline(current, baselineFile);
+
+			System.out.println("\nstored results as baseline in " + baselineFile);
+
+		} else if (!baselineFile.exists()) {
+
+			System.err.println("\nbaseline " + baselineFile + " does not exist."
+					+ " Use -D" + BASELINE_KEY + "=file to select a baseline,"
+					+ " or -D" + UPDATE_BASELINE_KEY + "=true to record one.");
+			System.exit(1);
+
+		} else {
+
+			Properties baseline = new Properties();
+			InputStream in = new FileInputStream(baselineFile);
+
+			try {
+				baseline.load(in);
+			} finally {
+				in.close();
+			}
+
+			int regressions = compare(baseline, current, calibrationMs);
+
+			if (regressions > 0) {
+				System.err.println("\n" + regressions + " performance regression(s)"
+						+ " compared to baseline " + baselineFile);
+				System.exit(1);
+			} else {
+				System.out.println("\nno regressions compared to baseline " + baselineFile);
+			}
+
+		}
+
+	}
+
+	private static Configuration loadConfig() throws ConfigurationException {
+
+		String configPath = System.getProperty(CONFIG_KEY);
+
+		if (configPath != null) {
+			return new PropertiesConfiguration(configPath);
+		} else {
+			Configuration config = new BaseConfiguration();
+			config.addProperty(ParallelIterationUtil.THREAD_COUNT_KEY, 1);
+			return config;
+		}
+
+	}
+
+	private static DatasetResult benchmark(String name, File osmFile,
+			Configuration config, File workDir, int warmupRuns, int runs)
+			throws IOException {
+
+		System.out.println("\n" + name + " (" + osmFile + ")");
+
+		OSMData osmData = new OSMFileReader(osmFile).getData();
+
+		File objFile = new File(workDir, "output.obj");
+		File povFile = new File(workDir, "output.pov");
+
+		DatasetResult result = new DatasetResult(name);
+
+		for (int run = 0; run < warmupRuns + runs; run++) {
+
+			boolean measured = run >= warmupRuns;
+
+			Metrics metrics = new Metrics(0);
+			Metrics previousMetrics = Metrics.setCurrent(metrics);
+
+			Results results;
+
+			long allocatedBefore = getAllocatedBytes();
+			long startNanos = System.nanoTime();
+
+			try {
+
+				results = new ConversionFacade().createRepresentations(
+						osmData, null, config, null);
+
+				Timer timer = metrics.startTimer("OBJ");
+				ObjWriter.writeObjFile(objFile, results.getMapData(),
+						results.getMaterialRegistry(), results.getMapProjection(),
+						null, null, true);
+				timer.stop();
+
+				timer = metrics.startTimer("POV");
+				POVRayWriter.writePOVInstructionFile(povFile, results.getMapData(),
+						results.getMaterialRegistry(), null, null);
+				timer.stop();
+
+			} finally {
+				Metrics.setCurrent(previousMetrics);
+				metrics.finish();
+			}
+
+			long totalNanos = System.nanoTime() - startNanos;
+			long allocatedBytes = getAllocatedBytes() - allocatedBefore;
+
+			System.out.printf("  %s run %d: %.1f ms%n",
+					measured ? "measured" : "warm-up",
+					measured ? run - warmupRuns + 1 : run + 1, totalNanos / 1e6);
+
+			if (!measured) continue;
+
+			for (String step : STEPS) {
+				TimerNode timer = metrics.getTimer(step);
+				long nanos = step.equals("total") ? totalNanos
+						: (timer != null) ? timer.getTotalNanos() : 0;
+				result.stepNanos.get(step).add(nanos);
+			}
+
+			if (allocatedBefore >= 0) {
+				result.allocatedBytesPerSecond.add(allocatedBytes / (totalNanos / 1e9));
+			}
+
+			if (run == warmupRuns) {
+
+				for (MapElement element : results.getMapData().getMapElements()) {
+					result.elements += 1;
+				}
+
+				StatisticsTarget statistics = new StatisticsTarget();
+				TargetUtil.renderWorldObjects(statistics, results.getMapData(), true);
+				result.triangles = statistics.getGlobalCount(TOTAL_TRIANGLE_COUNT);
+
+			}
+
+		}
+
+		print(result);
+
+		return result;
+
+	}
+
+	private static void print(DatasetResult result) {
+
+		System.out.printf("  %-16s %10s %10s %10s%n", "step", "p50 ms", "p90 ms", "max ms");
+
+		for (String step : STEPS) {
+			System.out.printf("  %-16s %10.1f %10.1f %10.1f%n", step,
+					result.getPercentileMs(step, 50),
+					result.getPercentileMs(step, 90),
+					result.getPercentileMs(step, 100));
+		}
+
+		double medianSeconds = result.getPercentileMs("total", 50) / 1e3;
+
+		System.out.printf("  throughput: %.0f elements/s, %.0f triangles/s"
+				+ " (%d elements, %d triangles)%n",
+				result.elements / medianSeconds, result.triangles / medianSeconds,
+				result.elements, result.triangles);
+
+		if (!result.allocatedBytesPerSecond.isEmpty()) {
+			System.out.printf("  allocation rate: %.1f MB/s%n",
+					percentile(result.allocatedBytesPerSecond, 50) / 1e6);
+		}
+
+	}
+
+	/**
+	 * runs the calibration workload after a warm-up run
+	 *
+	 * @param calibrationNanos  list the durations of the runs are added to
+	 */
+	private static void calibrate(List<Long> calibrationNanos) {
+
+		calibrationChecksum += runCalibrationWorkload();
+
+		for (int run = 0; run < CALIBRATION_RUNS; run++) {
+			long startNanos = System.nanoTime();
+			calibrationChecksum += runCalibrationWorkload();
+			calibrationNanos.add(System.nanoTime() - startNanos);
+		}
+
+	}
+
+	/**
+	 * a fixed workload whose time only depends on the machine and JVM.
+	 * Similar to the conversion, it allocates many small objects and
+	 * combines floating point math with sorting and hashing.
+	 *
+	 * @return  a checksum of the results
+	 */
+	private static long runCalibrationWorkload() {
+
+		Random random = new Random(CALIBRATION_SIZE);
+
+		List<double[]> points = new ArrayList<double[]>(CALIBRATION_SIZE);
+
+		for (int i = 0; i < CALIBRATION_SIZE; i++) {
+			points.add(new double[] {random.nextDouble(), random.nextDouble()});
+		}
+
+		Collections.sort(points, new Comparator<double[]>() {
+			@Override public int compare(double[] p1, double[] p2) {
+				return Double.compare(Math.hypot(p1[0], p1[1]),
+						Math.hypot(p2[0], p2[1]));
+			}
+		});
+
+		Map<Long, double[]> cells = new HashMap<Long, double[]>();
+
+		long checksum = 0;
+
+		for (double[] point : points) {
+			long cell = (long)(point[0] * 500) * 500 + (long)(point[1] * 500);
+			double[] previousPoint = cells.put(cell, point);
+			if (previousPoint != null) {
+				checksum += (long)(1e6 * Math.atan2(
+						point[1] - previousPoint[1], point[0] - previousPoint[0]));
+			}
+		}
+
+		return checksum + cells.size();
+
+	}
+
+	/**
+	 * returns the median time of each step for each dataset as a multiple
+	 * of the calibration time, using keys such as "DOWNTOWN.ELEVATION"
+	 */
+	private static Properties toProperties(List<DatasetResult> results,
+			double calibrationMs) {
+
+		Properties properties = new Properties();
+
+		for (DatasetResult result : results) {
+			for (String step : STEPS) {
+				properties.setProperty(result.name + "." + step,
+						String.format(Locale.US, "%.3f",
+								result.getPercentileMs(step, 50) / calibrationMs));
+			}
+		}
+
+		return properties;
+
+	}
+
+	/**
+	 * writes a baseline file with sorted keys, unlike {@link Properties#store},
+	 * and without a timestamp
+	 */
+	private static void storeBaseline(Properties baseline, File baselineFile)
+			throws IOException {
+
+		List<String> keys = new ArrayList<String>(baseline.stringPropertyNames());
+		Collections.sort(keys);
+
+		Writer writer = new OutputStreamWriter(
+				new FileOutputStream(baselineFile), "ISO-8859-1");
+
+		try {
+
+			writer.write("# OSM2World pipeline benchmark baseline\n");
+			writer.write("# median times as multiples of the calibration time\n");
+
+			for (String key : keys) {
+				writer.write(key + "=" + baseline.getProperty(key) + "\n");
+			}
+
+		} finally {
+			writer.close();
+		}
+
+	}
+
+	/**
+	 * prints the comparison of current results with the baseline.
+	 * Both are converted to milliseconds using the current calibration time.
+	 *
+	 * @return  the number of regressions
+	 */
+	private static int compare(Properties baseline, Properties current,
+			double calibrationMs) {
+
+		double tolerance = Double.parseDouble(
+				System.getProperty(TOLERANCE_KEY, "0.2"));
+		double minRegressionMs = Double.parseDouble(
+				System.getProperty(MIN_REGRESSION_MS_KEY, "10"));
+
+		System.out.printf("%n%-32s %12s %12s %8s%n",
+				"dataset.step", "expected ms", "current ms", "change");
+
+		int regressions = 0;
+
+		List<String> keys = new ArrayList<String>(current.stringPropertyNames());
+		Collections.sort(keys);
+
+		for (String key : keys) {
+
+			String baselineValue = baseline.getProperty(key);
+
+			if (baselineValue == null) continue;
+
+			double baselineMs = Double.parseDouble(baselineValue) * calibrationMs;
+			double currentMs = Double.parseDouble(current.getProperty(key)) * calibrationMs;
+
+			boolean regression = currentMs > baselineMs * (1 + tolerance)
+					&& currentMs - baselineMs > minRegressionMs;
+
+			System.out.printf("%-32s %12.1f %12.1f %+7.0f%%%s%n", key,
+					baselineMs, currentMs,
+					baselineMs > 0 ? 100 * (currentMs - baselineMs) / baselineMs : 0.0,
+					regression ? "  REGRESSION" : "");
+
+			if (regression) {
+				regressions += 1;
+			}
+
+		}
+
+		return regressions;
+
+	}
+
+	/**
+	 * returns a percentile using the nearest-rank method
+	 */
+	private static <T extends Number & Comparable<T>> double percentile(
+			List<T> values, double percentile) {
+
+		if (values.isEmpty()) return 0;
+
+		List<T> sorted = new ArrayList<T>(values);
+		Collections.sort(sorted);
+
+		int rank = (int)Math.ceil(percentile / 100 * sorted.size());
+
+		return sorted.get(Math.max(rank - 1, 0)).doubleValue();
+
+	}
+
+	/**
+	 * returns the number of bytes allocated by the current thread so far
+	 *
+	 * @return  the number of bytes; -1 if the JVM does not support this
+	 */
+	private static long getAllocatedBytes() {
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		} else {
+			return -1;
+		}
+
+	}
+
+}
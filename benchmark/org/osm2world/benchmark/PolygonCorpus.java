@@ -0,0 +1,113 @@
+package org.osm2world.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.osm2world.core.map_data.creation.MetricMapProjection;
+import org.osm2world.core.map_data.creation.OSMToMapDataConverter;
+import org.osm2world.core.map_data.creation.OriginMapProjection;
+import org.osm2world.core.map_data.data.MapArea;
+import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.math.PolygonWithHolesXZ;
+import org.osm2world.core.osm.creation.OSMFileReader;
+import org.osm2world.core.osm.data.OSMData;
+
+/**
+ * polygons extracted from the areas of OSM files,
+ * used as realistic input for geometry benchmarks
+ */
+public class PolygonCorpus {
+
+	/** the kinds of areas in a corpus */
+	public static enum Category {
+
+		BUILDING, LANDUSE;
+
+		/**
+		 * returns the category of an area; null if it is not in any category
+		 */
+		static Category of(MapArea area) {
+
+			String building = area.getTags().getValue("building");
+
+			if (building != null && !building.equals("no")) {
+				return BUILDING;
+			} else if (area.getTags().containsKey("landuse")) {
+				return LANDUSE;
+			} else {
+				return null;
+			}
+
+		}
+
+	}
+
+	private final List<List<PolygonWithHolesXZ>> polygons =
+			new ArrayList<List<PolygonWithHolesXZ>>();
+
+	private PolygonCorpus() {
+		for (int i = 0; i < Category.values().length; i++) {
+			polygons.add(new ArrayList<PolygonWithHolesXZ>());
+		}
+	}
+
+	/**
+	 * extracts the polygons of all building and landuse areas
+	 * from one or more OSM files
+	 */
+	public static PolygonCorpus load(List<File> osmFiles) throws IOException {
+
+		PolygonCorpus corpus = new PolygonCorpus();
+
+		for (File osmFile : osmFiles) {
+
+			OSMData osmData = new OSMFileReader(osmFile).getData();
+
+			OriginMapProjection mapProjection = new MetricMapProjection();
+			mapProjection.setOrigin(osmData);
+
+			MapData mapData = new OSMToMapDataConverter(
+					mapProjection, new BaseConfiguration()).createMapData(osmData);
+
+			for (MapArea area : mapData.getMapAreas()) {
+				Category category = Category.of(area);
+				if (category != null) {
+					corpus.polygons.get(category.ordinal()).add(area.getPolygon());
+				}
+			}
+
+		}
+
+		return corpus;
+
+	}
+
+	public List<PolygonWithHolesXZ> getPolygons(Category category) {
+		return Collections.unmodifiableList(polygons.get(category.ordinal()));
+	}
+
+	/**
+	 * returns the polygons of a category with an outer polygon of
+	 * at least minVertices and at most maxVertices vertices
+	 */
+	public List<PolygonWithHolesXZ> getPolygons(Category category,
+			int minVertices, int maxVertices) {
+
+		List<PolygonWithHolesXZ> result = new ArrayList<PolygonWithHolesXZ>();
+
+		for (PolygonWithHolesXZ polygon : polygons.get(category.ordinal())) {
+			int size = polygon.getOuter().size();
+			if (size >= minVertices && size <= maxVertices) {
+				result.add(polygon);
+			}
+		}
+
+		return result;
+
+	}
+
+}
@@ -0,0 +1,397 @@
+package org.osm2world.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * generates the synthetic OSM datasets used by {@link PipelineBenchmark}.
+ *
+ * Each dataset represents a typical kind of input. The datasets are
+ * generated with fixed random seeds, so they are identical for each run
+ * and each machine, and do not need to be stored in the repository.
+ */
+public final class SyntheticDatasets {
+
+	private SyntheticDatasets() {}
+
+	public static enum Dataset {
+
+		/** a grid of streets with blocks of buildings and street furniture */
+		DOWNTOWN,
+
+		/** large forest areas with detailed outlines, tracks and single trees */
+		FOREST,
+
+		/** a sparse network of winding roads through farmland, with farms */
+		RURAL,
+
+		/** a long, detailed coastline with islands */
+		COASTLINE;
+
+		public String getFileName() {
+			return name().toLowerCase() + ".osm";
+		}
+
+	}
+
+	private static final double LAT0 = 49.0;
+	private static final double LON0 = 8.4;
+
+	/** approximate degrees of latitude and longitude per meter at LAT0 */
+	private static final double LAT_PER_M = 1 / 111320.0;
+	private static final double LON_PER_M = 1 / (111320.0 * Math.cos(Math.toRadians(LAT0)));
+
+	/**
+	 * writes a dataset to a file
+	 */
+	public static void write(Dataset dataset, File file) throws IOException {
+
+		Generator g = new Generator(dataset.ordinal());
+
+		switch (dataset) {
+		case DOWNTOWN: generateDowntown(g); break;
+		case FOREST: generateForest(g); break;
+		case RURAL: generateRural(g); break;
+		case COASTLINE: generateCoastline(g); break;
+		}
+
+		g.write(file);
+
+	}
+
+	private static void generateDowntown(Generator g) {
+
+		final int blocks = 12;
+		final double blockSize = 100;
+		final String[] roofShapes = {"flat", "gabled", "hipped", "pyramidal", "skillion"};
+
+		long[][] crossings = new long[blocks + 1][blocks + 1];
+
+		for (int i = 0; i <= blocks; i++) {
+			for (int j = 0; j <= blocks; j++) {
+				crossings[i][j] = g.node(i * blockSize, j * blockSize);
+			}
+		}
+
+		for (int i = 0; i <= blocks; i++) {
+
+			List<Long> row = new ArrayList<Long>();
+			List<Long> column = new ArrayList<Long>();
+
+			for (int j = 0; j <= blocks; j++) {
+				row.add(crossings[i][j]);
+				column.add(crossings[j][i]);
+			}
+
+			String type = (i % 4 == 0) ? "primary" : "residential";
+			g.way(row, "highway", type, "lanes", "2");
+			g.way(column, "highway", type, "sidewalk", "both");
+
+		}
+
+		for (int i = 0; i < blocks; i++) {
+			for (int j = 0; j < blocks; j++) {
+
+				double x0 = i * blockSize + 12;
+				double z0 = j * blockSize + 12;
+
+				/* a ring of buildings along the block's edges */
+
+				for (int k = 0; k < 8; k++) {
+
+					double w = 17 + g.random.nextDouble() * 2;
+					double d = 15 + g.random.nextDouble() * 5;
+					double x = x0 + (k % 4) * 19;
+					double z = (k < 4) ? z0 : z0 + 76 - d;
+
+					List<Long> outline = g.rectangle(x, z, w, d);
+
+					g.way(outline, "building", "yes",
+							"building:levels", Integer.toString(2 + g.random.nextInt(10)),
+							"roof:shape", roofShapes[g.random.nextInt(roofShapes.length)]);
+
+				}
+
+				g.node(x0 - 5, z0 + 10, "highway", "street_lamp");
+				g.node(x0 - 5, z0 + 40, "amenity", "bench");
+				g.node(x0 - 5, z0 + 60, "amenity", "waste_basket");
+
+				for (int t = 0; t < 4; t++) {
+					g.node(x0 + 20 + t * 10, z0 + 38, "natural", "tree");
+				}
+
+			}
+		}
+
+	}
+
+	private static void generateForest(Generator g) {
+
+		for (int f = 0; f < 4; f++) {
+
+			double centerX = (f % 2) * 600 + 300;
+			double centerZ = (f / 2) * 600 + 300;
+
+			g.way(g.irregularRing(centerX, centerZ, 250, 40, 400),
+					"landuse", "forest",
+					"leaf_type", (f % 2 == 0) ? "broadleaved" : "needleleaved");
+
+			List<Long> track = new ArrayList<Long>();
+			for (int k = 0; k <= 40; k++) {
+				track.add(g.node(centerX - 280 + k * 14,
+						centerZ + 30 * Math.sin(k * 0.3)));
+			}
+			g.way(track, "highway", "track");
+
+		}
+
+		for (int t = 0; t < 1500; t++) {
+			g.node(g.random.nextDouble() * 1200, 1250 + g.random.nextDouble() * 300,
+					"natural", "tree");
+		}
+
+	}
+
+	private static void generateRural(Generator g) {
+
+		final int villages = 16;
+
+		long[] centers = new long[villages];
+		double[][] positions = new double[villages][];
+
+		for (int v = 0; v < villages; v++) {
+			positions[v] = new double[] {
+					(v % 4) * 1500 + g.random.nextDouble() * 400,
+					(v / 4) * 1500 + g.random.nextDouble() * 400};
+			centers[v] = g.node(positions[v][0], positions[v][1]);
+		}
+
+		/* winding roads between neighboring villages */
+
+		for (int v = 0; v < villages; v++) {
+			for (int neighbor : new int[] {v + 1, v + 4}) {
+
+				if (neighbor >= villages || (neighbor == v + 1 && v % 4 == 3)) continue;
+
+				List<Long> road = new ArrayList<Long>();
+				road.add(centers[v]);
+
+				double[] a = positions[v];
+				double[] b = positions[neighbor];
+
+				for (int k = 1; k < 60; k++) {
+					double s = k / 60.0;
+					double offset = 40 * Math.sin(s * Math.PI * 6);
+					road.add(g.node(a[0] + s * (b[0] - a[0]) + offset,
+							a[1] + s * (b[1] - a[1]) - offset));
+				}
+
+				road.add(centers[neighbor]);
+
+				g.way(road, "highway", (v % 2 == 0) ? "unclassified" : "tertiary");
+
+			}
+		}
+
+		/* farmland and farms */
+
+		for (int v = 0; v < villages; v++) {
+
+			double x = positions[v][0] + 200;
+			double z = positions[v][1] + 200;
+
+			g.way(g.irregularRing(x + 300, z + 300, 250, 20, 16),
+					"landuse", "farmland");
+
+			for (int b = 0; b < 3; b++) {
+				g.way(g.rectangle(x + b * 30, z, 20, 12),
+						"building", (b == 0) ? "house" : "barn",
+						"roof:shape", "gabled");
+			}
+
+		}
+
+	}
+
+	private static void generateCoastline(Generator g) {
+
+		/* the coast itself, with land to the left (north) */
+
+		List<Long> coast = new ArrayList<Long>();
+
+		for (int k = 0; k <= 2000; k++) {
+			double x = 3000 - k * 1.5;
+			double z = 300 * Math.sin(k * 0.01) + 40 * Math.sin(k * 0.13)
+					+ 10 * g.random.nextDouble();
+			coast.add(g.node(x, z));
+		}
+
+		g.way(coast, "natural", "coastline");
+
+		/* islands, with land to the left (counterclockwise rings) */
+
+		for (int i = 0; i < 25; i++) {
+
+			double x = 100 + (i % 5) * 550;
+			double z = -700 - (i / 5) * 300;
+
+			List<Long> island = g.irregularRing(x, z, 80, 30, 80);
+
+			g.way(island, "natural", "coastline");
+
+		}
+
+		g.way(g.rectangle(200, 400, 400, 300), "landuse", "residential");
+
+	}
+
+	/**
+	 * collects nodes and ways with coordinates in meters
+	 * and writes them as OSM XML
+	 */
+	private static class Generator {
+
+		final Random random;
+
+		private final List<double[]> nodeCoords = new ArrayList<double[]>();
+		private final Map<Long, String[]> nodeTags = new LinkedHashMap<Long, String[]>();
+		private final List<List<Long>> wayNodes = new ArrayList<List<Long>>();
+		private final List<String[]> wayTags = new ArrayList<String[]>();
+
+		Generator(long seed) {
+			random = new Random(seed);
+		}
+
+		long node(double x, double z, String... tags) {
+			nodeCoords.add(new double[] {x, z});
+			long id = nodeCoords.size();
+			if (tags.length > 0) {
+				nodeTags.put(id, tags);
+			}
+			return id;
+		}
+
+		void way(List<Long> nodes, String... tags) {
+			wayNodes.add(nodes);
+			wayTags.add(tags);
+		}
+
+		/** returns a closed counterclockwise rectangle */
+		List<Long> rectangle(double x, double z, double width, double depth) {
+			List<Long> result = new ArrayList<Long>();
+			result.add(node(x, z));
+			result.add(node(x + width, z));
+			result.add(node(x + width, z + depth));
+			result.add(node(x, z + depth));
+			result.add(result.get(0));
+			return result;
+		}
+
+		/**
+		 * returns a closed counterclockwise ring with a randomly varying radius
+		 */
+		List<Long> irregularRing(double x, double z, double radius,
+				double variation, int vertices) {
+
+			List<Long> result = new ArrayList<Long>();
+
+			for (int k = 0; k < vertices; k++) {
+				double angle = 2 * Math.PI * k / vertices;
+				double r = radius + variation * (g(angle) + random.nextDouble() - 0.5);
+				result.add(node(x + r * Math.cos(angle), z + r * Math.sin(angle)));
+			}
+
+			result.add(result.get(0));
+
+			return result;
+
+		}
+
+		/** low-frequency radius variation for smooth, irregular outlines */
+		private static double g(double angle) {
+			return 0.5 * Math.sin(3 * angle) + 0.3 * Math.cos(7 * angle);
+		}
+
+		void write(File file) throws IOException {
+
+			PrintWriter out = new PrintWriter(file, "UTF-8");
+
+			try {
+
+				double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+				double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+
+				for (double[] c : nodeCoords) {
+					minX = Math.min(minX, c[0]); maxX = Math.max(maxX, c[0]);
+					minZ = Math.min(minZ, c[1]); maxZ = Math.max(maxZ, c[1]);
+				}
+
+				out.println("<?xml version='1.0' encoding='UTF-8'?>");
+				out.println("<osm version='0.6' generator='OSM2World benchmark'>");
+				out.printf(Locale.US,
+						"<bounds minlat='%.7f' minlon='%.7f' maxlat='%.7f' maxlon='%.7f'/>%n",
+						lat(minZ), lon(minX), lat(maxZ), lon(maxX));
+
+				for (int i = 0; i < nodeCoords.size(); i++) {
+
+					long id = i + 1;
+					double[] c = nodeCoords.get(i);
+					String[] tags = nodeTags.get(id);
+
+					out.printf(Locale.US,
+							"<node id='%d' version='1' lat='%.7f' lon='%.7f'%s>%n",
+							id, lat(c[1]), lon(c[0]), (tags == null) ? "/" : "");
+
+					if (tags != null) {
+						writeTags(tags, out);
+						out.println("</node>");
+					}
+
+				}
+
+				for (int i = 0; i < wayNodes.size(); i++) {
+
+					out.println("<way id='" + (i + 1) + "' version='1'>");
+
+					for (long ref : wayNodes.get(i)) {
+						out.println("<nd ref='" + ref + "'/>");
+					}
+
+					writeTags(wayTags.get(i), out);
+
+					out.println("</way>");
+
+				}
+
+				out.println("</osm>");
+
+			} finally {
+				out.close();
+			}
+
+		}
+
+		private static void writeTags(String[] tags, PrintWriter out) {
+			for (int t = 0; t + 1 < tags.length; t += 2) {
+				out.println("<tag k='" + tags[t] + "' v='" + tags[t + 1] + "'/>");
+			}
+		}
+
+		private static double lat(double z) {
+			return LAT0 + z * LAT_PER_M;
+		}
+
+		private static double lon(double x) {
+			return LON0 + x * LON_PER_M;
+		}
+
+	}
+
+}
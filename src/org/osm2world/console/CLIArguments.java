@@ -94,6 +94,11 @@ public interface CLIArguments {
 	double getPviewAspect();
 	boolean isPviewAspect();
 	
+	/* tiled conversion */
+	
+	@Option(description="converts the input in separate tiles, with one set of output files per tile (see config keys tileSize and tileMargin)")
+	boolean getTiled();
+	
 	/* logging */
 	
 	@Option(description="writes execution times to the command line")
@@ -102,6 +107,14 @@ public interface CLIArguments {
 	@Option(description="appends a line with execution times to a file")
 	File getPerformanceTable();
 	boolean isPerformanceTable();
+	
+	@Option(description="writes detailed timers and counters to a file, format (.json or .csv) is chosen based on the extension")
+	File getMetrics();
+	boolean isMetrics();
+	
+	@Option(description="prints the costs of each world module and world object type, and of the given number of most expensive OSM elements")
+	int getProfile();
+	boolean isProfile();
 		
 	/* other parameters */
 	
@@ -120,4 +133,21 @@ public interface CLIArguments {
 	File getParameterFile();
 	boolean isParameterFile();
 	
+	@Option(description="number of conversions from the parameter file (or server jobs) that are performed at the same time",
+			defaultValue="1")
+	int getThreads();
+	boolean isThreads();
+	
+	/* server mode */
+	
+	@Option(description="runs a server which accepts conversion jobs (lines of parameters) on this local port",
+			longName="server_port")
+	int getServerPort();
+	boolean isServerPort();
+	
+	@Option(description="runs a server which performs conversion jobs from .job files (lines of parameters) in this directory",
+			longName="server_spool")
+	File getServerSpool();
+	boolean isServerSpool();
+	
 }
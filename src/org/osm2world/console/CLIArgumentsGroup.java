@@ -63,10 +63,14 @@ public class CLIArgumentsGroup {
 		return CLIArgumentsUtil.getProgramMode(args1) == CONVERT
 			&& CLIArgumentsUtil.getProgramMode(args2) == CONVERT
 			&& bothNullOrEqual(args1.getInputMode(), args2.getInputMode())
-			&& bothNullOrEqual(args1.getInput(), args2.getInput())
-			&& bothNullOrEqual(args1.getInputQuery(), args2.getInputQuery())
-			&& bothNullOrEqual(args1.getInputBoundingBox(), args2.getInputBoundingBox())
+			&& args1.isInput() == args2.isInput()
+			&& (!args1.isInput() || args1.getInput().equals(args2.getInput()))
+			&& args1.isInputQuery() == args2.isInputQuery()
+			&& (!args1.isInputQuery() || args1.getInputQuery().equals(args2.getInputQuery()))
+			&& args1.isInputBoundingBox() == args2.isInputBoundingBox()
+			&& (!args1.isInputBoundingBox() || args1.getInputBoundingBox().equals(args2.getInputBoundingBox()))
 			&& bothNullOrEqual(args1.getOverpassURL(), args2.getOverpassURL())
+			&& args1.getTiled() == args2.getTiled()
 			&& ((args1.isConfig() && args1.getConfig().equals(args2.getConfig()))
 					|| (!args1.isConfig() && !args2.isConfig()));
 		
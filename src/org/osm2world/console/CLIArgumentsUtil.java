@@ -11,9 +11,11 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.osm2world.core.util.metrics.MetricsUtil;
+
 public final class CLIArgumentsUtil {
 	
-	public static enum ProgramMode {GUI, CONVERT, HELP, VERSION, PARAMFILE};
+	public static enum ProgramMode {GUI, CONVERT, HELP, VERSION, PARAMFILE, SERVER};
 	public static enum OutputMode {OBJ, POV, PNG, PPM, GD};
 	public static enum InputMode {FILE, OVERPASS};
 	
@@ -47,6 +49,14 @@ public final class CLIArgumentsUtil {
 				return "output file parameter is missing";
 			}
 			
+			if (args.isMetrics() && MetricsUtil.getFormat(args.getMetrics()) == null) {
+				return "metrics file must have the extension .json or .csv";
+			}
+			
+			if (args.isProfile() && args.getProfile() <= 0) {
+				return "number of elements to profile must be positive";
+			}
+			
 			if (args.isOviewTiles() && args.getOviewTiles().isEmpty()) {
 				return "at least one tile required";
 			}
@@ -79,6 +89,12 @@ public final class CLIArgumentsUtil {
 					+ "and orthographic view";
 			}
 			
+			if (args.getTiled()
+					&& (hasOrthographicArg(args) || hasPerspectiveArg(args))) {
+				return "tiled conversion uses an orthographic view of each tile, "
+					+ "it cannot be combined with other view arguments";
+			}
+			
 		}
 		
 		return null;
@@ -97,6 +113,7 @@ public final class CLIArgumentsUtil {
 
 	public static final ProgramMode getProgramMode(CLIArguments args) {
 		return args.isParameterFile() ? PARAMFILE
+				: (args.isServerPort() || args.isServerSpool()) ? SERVER
 				: args.getHelp() ? HELP
 					: args.getVersion() ? VERSION
 						: args.getGui() ? GUI
@@ -122,10 +139,26 @@ public final class CLIArgumentsUtil {
 	public static final List<String[]> getUnparsedParameterGroups(
 			File parameterFile) throws IOException {
 		
+		BufferedReader in = new BufferedReader(new FileReader(parameterFile));
+		
+		try {
+			return getUnparsedParameterGroups(in);
+		} finally {
+			in.close();
+		}
+		
+	}
+	
+	/**
+	 * reads lines in the format of a parameter file,
+	 * see {@link #getUnparsedParameterGroups(File)}.
+	 * Does not close the reader.
+	 */
+	public static final List<String[]> getUnparsedParameterGroups(
+			BufferedReader in) throws IOException {
+		
 		List<String[]> result = new ArrayList<String[]>();
 		
-		BufferedReader in = new BufferedReader(new FileReader(parameterFile));
-			
 		String line;
 		
 		while ((line = in.readLine()) != null) {
@@ -154,7 +187,6 @@ public final class CLIArgumentsUtil {
 			result.add(argList.toArray(new String[argList.size()]));
 			
 		}
-		in.close();
 		
 		return result;
 		
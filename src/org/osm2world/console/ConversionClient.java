@@ -0,0 +1,135 @@
+package org.osm2world.console;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * sends jobs to a {@link ConversionServer}.
+ *
+ * Can be used from the command line as a replacement for a call of
+ * {@link OSM2World}: The first argument is the server's port,
+ * the remaining arguments are the parameters of one conversion.
+ */
+public final class ConversionClient {
+
+	private ConversionClient() {}
+
+	public static void main(String[] args) {
+
+		if (args.length < 2) {
+			System.err.println("usage: ConversionClient <port> <parameters...>");
+			System.exit(1);
+		}
+
+		StringBuilder line = new StringBuilder();
+
+		for (int i = 1; i < args.length; i++) {
+			if (i > 1) {
+				line.append(' ');
+			}
+			line.append('"').append(args[i]).append('"');
+		}
+
+		List<String> lines = new ArrayList<String>();
+		lines.add(line.toString());
+
+		try {
+			boolean success = send(Integer.parseInt(args[0]), lines, System.out);
+			System.exit(success ? 0 : 2);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+
+	}
+
+	/**
+	 * sends a job to a server on the local host and waits for it to finish
+	 *
+	 * @param lines  lines in the format of a parameter file
+	 * @param log    receives the job's log
+	 * @return  true if the server reported success
+	 */
+	public static boolean send(int port, List<String> lines, PrintStream log)
+			throws IOException {
+
+		Socket socket = new Socket(InetAddress.getByName(null), port);
+
+		try {
+
+			PrintWriter writer = new PrintWriter(
+					new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+
+			for (String line : lines) {
+				writer.print(line);
+				writer.print('\n');
+			}
+
+			writer.print('\n');
+			writer.flush();
+
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+			String line;
+			String lastLine = null;
+
+			while ((line = reader.readLine()) != null) {
+				log.println(line);
+				lastLine = line;
+			}
+
+			return ConversionServer.STATUS_OK.equals(lastLine);
+
+		} finally {
+			socket.close();
+		}
+
+	}
+
+	/**
+	 * places a job in a server's spool directory.
+	 * The file is written under a temporary name first,
+	 * so the server never reads an incomplete job.
+	 *
+	 * @param name   name of the job, used for the job's files
+	 * @param lines  lines in the format of a parameter file
+	 * @return  the job file
+	 */
+	public static File spool(File spoolDir, String name, List<String> lines)
+			throws IOException {
+
+		File tempFile = new File(spoolDir, name + ".tmp");
+		File jobFile = new File(spoolDir, name + ConversionServer.JOB_SUFFIX);
+
+		Writer writer = new FileWriter(tempFile);
+
+		try {
+			for (String line : lines) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+
+		if (!tempFile.renameTo(jobFile)) {
+			throw new IOException("could not create " + jobFile);
+		}
+
+		return jobFile;
+
+	}
+
+}
@@ -0,0 +1,562 @@
+package org.osm2world.console;
+
+import static org.osm2world.console.CLIArgumentsUtil.getProgramMode;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.osm2world.console.CLIArgumentsUtil.ProgramMode;
+import org.osm2world.console.OSM2World.ThreadBufferedOutputStream;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Metrics.TimerNode;
+
+/**
+ * runs conversions for jobs received while the process keeps running.
+ * This avoids the JVM startup and warm-up for each conversion, and
+ * keeps caches (configurations, SRTM tiles, textures) available
+ * for later jobs. {@link Metrics} are recorded for each job,
+ * and a summary of its timers is added to the job's log.
+ *
+ * A job consists of lines in the format of a parameter file.
+ * Jobs can be sent to a local port (terminated by an empty line or the
+ * end of the stream, the log is sent back with "OK" or "FAILED" as the
+ * last line), or placed as .job files in a spool directory
+ * (the job is renamed to .running while it is performed, then to
+ * .done or .failed, and the log is written to a .log file).
+ *
+ * Only conversions are supported, other program modes are rejected.
+ */
+public class ConversionServer {
+
+	/** time between checks of the spool directory */
+	static final long SPOOL_POLL_INTERVAL_MS = 500;
+
+	static final String STATUS_OK = "OK";
+	static final String STATUS_FAILED = "FAILED";
+
+	static final String JOB_SUFFIX = ".job";
+
+	/** performs the conversions, limits how many run at the same time */
+	private final ExecutorService workerExecutor;
+
+	/** reads requests and waits for their conversions */
+	private final ExecutorService requestExecutor;
+
+	private final PrintStream originalOut;
+	private final PrintStream originalErr;
+	private final ThreadBufferedOutputStream out;
+	private final ThreadBufferedOutputStream err;
+
+	private final Map<File, CachedConfiguration> configCache =
+			new HashMap<File, CachedConfiguration>();
+
+	private final List<ServerSocket> serverSockets = new ArrayList<ServerSocket>();
+	private final List<Thread> listenerThreads = new ArrayList<Thread>();
+
+	private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+
+	/**
+	 * creates the server and redirects console output
+	 * until {@link #shutdown()} is called
+	 *
+	 * @param threadCount  number of conversions performed at the same time
+	 */
+	public ConversionServer(int threadCount) {
+
+		workerExecutor = Executors.newFixedThreadPool(Math.max(1, threadCount),
+				new DaemonThreadFactory("OSM2World server worker"));
+		requestExecutor = Executors.newCachedThreadPool(
+				new DaemonThreadFactory("OSM2World server request"));
+
+		originalOut = System.out;
+		originalErr = System.err;
+
+		out = new ThreadBufferedOutputStream(originalOut);
+		err = new ThreadBufferedOutputStream(originalErr);
+
+		System.setOut(new PrintStream(out, true));
+		System.setErr(new PrintStream(err, true));
+
+	}
+
+	/**
+	 * starts accepting jobs on a port of the local host
+	 *
+	 * @param port  the port; 0 to pick a free port
+	 * @return  the port that is actually used
+	 */
+	public int listen(int port) throws IOException {
+
+		final ServerSocket serverSocket =
+				new ServerSocket(port, 50, InetAddress.getByName(null));
+
+		Thread thread = new Thread(new Runnable() {
+			@Override public void run() {
+				while (!serverSocket.isClosed()) {
+					try {
+						final Socket socket = serverSocket.accept();
+						requestExecutor.execute(new Runnable() {
+							@Override public void run() {
+								handleConnection(socket);
+							}
+						});
+					} catch (IOException e) {
+						if (!serverSocket.isClosed()) {
+							e.printStackTrace(originalErr);
+						}
+					}
+				}
+			}
+		}, "OSM2World server listener");
+
+		startListener(thread, serverSocket);
+
+		return serverSocket.getLocalPort();
+
+	}
+
+	/**
+	 * starts performing jobs from .job files in a directory
+	 */
+	public void watch(final File spoolDir) throws IOException {
+
+		if (!spoolDir.isDirectory()) {
+			throw new IOException("not a directory: " + spoolDir);
+		}
+
+		Thread thread = new Thread(new Runnable() {
+			@Override public void run() {
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						claimSpoolJobs(spoolDir);
+						Thread.sleep(SPOOL_POLL_INTERVAL_MS);
+					}
+				} catch (InterruptedException e) {
+					// shutdown
+				}
+			}
+		}, "OSM2World server spool");
+
+		startListener(thread, null);
+
+	}
+
+	private synchronized void startListener(Thread thread,
+			ServerSocket serverSocket) {
+
+		if (serverSocket != null) {
+			serverSockets.add(serverSocket);
+		}
+
+		listenerThreads.add(thread);
+
+		thread.setDaemon(true);
+		thread.start();
+
+	}
+
+	/**
+	 * blocks until {@link #shutdown()} has been called
+	 */
+	public void awaitShutdown() throws InterruptedException {
+		shutdownLatch.await();
+	}
+
+	/**
+	 * stops accepting jobs and restores console output.
+	 * Jobs that are already running are not interrupted.
+	 */
+	public synchronized void shutdown() {
+
+		for (ServerSocket serverSocket : serverSockets) {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				e.printStackTrace(originalErr);
+			}
+		}
+
+		for (Thread thread : listenerThreads) {
+			thread.interrupt();
+		}
+
+		serverSockets.clear();
+		listenerThreads.clear();
+
+		requestExecutor.shutdown();
+		workerExecutor.shutdown();
+
+		System.setOut(originalOut);
+		System.setErr(originalErr);
+
+		shutdownLatch.countDown();
+
+	}
+
+	/**
+	 * performs a job and waits until it is finished
+	 *
+	 * @param request  lines in the format of a parameter file
+	 * @param log      receives the console output of the job's conversions,
+	 *                 in the order of the lines
+	 * @return  true if all conversions have been successful
+	 */
+	public boolean handleRequest(BufferedReader request, PrintStream log)
+			throws IOException {
+
+		boolean success = true;
+
+		/* parse the lines */
+
+		List<CLIArguments> argumentsList = new ArrayList<CLIArguments>();
+
+		for (String[] unparsedArgs
+				: CLIArgumentsUtil.getUnparsedParameterGroups(request)) {
+
+			try {
+
+				CLIArguments args = OSM2World.parseArguments(unparsedArgs);
+
+				if (getProgramMode(args) != ProgramMode.CONVERT) {
+					throw new Exception("only conversions are supported, found "
+							+ getProgramMode(args));
+				}
+
+				argumentsList.add(args);
+
+			} catch (Exception e) {
+				log.println("Could not parse parameters:");
+				log.println(Arrays.toString(unparsedArgs));
+				log.println("Ignoring it. Reason:");
+				log.println(e.getMessage());
+				success = false;
+			}
+
+		}
+
+		/* run the conversions and collect their output in order */
+
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		List<ByteArrayOutputStream> buffers = new ArrayList<ByteArrayOutputStream>();
+
+		for (CLIArgumentsGroup argumentsGroup
+				: OSM2World.createArgumentsGroups(argumentsList)) {
+
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+			futures.add(workerExecutor.submit(
+					new ConversionTask(argumentsGroup, buffer)));
+			buffers.add(buffer);
+
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+
+			try {
+				success &= futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace(log);
+				success = false;
+			}
+
+			log.print(buffers.get(i).toString());
+			log.flush();
+
+		}
+
+		return success;
+
+	}
+
+	/**
+	 * reads a job from a connection,
+	 * and sends the log and status back
+	 */
+	private void handleConnection(Socket socket) {
+
+		try {
+
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+			StringBuilder request = new StringBuilder();
+
+			String line;
+
+			while ((line = in.readLine()) != null && !line.isEmpty()) {
+				request.append(line).append('\n');
+			}
+
+			PrintStream log = new PrintStream(
+					socket.getOutputStream(), true, "UTF-8");
+
+			boolean success = handleRequest(new BufferedReader(
+					new StringReader(request.toString())), log);
+
+			log.println(success ? STATUS_OK : STATUS_FAILED);
+			log.flush();
+
+		} catch (IOException e) {
+			e.printStackTrace(originalErr);
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				e.printStackTrace(originalErr);
+			}
+		}
+
+	}
+
+	/**
+	 * claims all jobs in the spool directory by renaming them,
+	 * and starts performing them
+	 */
+	private void claimSpoolJobs(File spoolDir) {
+
+		File[] jobFiles = spoolDir.listFiles(new FilenameFilter() {
+			@Override public boolean accept(File dir, String name) {
+				return name.endsWith(JOB_SUFFIX);
+			}
+		});
+
+		if (jobFiles == null) return;
+
+		Arrays.sort(jobFiles);
+
+		for (File jobFile : jobFiles) {
+
+			String name = jobFile.getName();
+			final String baseName = name.substring(0,
+					name.length() - JOB_SUFFIX.length());
+
+			final File runningFile = new File(spoolDir, baseName + ".running");
+
+			if (!jobFile.renameTo(runningFile)) {
+				continue; // claimed by someone else
+			}
+
+			final File dir = spoolDir;
+
+			requestExecutor.execute(new Runnable() {
+				@Override public void run() {
+					handleSpoolJob(dir, baseName, runningFile);
+				}
+			});
+
+		}
+
+	}
+
+	private void handleSpoolJob(File spoolDir, String baseName, File runningFile) {
+
+		boolean success = false;
+
+		try {
+
+			PrintStream log = new PrintStream(
+					new File(spoolDir, baseName + ".log"), "UTF-8");
+
+			try {
+
+				BufferedReader request = new BufferedReader(
+						new InputStreamReader(
+								new FileInputStream(runningFile), "UTF-8"));
+
+				try {
+					success = handleRequest(request, log);
+				} finally {
+					request.close();
+				}
+
+				log.println(success ? STATUS_OK : STATUS_FAILED);
+
+			} finally {
+				log.close();
+			}
+
+		} catch (IOException e) {
+			e.printStackTrace(originalErr);
+		}
+
+		File resultFile = new File(spoolDir,
+				baseName + (success ? ".done" : ".failed"));
+
+		resultFile.delete();
+
+		if (!runningFile.renameTo(resultFile)) {
+			originalErr.println("could not rename " + runningFile
+					+ " to " + resultFile);
+		}
+
+	}
+
+	/**
+	 * returns the configuration for a conversion.
+	 * Configuration files are only read again if they have been modified.
+	 */
+	private Configuration getConfiguration(CLIArguments args) {
+
+		if (!args.isConfig()) {
+			return new BaseConfiguration();
+		}
+
+		File configFile = args.getConfig().getAbsoluteFile();
+
+		synchronized (configCache) {
+
+			CachedConfiguration cached = configCache.get(configFile);
+
+			if (cached == null
+					|| cached.lastModified != configFile.lastModified()) {
+
+				try {
+					cached = new CachedConfiguration(configFile.lastModified(),
+							OSM2World.loadConfiguration(configFile));
+				} catch (ConfigurationException e) {
+					System.err.println("could not read config, ignoring it: ");
+					System.err.println(e);
+					return new BaseConfiguration();
+				}
+
+				configCache.put(configFile, cached);
+
+			}
+
+			return cached.config;
+
+		}
+
+	}
+
+	private static final class CachedConfiguration {
+
+		final long lastModified;
+		final Configuration config;
+
+		CachedConfiguration(long lastModified, Configuration config) {
+			this.lastModified = lastModified;
+			this.config = config;
+		}
+
+	}
+
+	/**
+	 * performs the conversions of one group,
+	 * writing all console output and timings to a buffer
+	 */
+	private final class ConversionTask implements Callable<Boolean> {
+
+		private final CLIArgumentsGroup argumentsGroup;
+		private final ByteArrayOutputStream buffer;
+
+		public ConversionTask(CLIArgumentsGroup argumentsGroup,
+				ByteArrayOutputStream buffer) {
+			this.argumentsGroup = argumentsGroup;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public Boolean call() {
+
+			out.startBuffer(buffer);
+			err.startBuffer(buffer);
+
+			try {
+
+				Metrics metrics = new Metrics();
+
+				try {
+					Output.output(getConfiguration(argumentsGroup.getRepresentative()),
+							argumentsGroup, metrics);
+				} finally {
+					metrics.finish();
+				}
+
+				System.out.println("conversion of "
+						+ argumentsGroup.getRepresentative().getInput()
+						+ " finished after "
+						+ metrics.getTotalNanos() / 1000000 + " ms ("
+						+ getTimerSummary(metrics) + ")");
+
+				return true;
+
+			} catch (Throwable t) {
+				t.printStackTrace();
+				return false;
+			} finally {
+				System.out.flush();
+				System.err.flush();
+				out.endBuffer();
+				err.endBuffer();
+			}
+
+		}
+
+	}
+
+	/**
+	 * lists the durations of the top-level timers
+	 */
+	private static String getTimerSummary(Metrics metrics) {
+
+		StringBuilder result = new StringBuilder();
+
+		for (TimerNode timer : metrics.getTimers()) {
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			result.append(timer.getName()).append(' ')
+				.append(timer.getTotalNanos() / 1000000).append(" ms");
+		}
+
+		return result.toString();
+
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+
+		private final String name;
+
+		public DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -336,6 +336,7 @@ public class ImageExporter {
 		
 		
 		target.setConfiguration(config);
+		target.setMaterialRegistry(results.getMaterialRegistry());
 		
 		boolean underground = config.getBoolean("renderUnderground", true);
 
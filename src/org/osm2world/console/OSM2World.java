@@ -3,12 +3,19 @@ package org.osm2world.console;
 import static org.osm2world.console.CLIArgumentsUtil.getProgramMode;
 import static org.osm2world.core.GlobalValues.VERSION_STRING;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.swing.UIManager;
 
@@ -18,6 +25,8 @@ import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.osm2world.console.CLIArgumentsUtil.ProgramMode;
 import org.osm2world.core.GlobalValues;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.PropagatedThreadLocal;
 import org.osm2world.viewer.view.ViewerFrame;
 
 import uk.co.flamingpenguin.jewel.cli.ArgumentValidationException;
@@ -52,6 +61,13 @@ public class OSM2World {
 			System.exit(1);
 		}
 		
+		/* run as a server if requested */
+		
+		if (getProgramMode(args) == ProgramMode.SERVER) {
+			runServer(args);
+			return;
+		}
+		
 		/* parse lines from parameter file (if one exists) */
 		
 		List<CLIArguments> argumentsList = Collections.singletonList(args);
@@ -85,8 +101,48 @@ public class OSM2World {
 			
 		}
 		
-		/* collect parameter groups into compatible groups
-		 * (groups of parameter groups that use the same input and config files) */
+		/* collect parameter groups into compatible groups */
+		
+		List<CLIArgumentsGroup> argumentsGroups =
+				createArgumentsGroups(argumentsList);
+		
+		/* execute conversions */
+		
+		if (argumentsGroups.isEmpty()) {
+			System.err.println("warning: empty parameter file, doing nothing");
+		}
+		
+		ExecutorService executor = null;
+		
+		if (args.isParameterFile() && argumentsGroups.size() > 1) {
+			executor = ParallelIterationUtil.createExecutor(args.getThreads());
+		}
+		
+		if (executor == null) {
+			
+			for (CLIArgumentsGroup argumentsGroup : argumentsGroups) {
+				printGroupHeader(argumentsGroup, argumentsList);
+				executeArgumentsGroup(argumentsGroup);
+			}
+			
+		} else {
+			
+			try {
+				executeArgumentsGroups(argumentsGroups, argumentsList, executor);
+			} finally {
+				ParallelIterationUtil.shutdown(executor);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * collects parameter groups into compatible groups
+	 * (groups of parameter groups that use the same input and config files)
+	 */
+	static List<CLIArgumentsGroup> createArgumentsGroups(
+			List<CLIArguments> argumentsList) {
 		
 		List<CLIArgumentsGroup> argumentsGroups = new ArrayList<CLIArgumentsGroup>();
 		
@@ -110,29 +166,137 @@ public class OSM2World {
 			
 		}
 		
-		/* execute conversions */
+		return argumentsGroups;
 		
-		if (argumentsGroups.isEmpty()) {
-			System.err.println("warning: empty parameter file, doing nothing");
+	}
+	
+	private static void runServer(CLIArguments args) {
+		
+		ConversionServer server = new ConversionServer(args.getThreads());
+		
+		try {
+			
+			if (args.isServerPort()) {
+				server.listen(args.getServerPort());
+				System.out.println("listening on port " + args.getServerPort());
+			}
+			
+			if (args.isServerSpool()) {
+				server.watch(args.getServerSpool());
+				System.out.println("watching " + args.getServerSpool());
+			}
+			
+			server.awaitShutdown();
+			
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			server.shutdown();
+		}
+		
+	}
+	
+	private static void printGroupHeader(CLIArgumentsGroup argumentsGroup,
+			List<CLIArguments> argumentsList) {
+		
+		if (argumentsList.size() > 1) {
+			System.out.print("executing conversion for these parameter lines: ");
+			for (CLIArguments p : argumentsGroup.getCLIArgumentsList()) {
+				System.out.print(argumentsList.indexOf(p) + " ");
+			}
+			System.out.print("\n");
 		}
 		
-		for (CLIArgumentsGroup argumentsGroup : argumentsGroups) {
+	}
+	
+	/**
+	 * executes groups at the same time using an executor.
+	 * Console output of each group is buffered and printed in the
+	 * order of the groups. A group failing does not affect the others.
+	 */
+	private static void executeArgumentsGroups(
+			List<CLIArgumentsGroup> argumentsGroups,
+			final List<CLIArguments> argumentsList, ExecutorService executor) {
+		
+		final PrintStream originalOut = System.out;
+		final PrintStream originalErr = System.err;
+		
+		final ThreadBufferedOutputStream out =
+				new ThreadBufferedOutputStream(originalOut);
+		final ThreadBufferedOutputStream err =
+				new ThreadBufferedOutputStream(originalErr);
+		
+		System.setOut(new PrintStream(out, true));
+		System.setErr(new PrintStream(err, true));
+		
+		try {
+			
+			List<Future<ByteArrayOutputStream[]>> futures =
+					new ArrayList<Future<ByteArrayOutputStream[]>>();
+			
+			for (final CLIArgumentsGroup argumentsGroup : argumentsGroups) {
+				
+				futures.add(executor.submit(new Callable<ByteArrayOutputStream[]>() {
+					@Override
+					public ByteArrayOutputStream[] call() {
 						
-			if (argumentsList.size() > 1) {
-				System.out.print("executing conversion for these parameter lines: ");
-				for (CLIArguments p : argumentsGroup.getCLIArgumentsList()) {
-					System.out.print(argumentsList.indexOf(p) + " ");
-				}
-				System.out.print("\n");
+						ByteArrayOutputStream outBuffer = out.startBuffer();
+						ByteArrayOutputStream errBuffer = err.startBuffer();
+						
+						try {
+							
+							printGroupHeader(argumentsGroup, argumentsList);
+							
+							executeArgumentsGroup(argumentsGroup);
+							
+						} catch (Throwable t) {
+							t.printStackTrace();
+						} finally {
+							System.out.flush();
+							System.err.flush();
+							out.endBuffer();
+							err.endBuffer();
+						}
+						
+						return new ByteArrayOutputStream[] {outBuffer, errBuffer};
+						
+					}
+				}));
+				
 			}
 			
-			executeArgumentsGroup(argumentsGroup);
+			for (Future<ByteArrayOutputStream[]> future : futures) {
+				
+				ByteArrayOutputStream[] buffers;
+				
+				try {
+					buffers = future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace(originalErr);
+					continue;
+				}
+				
+				originalOut.print(buffers[0].toString());
+				originalOut.flush();
+				originalErr.print(buffers[1].toString());
+				originalErr.flush();
+				
+			}
 			
+		} finally {
+			System.setOut(originalOut);
+			System.setErr(originalErr);
 		}
 		
 	}
-
-	private static CLIArguments parseArguments(String[] unparsedArgs)
+	
+	static CLIArguments parseArguments(String[] unparsedArgs)
 		throws ArgumentValidationException, Exception {
 		
 		CLIArguments args = CliFactory.parseArguments(CLIArguments.class, unparsedArgs);
@@ -156,10 +320,7 @@ public class OSM2World {
 		if (representativeArgs.isConfig()) {
 			try {
 				configFile = representativeArgs.getConfig();
-				PropertiesConfiguration fileConfig = new PropertiesConfiguration();
-				fileConfig.setListDelimiter(';');
-				fileConfig.load(configFile);
-				config = fileConfig;
+				config = loadConfiguration(configFile);
 			} catch (ConfigurationException e) {
 				System.err.println("could not read config, ignoring it: ");
 				System.err.println(e);
@@ -208,4 +369,75 @@ public class OSM2World {
 		}
 	}
 	
+	/**
+	 * reads a properties file with configuration parameters
+	 */
+	static Configuration loadConfiguration(File configFile)
+			throws ConfigurationException {
+		
+		PropertiesConfiguration fileConfig = new PropertiesConfiguration();
+		fileConfig.setListDelimiter(';');
+		fileConfig.load(configFile);
+		
+		return fileConfig;
+		
+	}
+	
+	/**
+	 * writes to a buffer for threads that have started one,
+	 * and to the underlying stream for all others.
+	 * Worker threads used by {@link ParallelIterationUtil} write to the
+	 * buffer of the thread that has started the parallel iteration.
+	 */
+	static final class ThreadBufferedOutputStream extends OutputStream {
+		
+		private final OutputStream stream;
+		
+		private final ThreadLocal<ByteArrayOutputStream> buffer =
+				new PropagatedThreadLocal<ByteArrayOutputStream>();
+		
+		public ThreadBufferedOutputStream(OutputStream stream) {
+			this.stream = stream;
+		}
+		
+		public ByteArrayOutputStream startBuffer() {
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			startBuffer(result);
+			return result;
+		}
+		
+		/**
+		 * starts writing to an existing buffer,
+		 * e.g. to collect the output of multiple streams in one buffer
+		 */
+		public void startBuffer(ByteArrayOutputStream buffer) {
+			this.buffer.set(buffer);
+		}
+		
+		public void endBuffer() {
+			buffer.remove();
+		}
+		
+		private OutputStream getTarget() {
+			OutputStream result = buffer.get();
+			return (result != null) ? result : stream;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			getTarget().write(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			getTarget().write(b, off, len);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			getTarget().flush();
+		}
+		
+	}
+	
 }
@@ -5,25 +5,30 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 
 import static java.lang.Double.*;
+import static java.util.Arrays.asList;
+import static org.osm2world.core.ConversionFacade.Phase.*;
 import org.apache.commons.configuration.Configuration;
 import org.osm2world.console.CLIArgumentsUtil.OutputMode;
 import org.osm2world.core.ConversionFacade;
 import org.osm2world.core.ConversionFacade.Phase;
-import org.osm2world.core.ConversionFacade.ProgressListener;
 import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.TiledConversion;
+import org.osm2world.core.TiledConversion.TileHandler;
 import org.osm2world.core.map_data.creation.LatLon;
+import org.osm2world.core.map_data.creation.LatLonBounds;
 import org.osm2world.core.map_data.creation.MapProjection;
 import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
+import org.osm2world.core.map_elevation.creation.IterativeEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.LPEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator;
 import org.osm2world.core.map_elevation.creation.NaturalNeighborInterpolator;
 import org.osm2world.core.map_elevation.creation.NoneEleConstraintEnforcer;
+import org.osm2world.core.map_elevation.creation.RasterInterpolator;
 import org.osm2world.core.map_elevation.creation.SimpleEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.TerrainInterpolator;
 import org.osm2world.core.map_elevation.creation.ZeroInterpolator;
@@ -33,30 +38,87 @@ import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.creation.OSMDataReader;
 import org.osm2world.core.osm.creation.OSMFileReader;
 import org.osm2world.core.osm.creation.OverpassReader;
+import org.osm2world.core.osm.data.OSMData;
 import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.OrthoTilesUtil;
 import org.osm2world.core.target.common.rendering.OrthoTilesUtil.CardinalDirection;
 import org.osm2world.core.target.common.rendering.Projection;
 import org.osm2world.core.target.obj.ObjWriter;
 import org.osm2world.core.target.povray.POVRayWriter;
+import org.osm2world.core.util.ParallelIterationUtil;
 import org.osm2world.core.util.functions.DefaultFactory;
+import org.osm2world.core.util.functions.Factory;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Metrics.Timer;
+import org.osm2world.core.util.metrics.Metrics.TimerNode;
+import org.osm2world.core.util.metrics.MetricsUtil;
 
 public final class Output {
 
 	private Output() {}
 
-	public static void output(Configuration config,
-			CLIArgumentsGroup argumentsGroup)
+	public static void output(final Configuration config,
+			final CLIArgumentsGroup argumentsGroup)
 		throws IOException {
 		
-		long start = System.currentTimeMillis();
+		output(config, argumentsGroup, null);
+		
+	}
+	
+	/**
+	 * variant of {@link #output(Configuration, CLIArgumentsGroup)}
+	 * which records {@link Metrics} for the conversion
+	 * 
+	 * @param metrics  metrics to record to; null to only record metrics
+	 *                 if they are needed for the arguments' logging options
+	 */
+	public static void output(final Configuration config,
+			final CLIArgumentsGroup argumentsGroup, Metrics metrics)
+		throws IOException {
+		
+		CLIArguments args = argumentsGroup.getRepresentative();
+		
+		boolean ownMetrics = (metrics == null);
+		
+		if (ownMetrics) {
+			metrics = (args.getPerformancePrint() || args.isPerformanceTable()
+					|| args.isMetrics() || args.isProfile())
+					? new Metrics() : Metrics.DISABLED;
+		}
+		
+		if (args.isProfile()) {
+			metrics.enableProfile(args.getProfile());
+		}
+		
+		Metrics previousMetrics = Metrics.setCurrent(metrics);
+		
+		try {
+			convert(config, argumentsGroup);
+		} finally {
+			Metrics.setCurrent(previousMetrics);
+			if (ownMetrics) {
+				metrics.finish();
+			}
+		}
+		
+		writeMetrics(args, metrics);
+		
+	}
+	
+	private static void convert(final Configuration config,
+			final CLIArgumentsGroup argumentsGroup)
+		throws IOException {
+		
+		Metrics metrics = Metrics.current();
 		
 		OSMDataReader dataReader = null;
 		
 		switch (argumentsGroup.getRepresentative().getInputMode()) {
 		
 		case FILE:
-			dataReader = new OSMFileReader(argumentsGroup.getRepresentative().getInput());
+			File inputFile = argumentsGroup.getRepresentative().getInput();
+			dataReader = new OSMFileReader(inputFile,
+					ParallelIterationUtil.getThreadCount(config));
 			break;
 		
 		case OVERPASS:
@@ -96,9 +158,6 @@ public final class Output {
 		
 		
 		ConversionFacade cf = new ConversionFacade();
-		PerformanceListener perfListener =
-			new PerformanceListener(argumentsGroup.getRepresentative());
-		cf.addProgressListener(perfListener);
 				
 		String interpolatorType = config.getString("terrainInterpolator");
 		if ("ZeroInterpolator".equals(interpolatorType)) {
@@ -110,6 +169,13 @@ public final class Output {
 		} else if ("NaturalNeighborInterpolator".equals(interpolatorType)) {
 			cf.setTerrainEleInterpolatorFactory(
 					new DefaultFactory<TerrainInterpolator>(NaturalNeighborInterpolator.class));
+		} else if ("RasterInterpolator".equals(interpolatorType)) {
+			final RasterInterpolator.Method method = getRasterInterpolationMethod(config);
+			cf.setTerrainEleInterpolatorFactory(new Factory<TerrainInterpolator>() {
+				@Override public TerrainInterpolator make() {
+					return new RasterInterpolator(method);
+				}
+			});
 		}
 		
 		String enforcerType = config.getString("eleConstraintEnforcer");
@@ -120,11 +186,142 @@ public final class Output {
 			cf.setEleConstraintEnforcerFactory(
 					new DefaultFactory<EleConstraintEnforcer>(SimpleEleConstraintEnforcer.class));
 		} else if ("LPEleConstraintEnforcer".equals(enforcerType)) {
-			cf.setEleConstraintEnforcerFactory(
-					new DefaultFactory<EleConstraintEnforcer>(LPEleConstraintEnforcer.class));
+			final int threadCount = ParallelIterationUtil.getThreadCount(config);
+			cf.setEleConstraintEnforcerFactory(new Factory<EleConstraintEnforcer>() {
+				@Override public EleConstraintEnforcer make() {
+					return new LPEleConstraintEnforcer(threadCount);
+				}
+			});
+		} else if ("IterativeEleConstraintEnforcer".equals(enforcerType)) {
+			final int threadCount = ParallelIterationUtil.getThreadCount(config);
+			cf.setEleConstraintEnforcerFactory(new Factory<EleConstraintEnforcer>() {
+				@Override public EleConstraintEnforcer make() {
+					return new IterativeEleConstraintEnforcer(threadCount);
+				}
+			});
 		}
 		
-		Results results = cf.createRepresentations(dataReader.getData(), null, config, null);
+		Timer timer = metrics.startTimer("readInput");
+		OSMData osmData = dataReader.getData();
+		timer.stop();
+		
+		if (argumentsGroup.getRepresentative().getTiled()) {
+			
+			new TiledConversion(cf).createRepresentations(
+					osmData, null, config, new TileHandler() {
+				@Override
+				public void handleTile(int column, int row,
+						LatLonBounds bounds, Results results) throws IOException {
+					writeOutputs(config, argumentsGroup, results, column, row);
+				}
+			});
+			
+		} else {
+			
+			Results results = cf.createRepresentations(
+					osmData, null, config, null);
+			
+			writeOutputs(config, argumentsGroup, results, null, null);
+			
+		}
+		
+	}
+	
+	/**
+	 * returns the method selected with the rasterInterpolation key.
+	 * Falls back to bicubic interpolation if the value is not valid.
+	 */
+	private static RasterInterpolator.Method getRasterInterpolationMethod(
+			Configuration config) {
+		
+		String value = config.getString("rasterInterpolation", "bicubic");
+		
+		try {
+			return RasterInterpolator.Method.valueOf(value.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.err.println("warning: unknown rasterInterpolation '" + value
+					+ "', using bicubic. Allowed values: "
+					+ Arrays.toString(RasterInterpolator.Method.values()).toLowerCase());
+			return RasterInterpolator.Method.BICUBIC;
+		}
+		
+	}
+	
+	/**
+	 * writes metrics as requested by the arguments' logging options
+	 */
+	private static void writeMetrics(CLIArguments args, Metrics metrics)
+			throws IOException {
+		
+		if (args.getPerformancePrint()) {
+			
+			for (Phase phase : Phase.values()) {
+				TimerNode timer = metrics.getTimer(phase.name());
+				if (timer != null) {
+					System.out.println("phase " + phase + " finished after "
+							+ timer.getTotalNanos() / 1000000 + " ms");
+				}
+			}
+			
+			System.out.println("finished after "
+					+ metrics.getTotalNanos() / 1000000000 + " s");
+			
+		}
+		
+		if (args.isPerformanceTable()) {
+			
+			/* the time after the terrain phase also includes writing output */
+			
+			long otherNanos = metrics.getTotalNanos();
+			
+			for (Phase phase : asList(MAP_DATA, REPRESENTATION, ELEVATION, TERRAIN)) {
+				otherNanos -= getPhaseNanos(metrics, phase);
+			}
+			
+			PrintWriter w = new PrintWriter(new FileWriter(
+					args.getPerformanceTable(), true), true);
+			w.printf("|%6d |%6d |%6d |%6d |%6d |%6d |\n",
+				roundToSeconds(getPhaseNanos(metrics, MAP_DATA)),
+				roundToSeconds(getPhaseNanos(metrics, REPRESENTATION)),
+				roundToSeconds(getPhaseNanos(metrics, ELEVATION)),
+				roundToSeconds(getPhaseNanos(metrics, TERRAIN)),
+				roundToSeconds(otherNanos),
+				roundToSeconds(metrics.getTotalNanos()));
+			w.close();
+			
+		}
+		
+		if (args.isMetrics()) {
+			MetricsUtil.write(metrics, args.getMetrics());
+		}
+		
+		if (metrics.getProfile() != null) {
+			MetricsUtil.printProfile(metrics.getProfile(), System.out);
+		}
+		
+	}
+	
+	private static long getPhaseNanos(Metrics metrics, Phase phase) {
+		TimerNode timer = metrics.getTimer(phase.name());
+		return (timer != null) ? timer.getTotalNanos() : 0;
+	}
+	
+	private static long roundToSeconds(long nanos) {
+		return (nanos + 500000000) / 1000000000;
+	}
+	
+	/**
+	 * writes the results of a conversion to all output files
+	 * 
+	 * @param tileColumn  column of the tile when using tiled conversion,
+	 *                    null otherwise. Output file names will be extended
+	 *                    with the tile's column and row, and the view
+	 *                    will be an orthographic view of the tile.
+	 * @param tileRow     row of the tile, see tileColumn
+	 */
+	private static void writeOutputs(Configuration config,
+			CLIArgumentsGroup argumentsGroup, Results results,
+			Integer tileColumn, Integer tileRow) throws IOException {
 		
 		ImageExporter exporter = null;
 		
@@ -133,7 +330,16 @@ public final class Output {
 			Camera camera = null;
 			Projection projection = null;
 			
-			if (args.isOviewTiles()) {
+			if (tileColumn != null) {
+				
+				AxisAlignedBoundingBoxXZ bounds = results.getMapData().getBoundary();
+				
+				camera = OrthoTilesUtil.cameraForBounds(
+						bounds, args.getOviewAngle(), args.getOviewFrom());
+				projection = OrthoTilesUtil.projectionForBounds(
+						bounds, args.getOviewAngle(), args.getOviewFrom());
+				
+			} else if (args.isOviewTiles()) {
 				
 				camera = OrthoTilesUtil.cameraForTiles(
 						results.getMapProjection(),
@@ -184,9 +390,15 @@ public final class Output {
 			
 			for (File outputFile : args.getOutput()) {
 				
+				if (tileColumn != null) {
+					outputFile = getTileFile(outputFile, tileColumn, tileRow);
+				}
+				
 				OutputMode outputMode =
 					CLIArgumentsUtil.getOutputMode(outputFile);
 				
+				Timer timer = Metrics.current().startTimer("output " + outputMode);
+				
 				switch (outputMode) {
 	
 				case OBJ:
@@ -196,18 +408,21 @@ public final class Output {
 						boolean underground = config.getBoolean("renderUnderground", true);
                         
 						ObjWriter.writeObjFile(outputFile,
-								results.getMapData(), results.getMapProjection(),
+								results.getMapData(), results.getMaterialRegistry(),
+								results.getMapProjection(),
 								camera, projection, underground);
 					} else {
 						ObjWriter.writeObjFiles(outputFile,
-								results.getMapData(), results.getMapProjection(),
+								results.getMapData(), results.getMaterialRegistry(),
+								results.getMapProjection(),
 								camera, projection, primitiveThresholdOBJ);
 					}
 					break;
 					
 				case POV:
 					POVRayWriter.writePOVInstructionFile(outputFile,
-							results.getMapData(), camera, projection);
+							results.getMapData(), results.getMaterialRegistry(),
+							camera, projection);
 					break;
 					
 				case PNG:
@@ -227,6 +442,8 @@ public final class Output {
 					
 				}
 				
+				timer.stop();
+				
 			}
 			
 		}
@@ -236,72 +453,27 @@ public final class Output {
 			exporter = null;
 		}
 		
-		if (argumentsGroup.getRepresentative().getPerformancePrint()) {
-			long timeSec = (System.currentTimeMillis() - start) / 1000;
-			System.out.println("finished after " + timeSec + " s");
-		}
-		
-		if (argumentsGroup.getRepresentative().isPerformanceTable()) {
-			PrintWriter w = new PrintWriter(new FileWriter(
-					argumentsGroup.getRepresentative().getPerformanceTable(), true), true);
-			w.printf("|%6d |%6d |%6d |%6d |%6d |%6d |\n",
-				(perfListener.getPhaseDuration(Phase.MAP_DATA) + 500) / 1000,
-				(perfListener.getPhaseDuration(Phase.REPRESENTATION) + 500) / 1000,
-				(perfListener.getPhaseDuration(Phase.ELEVATION) + 500) / 1000,
-				(perfListener.getPhaseDuration(Phase.TERRAIN) + 500) / 1000,
-				(System.currentTimeMillis() - perfListener.getPhaseEnd(Phase.TERRAIN) + 500) / 1000,
-				(System.currentTimeMillis() - start + 500) / 1000);
-			w.close();
-		}
-
 	}
 	
-	private static class PerformanceListener implements ProgressListener {
-		
-		private final CLIArguments args;
-		public PerformanceListener(CLIArguments args) {
-			this.args = args;
-		}
-
-		private Phase currentPhase = null;
-		private long currentPhaseStart;
+	/**
+	 * returns the output file for a tile by inserting
+	 * the tile's column and row before the file extension
+	 */
+	private static File getTileFile(File file, int column, int row) {
 		
-		private Map<Phase, Long> phaseStarts = new HashMap<Phase, Long>();
-		private Map<Phase, Long> phaseEnds = new HashMap<Phase, Long>();
+		String name = file.getName();
+		String suffix = "_" + column + "_" + row;
 		
-		public Long getPhaseStart(Phase phase) {
-			return phaseStarts.get(phase);
-		}
+		int extensionStart = name.lastIndexOf('.');
 		
-		public Long getPhaseEnd(Phase phase) {
-			return phaseEnds.get(phase);
+		if (extensionStart >= 0) {
+			name = name.substring(0, extensionStart) + suffix
+					+ name.substring(extensionStart);
+		} else {
+			name = name + suffix;
 		}
 		
-		public Long getPhaseDuration(Phase phase) {
-			return getPhaseEnd(phase) - getPhaseStart(phase);
-		}
-		
-		@Override
-		public void updatePhase(Phase newPhase) {
-			
-			phaseStarts.put(newPhase, System.currentTimeMillis());
-			
-			if (currentPhase != null) {
-				
-				phaseEnds.put(currentPhase, System.currentTimeMillis());
-				
-				if (args.getPerformancePrint()) {
-					long ms = System.currentTimeMillis() - currentPhaseStart;
-					System.out.println("phase " + currentPhase
-						+  " finished after " + ms + " ms");
-				}
-				
-			}
-			
-			currentPhase = newPhase;
-			currentPhaseStart = System.currentTimeMillis();
-			
-		}
+		return new File(file.getParentFile(), name);
 		
 	}
 
@@ -1,5 +1,6 @@
 package org.osm2world.core;
 
+import static java.lang.Math.*;
 import static java.util.Collections.emptyList;
 
 import java.io.File;
@@ -8,11 +9,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
-import org.apache.commons.lang.time.StopWatch;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.osm2world.core.map_data.creation.LatLon;
 import org.osm2world.core.map_data.creation.MapProjection;
 import org.osm2world.core.map_data.creation.MetricMapProjection;
 import org.osm2world.core.map_data.creation.OSMToMapDataConverter;
@@ -22,23 +25,29 @@ import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.EleConstraintValidator;
 import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator;
 import org.osm2world.core.map_elevation.creation.NoneEleConstraintEnforcer;
+import org.osm2world.core.map_elevation.creation.RasterInterpolator;
 import org.osm2world.core.map_elevation.creation.SRTMData;
 import org.osm2world.core.map_elevation.creation.TerrainElevationData;
 import org.osm2world.core.map_elevation.creation.TerrainInterpolator;
 import org.osm2world.core.map_elevation.creation.ZeroInterpolator;
 import org.osm2world.core.map_elevation.data.EleConnector;
 import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.creation.OSMDataReader;
 import org.osm2world.core.osm.creation.OSMFileReader;
 import org.osm2world.core.osm.data.OSMData;
 import org.osm2world.core.target.Renderable;
 import org.osm2world.core.target.Target;
 import org.osm2world.core.target.TargetUtil;
-import org.osm2world.core.target.common.material.Materials;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.util.FaultTolerantIterationUtil;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.RangeOperation;
 import org.osm2world.core.util.functions.DefaultFactory;
 import org.osm2world.core.util.functions.Factory;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Metrics.Timer;
 import org.osm2world.core.world.creation.WorldCreator;
 import org.osm2world.core.world.creation.WorldModule;
 import org.osm2world.core.world.data.WorldObject;
@@ -74,11 +83,14 @@ public class ConversionFacade {
 		private final MapProjection mapProjection;
 		private final MapData mapData;
 		private final TerrainElevationData eleData;
+		private final MaterialRegistry materialRegistry;
 		
-		private Results(MapProjection mapProjection, MapData mapData, TerrainElevationData eleData) {
+		Results(MapProjection mapProjection, MapData mapData,
+				TerrainElevationData eleData, MaterialRegistry materialRegistry) {
 			this.mapProjection = mapProjection;
 			this.mapData = mapData;
 			this.eleData = eleData;
+			this.materialRegistry = materialRegistry;
 		}
 
 		public MapProjection getMapProjection() {
@@ -93,6 +105,14 @@ public class ConversionFacade {
 			return eleData;
 		}
 		
+		/**
+		 * returns the materials as configured for this conversion.
+		 * Needs to be set on targets that the results are rendered to.
+		 */
+		public MaterialRegistry getMaterialRegistry() {
+			return materialRegistry;
+		}
+		
 		/**
 		 * collects and returns all representations that implement a
 		 * renderableType, including terrain.
@@ -219,7 +239,8 @@ public class ConversionFacade {
 			throw new IllegalArgumentException("osmFile must not be null");
 		}
 		
-		OSMData osmData = new OSMFileReader(osmFile).getData();
+		OSMData osmData = new OSMFileReader(osmFile,
+				ParallelIterationUtil.getThreadCount(config)).getData();
 		
 		return createRepresentations(osmData, worldModules, config, targets);
 		
@@ -248,6 +269,26 @@ public class ConversionFacade {
 			List<Target<?>> targets)
 			throws IOException, BoundingBoxSizeException {
 		
+		return createRepresentations(osmData, null,
+				worldModules, config, targets);
+		
+	}
+	
+	/**
+	 * variant of
+	 * {@link #createRepresentations(OSMData, List, Configuration, List)}
+	 * with a fixed origin for the map projection.
+	 * This allows the results of several conversions,
+	 * e.g. for neighboring tiles, to share a coordinate system.
+	 * 
+	 * @param origin  origin for the map projection;
+	 *                null to derive it from the osmData
+	 */
+	public Results createRepresentations(OSMData osmData, LatLon origin,
+			List<WorldModule> worldModules, Configuration config,
+			List<Target<?>> targets)
+			throws IOException, BoundingBoxSizeException {
+		
 		/* check the inputs */
 		
 		if (osmData == null) {
@@ -268,59 +309,74 @@ public class ConversionFacade {
 			}
 		}
 		
-		/* create map data from OSM data */
-		updatePhase(Phase.MAP_DATA);
-		
-		OriginMapProjection mapProjection = mapProjectionFactory.make();
-		mapProjection.setOrigin(osmData);
-		
-		OSMToMapDataConverter converter = new OSMToMapDataConverter(mapProjection, config);
-		MapData mapData = converter.createMapData(osmData);
-		
-		/* apply world modules */
-		updatePhase(Phase.REPRESENTATION);
+		Metrics metrics = Metrics.current();
+		Timer phaseTimer = null;
 		
-		if (worldModules == null) {
-			worldModules = createDefaultModuleList();
-		}
-		
-		Materials.configureMaterials(config);
-			//this will cause problems if multiple conversions are run
-			//at the same time, because global variables are being modified
-		
-		WorldCreator moduleManager =
-			new WorldCreator(config, worldModules);
-		moduleManager.addRepresentationsTo(mapData);
-		
-		/* determine elevations */
-		updatePhase(Phase.ELEVATION);
-		
-		String srtmDir = config.getString("srtmDir", null);
-		TerrainElevationData eleData = null;
-				
-		if (srtmDir != null) {
-			eleData = new SRTMData(new File(srtmDir), mapProjection);
-		}
-		
-		calculateElevations(mapData, eleData, config);
-		
-		/* create terrain */
-		updatePhase(Phase.TERRAIN); //TODO this phase may be obsolete
-				
-		/* supply results to targets and caller */
-		updatePhase(Phase.FINISHED);
-		
-		boolean underground = config.getBoolean("renderUnderground", true);
-		
-		if (targets != null) {
-			for (Target<?> target : targets) {
-				TargetUtil.renderWorldObjects(target, mapData, underground);
-				target.finish();
+		try {
+			
+			/* create map data from OSM data */
+			phaseTimer = updatePhase(Phase.MAP_DATA, phaseTimer, metrics);
+			
+			OriginMapProjection mapProjection = mapProjectionFactory.make();
+			
+			if (origin != null) {
+				mapProjection.setOrigin(origin);
+			} else {
+				mapProjection.setOrigin(osmData);
+			}
+			
+			OSMToMapDataConverter converter = new OSMToMapDataConverter(mapProjection, config);
+			MapData mapData = converter.createMapData(osmData);
+			
+			/* apply world modules */
+			phaseTimer = updatePhase(Phase.REPRESENTATION, phaseTimer, metrics);
+			
+			if (worldModules == null) {
+				worldModules = createDefaultModuleList();
+			}
+			
+			MaterialRegistry materialRegistry = new MaterialRegistry(config);
+			
+			WorldCreator moduleManager =
+				new WorldCreator(config, materialRegistry, worldModules);
+			moduleManager.addRepresentationsTo(mapData);
+			
+			/* determine elevations */
+			phaseTimer = updatePhase(Phase.ELEVATION, phaseTimer, metrics);
+			
+			String srtmDir = config.getString("srtmDir", null);
+			TerrainElevationData eleData = null;
+					
+			if (srtmDir != null) {
+				eleData = new SRTMData(new File(srtmDir), mapProjection, config);
+			}
+			
+			calculateElevations(mapData, eleData, config, metrics);
+			
+			/* create terrain */
+			phaseTimer = updatePhase(Phase.TERRAIN, phaseTimer, metrics); //TODO this phase may be obsolete
+					
+			/* supply results to targets and caller */
+			phaseTimer = updatePhase(Phase.FINISHED, phaseTimer, metrics);
+			
+			boolean underground = config.getBoolean("renderUnderground", true);
+			
+			if (targets != null) {
+				for (Target<?> target : targets) {
+					target.setMaterialRegistry(materialRegistry);
+					TargetUtil.renderWorldObjects(target, mapData, underground);
+					target.finish();
+				}
+			}
+			
+			return new Results(mapProjection, mapData, eleData, materialRegistry);
+			
+		} finally {
+			if (phaseTimer != null) {
+				phaseTimer.stop();
 			}
 		}
 		
-		return new Results(mapProjection, mapData, eleData);
-		
 	}
 	
 	/**
@@ -329,61 +385,78 @@ public class ConversionFacade {
 	 * {@link WorldObject}s
 	 */
 	private void calculateElevations(MapData mapData,
-			TerrainElevationData eleData, Configuration config) {
+			TerrainElevationData eleData, Configuration config,
+			final Metrics metrics) {
 				
-		final TerrainInterpolator interpolator =
-				(eleData != null)
-				? terrainEleInterpolatorFactory.make()
-				: new ZeroInterpolator();
+		final TerrainInterpolator interpolator = createInterpolator(eleData);
 		
 		/* provide known elevations from eleData to the interpolator */
 		
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
-				
-		if (!(interpolator instanceof ZeroInterpolator)) {
+		if (interpolator instanceof RasterInterpolator
+				&& eleData instanceof SRTMData) {
+			
+			/* raster interpolators read the SRTM data directly */
+			
+			((RasterInterpolator)interpolator).setSRTMData((SRTMData)eleData);
+			
+		} else if (!(interpolator instanceof ZeroInterpolator)) {
 		
 			Collection<VectorXYZ> sites = emptyList();
 			
+			Timer timer = metrics.startTimer("getSites");
+			
 			try {
-							
 				sites = eleData.getSites(mapData);
-				
-				System.out.println("time getSites: " + stopWatch);
-				stopWatch.reset();
-				stopWatch.start();
-				
 			} catch (IOException e) {
 				e.printStackTrace();
+			} finally {
+				timer.stop();
 			}
 			
-			interpolator.setKnownSites(sites);
+			metrics.count("elevation.sites", sites.size());
 			
-			System.out.println("time setKnownSites: " + stopWatch);
-			stopWatch.reset();
-			stopWatch.start();
+			TerrainInterpolator siteInterpolator =
+					(interpolator instanceof RasterInterpolator)
+					? ((RasterInterpolator)interpolator).getFallbackInterpolator()
+					: interpolator;
+			
+			if (siteInterpolator instanceof LeastSquaresInterpolator) {
+				((LeastSquaresInterpolator)siteInterpolator).setThreadCount(
+						ParallelIterationUtil.getThreadCount(config));
+			}
+			
+			timer = metrics.startTimer("setKnownSites");
+			interpolator.setKnownSites(sites);
+			timer.stop();
 			
 		}
 		
 		/* interpolate connectors' elevations */
 		
+		Timer timer = metrics.startTimer("getEleConnectors");
+		
 		final List<EleConnector> connectors = new ArrayList<EleConnector>();
 		
 		FaultTolerantIterationUtil.iterate(mapData.getWorldObjects(),
 				new Operation<WorldObject>() {
 			@Override public void perform(WorldObject worldObject) {
-				
+				metrics.count("elevation.worldObjects");
 				for (EleConnector conn : worldObject.getEleConnectors()) {
-					conn.setPosXYZ(interpolator.interpolateEle(conn.pos));
 					connectors.add(conn);
 				}
-				
 			}
 		});
 		
-		System.out.println("time terrain interpolation: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		timer.stop();
+		
+		metrics.count("elevation.connectors", connectors.size());
+		
+		timer = metrics.startTimer("interpolation");
+		
+		interpolateEles(connectors, interpolator,
+				ParallelIterationUtil.getThreadCount(config));
+		
+		timer.stop();
 		
 		/* enforce constraints defined by WorldObjects */
 		
@@ -394,6 +467,8 @@ public class ConversionFacade {
 						eleConstraintEnforcerFactory.make())
 				: eleConstraintEnforcerFactory.make();
 		
+		timer = metrics.startTimer("addConstraints");
+		
 		enforcer.addConnectors(connectors);
 		
 		if (!(enforcer instanceof NoneEleConstraintEnforcer)) {
@@ -409,18 +484,165 @@ public class ConversionFacade {
 			
 		}
 		
-		System.out.println("time add constraints: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		timer.stop();
 		
+		timer = metrics.startTimer("enforceConstraints");
 		enforcer.enforceConstraints();
+		timer.stop();
+		
+	}
+	
+	/**
+	 * creates the interpolator for a conversion.
+	 * A {@link RasterInterpolator} receives other elevation data than
+	 * {@link SRTMData} as known sites, and uses its fallback interpolator.
+	 */
+	private TerrainInterpolator createInterpolator(TerrainElevationData eleData) {
 		
-		System.out.println("time enforce constraints: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		if (eleData == null) {
+			return new ZeroInterpolator();
+		}
+		
+		return terrainEleInterpolatorFactory.make();
 		
 	}
 	
+	/**
+	 * interpolates the elevations of connectors and sets their 3d positions.
+	 * 
+	 * The connectors are sorted along a space-filling curve and split into
+	 * contiguous ranges, so that each thread queries positions close to each
+	 * other. Connectors for which interpolation fails are removed from the list.
+	 */
+	static void interpolateEles(List<EleConnector> connectors,
+			final TerrainInterpolator interpolator, int threadCount) {
+		
+		final int size = connectors.size();
+		
+		if (size == 0) return;
+		
+		/* sort the connectors by the Morton code of their positions */
+		
+		double minX = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		
+		for (EleConnector conn : connectors) {
+			minX = min(minX, conn.pos.x);
+			minZ = min(minZ, conn.pos.z);
+			maxX = max(maxX, conn.pos.x);
+			maxZ = max(maxZ, conn.pos.z);
+		}
+		
+		double scaleX = (maxX > minX) ? 0xFFFF / (maxX - minX) : 0;
+		double scaleZ = (maxZ > minZ) ? 0xFFFF / (maxZ - minZ) : 0;
+		
+		long[] sortKeys = new long[size];
+		
+		for (int i = 0; i < size; i++) {
+			VectorXZ pos = connectors.get(i).pos;
+			long mortonCode = mortonCode(
+					(int)((pos.x - minX) * scaleX),
+					(int)((pos.z - minZ) * scaleZ));
+			sortKeys[i] = (mortonCode << 32) | i;
+		}
+		
+		Arrays.sort(sortKeys);
+		
+		final EleConnector[] sortedConnectors = new EleConnector[size];
+		final double[] xz = new double[2 * size];
+		final double[] eles = new double[size];
+		final boolean[] failed = new boolean[size];
+		
+		for (int i = 0; i < size; i++) {
+			EleConnector conn = connectors.get((int)sortKeys[i]);
+			sortedConnectors[i] = conn;
+			xz[2*i] = conn.pos.x;
+			xz[2*i+1] = conn.pos.z;
+		}
+		
+		/* interpolate ranges of connectors in parallel */
+		
+		ExecutorService executor =
+				ParallelIterationUtil.createExecutor(threadCount);
+		
+		try {
+			
+			ParallelIterationUtil.iterateRanges(size, new RangeOperation() {
+				@Override public void perform(int start, int end) {
+					
+					try {
+						
+						interpolator.interpolateEles(xz, eles, start, end);
+						
+					} catch (Exception e) {
+						
+						/* retry connector by connector to isolate the problem */
+						
+						for (int i = start; i < end; i++) {
+							try {
+								eles[i] = interpolator.interpolateEle(
+										sortedConnectors[i].pos).y;
+							} catch (Exception e2) {
+								FaultTolerantIterationUtil.reportException(
+										e2, sortedConnectors[i]);
+								failed[i] = true;
+							}
+						}
+						
+					}
+					
+				}
+			}, executor);
+			
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
+		}
+		
+		/* set the results, keeping the connectors' original order */
+		
+		double[] elesInOriginalOrder = new double[size];
+		boolean[] failedInOriginalOrder = new boolean[size];
+		
+		for (int i = 0; i < size; i++) {
+			elesInOriginalOrder[(int)sortKeys[i]] = eles[i];
+			failedInOriginalOrder[(int)sortKeys[i]] = failed[i];
+		}
+		
+		List<EleConnector> interpolatedConnectors =
+				new ArrayList<EleConnector>(size);
+		
+		for (int i = 0; i < size; i++) {
+			if (!failedInOriginalOrder[i]) {
+				EleConnector conn = connectors.get(i);
+				conn.setPosXYZ(conn.pos.xyz(elesInOriginalOrder[i]));
+				interpolatedConnectors.add(conn);
+			}
+		}
+		
+		connectors.clear();
+		connectors.addAll(interpolatedConnectors);
+		
+	}
+	
+	/**
+	 * interleaves the lower 16 bits of two values
+	 */
+	private static long mortonCode(int x, int z) {
+		return spreadBits(x) | (spreadBits(z) << 1);
+	}
+	
+	/**
+	 * inserts a 0 bit after each of the lower 16 bits of a value
+	 */
+	private static long spreadBits(int value) {
+		long v = value & 0xFFFF;
+		v = (v | (v << 8)) & 0x00FF00FFL;
+		v = (v | (v << 4)) & 0x0F0F0F0FL;
+		v = (v | (v << 2)) & 0x33333333L;
+		v = (v | (v << 1)) & 0x55555555L;
+		return v;
+	}
+	
 	public static enum Phase {
 		MAP_DATA,
 		REPRESENTATION,
@@ -431,7 +653,11 @@ public class ConversionFacade {
 	
 	/**
 	 * implemented by classes that want to be informed about
-	 * a conversion run's progress
+	 * a conversion run's progress.
+	 * 
+	 * Calls to a listener are never concurrent. When several conversions
+	 * use the same facade at the same time, e.g. for the tiles of a
+	 * {@link TiledConversion}, the phases of these conversions are interleaved.
 	 */
 	public static interface ProgressListener {
 				
@@ -443,18 +669,40 @@ public class ConversionFacade {
 
 	}
 	
-	private List<ProgressListener> listeners = new ArrayList<ProgressListener>();
+	private List<ProgressListener> listeners =
+			new CopyOnWriteArrayList<ProgressListener>();
 	
 	public void addProgressListener(ProgressListener listener) {
 		listeners.add(listener);
 	}
 	
 	private void updatePhase(Phase newPhase) {
-		for (ProgressListener listener : listeners) {
-			listener.updatePhase(newPhase);
+		synchronized (listeners) {
+			for (ProgressListener listener : listeners) {
+				listener.updatePhase(newPhase);
+			}
 		}
 	}
 	
+	/**
+	 * announces a new phase and times it
+	 * 
+	 * @param previousPhaseTimer  timer of the previous phase, can be null
+	 * @return  the new phase's timer
+	 */
+	private Timer updatePhase(Phase newPhase, Timer previousPhaseTimer,
+			Metrics metrics) {
+		
+		if (previousPhaseTimer != null) {
+			previousPhaseTimer.stop();
+		}
+		
+		updatePhase(newPhase);
+		
+		return metrics.startTimer(newPhase.name());
+		
+	}
+	
 //	private void updatePhaseProgress(float phaseProgress) {
 //		for (ProgressListener listener : listeners) {
 //			listener.updatePhaseProgress(phaseProgress);
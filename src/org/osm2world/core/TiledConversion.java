@@ -0,0 +1,462 @@
+package org.osm2world.core;
+
+import static java.lang.Math.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationUtils;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.map_data.creation.LatLon;
+import org.osm2world.core.map_data.creation.LatLonBounds;
+import org.osm2world.core.map_data.creation.MapProjection;
+import org.osm2world.core.map_data.data.MapArea;
+import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.map_data.data.MapNode;
+import org.osm2world.core.map_data.data.MapWaySegment;
+import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMElement;
+import org.osm2world.core.osm.data.OSMMember;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMRelation;
+import org.osm2world.core.osm.data.OSMWay;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.Operation;
+import org.osm2world.core.world.creation.WorldModule;
+
+/**
+ * converts large {@link OSMData} sets tile by tile, so that only one tile's
+ * map data, world objects and elevation information have to be kept
+ * in memory at the same time.
+ *
+ * Each tile is converted together with the data within a margin around it,
+ * so that elements near the tile border see their neighbors.
+ * Only elements "owned" by the tile are part of the tile's results, though:
+ * Each element belongs to the tile containing the center of its bounding box.
+ * All tiles share the same map projection origin, so their output fits together.
+ *
+ * With a {@link ParallelIterationUtil#THREAD_COUNT_KEY} greater than 1,
+ * that many tiles are converted at the same time, and each tile is
+ * converted on a single thread. The facade's progress listeners then
+ * receive the phases of all tiles that are being converted.
+ */
+public class TiledConversion {
+
+	/** configuration key for the tile size in degrees */
+	public static final String TILE_SIZE_KEY = "tileSize";
+
+	/** configuration key for the margin around each tile in degrees */
+	public static final String TILE_MARGIN_KEY = "tileMargin";
+
+	public static final double DEFAULT_TILE_SIZE = 0.01;
+	public static final double DEFAULT_TILE_MARGIN = 0.001;
+
+	/**
+	 * receives the results for each tile.
+	 * The results should be written to some output and discarded
+	 * before the method returns, to allow them to be garbage-collected.
+	 * Calls are never concurrent, even if tiles are converted in parallel,
+	 * but the order of the tiles is only fixed for sequential conversion.
+	 */
+	public static interface TileHandler {
+
+		/**
+		 * @param column   index of the tile in west-east direction, starting at 0
+		 * @param row      index of the tile in south-north direction, starting at 0
+		 * @param bounds   the tile's bounds, without the margin
+		 * @param results  the conversion results, limited to the elements
+		 *                 owned by this tile
+		 */
+		public void handleTile(int column, int row, LatLonBounds bounds,
+				Results results) throws IOException;
+
+	}
+
+	private final ConversionFacade conversionFacade;
+
+	public TiledConversion(ConversionFacade conversionFacade) {
+		this.conversionFacade = conversionFacade;
+	}
+
+	/**
+	 * converts all tiles covering the input data
+	 *
+	 * @param osmData       input data; != null
+	 * @param worldModules  modules that will create the world objects;
+	 *                      null to use a default module list. Because
+	 *                      these instances would be shared by all tiles,
+	 *                      tiles are converted one after another
+	 *                      if modules are supplied.
+	 * @param config        set of parameters that controls various aspects
+	 *                      of the modules' behavior; null to use defaults
+	 * @param tileHandler   receives the results for each tile; != null
+	 */
+	public void createRepresentations(final OSMData osmData,
+			final List<WorldModule> worldModules, Configuration config,
+			final TileHandler tileHandler) throws IOException {
+
+		if (config == null) {
+			config = new BaseConfiguration();
+		}
+
+		final double tileSize = config.getDouble(TILE_SIZE_KEY, DEFAULT_TILE_SIZE);
+		final double tileMargin = config.getDouble(TILE_MARGIN_KEY, DEFAULT_TILE_MARGIN);
+
+		if (tileSize <= 0 || tileMargin < 0) {
+			throw new IllegalArgumentException("invalid tile size or margin");
+		}
+
+		final LatLonBounds dataBounds = getBounds(osmData);
+
+		final LatLon origin = new LatLon(
+				(dataBounds.minlat + dataBounds.maxlat) / 2,
+				(dataBounds.minlon + dataBounds.maxlon) / 2);
+
+		final int columnCount = max(1, (int) ceil(
+				(dataBounds.maxlon - dataBounds.minlon) / tileSize));
+		final int rowCount = max(1, (int) ceil(
+				(dataBounds.maxlat - dataBounds.minlat) / tileSize));
+
+		List<int[]> tiles = new ArrayList<int[]>(rowCount * columnCount);
+
+		for (int row = 0; row < rowCount; row++) {
+			for (int column = 0; column < columnCount; column++) {
+				tiles.add(new int[] {column, row});
+			}
+		}
+
+		/* run tiles in parallel, but not the steps within each tile */
+
+		int threadCount = (worldModules == null)
+				? ParallelIterationUtil.getThreadCount(config) : 1;
+
+		final Configuration tileConfig = (threadCount > 1)
+				? createSingleThreadedConfig(config) : config;
+
+		ExecutorService executor = ParallelIterationUtil.createExecutor(threadCount);
+
+		try {
+
+			ParallelIterationUtil.iterate(tiles, new Operation<int[]>() {
+				@Override public void perform(int[] tile) {
+
+					int column = tile[0];
+					int row = tile[1];
+
+					LatLonBounds tileBounds = new LatLonBounds(
+							dataBounds.minlat + row * tileSize,
+							dataBounds.minlon + column * tileSize,
+							min(dataBounds.maxlat, dataBounds.minlat + (row + 1) * tileSize),
+							min(dataBounds.maxlon, dataBounds.minlon + (column + 1) * tileSize));
+
+					boolean[] openBorders = {
+							row == 0, column == 0,
+							row == rowCount - 1, column == columnCount - 1};
+
+					try {
+						convertTile(osmData, origin, worldModules, tileConfig,
+								column, row, tileBounds, tileMargin, openBorders,
+								tileHandler);
+					} catch (IOException e) {
+						throw new TileException(e);
+					}
+
+				}
+			}, executor);
+
+		} catch (TileException e) {
+			throw e.getCause();
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
+		}
+
+	}
+
+	/**
+	 * converts a single tile and passes the owned results to the handler
+	 *
+	 * @param openBorders  see {@link #getOwnedMapData(Results, LatLonBounds, boolean[])}
+	 */
+	private void convertTile(OSMData osmData, LatLon origin,
+			List<WorldModule> worldModules, Configuration config,
+			int column, int row, LatLonBounds tileBounds, double tileMargin,
+			boolean[] openBorders, TileHandler tileHandler) throws IOException {
+
+		OSMData tileData = extractTile(osmData, tileBounds, tileMargin);
+
+		if (tileData.getNodes().isEmpty()) return;
+
+		Results results = conversionFacade.createRepresentations(
+				tileData, origin, worldModules, config, null);
+
+		results = new Results(results.getMapProjection(),
+				getOwnedMapData(results, tileBounds, openBorders),
+				results.getEleData(), results.getMaterialRegistry());
+
+		synchronized (tileHandler) {
+			tileHandler.handleTile(column, row, tileBounds, results);
+		}
+
+	}
+
+	/**
+	 * returns a copy of the configuration which uses only one thread.
+	 * Values are copied unchanged, without splitting them at list delimiters,
+	 * so they do not depend on the delimiter the original was loaded with.
+	 */
+	static Configuration createSingleThreadedConfig(Configuration config) {
+
+		BaseConfiguration tileConfig = new BaseConfiguration();
+		tileConfig.setDelimiterParsingDisabled(true);
+
+		ConfigurationUtils.copy(config, tileConfig);
+		tileConfig.setProperty(ParallelIterationUtil.THREAD_COUNT_KEY, 1);
+
+		return tileConfig;
+
+	}
+
+	/**
+	 * carries an {@link IOException} out of a tile conversion
+	 * running on a worker thread
+	 */
+	private static class TileException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public TileException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+
+	}
+
+	/**
+	 * returns the bounds of the data set.
+	 * These are the first bounds from the data if available,
+	 * and otherwise the bounds of the nodes.
+	 */
+	private static LatLonBounds getBounds(OSMData osmData) {
+
+		if (osmData.getBounds() != null && !osmData.getBounds().isEmpty()) {
+
+			Bound bound = osmData.getBounds().iterator().next();
+
+			return new LatLonBounds(bound.getBottom(), bound.getLeft(),
+					bound.getTop(), bound.getRight());
+
+		} else {
+
+			if (osmData.getNodes().isEmpty()) {
+				throw new IllegalArgumentException(
+						"OSM data must contain bounds or nodes");
+			}
+
+			double minLat = Double.POSITIVE_INFINITY;
+			double minLon = Double.POSITIVE_INFINITY;
+			double maxLat = Double.NEGATIVE_INFINITY;
+			double maxLon = Double.NEGATIVE_INFINITY;
+
+			for (OSMNode node : osmData.getNodes()) {
+				minLat = min(minLat, node.lat);
+				minLon = min(minLon, node.lon);
+				maxLat = max(maxLat, node.lat);
+				maxLon = max(maxLon, node.lon);
+			}
+
+			return new LatLonBounds(minLat, minLon, maxLat, maxLon);
+
+		}
+
+	}
+
+	/**
+	 * creates a subset of the data containing all elements whose
+	 * bounding box intersects the tile bounds extended by a margin.
+	 * Ways are always included with all their nodes, and relations
+	 * with all their members that are nodes or ways.
+	 * The tile bounds (without margin) become the bounds of the result.
+	 */
+	public static OSMData extractTile(OSMData osmData,
+			LatLonBounds tileBounds, double margin) {
+
+		LatLonBounds b = new LatLonBounds(
+				tileBounds.minlat - margin, tileBounds.minlon - margin,
+				tileBounds.maxlat + margin, tileBounds.maxlon + margin);
+
+		Set<OSMElement> includedElements = new HashSet<OSMElement>();
+
+		/* select relations, and the ways and nodes they contain */
+
+		List<OSMRelation> relations = new ArrayList<OSMRelation>();
+
+		for (OSMRelation relation : osmData.getRelations()) {
+
+			List<OSMNode> memberNodes = new ArrayList<OSMNode>();
+
+			for (OSMMember member : relation.relationMembers) {
+				if (member.member instanceof OSMNode) {
+					memberNodes.add((OSMNode) member.member);
+				} else if (member.member instanceof OSMWay) {
+					memberNodes.addAll(((OSMWay) member.member).nodes);
+				}
+			}
+
+			if (intersects(b, memberNodes)) {
+
+				relations.add(relation);
+				includedElements.add(relation);
+
+				for (OSMMember member : relation.relationMembers) {
+					if (member.member instanceof OSMNode) {
+						includedElements.add(member.member);
+					} else if (member.member instanceof OSMWay) {
+						includedElements.add(member.member);
+						includedElements.addAll(((OSMWay) member.member).nodes);
+					}
+				}
+
+			}
+
+		}
+
+		/* select ways, and the nodes they contain */
+
+		List<OSMWay> ways = new ArrayList<OSMWay>();
+
+		for (OSMWay way : osmData.getWays()) {
+			if (includedElements.contains(way) || intersects(b, way.nodes)) {
+				ways.add(way);
+				includedElements.addAll(way.nodes);
+			}
+		}
+
+		/* select nodes */
+
+		List<OSMNode> nodes = new ArrayList<OSMNode>();
+
+		for (OSMNode node : osmData.getNodes()) {
+			if (includedElements.contains(node)
+					|| (node.lat >= b.minlat && node.lat <= b.maxlat
+						&& node.lon >= b.minlon && node.lon <= b.maxlon)) {
+				nodes.add(node);
+			}
+		}
+
+		Collection<Bound> bounds = singletonList(new Bound(
+				tileBounds.maxlon, tileBounds.minlon,
+				tileBounds.maxlat, tileBounds.minlat, "OSM2World"));
+
+		return new OSMData(bounds, nodes, ways, relations);
+
+	}
+
+	/**
+	 * checks whether the bounding box of some nodes intersects the bounds
+	 */
+	private static boolean intersects(LatLonBounds bounds,
+			Collection<OSMNode> nodes) {
+
+		if (nodes.isEmpty()) return false;
+
+		double minLat = Double.POSITIVE_INFINITY;
+		double minLon = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY;
+		double maxLon = Double.NEGATIVE_INFINITY;
+
+		for (OSMNode node : nodes) {
+			minLat = min(minLat, node.lat);
+			minLon = min(minLon, node.lon);
+			maxLat = max(maxLat, node.lat);
+			maxLon = max(maxLon, node.lon);
+		}
+
+		return minLat <= bounds.maxlat && maxLat >= bounds.minlat
+				&& minLon <= bounds.maxlon && maxLon >= bounds.minlon;
+
+	}
+
+	/**
+	 * creates a {@link MapData} instance containing only those elements
+	 * from the results that are owned by a tile
+	 *
+	 * @param openBorders  whether the tile's south, west, north and east
+	 *                     borders are at the edge of the tiled area.
+	 *                     Positions beyond these borders are owned by the tile.
+	 */
+	private static MapData getOwnedMapData(Results results,
+			LatLonBounds tileBounds, boolean[] openBorders) {
+
+		MapProjection projection = results.getMapProjection();
+		MapData mapData = results.getMapData();
+
+		List<MapNode> nodes = new ArrayList<MapNode>();
+		List<MapWaySegment> segments = new ArrayList<MapWaySegment>();
+		List<MapArea> areas = new ArrayList<MapArea>();
+
+		for (MapNode node : mapData.getMapNodes()) {
+			if (isOwned(node.getPos(), projection, tileBounds, openBorders)) {
+				nodes.add(node);
+			}
+		}
+
+		for (MapWaySegment segment : mapData.getMapWaySegments()) {
+			if (isOwned(segment.getLineSegment().getCenter(), projection,
+					tileBounds, openBorders)) {
+				segments.add(segment);
+			}
+		}
+
+		for (MapArea area : mapData.getMapAreas()) {
+			if (isOwned(area.getAxisAlignedBoundingBoxXZ().center(), projection,
+					tileBounds, openBorders)) {
+				areas.add(area);
+			}
+		}
+
+		AxisAlignedBoundingBoxXZ tileBoundary = new AxisAlignedBoundingBoxXZ(
+				asList(projection.calcPos(tileBounds.getMin()),
+						projection.calcPos(tileBounds.getMax())));
+
+		return new MapData(nodes, segments, areas, tileBoundary);
+
+	}
+
+	/**
+	 * checks whether a position is within a tile.
+	 * The southern and western borders are part of the tile,
+	 * the northern and eastern borders are part of the neighboring tile.
+	 * This ensures that each position is owned by exactly one tile.
+	 *
+	 * @param openBorders  see {@link #getOwnedMapData(Results, LatLonBounds, boolean[])}
+	 */
+	private static boolean isOwned(VectorXZ pos, MapProjection projection,
+			LatLonBounds tileBounds, boolean[] openBorders) {
+
+		double lat = projection.calcLat(pos);
+		double lon = projection.calcLon(pos);
+
+		return (lat >= tileBounds.minlat || openBorders[0])
+				&& (lon >= tileBounds.minlon || openBorders[1])
+				&& (lat < tileBounds.maxlat || openBorders[2])
+				&& (lon < tileBounds.maxlon || openBorders[3]);
+
+	}
+
+}
@@ -6,13 +6,16 @@ import static org.osm2world.core.util.FaultTolerantIterationUtil.iterate;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.configuration.Configuration;
 import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
@@ -27,6 +30,7 @@ import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.map_data.data.MapNode;
 import org.osm2world.core.map_data.data.MapWaySegment;
 import org.osm2world.core.map_data.data.overlaps.MapIntersectionWW;
+import org.osm2world.core.map_data.data.overlaps.MapOverlap;
 import org.osm2world.core.map_data.data.overlaps.MapOverlapAA;
 import org.osm2world.core.map_data.data.overlaps.MapOverlapNA;
 import org.osm2world.core.map_data.data.overlaps.MapOverlapType;
@@ -46,6 +50,9 @@ import org.osm2world.core.osm.data.OSMWay;
 import org.osm2world.core.osm.ruleset.HardcodedRuleset;
 import org.osm2world.core.osm.ruleset.Ruleset;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Metrics.Timer;
 
 /**
  * converts {@link OSMData} into the internal map data representation
@@ -71,12 +78,23 @@ public class OSMToMapDataConverter {
 		final List<MapWaySegment> mapWaySegs = new ArrayList<MapWaySegment>();
 		final List<MapArea> mapAreas = new ArrayList<MapArea>();
 		
+		Metrics metrics = Metrics.current();
+		
+		Timer timer = metrics.startTimer("createMapElements");
 		createMapElements(osmData, mapNodes, mapWaySegs, mapAreas);
+		timer.stop();
+		
+		metrics.count("mapData.nodes", mapNodes.size());
+		metrics.count("mapData.waySegments", mapWaySegs.size());
+		metrics.count("mapData.areas", mapAreas.size());
 		
 		MapData mapData = new MapData(mapNodes, mapWaySegs, mapAreas,
 				calculateFileBoundary(osmData.getBounds()));
 		
-		calculateIntersectionsInMapData(mapData);
+		timer = metrics.startTimer("calculateIntersections");
+		calculateIntersectionsInMapData(mapData,
+				ParallelIterationUtil.getThreadCount(config), metrics);
+		timer.stop();
 
 		return mapData;
 
@@ -228,95 +246,200 @@ public class OSMToMapDataConverter {
 	
 	/**
 	 * calculates intersections and adds the information to the
-	 * {@link MapElement}s
+	 * {@link MapElement}s.
+	 * 
+	 * All elements are inserted into a spatial index first.
+	 * Each element is then tested against the nearby elements preceding it,
+	 * which can happen on multiple threads. Finally, the overlaps are attached
+	 * to the elements in the order of the elements' positions in the data set,
+	 * so the result does not depend on the number of threads.
 	 */
-	private static void calculateIntersectionsInMapData(MapData mapData) {
+	private static void calculateIntersectionsInMapData(MapData mapData,
+			int threadCount, Metrics metrics) {
+		
+		/* build the index and number the elements */
 		
-		MapDataIndex index = new MapIntersectionGrid(mapData.getDataBoundary());
+		final List<MapElement> elements = new ArrayList<MapElement>();
+		final Map<MapElement, Integer> elementIndices =
+				new IdentityHashMap<MapElement, Integer>();
 		
-		for (MapElement e1 : mapData.getMapElements()) {
+		final MapDataIndex index = new MapIntersectionGrid(mapData.getDataBoundary());
+		
+		for (MapElement e : mapData.getMapElements()) {
 			
-			/* collect all nearby elements */
+			elementIndices.put(e, elements.size());
+			elements.add(e);
 			
-			Collection<? extends Iterable<MapElement>> leaves
-					= index.insertAndProbe(e1);
+			index.insert(e);
 			
-			Iterable<MapElement> nearbyElements;
+			if (e instanceof MapArea) {
+				// initialize lazily calculated segments before concurrent access
+				((MapArea)e).getAreaSegments();
+			}
 			
-			if (leaves.size() == 1) {
-				nearbyElements = leaves.iterator().next();
-			} else {
-				// collect and de-duplicate elements from all the leaves
-				Set<MapElement> elementSet = new HashSet<MapElement>();
-				for (Iterable<MapElement> leaf : leaves) {
-					for (MapElement e : leaf) {
-						elementSet.add(e);
+		}
+		
+		/* calculate the overlaps of each element with its predecessors */
+		
+		final List<List<MapOverlap<?, ?>>> overlapLists =
+				new ArrayList<List<MapOverlap<?, ?>>>(Collections.
+						<List<MapOverlap<?, ?>>>nCopies(elements.size(), null));
+		
+		ExecutorService executor = ParallelIterationUtil.createExecutor(threadCount);
+		
+		try {
+			
+			ParallelIterationUtil.iterate(elements,
+					new ParallelIterationUtil.Operation<MapElement>() {
+				@Override public void perform(MapElement e1) {
+					int e1Index = elementIndices.get(e1);
+					overlapLists.set(e1Index, calculateOverlapsWithPredecessors(
+							e1, e1Index, index, elements, elementIndices));
+				}
+			}, executor);
+			
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
+		}
+		
+		/* add the overlaps to the elements */
+		
+		for (List<MapOverlap<?, ?>> overlaps : overlapLists) {
+			metrics.count("mapData.overlaps", overlaps.size());
+			for (MapOverlap<?, ?> overlap : overlaps) {
+				addOverlapTo(overlap.e1, overlap);
+				addOverlapTo(overlap.e2, overlap);
+			}
+		}
+		
+	}
+	
+	/**
+	 * calculates the overlaps between an element and all nearby elements
+	 * with a lower index. Does not modify any {@link MapElement}s.
+	 * 
+	 * @return  overlaps, ordered by the index of the other element
+	 */
+	private static List<MapOverlap<?, ?>> calculateOverlapsWithPredecessors(
+			MapElement e1, int e1Index, MapDataIndex index,
+			List<MapElement> elements, Map<MapElement, Integer> elementIndices) {
+		
+		/* collect the indices of all nearby preceding elements */
+		
+		Collection<? extends Iterable<MapElement>> leaves = index.probe(e1);
+		
+		int[] nearbyIndices = new int[16];
+		int nearbyCount = 0;
+		
+		for (Iterable<MapElement> leaf : leaves) {
+			for (MapElement e2 : leaf) {
+				
+				int e2Index = elementIndices.get(e2);
+				
+				if (e2Index < e1Index) {
+					if (nearbyCount == nearbyIndices.length) {
+						nearbyIndices = Arrays.copyOf(nearbyIndices, 2 * nearbyCount);
 					}
+					nearbyIndices[nearbyCount++] = e2Index;
 				}
-				nearbyElements = elementSet;
+				
 			}
+		}
+		
+		if (leaves.size() > 1) {
+			// elements can be contained in more than one of the leaves
+			Arrays.sort(nearbyIndices, 0, nearbyCount);
+		}
+		
+		/* calculate the overlaps */
+		
+		List<MapOverlap<?, ?>> overlaps = new ArrayList<MapOverlap<?, ?>>();
+		
+		for (int i = 0; i < nearbyCount; i++) {
 			
-			for (MapElement e2 : nearbyElements) {
+			if (i > 0 && nearbyIndices[i] == nearbyIndices[i-1]) { continue; }
 			
-				if (e1 == e2) { continue; }
-				
-				addOverlapBetween(e1, e2);
-				
+			MapOverlap<?, ?> overlap = calculateOverlapBetween(
+					e1, elements.get(nearbyIndices[i]));
+			
+			if (overlap != null) {
+				overlaps.add(overlap);
 			}
 			
 		}
 		
+		return overlaps;
+		
+	}
+	
+	/**
+	 * adds an overlap to an element,
+	 * unless it's an element type that does not store overlaps
+	 */
+	private static void addOverlapTo(MapElement element, MapOverlap<?, ?> overlap) {
+		if (element instanceof MapWaySegment) {
+			((MapWaySegment)element).addOverlap(overlap);
+		} else if (element instanceof MapArea) {
+			((MapArea)element).addOverlap(overlap);
+		}
 	}
 
 	/**
-	 * adds the overlap between two {@link MapElement}s
-	 * to both, if it exists. It calls the appropriate
-	 * subtype-specific addOverlapBetween method
+	 * calculates the overlap between two {@link MapElement}s.
+	 * It calls the appropriate subtype-specific calculateOverlapBetween method
+	 * 
+	 * @return  the overlap; null if the elements don't overlap
 	 */
-	private static void addOverlapBetween(MapElement e1, MapElement e2) {
+	private static MapOverlap<?, ?> calculateOverlapBetween(
+			MapElement e1, MapElement e2) {
 		
 		if (e1 instanceof MapWaySegment
 				&& e2 instanceof MapWaySegment) {
 			
-			addOverlapBetween((MapWaySegment) e1, (MapWaySegment) e2);
+			return calculateOverlapBetween((MapWaySegment) e1, (MapWaySegment) e2);
 			
 		} else if (e1 instanceof MapWaySegment
 				&& e2 instanceof MapArea) {
 			
-			addOverlapBetween((MapWaySegment) e1, (MapArea) e2);
+			return calculateOverlapBetween((MapWaySegment) e1, (MapArea) e2);
 			
 		} else if (e1 instanceof MapArea
 				&& e2 instanceof MapWaySegment) {
 			
-			addOverlapBetween((MapWaySegment) e2, (MapArea) e1);
+			return calculateOverlapBetween((MapWaySegment) e2, (MapArea) e1);
 			
 		} else if (e1 instanceof MapArea
 				&& e2 instanceof MapArea) {
 			
-			addOverlapBetween((MapArea) e1, (MapArea) e2);
+			return calculateOverlapBetween((MapArea) e1, (MapArea) e2);
 			
 		} else if (e1 instanceof MapNode
 				&& e2 instanceof MapArea) {
 			
-			addOverlapBetween((MapNode) e1, (MapArea) e2);
+			return calculateOverlapBetween((MapNode) e1, (MapArea) e2);
 			
 		} else if (e1 instanceof MapArea
 				&& e2 instanceof MapNode) {
 			
-			addOverlapBetween((MapNode) e2, (MapArea) e1);
+			return calculateOverlapBetween((MapNode) e2, (MapArea) e1);
+			
+		} else {
+			
+			return null;
 			
 		}
 		
 	}
 
 	/**
-	 * adds the overlap between two {@link MapWaySegment}s
-	 * to both, if it exists
+	 * calculates the overlap between two {@link MapWaySegment}s
+	 * 
+	 * @return  the overlap; null if none exists
 	 */
-	private static void addOverlapBetween(
+	private static MapIntersectionWW calculateOverlapBetween(
 			MapWaySegment line1, MapWaySegment line2) {
 		
-		if (line1.isConnectedTo(line2)) { return; }
+		if (line1.isConnectedTo(line2)) { return null; }
 		
 		VectorXZ intersection = GeometryUtil.getLineSegmentIntersection(
 				line1.getStartNode().getPos(),
@@ -325,24 +448,20 @@ public class OSMToMapDataConverter {
 				line2.getEndNode().getPos());
 		
 		if (intersection != null) {
-			
-			/* add the intersection */
-			
-			MapIntersectionWW newIntersection =
-				new MapIntersectionWW(line1, line2, intersection);
-			
-			line1.addOverlap(newIntersection);
-			line2.addOverlap(newIntersection);
-											
+			return new MapIntersectionWW(line1, line2, intersection);
+		} else {
+			return null;
 		}
 
 	}
 	
 	/**
-	 * adds the overlap between a {@link MapWaySegment}
-	 * and a {@link MapArea} to both, if it exists
+	 * calculates the overlap between a {@link MapWaySegment}
+	 * and a {@link MapArea}
+	 * 
+	 * @return  the overlap; null if none exists
 	 */
-	private static void addOverlapBetween(
+	private static MapOverlapWA calculateOverlapBetween(
 			MapWaySegment line, MapArea area) {
 		
 		final LineSegmentXZ segmentXZ = line.getLineSegment();
@@ -352,15 +471,9 @@ public class OSMToMapDataConverter {
 		for (MapAreaSegment areaSegment : area.getAreaSegments()) {
 			if (areaSegment.sharesBothNodes(line)) {
 				
-				MapOverlapWA newOverlap =
-					new MapOverlapWA(line, area, MapOverlapType.SHARE_SEGMENT,
-							Collections.<VectorXZ>emptyList(),
-							Collections.<MapAreaSegment>emptyList());
-				
-				line.addOverlap(newOverlap);
-				area.addOverlap(newOverlap);
-				
-				return;
+				return new MapOverlapWA(line, area, MapOverlapType.SHARE_SEGMENT,
+						Collections.<VectorXZ>emptyList(),
+						Collections.<MapAreaSegment>emptyList());
 				
 			}
 		}
@@ -407,7 +520,7 @@ public class OSMToMapDataConverter {
 			
 		}
 		
-		/* add an overlap if detected */
+		/* create an overlap if detected */
 					
 		if (contains || intersects) {
 			
@@ -436,24 +549,24 @@ public class OSMToMapDataConverter {
 				
 			}
 			
-			/* add the overlap */
-			
-			MapOverlapWA newOverlap = new MapOverlapWA(line, area,
+			return new MapOverlapWA(line, area,
 						intersects ? MapOverlapType.INTERSECT : MapOverlapType.CONTAIN,
 						intersectionPositions, intersectingSegments);
 			
-			line.addOverlap(newOverlap);
-			area.addOverlap(newOverlap);
+		} else {
+			
+			return null;
 			
 		}
 		
 	}
 
 	/**
-	 * adds the overlap between two {@link MapArea}s
-	 * to both, if it exists
+	 * calculates the overlap between two {@link MapArea}s
+	 * 
+	 * @return  the overlap; null if none exists
 	 */
-	private static void addOverlapBetween(
+	private static MapOverlapAA calculateOverlapBetween(
 			MapArea area1, MapArea area2) {
 		
 		/* check whether the areas have a shared segment */
@@ -465,12 +578,7 @@ public class OSMToMapDataConverter {
 			for (MapAreaSegment area2Segment : area2Segments) {
 				if (area1Segment.sharesBothNodes(area2Segment)) {
 					
-					MapOverlapAA newOverlap =
-						new MapOverlapAA(area1, area2, MapOverlapType.SHARE_SEGMENT);
-					area1.addOverlap(newOverlap);
-					area2.addOverlap(newOverlap);
-					
-					return;
+					return new MapOverlapAA(area1, area2, MapOverlapType.SHARE_SEGMENT);
 					
 				}
 			}
@@ -529,40 +637,31 @@ public class OSMToMapDataConverter {
 									
 		}
 		
-		/* add an overlap if detected */
-					
-		if (contains1 || contains2 || intersects) {
-			
-			/* add the overlap */
-			
-			MapOverlapAA newOverlap = null;
-			
-			if (contains1) {
-				newOverlap = new MapOverlapAA(area2, area1, MapOverlapType.CONTAIN);
-			} else if (contains2) {
-				newOverlap = new MapOverlapAA(area1, area2, MapOverlapType.CONTAIN);
-			} else {
-				newOverlap = new MapOverlapAA(area1, area2, MapOverlapType.INTERSECT);
-			}
-			
-			area1.addOverlap(newOverlap);
-			area2.addOverlap(newOverlap);
-			
+		/* create an overlap if detected */
+		
+		if (contains1) {
+			return new MapOverlapAA(area2, area1, MapOverlapType.CONTAIN);
+		} else if (contains2) {
+			return new MapOverlapAA(area1, area2, MapOverlapType.CONTAIN);
+		} else if (intersects) {
+			return new MapOverlapAA(area1, area2, MapOverlapType.INTERSECT);
+		} else {
+			return null;
 		}
 		
 	}
 	
-	private static void addOverlapBetween(MapNode node, MapArea area) {
+	/**
+	 * calculates the overlap between a {@link MapNode} and a {@link MapArea}
+	 * 
+	 * @return  the overlap; null if none exists
+	 */
+	private static MapOverlapNA calculateOverlapBetween(MapNode node, MapArea area) {
 		
 		if (area.getPolygon().contains(node.getPos())) {
-			
-			/* add the overlap */
-			
-			MapOverlapNA newOverlap =
-					new MapOverlapNA(node, area, MapOverlapType.CONTAIN);
-			
-			area.addOverlap(newOverlap);
-			
+			return new MapOverlapNA(node, area, MapOverlapType.CONTAIN);
+		} else {
+			return null;
 		}
 		
 	}
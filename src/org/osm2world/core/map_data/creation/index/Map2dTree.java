@@ -246,6 +246,11 @@ public class Map2dTree implements MapDataIndex {
 	@Override
 	public Collection<Leaf> insertAndProbe(MapElement e) {
 		insert(e);
+		return probe(e);
+	}
+	
+	@Override
+	public Collection<Leaf> probe(MapElement e) {
 		return root.probe(e);
 	}
 	
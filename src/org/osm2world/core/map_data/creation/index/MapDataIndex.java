@@ -24,6 +24,15 @@ public interface MapDataIndex {
 	 */
 	public Collection<? extends Iterable<MapElement>> insertAndProbe(MapElement e);
 	
+	/**
+	 * returns all nearby elements contained in the index structure,
+	 * without modifying the index structure.
+	 * Can be called concurrently once all elements have been inserted.
+	 * 
+	 * @return leaves the element would end up in. A subset of {@link #getLeaves()}.
+	 */
+	public Collection<? extends Iterable<MapElement>> probe(MapElement e);
+	
 	/**
 	 * returns all leaves of this index structure
 	 * 
@@ -30,6 +30,11 @@ public class MapIntersectionGrid implements MapDataIndex {
 	@Override
 	public Collection<? extends Iterable<MapElement>> insertAndProbe(MapElement e) {
 		insert(e);
+		return probe(e);
+	}
+	
+	@Override
+	public Collection<? extends Iterable<MapElement>> probe(MapElement e) {
 		return intersectionGrid.cellsFor(e);
 	}
 	
@@ -260,6 +260,14 @@ public class MapQuadtree implements MapDataIndex {
 		
 		insert(e);
 		
+		return probe(e);
+		
+	}
+	
+	@Override
+	public Collection<? extends Iterable<MapElement>> probe(
+			final MapElement e) {
+		
 		return Collections2.<QuadLeaf>filter(getLeaves(), new Predicate<QuadLeaf>() {
 			@Override public boolean apply(QuadLeaf leaf) {
 				return leaf.contains(e);
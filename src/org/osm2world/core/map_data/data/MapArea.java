@@ -121,6 +121,11 @@ public class MapArea implements MapElement {
 		return objectWithTags;
 	}
 
+	@Override
+	public OSMElement getOsmElement() {
+		return objectWithTags;
+	}
+
 	@Override
 	public TagGroup getTags() {
 		return objectWithTags.tags;
@@ -42,4 +42,9 @@ public interface MapElement extends IntersectionTestObject {
 	 */
 	TagGroup getTags();
 	
+	/**
+	 * returns the {@link OSMElement} this element has been created from
+	 */
+	OSMElement getOsmElement();
+	
 }
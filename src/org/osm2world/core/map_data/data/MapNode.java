@@ -63,6 +63,11 @@ public class MapNode implements MapElement {
 		return osmNode;
 	}
 	
+	@Override
+	public OSMNode getOsmElement() {
+		return osmNode;
+	}
+	
 	@Override
 	public TagGroup getTags() {
 		return getOsmNode().tags;
@@ -48,6 +48,11 @@ public class MapWaySegment extends MapSegment implements MapElement {
 		return osmWay;
 	}
 
+	@Override
+	public OSMWay getOsmElement() {
+		return osmWay;
+	}
+
 	@Override
 	public TagGroup getTags() {
 		return getOsmWay().tags;
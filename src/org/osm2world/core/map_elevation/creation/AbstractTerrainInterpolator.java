@@ -0,0 +1,18 @@
+package org.osm2world.core.map_elevation.creation;
+
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * superclass for {@link TerrainInterpolator}s which interpolate
+ * a range of positions one position at a time
+ */
+public abstract class AbstractTerrainInterpolator implements TerrainInterpolator {
+	
+	@Override
+	public void interpolateEles(double[] xz, double[] eles, int start, int end) {
+		for (int i = start; i < end; i++) {
+			eles[i] = interpolateEle(new VectorXZ(xz[2*i], xz[2*i+1])).y;
+		}
+	}
+	
+}
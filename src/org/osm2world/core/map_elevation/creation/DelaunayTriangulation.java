@@ -4,13 +4,18 @@ import static java.lang.Math.*;
 import static org.osm2world.core.math.GeometryUtil.isRightOf;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
 import java.util.Stack;
 
@@ -21,19 +26,21 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.math.datastructures.IntersectionTestObject;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-
 //TODO: test performance effects of:
-// * starting point choice of the walk
 // * caching circumcircles
-// * only calculating area of triangles that are actually changed
 
 /**
  * 2d Delaunay triangulation class.
  * Built to be used as a Voronoi Diagram dual for natural neighbor
  * interpolation of the y elevation values carried by each point.
  * The triangulation is constructed by incremental insertion.
+ * 
+ * Points are located with a walk through the triangulation. Insertions
+ * start walking at the previously inserted point, and
+ * {@link #insertAll(Collection)} orders the points to keep these walks short.
+ * Queries start walking at a triangle from a coarse grid, and do not
+ * modify the triangulation. They can therefore be made from multiple
+ * threads at the same time, as long as there are no concurrent insertions.
  */
 public class DelaunayTriangulation {
 	
@@ -144,6 +151,11 @@ public class DelaunayTriangulation {
 		}
 		
 		public VectorXZ getCircumcircleCenter() {
+			return getCircumcircleCenter(p0, p1, p2);
+		}
+		
+		private static VectorXZ getCircumcircleCenter(
+				VectorXYZ p0, VectorXYZ p1, VectorXYZ p2) {
 			
 			VectorXZ b = p1.subtract(p0).xz();
 			VectorXZ c = p2.subtract(p0).xz();
@@ -389,7 +401,7 @@ public class DelaunayTriangulation {
 		
 	}
 		
-	public class NaturalNeighbors {
+	public static class NaturalNeighbors {
 
 		public final VectorXYZ[] neighbors;
 		public final double[] relativeWeights;
@@ -402,7 +414,12 @@ public class DelaunayTriangulation {
 			relativeWeights = new double[neighbors.size()];
 			
 		}
-				
+		
+		NaturalNeighbors(VectorXYZ[] neighbors, double[] relativeWeights) {
+			this.neighbors = neighbors;
+			this.relativeWeights = relativeWeights;
+		}
+		
 	}
 
 	/**
@@ -490,8 +507,18 @@ public class DelaunayTriangulation {
 	 * for iterating/walking through the triangulation along neighborships
 	 */
 	public final DelaunayTriangle handleTriangle;
-
+	
+	private final AxisAlignedBoundingBoxXZ bounds;
+	
+	/** a triangle incident to the most recently inserted point */
+	private DelaunayTriangle lastTriangle;
+	
+	/** created on demand for queries, reset by each insertion */
+	private volatile LocatorGrid<DelaunayTriangle> locatorGrid = null;
+	
 	public DelaunayTriangulation(AxisAlignedBoundingBoxXZ bounds) {
+		
+		this.bounds = bounds;
 				
 		VectorXYZ boundV0 = bounds.bottomLeft().xyz(0);
 		VectorXYZ boundV1 = bounds.bottomRight().xyz(0);
@@ -510,6 +537,8 @@ public class DelaunayTriangulation {
 		t1.setNeighbor(0, handleTriangle);
 		handleTriangle.setNeighbor(0, t1);
 		
+		lastTriangle = t1;
+		
 	}
 	
 	/**
@@ -521,7 +550,9 @@ public class DelaunayTriangulation {
 
 	public Stack<Flip> insert(VectorXYZ point) { //TODO: should use <T extends Has(Immutable)Position>
 		
-		DelaunayTriangle triangleEnclosingPoint = getEnlosingTriangle(point.xz());
+		locatorGrid = null;
+		
+		DelaunayTriangle triangleEnclosingPoint = walk(point.xz(), lastTriangle);
 		
 		if (triangleEnclosingPoint == null) {
 			System.out.println("null");
@@ -563,109 +594,276 @@ public class DelaunayTriangulation {
 			
 		}
 		
+		/* the triangles created by the last flip are all still part
+		 * of the triangulation, and they are incident to the point */
+		
+		lastTriangle = flipStack.peek().getCreatedTriangles()[0];
+		
 		return flipStack;
 		
 	}
 	
 	/**
-	 * temporarily inserts a point to calculate its natural neighbors,
-	 * then undoes the insertion
+	 * inserts multiple points. Produces the same triangulation as
+	 * inserting the points one by one with {@link #insert(VectorXYZ)}
+	 * (except for the choice of diagonals when points are cocircular),
+	 * but is considerably faster for large numbers of points.
+	 * 
+	 * The points are inserted in rounds of doubling size in random order
+	 * ("biased randomized insertion order"). Within each round, they are
+	 * sorted along a Hilbert curve, so that each insertion's walk starts
+	 * close to the point.
 	 */
-	public NaturalNeighbors probe(VectorXZ point) {
-
-		VectorXYZ probePoint = point.xyz(0);
+	public void insertAll(Collection<VectorXYZ> points) {
+		for (VectorXYZ point : getInsertionOrder(points, bounds)) {
+			insert(point);
+		}
+	}
+	
+	/**
+	 * sorts points for insertion as described for {@link #insertAll(Collection)}
+	 * 
+	 * @param bounds  bounds of the triangulation, must contain all points
+	 */
+	static List<VectorXYZ> getInsertionOrder(Collection<VectorXYZ> points,
+			AxisAlignedBoundingBoxXZ bounds) {
 		
-		/* insert the point */
+		List<VectorXYZ> shuffledPoints = new ArrayList<VectorXYZ>(points);
+		Collections.shuffle(shuffledPoints, new Random(0));
 		
-		Stack<Flip> flipStack = insert(probePoint);
+		List<VectorXYZ> result = new ArrayList<VectorXYZ>(shuffledPoints.size());
 		
-		/* identify neighbors and modified triangles */
+		double scaleX = HILBERT_MAX_COORD / bounds.sizeX();
+		double scaleZ = HILBERT_MAX_COORD / bounds.sizeZ();
 		
-		Set<VectorXYZ> neighbors = new HashSet<VectorXYZ>();
-		Multimap<VectorXYZ, DelaunayTriangle> oldTriangles = HashMultimap.create();
-		Multimap<VectorXYZ, DelaunayTriangle> newTriangles = HashMultimap.create();
+		int roundStart = 0;
+		int roundEnd = min(FIRST_ROUND_SIZE, shuffledPoints.size());
 		
-		// first loop, identifies neighbors and newly created triangles
-		for (Flip flip : flipStack) {
-			for (DelaunayTriangle triangle : flip.getCreatedTriangles()) {
-				newTriangles.put(triangle.p0, triangle);
-				newTriangles.put(triangle.p1, triangle);
-				newTriangles.put(triangle.p2, triangle);
-				neighbors.add(triangle.p0);
-				neighbors.add(triangle.p1);
-				neighbors.add(triangle.p2);
+		while (roundStart < roundEnd) {
+			
+			long[] sortKeys = new long[roundEnd - roundStart];
+			
+			for (int i = roundStart; i < roundEnd; i++) {
+				VectorXYZ point = shuffledPoints.get(i);
+				long hilbertIndex = hilbertIndex(
+						(int)((point.x - bounds.minX) * scaleX),
+						(int)((point.z - bounds.minZ) * scaleZ));
+				sortKeys[i - roundStart] = (hilbertIndex << 32) | i;
+			}
+			
+			Arrays.sort(sortKeys);
+			
+			for (long sortKey : sortKeys) {
+				result.add(shuffledPoints.get((int)sortKey));
 			}
+			
+			roundStart = roundEnd;
+			roundEnd = min(2 * roundEnd, shuffledPoints.size());
+			
 		}
 		
-		// second loop, removes some newTriangles and identifies oldTriangles
-		for (Flip flip : flipStack) {
-			for (DelaunayTriangle triangle : flip.getRemovedTriangles()) {
-				oldTriangles.put(triangle.p0, triangle);
-				oldTriangles.put(triangle.p1, triangle);
-				oldTriangles.put(triangle.p2, triangle);
-				newTriangles.remove(triangle.p0, triangle);
-				newTriangles.remove(triangle.p1, triangle);
-				newTriangles.remove(triangle.p2, triangle);
+		return result;
+		
+	}
+	
+	/** number of points in the first round of {@link #insertAll(Collection)} */
+	private static final int FIRST_ROUND_SIZE = 64;
+	
+	/** maximum coordinate for {@link #hilbertIndex(int, int)} */
+	private static final int HILBERT_MAX_COORD = (1 << 15) - 1;
+	
+	/**
+	 * returns the position of a cell along a Hilbert curve
+	 * through a grid of 2^15 * 2^15 cells
+	 */
+	private static long hilbertIndex(int x, int z) {
+		
+		long result = 0;
+		
+		for (int s = 1 << 14; s > 0; s >>= 1) {
+			
+			int rx = (x & s) > 0 ? 1 : 0;
+			int rz = (z & s) > 0 ? 1 : 0;
+			
+			result += (long)s * s * ((3 * rx) ^ rz);
+			
+			/* rotate the quadrant */
+			
+			if (rz == 0) {
+				
+				if (rx == 1) {
+					x = HILBERT_MAX_COORD - x;
+					z = HILBERT_MAX_COORD - z;
+				}
+				
+				int temp = x;
+				x = z;
+				z = temp;
+				
 			}
+			
 		}
 		
-		// third loop, removes some oldTriangles
-		for (Flip flip : flipStack) {
-			for (DelaunayTriangle triangle : flip.getCreatedTriangles()) {
-				oldTriangles.remove(triangle.p0, triangle);
-				oldTriangles.remove(triangle.p1, triangle);
-				oldTriangles.remove(triangle.p2, triangle);
+		return result;
+		
+	}
+	
+	/**
+	 * calculates the natural neighbors of a point and their relative weights
+	 * (Sibson coordinates) without modifying the triangulation
+	 */
+	public NaturalNeighbors probe(VectorXZ point) {
+		
+		VectorXYZ probePoint = point.xyz(0);
+		
+		DelaunayTriangle enclosingTriangle = getEnlosingTriangle(point);
+		
+		/* a point at a site has only that site as a neighbor */
+		
+		for (int i = 0; i <= 2; i++) {
+			
+			VectorXYZ site = enclosingTriangle.getPoint(i);
+			
+			if (site.x == point.x && site.z == point.z) {
+				NaturalNeighbors result = new NaturalNeighbors(
+						Collections.singletonList(site));
+				result.relativeWeights[0] = 1;
+				return result;
 			}
+			
 		}
 		
-		// FIXME: cannot use any oldTriangle as starting point, may have been newly created before
+		/* find the triangles which an insertion of the point would replace,
+		 * using the same criterion as the flips during insertion */
 		
-		neighbors.remove(probePoint);
+		List<DelaunayTriangle> cavity = new ArrayList<DelaunayTriangle>();
+		Set<DelaunayTriangle> cavitySet = new HashSet<DelaunayTriangle>();
 		
-		NaturalNeighbors result = new NaturalNeighbors(neighbors);
+		cavity.add(enclosingTriangle);
+		cavitySet.add(enclosingTriangle);
 		
-		/* calculate size of voronoi cells with the point */
-		
-		for (int i = 0; i < result.neighbors.length; i++) {
-			result.relativeWeights[i] = getVoronoiCellSize(result.neighbors[i],
-					newTriangles.get(result.neighbors[i]));
+		for (int t = 0; t < cavity.size(); t++) {
+			
+			DelaunayTriangle triangle = cavity.get(t);
+			
+			for (int i = 0; i <= 2; i++) {
+				
+				DelaunayTriangle neighbor = triangle.getNeighbor(i);
+				
+				if (neighbor != null && neighbor != handleTriangle
+						&& !cavitySet.contains(neighbor)) {
+					
+					double a1 = VectorXZ.angleBetween(
+							point.subtract(triangle.getPoint((i + 1) % 3).xz()),
+							point.subtract(triangle.getPoint(i).xz()));
+					double a2 = neighbor.angleOppositeOf(triangle);
+					
+					if (a1 + a2 > PI) {
+						cavity.add(neighbor);
+						cavitySet.add(neighbor);
+					}
+					
+				}
+				
+			}
+			
 		}
 		
-		/* undo insertion */
+		/* identify the neighbors, and the cavity's boundary edges
+		 * (counterclockwise) arriving at and leaving from each neighbor */
+		
+		Map<VectorXYZ, VectorXYZ> previousNeighbors =
+				new LinkedHashMap<VectorXYZ, VectorXYZ>();
+		Map<VectorXYZ, VectorXYZ> nextNeighbors =
+				new HashMap<VectorXYZ, VectorXYZ>();
+		Map<VectorXYZ, DelaunayTriangle> arrivingTriangles =
+				new HashMap<VectorXYZ, DelaunayTriangle>();
+		Map<VectorXYZ, DelaunayTriangle> leavingTriangles =
+				new HashMap<VectorXYZ, DelaunayTriangle>();
 		
-		while (!flipStack.isEmpty()) {
-			flipStack.pop().undo();
+		for (DelaunayTriangle triangle : cavity) {
+			for (int i = 0; i <= 2; i++) {
+				
+				if (!cavitySet.contains(triangle.getNeighbor(i))) {
+					
+					VectorXYZ from = triangle.getPoint(i);
+					VectorXYZ to = triangle.getPoint((i + 1) % 3);
+					
+					nextNeighbors.put(from, to);
+					leavingTriangles.put(from, triangle);
+					previousNeighbors.put(to, from);
+					arrivingTriangles.put(to, triangle);
+					
+				}
+				
+			}
 		}
-
-		/* calculate difference of voronoi cell size with and without the point */
+		
+		NaturalNeighbors result = new NaturalNeighbors(previousNeighbors.keySet());
+		
+		/* calculate the area each neighbor's voronoi cell would lose
+		 * to the point. Its old cell boundary within the cavity consists of
+		 * the cavity triangles' circumcircle centers. Its new cell boundary
+		 * consists of the circumcircle centers of the two triangles
+		 * formed by the point and the boundary edges. */
 		
 		double areaDifferenceSum = 0;
 		
-		for (int i = 0; i < result.neighbors.length; i++) {
+		for (int n = 0; n < result.neighbors.length; n++) {
+			
+			VectorXYZ neighbor = result.neighbors[n];
+			VectorXZ neighborXZ = neighbor.xz();
+			
+			VectorXZ firstCenter = DelaunayTriangle.getCircumcircleCenter(
+					previousNeighbors.get(neighbor), neighbor, probePoint);
+			VectorXZ lastCenter = DelaunayTriangle.getCircumcircleCenter(
+					neighbor, nextNeighbors.get(neighbor), probePoint);
+			
+			double doubleArea = 0;
+			VectorXZ previousCenter = firstCenter;
+			
+			DelaunayTriangle triangle = arrivingTriangles.get(neighbor);
+			
+			while (triangle != null && cavitySet.contains(triangle)) {
+				
+				VectorXZ center = triangle.getCircumcircleCenter();
+				doubleArea += crossXZ(neighborXZ, previousCenter, center);
+				previousCenter = center;
+				
+				if (triangle == leavingTriangles.get(neighbor)) break;
+				
+				triangle = triangle.getRightNeighbor(neighbor);
+				
+			}
+			
+			doubleArea += crossXZ(neighborXZ, previousCenter, lastCenter);
+			doubleArea += crossXZ(neighborXZ, lastCenter, firstCenter);
 			
-			double area = getVoronoiCellSize(result.neighbors[i],
-					oldTriangles.get(result.neighbors[i]));
+			result.relativeWeights[n] = abs(doubleArea) / 2;
 			
-			result.relativeWeights[i] = area - result.relativeWeights[i];
+			areaDifferenceSum += result.relativeWeights[n];
 			
-			areaDifferenceSum += result.relativeWeights[i];
 		}
 		
 		/* calculate relative weights of neighbors */
 		
 		for (int i = 0; i < result.neighbors.length; i++) {
 			result.relativeWeights[i] /= areaDifferenceSum;
-			
-			if (result.relativeWeights[i] > 1) {
-				System.out.println(result.relativeWeights[i]);
-			}
-			
 		}
 		
 		return result;
 		
 	}
 	
+	/**
+	 * returns the z component of the cross product of (a - origin)
+	 * and (b - origin), i.e. twice the signed area of the triangle
+	 */
+	private static double crossXZ(VectorXZ origin, VectorXZ a, VectorXZ b) {
+		return (a.x - origin.x) * (b.z - origin.z)
+				- (a.z - origin.z) * (b.x - origin.x);
+	}
+	
 	public List<DelaunayTriangle> getIncidentTriangles(final VectorXYZ point) {
 
 		List<DelaunayTriangle> result = new ArrayList<DelaunayTriangle>();
@@ -808,11 +1006,18 @@ public class DelaunayTriangulation {
 	 * @param point  must lie within the triangulation; != null
 	 */
 	public DelaunayTriangle getEnlosingTriangle(VectorXZ point) {
+		return walk(point, getLocatorGrid().getNearbyTriangle(point.x, point.z));
+	}
+	
+	/**
+	 * uses a 'visibility walk' through the triangulation
+	 * to find the triangle containing a point
+	 * 
+	 * @param start  the triangle where the walk starts
+	 */
+	private DelaunayTriangle walk(VectorXZ point, DelaunayTriangle start) {
 		
-		/* use a 'visibility walk' through the triangulation,
-		 * starting at the handleTriangle */
-		
-		DelaunayTriangle currentTriangle = handleTriangle;
+		DelaunayTriangle currentTriangle = start;
 		
 		boolean triangleContainsPoint = false;
 		
@@ -844,4 +1049,44 @@ public class DelaunayTriangulation {
 		
 	}
 	
+	private LocatorGrid<DelaunayTriangle> getLocatorGrid() {
+		
+		LocatorGrid<DelaunayTriangle> grid = locatorGrid;
+		
+		if (grid == null) {
+			synchronized (this) {
+				grid = locatorGrid;
+				if (grid == null) {
+					grid = createLocatorGrid();
+					locatorGrid = grid;
+				}
+			}
+		}
+		
+		return grid;
+		
+	}
+	
+	private LocatorGrid<DelaunayTriangle> createLocatorGrid() {
+		
+		List<DelaunayTriangle> triangleList = new ArrayList<DelaunayTriangle>();
+		for (DelaunayTriangle triangle : getTriangles()) {
+			triangleList.add(triangle);
+		}
+		
+		LocatorGrid<DelaunayTriangle> grid = new LocatorGrid<DelaunayTriangle>(
+				bounds, triangleList.size());
+		
+		for (DelaunayTriangle triangle : triangleList) {
+			grid.addTriangle(triangle,
+					(triangle.p0.x + triangle.p1.x + triangle.p2.x) / 3,
+					(triangle.p0.z + triangle.p1.z + triangle.p2.z) / 3);
+		}
+		
+		grid.fillEmptyCells();
+		
+		return grid;
+		
+	}
+	
 }
@@ -0,0 +1,588 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Math.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.osm2world.core.map_elevation.creation.DelaunayTriangulation.DelaunayTriangle;
+import org.osm2world.core.map_elevation.creation.DelaunayTriangulation.NaturalNeighbors;
+import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * 2d Delaunay triangulation with the same results as
+ * {@link DelaunayTriangulation}, but a more compact representation.
+ *
+ * Triangles are not represented by objects. Instead, they are stored in
+ * int arrays as three half-edges each: Half-edge 3t+i of triangle t runs
+ * from the triangle's i-th vertex to the next one (counterclockwise).
+ * For each half-edge, the index of its start vertex and the index of the
+ * opposite half-edge in the neighboring triangle (or -1) are stored.
+ * Vertex coordinates are stored in a double array.
+ *
+ * Insertions modify the arrays in place, so they do not allocate memory
+ * except for occasionally growing the arrays. Like for
+ * {@link DelaunayTriangulation}, queries do not modify the triangulation,
+ * and can be made from multiple threads while there are no insertions.
+ */
+public class IndexedDelaunayTriangulation {
+
+	private final AxisAlignedBoundingBoxXZ bounds;
+
+	private int vertexCount = 0;
+	private VectorXYZ[] vertices;
+
+	/** x and z coordinates of each vertex */
+	private double[] coords;
+
+	private int triangleCount = 0;
+
+	/** index of the start vertex of each half-edge */
+	private int[] halfEdgeVertices;
+
+	/** index of each half-edge's opposite half-edge, or -1 */
+	private int[] twins;
+
+	/** a triangle incident to the most recently inserted vertex */
+	private int lastTriangle = 0;
+
+	/** half-edges which need to be checked during an insertion */
+	private int[] edgeStack = new int[64];
+
+	/** created on demand for queries, reset by each insertion */
+	private volatile LocatorGrid<Integer> locatorGrid = null;
+
+	public IndexedDelaunayTriangulation(AxisAlignedBoundingBoxXZ bounds) {
+		this(bounds, 0);
+	}
+
+	/**
+	 * @param expectedVertexCount  number of vertices that will be inserted;
+	 *                             used to allocate sufficiently large arrays
+	 */
+	public IndexedDelaunayTriangulation(AxisAlignedBoundingBoxXZ bounds,
+			int expectedVertexCount) {
+
+		this.bounds = bounds;
+
+		vertices = new VectorXYZ[expectedVertexCount + 4];
+		coords = new double[2 * vertices.length];
+		halfEdgeVertices = new int[3 * (2 * expectedVertexCount + 2)];
+		twins = new int[halfEdgeVertices.length];
+
+		/* start with two triangles covering the bounds,
+		 * using the same vertices as DelaunayTriangulation */
+
+		addVertex(bounds.bottomLeft().xyz(0));
+		addVertex(bounds.bottomRight().xyz(0));
+		addVertex(bounds.topRight().xyz(0));
+		addVertex(bounds.topLeft().xyz(0));
+
+		addTriangle(0, 1, 3);
+		addTriangle(1, 2, 3);
+
+		link(1, 5);
+
+	}
+
+	/**
+	 * inserts a point.
+	 *
+	 * @param point  must be within the bounds
+	 */
+	public void insert(VectorXYZ point) {
+
+		locatorGrid = null;
+
+		int t = walk(point.x, point.z, lastTriangle);
+
+		/* split the enclosing triangle (a, b, c) into (a, b, p),
+		 * (b, c, p) and (c, a, p), re-using its slot for the first one */
+
+		int p = addVertex(point);
+
+		int a = halfEdgeVertices[3 * t];
+		int b = halfEdgeVertices[3 * t + 1];
+		int c = halfEdgeVertices[3 * t + 2];
+
+		int twinBC = twins[3 * t + 1];
+		int twinCA = twins[3 * t + 2];
+
+		int t1 = addTriangle(b, c, p);
+		int t2 = addTriangle(c, a, p);
+
+		halfEdgeVertices[3 * t + 2] = p;
+
+		link(3 * t1, twinBC);
+		link(3 * t2, twinCA);
+
+		link(3 * t + 1, 3 * t1 + 2);
+		link(3 * t + 2, 3 * t2 + 1);
+		link(3 * t1 + 1, 3 * t2 + 2);
+
+		/* flip edges opposite of the point until the triangulation
+		 * is a Delaunay triangulation again. The point remains part of
+		 * the triangles on both sides of each flip, so t remains
+		 * incident to it. */
+
+		int stackSize = 0;
+
+		edgeStack[stackSize++] = 3 * t;
+		edgeStack[stackSize++] = 3 * t1;
+		edgeStack[stackSize++] = 3 * t2;
+
+		while (stackSize > 0) {
+
+			int e = edgeStack[--stackSize];
+			int twin = twins[e];
+
+			if (twin < 0) continue;
+
+			/* e is part of triangle (e0, e1, p),
+			 * its twin is part of triangle (e1, e0, q) */
+
+			int eNext = next(e);
+			int ePrev = next(eNext);
+			int twinNext = next(twin);
+			int twinPrev = next(twinNext);
+
+			int q = halfEdgeVertices[twinPrev];
+
+			if (isInCircumcircle(halfEdgeVertices[e],
+					halfEdgeVertices[eNext], p, q)) {
+
+				/* replace the triangles with (q, e1, p) and (p, e0, q) */
+
+				halfEdgeVertices[e] = q;
+				halfEdgeVertices[twin] = p;
+
+				link(e, twins[twinPrev]);
+				link(twin, twins[ePrev]);
+				link(ePrev, twinPrev);
+
+				if (stackSize + 2 > edgeStack.length) {
+					edgeStack = Arrays.copyOf(edgeStack, 2 * edgeStack.length);
+				}
+
+				edgeStack[stackSize++] = e;
+				edgeStack[stackSize++] = twinNext;
+
+			}
+
+		}
+
+		lastTriangle = t;
+
+	}
+
+	/**
+	 * inserts multiple points.
+	 * Uses the same insertion order as
+	 * {@link DelaunayTriangulation#insertAll(Collection)}.
+	 */
+	public void insertAll(Collection<VectorXYZ> points) {
+
+		ensureCapacity(vertexCount + points.size());
+
+		for (VectorXYZ point : DelaunayTriangulation.getInsertionOrder(points, bounds)) {
+			insert(point);
+		}
+
+	}
+
+	/**
+	 * calculates the natural neighbors of a point and their relative weights
+	 * without modifying the triangulation.
+	 *
+	 * @see DelaunayTriangulation#probe(VectorXZ)
+	 */
+	public NaturalNeighbors probe(VectorXZ point) {
+
+		double x = point.x;
+		double z = point.z;
+
+		int enclosingTriangle = walk(x, z, getLocatorGrid().getNearbyTriangle(x, z));
+
+		/* a point at a site has only that site as a neighbor */
+
+		for (int e = 3 * enclosingTriangle; e < 3 * enclosingTriangle + 3; e++) {
+
+			int v = halfEdgeVertices[e];
+
+			if (coords[2 * v] == x && coords[2 * v + 1] == z) {
+				return new NaturalNeighbors(
+						new VectorXYZ[] {vertices[v]}, new double[] {1});
+			}
+
+		}
+
+		/* find the triangles which an insertion of the point would replace */
+
+		int[] cavity = new int[16];
+		int cavitySize = 0;
+
+		cavity[cavitySize++] = enclosingTriangle;
+
+		for (int i = 0; i < cavitySize; i++) {
+			for (int e = 3 * cavity[i]; e < 3 * cavity[i] + 3; e++) {
+
+				int twin = twins[e];
+
+				if (twin >= 0 && !contains(cavity, cavitySize, twin / 3)
+						&& isInCircumcircle(twin / 3, x, z)) {
+
+					if (cavitySize == cavity.length) {
+						cavity = Arrays.copyOf(cavity, 2 * cavity.length);
+					}
+
+					cavity[cavitySize++] = twin / 3;
+
+				}
+
+			}
+		}
+
+		/* find the cavity's boundary half-edges.
+		 * The neighbors are the vertices at their ends. */
+
+		int[] boundaryEdges = new int[cavitySize + 2];
+		int boundaryEdgeCount = 0;
+
+		for (int i = 0; i < cavitySize; i++) {
+			for (int e = 3 * cavity[i]; e < 3 * cavity[i] + 3; e++) {
+
+				int twin = twins[e];
+
+				if (twin < 0 || !contains(cavity, cavitySize, twin / 3)) {
+
+					if (boundaryEdgeCount == boundaryEdges.length) {
+						boundaryEdges = Arrays.copyOf(boundaryEdges, 2 * boundaryEdges.length);
+					}
+
+					boundaryEdges[boundaryEdgeCount++] = e;
+
+				}
+
+			}
+		}
+
+		VectorXYZ[] neighbors = new VectorXYZ[boundaryEdgeCount];
+		double[] relativeWeights = new double[boundaryEdgeCount];
+
+		/* calculate the area each neighbor's voronoi cell would lose
+		 * to the point, as in DelaunayTriangulation.probe */
+
+		double areaDifferenceSum = 0;
+
+		double[] center = new double[2];
+
+		for (int n = 0; n < boundaryEdgeCount; n++) {
+
+			int arrivingEdge = boundaryEdges[n];
+			int leavingTriangle = -1;
+
+			int u = halfEdgeVertices[arrivingEdge];
+			int v = halfEdgeVertices[next(arrivingEdge)];
+			int w = -1;
+
+			for (int i = 0; i < boundaryEdgeCount; i++) {
+				if (halfEdgeVertices[boundaryEdges[i]] == v) {
+					leavingTriangle = boundaryEdges[i] / 3;
+					w = halfEdgeVertices[next(boundaryEdges[i])];
+				}
+			}
+
+			neighbors[n] = vertices[v];
+
+			double vX = coords[2 * v];
+			double vZ = coords[2 * v + 1];
+
+			circumcircleCenter(u, v, x, z, center);
+			double firstX = center[0] - vX;
+			double firstZ = center[1] - vZ;
+
+			double previousX = firstX;
+			double previousZ = firstZ;
+
+			double doubleArea = 0;
+
+			/* go around v through the cavity triangles,
+			 * from the arriving to the leaving boundary edge */
+
+			int e = arrivingEdge;
+
+			while (e >= 0 && contains(cavity, cavitySize, e / 3)) {
+
+				circumcircleCenter(e / 3, center);
+				double centerX = center[0] - vX;
+				double centerZ = center[1] - vZ;
+
+				doubleArea += previousX * centerZ - previousZ * centerX;
+				previousX = centerX;
+				previousZ = centerZ;
+
+				if (e / 3 == leavingTriangle) break;
+
+				e = twins[next(e)];
+
+			}
+
+			circumcircleCenter(v, w, x, z, center);
+			double lastX = center[0] - vX;
+			double lastZ = center[1] - vZ;
+
+			doubleArea += previousX * lastZ - previousZ * lastX;
+			doubleArea += lastX * firstZ - lastZ * firstX;
+
+			relativeWeights[n] = abs(doubleArea) / 2;
+
+			areaDifferenceSum += relativeWeights[n];
+
+		}
+
+		/* calculate relative weights of neighbors */
+
+		for (int i = 0; i < boundaryEdgeCount; i++) {
+			relativeWeights[i] /= areaDifferenceSum;
+		}
+
+		return new NaturalNeighbors(neighbors, relativeWeights);
+
+	}
+
+	/**
+	 * returns all triangles. The triangles are created for each call,
+	 * so this is intended for debugging and tests.
+	 */
+	public Iterable<DelaunayTriangle> getTriangles() {
+
+		DelaunayTriangle[] triangles = new DelaunayTriangle[triangleCount];
+
+		for (int t = 0; t < triangleCount; t++) {
+			triangles[t] = new DelaunayTriangle(
+					vertices[halfEdgeVertices[3 * t]],
+					vertices[halfEdgeVertices[3 * t + 1]],
+					vertices[halfEdgeVertices[3 * t + 2]]);
+		}
+
+		for (int e = 0; e < 3 * triangleCount; e++) {
+			if (twins[e] >= 0) {
+				triangles[e / 3].setNeighbor(e % 3, triangles[twins[e] / 3]);
+			}
+		}
+
+		return Arrays.asList(triangles);
+
+	}
+
+	/**
+	 * uses a 'visibility walk' through the triangulation
+	 * to find the triangle containing a point
+	 *
+	 * @param start  the triangle where the walk starts
+	 */
+	private int walk(double x, double z, int start) {
+
+		int currentTriangle = start;
+
+		boolean triangleContainsPoint = false;
+
+		while (!triangleContainsPoint) {
+
+			triangleContainsPoint = true;
+
+			for (int e = 3 * currentTriangle; e < 3 * currentTriangle + 3; e++) {
+
+				// check whether the line defined by the edge separates
+				// the target point from the current triangle center.
+				// (relies on counterclockwise winding)
+
+				int v1 = halfEdgeVertices[e];
+				int v2 = halfEdgeVertices[next(e)];
+
+				double ax = coords[2 * v1], az = coords[2 * v1 + 1];
+				double bx = coords[2 * v2], bz = coords[2 * v2 + 1];
+
+				if ((z - az) * (bx - ax) - (x - ax) * (bz - az) < 0
+						&& twins[e] >= 0) {
+
+					triangleContainsPoint = false;
+					currentTriangle = twins[e] / 3;
+					break;
+
+				}
+
+			}
+
+		}
+
+		return currentTriangle;
+
+	}
+
+	/**
+	 * checks whether a point is strictly inside the circumcircle
+	 * of the counterclockwise triangle (a, b, c)
+	 */
+	private boolean isInCircumcircle(int a, int b, int c, int p) {
+		return isInCircumcircle(a, b, c, coords[2 * p], coords[2 * p + 1]);
+	}
+
+	private boolean isInCircumcircle(int triangle, double x, double z) {
+		return isInCircumcircle(
+				halfEdgeVertices[3 * triangle],
+				halfEdgeVertices[3 * triangle + 1],
+				halfEdgeVertices[3 * triangle + 2], x, z);
+	}
+
+	private boolean isInCircumcircle(int a, int b, int c, double x, double z) {
+
+		double adx = coords[2 * a] - x, adz = coords[2 * a + 1] - z;
+		double bdx = coords[2 * b] - x, bdz = coords[2 * b + 1] - z;
+		double cdx = coords[2 * c] - x, cdz = coords[2 * c + 1] - z;
+
+		double aLift = adx * adx + adz * adz;
+		double bLift = bdx * bdx + bdz * bdz;
+		double cLift = cdx * cdx + cdz * cdz;
+
+		return aLift * (bdx * cdz - bdz * cdx)
+				+ bLift * (cdx * adz - cdz * adx)
+				+ cLift * (adx * bdz - adz * bdx) > 0;
+
+	}
+
+	private void circumcircleCenter(int triangle, double[] result) {
+		int c = halfEdgeVertices[3 * triangle + 2];
+		circumcircleCenter(halfEdgeVertices[3 * triangle],
+				halfEdgeVertices[3 * triangle + 1],
+				coords[2 * c], coords[2 * c + 1], result);
+	}
+
+	/**
+	 * calculates the circumcircle center of the triangle formed by
+	 * two vertices and a point, like
+	 * {@link DelaunayTriangle#getCircumcircleCenter()}
+	 */
+	private void circumcircleCenter(int a, int b, double x, double z,
+			double[] result) {
+
+		double ax = coords[2 * a], az = coords[2 * a + 1];
+
+		double bx = coords[2 * b] - ax, bz = coords[2 * b + 1] - az;
+		double cx = x - ax, cz = z - az;
+
+		double d = 2 * (bx * cz - bz * cx);
+
+		result[0] = ax + (cz * (bx * bx + bz * bz) - bz * (cx * cx + cz * cz)) / d;
+		result[1] = az + (bx * (cx * cx + cz * cz) - cx * (bx * bx + bz * bz)) / d;
+
+	}
+
+	/** returns the next half-edge within the same triangle */
+	private static int next(int halfEdge) {
+		return (halfEdge % 3 == 2) ? halfEdge - 2 : halfEdge + 1;
+	}
+
+	private static boolean contains(int[] array, int size, int value) {
+		for (int i = 0; i < size; i++) {
+			if (array[i] == value) return true;
+		}
+		return false;
+	}
+
+	private void link(int halfEdge, int twin) {
+		twins[halfEdge] = twin;
+		if (twin >= 0) {
+			twins[twin] = halfEdge;
+		}
+	}
+
+	private int addVertex(VectorXYZ vertex) {
+
+		ensureCapacity(vertexCount + 1);
+
+		vertices[vertexCount] = vertex;
+		coords[2 * vertexCount] = vertex.x;
+		coords[2 * vertexCount + 1] = vertex.z;
+
+		return vertexCount++;
+
+	}
+
+	private int addTriangle(int a, int b, int c) {
+
+		int t = triangleCount++;
+
+		halfEdgeVertices[3 * t] = a;
+		halfEdgeVertices[3 * t + 1] = b;
+		halfEdgeVertices[3 * t + 2] = c;
+
+		twins[3 * t] = -1;
+		twins[3 * t + 1] = -1;
+		twins[3 * t + 2] = -1;
+
+		return t;
+
+	}
+
+	/**
+	 * grows the arrays if necessary. Each vertex inserted after the
+	 * four initial ones adds two triangles.
+	 */
+	private void ensureCapacity(int requiredVertexCount) {
+
+		if (requiredVertexCount > vertices.length) {
+
+			int newLength = max(requiredVertexCount, 2 * vertices.length);
+
+			vertices = Arrays.copyOf(vertices, newLength);
+			coords = Arrays.copyOf(coords, 2 * newLength);
+			halfEdgeVertices = Arrays.copyOf(halfEdgeVertices, 3 * (2 * newLength - 6));
+			twins = Arrays.copyOf(twins, halfEdgeVertices.length);
+
+		}
+
+	}
+
+	private LocatorGrid<Integer> getLocatorGrid() {
+
+		LocatorGrid<Integer> grid = locatorGrid;
+
+		if (grid == null) {
+			synchronized (this) {
+				grid = locatorGrid;
+				if (grid == null) {
+					grid = createLocatorGrid();
+					locatorGrid = grid;
+				}
+			}
+		}
+
+		return grid;
+
+	}
+
+	private LocatorGrid<Integer> createLocatorGrid() {
+
+		LocatorGrid<Integer> grid = new LocatorGrid<Integer>(bounds, triangleCount);
+
+		for (int t = 0; t < triangleCount; t++) {
+
+			int a = halfEdgeVertices[3 * t];
+			int b = halfEdgeVertices[3 * t + 1];
+			int c = halfEdgeVertices[3 * t + 2];
+
+			grid.addTriangle(t,
+					(coords[2 * a] + coords[2 * b] + coords[2 * c]) / 3,
+					(coords[2 * a + 1] + coords[2 * b + 1] + coords[2 * c + 1]) / 3);
+
+		}
+
+		grid.fillEmptyCells();
+
+		return grid;
+
+	}
+}
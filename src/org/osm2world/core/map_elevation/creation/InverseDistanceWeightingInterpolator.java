@@ -4,10 +4,10 @@ import static java.lang.Math.*;
 
 import java.util.Collection;
 
-import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
-import org.osm2world.core.math.datastructures.IntersectionGrid;
+import org.osm2world.core.math.datastructures.KDTreeXZ;
+import org.osm2world.core.math.datastructures.KDTreeXZ.Neighbors;
 
 
 public class InverseDistanceWeightingInterpolator implements TerrainInterpolator {
@@ -15,8 +15,9 @@ public class InverseDistanceWeightingInterpolator implements TerrainInterpolator
 	private static final double CUTOFF = 300;
 	
 	private final double negExp;
-	private Collection<VectorXYZ> sites;
-	private IntersectionGrid<VectorXYZ> siteGrid; //TODO: rename IntersectionGrid to something more generic
+	
+	private double[] siteEles;
+	private KDTreeXZ siteTree;
 
 	public InverseDistanceWeightingInterpolator() {
 		this(2);
@@ -29,53 +30,56 @@ public class InverseDistanceWeightingInterpolator implements TerrainInterpolator
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> sites) {
 		
-		this.sites = sites;
+		double[] siteXZ = new double[2 * sites.size()];
+		siteEles = new double[sites.size()];
 		
-		siteGrid = new IntersectionGrid<VectorXYZ>(
-				new AxisAlignedBoundingBoxXZ(sites).pad(CUTOFF/2),
-				CUTOFF, CUTOFF);
+		int i = 0;
 		
 		for (VectorXYZ site : sites) {
-			siteGrid.insert(site);
+			siteXZ[2*i] = site.x;
+			siteXZ[2*i+1] = site.z;
+			siteEles[i] = site.y;
+			i++;
 		}
 		
+		siteTree = new KDTreeXZ(siteXZ);
+		
 	}
 	
 	@Override
 	public VectorXYZ interpolateEle(VectorXZ pos) {
-
+		return pos.xyz(interpolate(pos.x, pos.z, new Neighbors()));
+	}
+	
+	@Override
+	public void interpolateEles(double[] xz, double[] eles, int start, int end) {
+		
+		Neighbors nearbySites = new Neighbors();
+		
+		for (int i = start; i < end; i++) {
+			eles[i] = interpolate(xz[2*i], xz[2*i+1], nearbySites);
+		}
+		
+	}
+	
+	/**
+	 * @param nearbySites  buffer for the sites within the cutoff distance,
+	 *                     will be overwritten
+	 */
+	private double interpolate(double x, double z, Neighbors nearbySites) {
+		
+		siteTree.findWithinRadius(x, z, CUTOFF, nearbySites);
+		
 		double weightSum = 0;
 		double eleSum = 0;
 		
-		Collection<VectorXYZ>[][] cellArray = siteGrid.getCellArray();
-		int cellX = siteGrid.cellXForCoord(pos.x, pos.z);
-		int cellZ = siteGrid.cellZForCoord(pos.x, pos.z);
-		
-		for (int i = max(cellX-1, 0); i < min(cellX+2, cellArray.length); i++) {
-			for (int j = max(cellZ-1, 0); j < min(cellZ+2, cellArray[i].length); j++) {
-				
-				Collection<VectorXYZ> sitesInCell = cellArray[i][j];
-				
-				if (sitesInCell == null) continue;
-				
-				for (VectorXYZ site : sitesInCell) {
-					
-					double distance = site.distanceToXZ(pos);
-					
-					if (distance < CUTOFF) {
-						double weight = pow(distance, negExp);
-						weightSum += weight;
-						eleSum += site.y * weight;
-					}
-					
-				}
-				
-			}
+		for (int i = 0; i < nearbySites.size(); i++) {
+			double weight = pow(nearbySites.getDistance(i), negExp);
+			weightSum += weight;
+			eleSum += siteEles[nearbySites.getIndex(i)] * weight;
 		}
-				
-		//System.out.println(pos + ": " + eleSum + ", " + weightSum + ", " + eleSum / weightSum);
 		
-		return pos.xyz(eleSum / weightSum);
+		return eleSum / weightSum;
 		
 	}
 	
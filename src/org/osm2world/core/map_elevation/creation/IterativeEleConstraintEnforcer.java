@@ -0,0 +1,775 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Double.NEGATIVE_INFINITY;
+import static java.lang.Double.POSITIVE_INFINITY;
+import static java.lang.Math.*;
+import static org.osm2world.core.map_elevation.data.GroundState.ON;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.RangeOperation;
+import org.osm2world.core.util.metrics.Metrics;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * enforces constraints with an iterative solver implemented in Java.
+ * Unlike {@link LPEleConstraintEnforcer}, it does not need native libraries.
+ *
+ * Connected connectors are joined into variables, as for the
+ * {@link LPEleConstraintEnforcer}. Each constraint is stored as a row
+ * of a sparse matrix A with a lower and upper bound, i.e. it has the form
+ * lower <= A z <= upper, where z contains the variables' elevations.
+ *
+ * The solver minimizes the weighted squared deviation of the variables
+ * from their initial, interpolated terrain elevation, subject to the
+ * constraints. Connectors on the ground have a high weight, all others
+ * a low one. It uses the alternating direction method of multipliers
+ * (ADMM), starting from the terrain elevations, and solves the linear
+ * system in each step with the conjugate gradient method. The sparse
+ * matrix products dominate the running time and are distributed across
+ * threads for large problems.
+ *
+ * Variables not affected by any constraint keep their elevation.
+ */
+public class IterativeEleConstraintEnforcer implements EleConstraintEnforcer {
+
+	/** weight of the deviation from terrain elevation for connectors on the ground */
+	private static final double GROUND_WEIGHT = 1;
+
+	/** weight of the deviation from terrain elevation for other connectors */
+	private static final double OFF_GROUND_WEIGHT = 0.01;
+
+	/** initial penalty parameter of ADMM, adapted during the iterations */
+	private static final double INITIAL_RHO = 1;
+
+	/**
+	 * the penalty parameter is changed if the constraint violation
+	 * differs from the dual residual by more than this factor
+	 */
+	private static final double RHO_ADAPTATION_THRESHOLD = 10;
+
+	private static final int MAX_ITERATIONS = 500;
+	private static final int MAX_CG_ITERATIONS = 25;
+
+	/** maximum constraint violation and change per iteration, in meters */
+	private static final double TOLERANCE = 0.001;
+
+	/**
+	 * minimum number of rows for distributing matrix products across
+	 * threads. For smaller matrices, the overhead would outweigh the gain.
+	 */
+	private static final int MIN_PARALLEL_ROWS = 10000;
+
+	/** maximum difference between inclines for smoothness constraints, per meter */
+	private static final double MAX_INCLINE_DIFF_PER_METER = 0.5 / 100;
+
+	private final int threadCount;
+
+	/* connectors and the union-find structure joining them into variables */
+
+	private final List<EleConnector> connectors = new ArrayList<EleConnector>();
+
+	private final TObjectIntHashMap<EleConnector> connectorIndexMap =
+			new TObjectIntHashMap<EleConnector>(1000, 0.5f, -1);
+
+	private final TIntArrayList connectorParents = new TIntArrayList();
+
+	private final ListMultimap<VectorXZ, EleConnector> connectorPositionMap =
+			ArrayListMultimap.create();
+
+	/* constraint rows, with connector indices as columns */
+
+	private final TIntArrayList rowOffsets = new TIntArrayList();
+	private final TIntArrayList rowColumns = new TIntArrayList();
+	private final TDoubleArrayList rowValues = new TDoubleArrayList();
+	private final TDoubleArrayList rowLowerBounds = new TDoubleArrayList();
+	private final TDoubleArrayList rowUpperBounds = new TDoubleArrayList();
+
+	/**
+	 * creates an enforcer that runs on a single thread
+	 */
+	public IterativeEleConstraintEnforcer() {
+		this(1);
+	}
+
+	/**
+	 * @param threadCount  number of threads used for the matrix products
+	 */
+	public IterativeEleConstraintEnforcer(int threadCount) {
+		this.threadCount = threadCount;
+		rowOffsets.add(0);
+	}
+
+	@Override
+	public void addConnectors(Iterable<EleConnector> newConnectors) {
+
+		for (EleConnector c : newConnectors) {
+
+			if (connectorIndexMap.containsKey(c)) continue;
+
+			int index = connectors.size();
+
+			connectors.add(c);
+			connectorIndexMap.put(c, index);
+			connectorParents.add(index);
+
+			/* join with connected connectors at the same position */
+
+			List<EleConnector> connectorsAtPos = connectorPositionMap.get(c.pos);
+
+			for (EleConnector other : connectorsAtPos) {
+				if (c.connectsTo(other)) {
+					union(index, connectorIndexMap.get(other));
+				}
+			}
+
+			connectorsAtPos.add(c);
+
+		}
+
+	}
+
+	@Override
+	public void requireSameEle(EleConnector c1, EleConnector c2) {
+
+		addConstraint(ConstraintType.EXACT, 0,
+				 1, c1,
+				-1, c2,
+				 0, null);
+
+	}
+
+	@Override
+	public void requireSameEle(Iterable<EleConnector> cs) {
+
+		Iterator<EleConnector> csIterator = cs.iterator();
+
+		if (csIterator.hasNext()) {
+
+			EleConnector c = csIterator.next();
+
+			while (csIterator.hasNext()) {
+				requireSameEle(c, csIterator.next());
+			}
+
+		}
+
+	}
+
+	@Override
+	public void requireVerticalDistance(ConstraintType type, double distance,
+			EleConnector upper, EleConnector lower) {
+
+		addConstraint(type, distance,
+				 1, upper,
+				-1, lower,
+				 0, null);
+
+	}
+
+	@Override
+	public void requireVerticalDistance(ConstraintType type, double distance,
+			EleConnector upper, EleConnector base1, EleConnector base2) {
+
+		double dist1 = base1.pos.distanceTo(upper.pos);
+		double dist2 = base2.pos.distanceTo(upper.pos);
+
+		addConstraint(type, distance,
+				 1, upper,
+				-(dist2 / (dist1 + dist2)), base1,
+				-(dist1 / (dist1 + dist2)), base2);
+
+	}
+
+	@Override
+	public void requireIncline(ConstraintType type, double incline,
+			List<EleConnector> cs) {
+
+		for (int i = 0; i+1 < cs.size(); i++) {
+
+			addConstraint(type,
+					incline * cs.get(i).pos.distanceTo(cs.get(i+1).pos),
+					 1, cs.get(i+1),
+					-1, cs.get(i),
+					 0, null);
+
+		}
+
+	}
+
+	@Override
+	public void requireSmoothness(EleConnector from,
+			EleConnector via, EleConnector to) {
+
+		double dist12 = from.pos.distanceTo(via.pos);
+		double dist23 = via.pos.distanceTo(to.pos);
+
+		if (dist12 == 0 || dist23 == 0) return;
+
+		double maxInclineDiff = MAX_INCLINE_DIFF_PER_METER * (dist12 + dist23);
+
+		/* |incline23 - incline12| <= maxInclineDiff */
+
+		addRow(-maxInclineDiff, maxInclineDiff,
+				-1 / dist12, from,
+				1 / dist12 + 1 / dist23, via,
+				-1 / dist23, to);
+
+	}
+
+	private void addConstraint(ConstraintType type, double limit,
+			double factor1, EleConnector c1,
+			double factor2, EleConnector c2,
+			double factor3, EleConnector c3) {
+
+		switch (type) {
+		case MIN: addRow(limit, POSITIVE_INFINITY, factor1, c1, factor2, c2, factor3, c3); break;
+		case MAX: addRow(NEGATIVE_INFINITY, limit, factor1, c1, factor2, c2, factor3, c3); break;
+		case EXACT: addRow(limit, limit, factor1, c1, factor2, c2, factor3, c3); break;
+		default: throw new Error("unhandled constraint type");
+		}
+
+	}
+
+	/**
+	 * adds a row lowerBound <= sum of factor * connector <= upperBound
+	 *
+	 * @param c2  second connector, null if not used
+	 * @param c3  third connector, null if not used
+	 */
+	private void addRow(double lowerBound, double upperBound,
+			double factor1, EleConnector c1,
+			double factor2, EleConnector c2,
+			double factor3, EleConnector c3) {
+
+		addEntry(factor1, c1);
+		if (c2 != null) addEntry(factor2, c2);
+		if (c3 != null) addEntry(factor3, c3);
+
+		rowOffsets.add(rowColumns.size());
+		rowLowerBounds.add(lowerBound);
+		rowUpperBounds.add(upperBound);
+
+	}
+
+	private void addEntry(double factor, EleConnector c) {
+
+		int index = connectorIndexMap.get(c);
+
+		if (index < 0) {
+			throw new IllegalArgumentException("unknown connector " + c);
+		}
+
+		rowColumns.add(index);
+		rowValues.add(factor);
+
+	}
+
+	private int find(int index) {
+
+		while (connectorParents.get(index) != index) {
+			int grandParent = connectorParents.get(connectorParents.get(index));
+			connectorParents.set(index, grandParent);
+			index = grandParent;
+		}
+
+		return index;
+
+	}
+
+	private void union(int index1, int index2) {
+
+		int root1 = find(index1);
+		int root2 = find(index2);
+
+		/* the connector added first remains the root */
+
+		if (root1 < root2) {
+			connectorParents.set(root2, root1);
+		} else if (root2 < root1) {
+			connectorParents.set(root1, root2);
+		}
+
+	}
+
+	@Override
+	public void enforceConstraints() {
+
+		/* replace connectors with their variables, i.e. the roots of
+		 * the union-find structure, and combine entries for the same variable.
+		 * Rows without remaining entries cannot be influenced by the solver
+		 * and are omitted. */
+
+		TIntArrayList offsets = new TIntArrayList();
+		TIntArrayList rootColumns = new TIntArrayList();
+		TDoubleArrayList values = new TDoubleArrayList();
+		TDoubleArrayList lowerBounds = new TDoubleArrayList();
+		TDoubleArrayList upperBounds = new TDoubleArrayList();
+
+		offsets.add(0);
+
+		int unsatisfiableRows = 0;
+
+		for (int row = 0; row + 1 < rowOffsets.size(); row++) {
+
+			int rowStart = rootColumns.size();
+
+			for (int i = rowOffsets.get(row); i < rowOffsets.get(row + 1); i++) {
+
+				int root = find(rowColumns.get(i));
+				double value = rowValues.get(i);
+
+				int existing = rootColumns.subList(rowStart, rootColumns.size()).indexOf(root);
+
+				if (existing < 0) {
+					rootColumns.add(root);
+					values.add(value);
+				} else {
+					values.set(rowStart + existing, values.get(rowStart + existing) + value);
+				}
+
+			}
+
+			/* remove entries which have cancelled each other out */
+
+			for (int i = rootColumns.size() - 1; i >= rowStart; i--) {
+				if (abs(values.get(i)) < 1e-9) {
+					rootColumns.removeAt(i);
+					values.removeAt(i);
+				}
+			}
+
+			if (rootColumns.size() > rowStart) {
+				offsets.add(rootColumns.size());
+				lowerBounds.add(rowLowerBounds.get(row));
+				upperBounds.add(rowUpperBounds.get(row));
+			} else if (rowLowerBounds.get(row) > 0 || rowUpperBounds.get(row) < 0) {
+				unsatisfiableRows ++;
+			}
+
+		}
+
+		if (unsatisfiableRows > 0) {
+			System.out.println("[WARNING]: " + unsatisfiableRows
+					+ " constraints between joined connectors cannot be satisfied");
+		}
+
+		if (lowerBounds.isEmpty()) return;
+
+		/* number the variables affected by constraints.
+		 * The connector added first determines a variable's initial elevation
+		 * and weight, like the first connector of an LPVariablePair. */
+
+		int[] connectorVariables = new int[connectors.size()];
+
+		for (int i = 0; i < connectorVariables.length; i++) {
+			connectorVariables[i] = -1;
+		}
+
+		int variableCount = 0;
+
+		TDoubleArrayList initialEles = new TDoubleArrayList();
+		TDoubleArrayList weights = new TDoubleArrayList();
+
+		int[] columns = new int[rootColumns.size()];
+
+		for (int i = 0; i < columns.length; i++) {
+
+			int root = rootColumns.get(i);
+
+			if (connectorVariables[root] == -1) {
+
+				connectorVariables[root] = variableCount ++;
+
+				EleConnector c = connectors.get(root);
+				initialEles.add(c.getPosXYZ().y);
+				weights.add(c.groundState == ON ? GROUND_WEIGHT : OFF_GROUND_WEIGHT);
+
+			}
+
+			columns[i] = connectorVariables[root];
+
+		}
+
+		SparseMatrix a = new SparseMatrix(variableCount,
+				offsets.toArray(), columns, values.toArray());
+
+		/* solve */
+
+		ExecutorService executor = ParallelIterationUtil.createExecutor(threadCount);
+
+		double[] eles;
+
+		try {
+
+			Solver solver = new Solver(a, a.transpose(),
+					lowerBounds.toArray(), upperBounds.toArray(),
+					weights.toArray(), executor);
+
+			eles = solver.solve(initialEles.toArray());
+
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
+		}
+
+		/* apply elevation values */
+
+		for (int i = 0; i < connectors.size(); i++) {
+
+			int variable = connectorVariables[find(i)];
+
+			if (variable >= 0) {
+				EleConnector c = connectors.get(i);
+				c.setPosXYZ(c.pos.xyz(eles[variable]));
+			}
+
+		}
+
+	}
+
+	/**
+	 * a sparse matrix in compressed row format
+	 */
+	static final class SparseMatrix {
+
+		final int rowCount;
+		final int columnCount;
+
+		/** index of each row's first entry, and the total number of entries */
+		final int[] rowOffsets;
+		final int[] columns;
+		final double[] values;
+
+		SparseMatrix(int columnCount,
+				int[] rowOffsets, int[] columns, double[] values) {
+			this.rowCount = rowOffsets.length - 1;
+			this.columnCount = columnCount;
+			this.rowOffsets = rowOffsets;
+			this.columns = columns;
+			this.values = values;
+		}
+
+		SparseMatrix transpose() {
+
+			int[] offsets = new int[columnCount + 1];
+
+			for (int column : columns) {
+				offsets[column + 1] ++;
+			}
+
+			for (int i = 0; i < columnCount; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+
+			int[] nextEntry = offsets.clone();
+			int[] transposedColumns = new int[columns.length];
+			double[] transposedValues = new double[values.length];
+
+			for (int row = 0; row < rowCount; row++) {
+				for (int i = rowOffsets[row]; i < rowOffsets[row + 1]; i++) {
+					int entry = nextEntry[columns[i]] ++;
+					transposedColumns[entry] = row;
+					transposedValues[entry] = values[i];
+				}
+			}
+
+			return new SparseMatrix(rowCount, offsets,
+					transposedColumns, transposedValues);
+
+		}
+
+		/**
+		 * calculates result = this * x for the rows [start, end)
+		 */
+		void multiply(double[] x, double[] result, int start, int end) {
+
+			for (int row = start; row < end; row++) {
+
+				double sum = 0;
+
+				for (int i = rowOffsets[row]; i < rowOffsets[row + 1]; i++) {
+					sum += values[i] * x[columns[i]];
+				}
+
+				result[row] = sum;
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * ADMM solver for: minimize sum of weight * (z - initialEle)^2
+	 * subject to lowerBounds <= A z <= upperBounds.
+	 *
+	 * The problem is split into z and y = A z, with y restricted to the
+	 * bounds. Each iteration solves (W + rho A'A) z = W z0 + rho A'(y - u)
+	 * for z, then projects A z + u onto the bounds to get y, and finally
+	 * updates the scaled dual variables u.
+	 */
+	static final class Solver {
+
+		private final SparseMatrix a;
+		private final SparseMatrix aTransposed;
+		private final double[] lowerBounds;
+		private final double[] upperBounds;
+		private final double[] weights;
+		private final ExecutorService executor;
+
+		/** squared norms of the columns of A, i.e. the diagonal of A'A */
+		private final double[] columnNorms;
+
+		/** the current penalty parameter */
+		private double rho = INITIAL_RHO;
+
+		/* temporary vectors for products with W + rho A'A */
+		private final double[] rowTemp;
+
+		Solver(SparseMatrix a, SparseMatrix aTransposed,
+				double[] lowerBounds, double[] upperBounds,
+				double[] weights, ExecutorService executor) {
+
+			this.a = a;
+			this.aTransposed = aTransposed;
+			this.lowerBounds = lowerBounds;
+			this.upperBounds = upperBounds;
+			this.weights = weights;
+			this.executor = executor;
+
+			columnNorms = new double[a.columnCount];
+
+			for (int column = 0; column < a.columnCount; column++) {
+
+				double sum = 0;
+
+				for (int i = aTransposed.rowOffsets[column];
+						i < aTransposed.rowOffsets[column + 1]; i++) {
+					sum += aTransposed.values[i] * aTransposed.values[i];
+				}
+
+				columnNorms[column] = sum;
+
+			}
+
+			rowTemp = new double[a.rowCount];
+
+		}
+
+		/**
+		 * @param initialEles  initial elevations, also used as a warm start
+		 * @return  the elevations
+		 */
+		double[] solve(double[] initialEles) {
+
+			int n = a.columnCount;
+			int m = a.rowCount;
+
+			double[] z = initialEles.clone();
+			double[] az = new double[m];
+			double[] y = new double[m];
+			double[] u = new double[m];
+
+			double[] weightedInitialEles = new double[n];
+
+			for (int i = 0; i < n; i++) {
+				weightedInitialEles[i] = weights[i] * initialEles[i];
+			}
+
+			multiply(a, z, az);
+
+			for (int row = 0; row < m; row++) {
+				y[row] = clamp(az[row], row);
+			}
+
+			double[] rhs = new double[n];
+			double[] yMinusU = new double[m];
+
+			int iteration = 0;
+			boolean converged = false;
+
+			while (iteration < MAX_ITERATIONS && !converged) {
+
+				iteration ++;
+
+				/* z update */
+
+				for (int row = 0; row < m; row++) {
+					yMinusU[row] = y[row] - u[row];
+				}
+
+				multiply(aTransposed, yMinusU, rhs);
+
+				for (int i = 0; i < n; i++) {
+					rhs[i] = weightedInitialEles[i] + rho * rhs[i];
+				}
+
+				solveLinearSystem(rhs, z);
+
+				/* y and u update */
+
+				multiply(a, z, az);
+
+				double maxViolation = 0;
+				double maxChange = 0;
+
+				for (int row = 0; row < m; row++) {
+
+					double newY = clamp(az[row] + u[row], row);
+
+					maxChange = max(maxChange, abs(newY - y[row]));
+					maxViolation = max(maxViolation, abs(az[row] - newY));
+
+					y[row] = newY;
+					u[row] += az[row] - newY;
+
+				}
+
+				converged = maxViolation < TOLERANCE && maxChange < TOLERANCE;
+
+				/* balance the constraint violation and the dual residual,
+				 * which is estimated from the change of y. The scaled dual
+				 * variables u need to be rescaled when rho changes. */
+
+				double dualResidual = rho * maxChange;
+
+				if (maxViolation > RHO_ADAPTATION_THRESHOLD * dualResidual) {
+					rho *= 2;
+					scale(u, 0.5);
+				} else if (dualResidual > RHO_ADAPTATION_THRESHOLD * maxViolation) {
+					rho /= 2;
+					scale(u, 2);
+				}
+
+			}
+
+			Metrics.current().count("elevation.solverIterations", iteration);
+
+			if (!converged) {
+				System.out.println("[WARNING]: constraints not fully enforced after "
+						+ iteration + " iterations");
+			}
+
+			return z;
+
+		}
+
+		private double clamp(double value, int row) {
+			return min(max(value, lowerBounds[row]), upperBounds[row]);
+		}
+
+		/**
+		 * solves (W + rho A'A) x = b with the preconditioned
+		 * conjugate gradient method
+		 *
+		 * @param x  initial guess, will contain the result
+		 */
+		private void solveLinearSystem(double[] b, double[] x) {
+
+			int n = x.length;
+
+			double[] r = new double[n];
+			double[] p = new double[n];
+			double[] q = new double[n];
+			double[] s = new double[n];
+
+			multiplySystemMatrix(x, r);
+
+			for (int i = 0; i < n; i++) {
+				r[i] = b[i] - r[i];
+				p[i] = r[i] / (weights[i] + rho * columnNorms[i]);
+			}
+
+			double rs = dot(r, p);
+
+			for (int k = 0; k < MAX_CG_ITERATIONS; k++) {
+
+				if (maxAbs(r) < TOLERANCE * 1e-3) break;
+
+				multiplySystemMatrix(p, q);
+
+				double alpha = rs / dot(p, q);
+
+				for (int i = 0; i < n; i++) {
+					x[i] += alpha * p[i];
+					r[i] -= alpha * q[i];
+					s[i] = r[i] / (weights[i] + rho * columnNorms[i]);
+				}
+
+				double newRs = dot(r, s);
+				double beta = newRs / rs;
+				rs = newRs;
+
+				for (int i = 0; i < n; i++) {
+					p[i] = s[i] + beta * p[i];
+				}
+
+			}
+
+		}
+
+		/**
+		 * calculates result = (W + rho A'A) x
+		 */
+		private void multiplySystemMatrix(double[] x, double[] result) {
+
+			multiply(a, x, rowTemp);
+			multiply(aTransposed, rowTemp, result);
+
+			for (int i = 0; i < x.length; i++) {
+				result[i] = weights[i] * x[i] + rho * result[i];
+			}
+
+		}
+
+		/**
+		 * calculates result = matrix * x,
+		 * distributing the rows across threads for large matrices
+		 */
+		private void multiply(final SparseMatrix matrix,
+				final double[] x, final double[] result) {
+
+			ParallelIterationUtil.iterateRanges(matrix.rowCount, new RangeOperation() {
+				@Override public void perform(int start, int end) {
+					matrix.multiply(x, result, start, end);
+				}
+			}, (matrix.rowCount >= MIN_PARALLEL_ROWS) ? executor : null);
+
+		}
+
+		private static void scale(double[] v, double factor) {
+			for (int i = 0; i < v.length; i++) {
+				v[i] *= factor;
+			}
+		}
+
+		private static double dot(double[] v1, double[] v2) {
+			double sum = 0;
+			for (int i = 0; i < v1.length; i++) {
+				sum += v1[i] * v2[i];
+			}
+			return sum;
+		}
+
+		private static double maxAbs(double[] v) {
+			double result = 0;
+			for (double d : v) {
+				result = max(result, abs(d));
+			}
+			return result;
+		}
+
+	}
+
+}
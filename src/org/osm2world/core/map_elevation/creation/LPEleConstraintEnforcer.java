@@ -5,10 +5,13 @@ import static org.osm2world.core.map_elevation.data.GroundState.ON;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
+import net.sf.javailp.Constraint;
 import net.sf.javailp.Linear;
 import net.sf.javailp.OptType;
 import net.sf.javailp.Problem;
@@ -23,24 +26,45 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.util.FaultTolerantIterationUtil;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.metrics.Metrics;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
 /**
- * enforces constraints using linear programming
+ * enforces constraints using linear programming.
+ * 
+ * Most constraints only affect connectors close to each other, so the
+ * constraints usually form many independent components. Each component
+ * is solved as a separate linear program, and these are solved in parallel.
+ * Variables that are not affected by any constraint keep their elevation.
  */
 public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 
-	private final Problem problem;
+	private final int threadCount;
+	
+	private final List<Constraint> constraints;
 	
 	private final List<LPVariablePair> variables;
 	private final Map<EleConnector, LPVariablePair> variableMap;
 
-	
+	/**
+	 * creates an enforcer that solves the linear programs sequentially
+	 */
 	public LPEleConstraintEnforcer() {
+		this(1);
+	}
+	
+	/**
+	 * @param threadCount  number of threads used to solve independent
+	 *                     linear programs in parallel
+	 */
+	public LPEleConstraintEnforcer(int threadCount) {
+		
+		this.threadCount = threadCount;
 		
-		problem = new Problem();
+		constraints = new ArrayList<Constraint>();
 		
 		variables = new ArrayList<LPVariablePair>();
 		variableMap = new HashMap<EleConnector, LPVariablePair>();
@@ -323,7 +347,7 @@ public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 			limitCorrection += factor3 * var3.getPosXYZ().y;
 		}
 		
-		problem.add(linear, op, limit - limitCorrection);
+		constraints.add(new Constraint(linear, op, limit - limitCorrection));
 		
 	}
 	
@@ -341,39 +365,193 @@ public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 	@Override
 	public void enforceConstraints() {
 		
-		SolverFactory factory = new SolverFactoryLpSolve();
-		factory.setParameter(Solver.VERBOSE, 0);
+		final List<Component> components = createComponents();
+		
+		Metrics.current().count("elevation.lpComponents", components.size());
 		
-		problem.setObjective(constructObjective(), OptType.MIN);
+		/* solve the components' linear programs */
 		
-		//TODO Relaxations relax = new Relaxations();
+		final SolverFactory factory = new SolverFactoryLpSolve();
+		factory.setParameter(Solver.VERBOSE, 0);
 		
-		final Solver solver = factory.get();
-		final Result result = solver.solve(problem);
+		ExecutorService executor = ParallelIterationUtil.createExecutor(threadCount);
 		
-		if (result == null) {
-			System.out.println("[ERROR]: cannot enforce constraints, no result for LP");
-		} else {
+		try {
 			
-			/* apply elevation values */
+			ParallelIterationUtil.iterate(components,
+					new ParallelIterationUtil.Operation<Component>() {
+				@Override public void perform(Component component) {
+					component.solve(factory);
+				}
+			}, executor);
 			
-			FaultTolerantIterationUtil.iterate(variables, new Operation<LPVariablePair>() {
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
+		}
+		
+		/* like a single linear program for all components,
+		 * only apply the results if all components could be solved */
+		
+		for (Component component : components) {
+			if (component.result == null) {
+				System.out.println("[ERROR]: cannot enforce constraints, no result for LP");
+				return;
+			}
+		}
+		
+		/* apply elevation values */
+		
+		for (final Component component : components) {
+			
+			FaultTolerantIterationUtil.iterate(component.variables, new Operation<LPVariablePair>() {
 				@Override public void perform(LPVariablePair v) {
 					
 					VectorXYZ posXYZ = v.getPosXYZ().addY(
-							+ result.get(v.posVar()).doubleValue()
-							- result.get(v.negVar()).doubleValue());
+							+ component.result.get(v.posVar()).doubleValue()
+							- component.result.get(v.negVar()).doubleValue());
 					
 					v.setPosXYZ(posXYZ);
 					
 				}
 			});
-						
+			
+		}
+		
+	}
+	
+	/**
+	 * splits the variables and constraints into components. Two variables
+	 * are part of the same component if they are (directly or indirectly)
+	 * linked by constraints. Variables without constraints are omitted.
+	 * 
+	 * @return  components in the order of their first variable
+	 */
+	private List<Component> createComponents() {
+		
+		/* find components with a union-find structure over variable indices */
+		
+		Map<Object, Integer> lpVariableIndexMap =
+				new IdentityHashMap<Object, Integer>();
+		
+		for (int i = 0; i < variables.size(); i++) {
+			lpVariableIndexMap.put(variables.get(i).posVar(), i);
+			lpVariableIndexMap.put(variables.get(i).negVar(), i);
+		}
+		
+		int[] parents = new int[variables.size()];
+		
+		for (int i = 0; i < parents.length; i++) {
+			parents[i] = i;
+		}
+		
+		int[] constraintRoots = new int[constraints.size()];
+		
+		for (int c = 0; c < constraints.size(); c++) {
+			
+			int root = -1;
+			
+			for (Object lpVariable : constraints.get(c).getLhs().getVariables()) {
+				
+				int otherRoot = findRoot(parents, lpVariableIndexMap.get(lpVariable));
+				
+				if (root == -1) {
+					root = otherRoot;
+				} else if (root != otherRoot) {
+					parents[otherRoot] = root;
+				}
+				
+			}
+			
+			constraintRoots[c] = root;
+			
+		}
+		
+		/* collect the constrained variables and the constraints,
+		 * retaining their original order */
+		
+		Component[] rootComponents = new Component[variables.size()];
+		
+		for (int c = 0; c < constraints.size(); c++) {
+			
+			int root = findRoot(parents, constraintRoots[c]);
+			
+			if (rootComponents[root] == null) {
+				rootComponents[root] = new Component();
+			}
+			
+			rootComponents[root].constraints.add(constraints.get(c));
+			
+		}
+		
+		List<Component> components = new ArrayList<Component>();
+		
+		for (int i = 0; i < variables.size(); i++) {
+			
+			Component component = rootComponents[findRoot(parents, i)];
+			
+			if (component != null) {
+				
+				if (component.variables.isEmpty()) {
+					components.add(component);
+				}
+				
+				component.variables.add(variables.get(i));
+				
+			}
+			
+		}
+		
+		return components;
+		
+	}
+	
+	/**
+	 * returns the root of an element in a union-find structure,
+	 * halving the path to it
+	 */
+	private static int findRoot(int[] parents, int i) {
+		
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		
+		return i;
+		
+	}
+	
+	/**
+	 * a set of variables with the constraints linking them,
+	 * which can be solved independently from other components
+	 */
+	private static class Component {
+		
+		final List<LPVariablePair> variables = new ArrayList<LPVariablePair>();
+		final List<Constraint> constraints = new ArrayList<Constraint>();
+		
+		/** the result of {@link #solve(SolverFactory)}; null if none exists */
+		Result result = null;
+		
+		void solve(SolverFactory factory) {
+			
+			Problem problem = new Problem();
+			
+			for (Constraint constraint : constraints) {
+				problem.add(constraint);
+			}
+			
+			problem.setObjective(constructObjective(variables), OptType.MIN);
+			
+			//TODO Relaxations relax = new Relaxations();
+			
+			Solver solver = factory.get();
+			result = solver.solve(problem);
+			
 		}
 		
 	}
 	
-	private Linear constructObjective() {
+	private static Linear constructObjective(List<LPVariablePair> variables) {
 	
 		Linear objectiveLinear = new Linear();
 		
@@ -4,140 +4,168 @@ import static java.lang.Math.*;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
 
-import org.apache.commons.lang.time.StopWatch;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.QRDecomposition;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
 import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
-import org.osm2world.core.math.datastructures.IntersectionGrid;
 import org.osm2world.core.math.datastructures.IntersectionTestObject;
+import org.osm2world.core.math.datastructures.KDTreeXZ;
+import org.osm2world.core.math.datastructures.KDTreeXZ.Neighbors;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.RangeOperation;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Metrics.Timer;
 
 /**
  * uses least squares method to approximate a polynomial at each site,
  * and calculates elevations based on the polynomials at the nearest sites.
+ * 
+ * Once the known sites have been set, elevations can be interpolated
+ * by multiple threads at the same time.
  */
 public class LeastSquaresInterpolator implements TerrainInterpolator {
 	
-	private static final double CELL_SIZE = 50; //should only affect performance
 	private static final int SITES_FOR_APPROX = 9;
 	private static final int SITES_FOR_INTERPOL = 29;
 	
-	private Collection<SiteWithPolynomial> sites;
-	private IntersectionGrid<SiteWithPolynomial> siteGrid; //TODO: rename IntersectionGrid to something more generic
+	private List<SiteWithPolynomial> sites;
+	private KDTreeXZ siteTree;
+	
+	/** the sites that have a polynomial, and an index for them */
+	private SiteWithPolynomial[] polynomialSites;
+	private KDTreeXZ polynomialSiteTree;
+	
+	private int threadCount = 1;
+	
+	/**
+	 * sets the number of threads used by {@link #setKnownSites(Collection)}
+	 * to approximate the polynomials. Defaults to 1.
+	 */
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
 	
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> siteVectors) {
 		
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
+		Metrics metrics = Metrics.current();
 		
-		sites = new ArrayList<SiteWithPolynomial>(siteVectors.size());
+		Timer timer = metrics.startTimer("index");
 		
-		siteGrid = new IntersectionGrid<SiteWithPolynomial>(
-				new AxisAlignedBoundingBoxXZ(siteVectors).pad(CELL_SIZE/2),
-				CELL_SIZE, CELL_SIZE);
+		sites = new ArrayList<SiteWithPolynomial>(siteVectors.size());
 		
 		for (VectorXYZ siteVector : siteVectors) {
-			SiteWithPolynomial s = new SiteWithPolynomial(siteVector);
-			sites.add(s);
-			siteGrid.insert(s);
+			sites.add(new SiteWithPolynomial(siteVector));
 		}
 		
-		System.out.println("  time grid: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		siteTree = new KDTreeXZ(getPackedCoords(sites));
 		
-		/* approximate a polynomial at each site */
-
-		Map<SiteWithPolynomial, List<SiteWithPolynomial>> nearestSiteMap
-			= new HashMap<SiteWithPolynomial, List<SiteWithPolynomial>>();
-
-		for (SiteWithPolynomial site : sites) {
+		timer.stop();
+		
+		timer = metrics.startTimer("polynomials");
+		
+		/* approximate a polynomial at each site.
+		 * This only reads the sites' positions, and each site's polynomial
+		 * is only written by one thread, so ranges of sites are independent. */
+		
+		ExecutorService executor =
+				ParallelIterationUtil.createExecutor(threadCount);
+		
+		try {
 			
-			List<SiteWithPolynomial> nearestSites =
-					findNearestSites(site.pos.xz(), SITES_FOR_APPROX, false);
-
-			nearestSiteMap.put(site, nearestSites);
+			ParallelIterationUtil.iterateRanges(sites.size(), new RangeOperation() {
+				@Override public void perform(int start, int end) {
+					
+					Neighbors nearestSites = new Neighbors(SITES_FOR_APPROX);
+					PolynomialFit fit = new PolynomialFit(SITES_FOR_APPROX);
+					
+					for (int i = start; i < end; i++) {
+						
+						SiteWithPolynomial site = sites.get(i);
+						
+						siteTree.findNearest(site.pos.x, site.pos.z,
+								SITES_FOR_APPROX, nearestSites);
+						
+						double[] coeffs = fit.calculateCoeffs(sites, nearestSites);
+						
+						if (coeffs != null) {
+							site.setPolynomial(new DefaultPolynomial(coeffs));
+						}
+						
+					}
+					
+				}
+			}, executor);
 			
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
 		}
 		
-		System.out.println("  time nearest sites: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
-
-		calculatePolynomials:
+		/* only sites with polynomials are relevant for interpolation */
+		
+		List<SiteWithPolynomial> sitesWithPolynomial =
+				new ArrayList<SiteWithPolynomial>(sites.size());
+		
 		for (SiteWithPolynomial site : sites) {
-			
-			List<SiteWithPolynomial> nearestSites =
-					nearestSiteMap.get(site);
-			
-			RealVector vector = new ArrayRealVector(SITES_FOR_APPROX);
-			RealMatrix matrix = new Array2DRowRealMatrix(
-					SITES_FOR_APPROX, DefaultPolynomial.NUM_COEFFS);
-			
-			for (int row = 0; row < SITES_FOR_APPROX; row++) {
-				SiteWithPolynomial nearSite = nearestSites.get(row);
-				DefaultPolynomial.populateMatrix(matrix, row, nearSite.pos.x, nearSite.pos.z);
-				vector.setEntry(row, nearSite.pos.y);
-			}
-			
-			QRDecomposition qr = new QRDecomposition(matrix);
-			RealVector solution = qr.getSolver().solve(vector);
-				
-			double[] coeffs = solution.toArray();
-			
-			for (double coeff : coeffs) {
-				if (coeff > 10e3) {
-					continue calculatePolynomials;
-				}
+			if (site.getPolynomial() != null) {
+				sitesWithPolynomial.add(site);
 			}
-			
-			site.setPolynomial(new DefaultPolynomial(coeffs));
-			
 		}
-
-		System.out.println("  time polyonmials: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		
+		polynomialSites = sitesWithPolynomial.toArray(
+				new SiteWithPolynomial[sitesWithPolynomial.size()]);
+		polynomialSiteTree = new KDTreeXZ(getPackedCoords(sitesWithPolynomial));
+		
+		timer.stop();
+		
+		metrics.count("elevation.polynomialSites", polynomialSites.length);
 		
 	}
 	
 	@Override
 	public VectorXYZ interpolateEle(VectorXZ pos) {
+		return pos.xyz(interpolate(pos.x, pos.z,
+				new Neighbors(SITES_FOR_INTERPOL)));
+	}
+	
+	@Override
+	public void interpolateEles(double[] xz, double[] eles, int start, int end) {
 		
-		List<SiteWithPolynomial> nearestSites =
-				findNearestSites(pos, SITES_FOR_INTERPOL, true);
+		Neighbors nearestSites = new Neighbors(SITES_FOR_INTERPOL);
+		
+		for (int i = start; i < end; i++) {
+			eles[i] = interpolate(xz[2*i], xz[2*i+1], nearestSites);
+		}
+		
+	}
+	
+	/**
+	 * @param nearestSites  buffer for the nearest sites, will be overwritten
+	 */
+	private double interpolate(double x, double z, Neighbors nearestSites) {
+		
+		polynomialSiteTree.findNearest(x, z, SITES_FOR_INTERPOL, nearestSites);
 		
 		double eleSum = 0;
 		double weightSum = 0;
 		
-		for (SiteWithPolynomial site : nearestSites) {
+		for (int i = 0; i < nearestSites.size(); i++) {
 			
-			double distance = site.pos.distanceToXZ(pos);
+			double distance = nearestSites.getDistance(i);
 			
 			double weight = max(1 - distance / 120, 0);
 			
 			weightSum += weight;
-						
-			eleSum += weight * site.getPolynomial().evaluateAt(pos.x, pos.z);
+			
+			SiteWithPolynomial site = polynomialSites[nearestSites.getIndex(i)];
+			eleSum += weight * site.getPolynomial().evaluateAt(x, z);
 			
 		}
 		
-		double ele = eleSum / weightSum;
-		
-		return pos.xyz(ele);
+		return eleSum / weightSum;
 		
 	}
 	
@@ -149,75 +177,154 @@ public class LeastSquaresInterpolator implements TerrainInterpolator {
 		return sites;
 	}
 	
-	private List<SiteWithPolynomial> findNearestSites(
-			final VectorXZ pos, int numberSites, boolean requirePolynomial) {
-
-		PriorityQueue<SiteWithPolynomial> result =
-				new PriorityQueue<SiteWithPolynomial>(numberSites,
-						new Comparator<SiteWithPolynomial>() {
-					@Override
-					public int compare(SiteWithPolynomial s1, SiteWithPolynomial s2) {
-						return - Double.compare(s1.pos.distanceToXZ(pos),
-								s2.pos.distanceToXZ(pos));
-					}
-				});
+	/**
+	 * returns the sites' x and z coordinates, packed as x0, z0, x1, z1, ...
+	 */
+	private static double[] getPackedCoords(List<SiteWithPolynomial> sites) {
+		
+		double[] xz = new double[2 * sites.size()];
 		
-		Collection<SiteWithPolynomial>[][] cellArray = siteGrid.getCellArray();
-		int cellX = siteGrid.cellXForCoord(pos.x, pos.z);
-		int cellZ = siteGrid.cellZForCoord(pos.x, pos.z);
+		for (int i = 0; i < sites.size(); i++) {
+			xz[2*i] = sites.get(i).pos.x;
+			xz[2*i+1] = sites.get(i).pos.z;
+		}
+		
+		return xz;
+		
+	}
+	
+	/**
+	 * least squares fit of a {@link DefaultPolynomial} to a number of sites,
+	 * using a Householder QR decomposition. Works on reusable primitive
+	 * arrays to avoid allocations for each site. Each thread needs its own
+	 * instance.
+	 */
+	static final class PolynomialFit {
+		
+		private static final int N = DefaultPolynomial.NUM_COEFFS;
+		
+		private final int m;
+		
+		/** m x N matrix in row-major order */
+		private final double[] a;
+		private final double[] b;
+		private final double[] rDiag = new double[N];
+		
+		PolynomialFit(int numberSites) {
+			m = numberSites;
+			a = new double[m * N];
+			b = new double[m];
+		}
+		
+		/**
+		 * @param nearestSites  indices of the sites to fit the polynomial to
+		 * @return  the coefficients; null if the sites do not allow a
+		 *          unique or plausible solution
+		 */
+		double[] calculateCoeffs(List<SiteWithPolynomial> sites,
+				Neighbors nearestSites) {
 			
-		int cellRange = 0;
-				
-		do {
+			if (nearestSites.size() < m) return null;
 			
-			for (int i = max(cellX-cellRange, 0); i < min(cellX+cellRange+1, cellArray.length); i++) {
-				for (int j = max(cellZ-cellRange, 0); j < min(cellZ+cellRange+1, cellArray[i].length); j++) {
-					
-					//needs to be on the outer ring of cells (others have been checked before)
-					if (i == cellX-cellRange || i == cellX+cellRange
-							|| j == cellZ-cellRange || j == cellZ+cellRange) {
-					
-						Collection<SiteWithPolynomial> sitesInCell = cellArray[i][j];
-
-						if (sitesInCell != null) {
-							for (SiteWithPolynomial site : sitesInCell) {
-								
-								if (requirePolynomial && site.polynomial == null) continue;
-								
-								if (result.size() < numberSites) {
-									
-									result.add(site);
-									
-								} else if (site.pos.distanceToXZ(pos) <
-										result.peek().pos.distanceToXZ(pos)) {
-									
-									result.remove();
-									result.add(site);
-									
-								}
-							}
-						}
-						
-					}
-					
-				}
+			for (int row = 0; row < m; row++) {
+				setRow(row, sites.get(nearestSites.getIndex(row)).pos);
 			}
 			
-			cellRange ++;
+			return solve();
 			
-		} while (result.size() < numberSites
-				|| cellRange * CELL_SIZE < result.peek().pos.distanceToXZ(pos));
-
-		//TODO error handling (not enough sites)
-		
-		/* get the result as a list with ascending distance */
+		}
 		
-		List<SiteWithPolynomial> resultList =
-				new ArrayList<SiteWithPolynomial>(result);
+		/**
+		 * variant of {@link #calculateCoeffs(List, Neighbors)}
+		 * which uses the first positions of an array
+		 */
+		double[] calculateCoeffs(VectorXYZ[] positions) {
+			
+			if (positions.length < m) return null;
+			
+			for (int row = 0; row < m; row++) {
+				setRow(row, positions[row]);
+			}
+			
+			return solve();
+			
+		}
 		
-		Collections.reverse(resultList);
+		private void setRow(int row, VectorXYZ pos) {
+			DefaultPolynomial.populateRow(a, row * N, pos.x, pos.z);
+			b[row] = pos.y;
+		}
 		
-		return resultList;
+		/**
+		 * solves the least squares problem for the current rows
+		 */
+		private double[] solve() {
+			
+			/* transform a into R and b into Q^T * b */
+			
+			for (int k = 0; k < N; k++) {
+				
+				double normSq = 0;
+				for (int i = k; i < m; i++) {
+					normSq += a[i*N + k] * a[i*N + k];
+				}
+				
+				if (normSq == 0) return null;
+				
+				double alpha = (a[k*N + k] > 0) ? -sqrt(normSq) : sqrt(normSq);
+				rDiag[k] = alpha;
+				
+				/* the Householder vector v is stored in column k below the diagonal */
+				
+				a[k*N + k] -= alpha;
+				
+				double vNormSq = -2 * alpha * a[k*N + k];
+				
+				if (vNormSq == 0) continue;
+				
+				for (int j = k + 1; j < N; j++) {
+					double dot = 0;
+					for (int i = k; i < m; i++) {
+						dot += a[i*N + k] * a[i*N + j];
+					}
+					double f = 2 * dot / vNormSq;
+					for (int i = k; i < m; i++) {
+						a[i*N + j] -= f * a[i*N + k];
+					}
+				}
+				
+				double dot = 0;
+				for (int i = k; i < m; i++) {
+					dot += a[i*N + k] * b[i];
+				}
+				double f = 2 * dot / vNormSq;
+				for (int i = k; i < m; i++) {
+					b[i] -= f * a[i*N + k];
+				}
+				
+			}
+			
+			/* back substitution */
+			
+			double[] coeffs = new double[N];
+			
+			for (int k = N - 1; k >= 0; k--) {
+				double sum = b[k];
+				for (int j = k + 1; j < N; j++) {
+					sum -= a[k*N + j] * coeffs[j];
+				}
+				coeffs[k] = sum / rDiag[k];
+			}
+			
+			for (double coeff : coeffs) {
+				if (coeff > 10e3 || Double.isNaN(coeff)) {
+					return null;
+				}
+			}
+			
+			return coeffs;
+			
+		}
 		
 	}
 	
@@ -248,15 +355,20 @@ public class LeastSquaresInterpolator implements TerrainInterpolator {
 					+ coeffs[5] * z*z;
 		}
 		
-		public static void populateMatrix(RealMatrix matrix, int row,
+		/**
+		 * writes the terms for a position into a row of a matrix
+		 * 
+		 * @param offset  index of the row's first element
+		 */
+		public static void populateRow(double[] matrix, int offset,
 				double x, double z) {
 			
-			matrix.setEntry(row, 0, 1);
-			matrix.setEntry(row, 1, x);
-			matrix.setEntry(row, 2, z);
-			matrix.setEntry(row, 3, x*x);
-			matrix.setEntry(row, 4, x*z);
-			matrix.setEntry(row, 5, z*z);
+			matrix[offset] = 1;
+			matrix[offset + 1] = x;
+			matrix[offset + 2] = z;
+			matrix[offset + 3] = x*x;
+			matrix[offset + 4] = x*z;
+			matrix[offset + 5] = z*z;
 			
 		}
 		
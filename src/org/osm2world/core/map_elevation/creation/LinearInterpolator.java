@@ -12,7 +12,7 @@ import org.osm2world.core.math.VectorXZ;
  * then interpolates linearly within each triangle
  * (i.e. treats the triangles as flat)
  */
-public class LinearInterpolator implements TerrainInterpolator {
+public class LinearInterpolator extends AbstractTerrainInterpolator {
 	
 	private DelaunayTriangulation triangulation;
 	
@@ -24,9 +24,7 @@ public class LinearInterpolator implements TerrainInterpolator {
 		
 		triangulation = new DelaunayTriangulation(boundingBox);
 		
-		for (VectorXYZ site : sites) {
-			triangulation.insert(site);
-		}
+		triangulation.insertAll(sites);
 		
 	}
 	
@@ -0,0 +1,96 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Math.*;
+
+import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
+
+/**
+ * a coarse grid of cells, each of which references a triangle
+ * near the cell. Used by the Delaunay triangulations
+ * to start walks close to their destination.
+ *
+ * After all triangles have been added with {@link #addTriangle},
+ * {@link #fillEmptyCells()} needs to be called before using the grid.
+ *
+ * @param <T>  the type used to reference triangles
+ */
+class LocatorGrid<T> {
+
+	/** average number of triangles per cell */
+	private static final int TRIANGLES_PER_CELL = 2;
+
+	private final AxisAlignedBoundingBoxXZ bounds;
+	private final int cellsX;
+	private final int cellsZ;
+	private final Object[] cells;
+
+	/**
+	 * @param bounds         the bounds of the triangulation
+	 * @param triangleCount  the number of triangles, used to choose the cell size
+	 */
+	public LocatorGrid(AxisAlignedBoundingBoxXZ bounds, int triangleCount) {
+
+		this.bounds = bounds;
+
+		int cellCount = max(1, triangleCount / TRIANGLES_PER_CELL);
+
+		cellsX = max(1, (int)round(sqrt(
+				cellCount * bounds.sizeX() / bounds.sizeZ())));
+		cellsZ = max(1, cellCount / cellsX);
+
+		cells = new Object[cellsX * cellsZ];
+
+	}
+
+	/**
+	 * assigns a triangle to the cell containing its centroid,
+	 * unless that cell already has a triangle
+	 */
+	public void addTriangle(T triangle, double centroidX, double centroidZ) {
+
+		int cell = cellIndex(centroidX, centroidZ);
+
+		if (cells[cell] == null) {
+			cells[cell] = triangle;
+		}
+
+	}
+
+	/**
+	 * fills empty cells with triangles from preceding
+	 * or (for leading empty cells) following cells
+	 */
+	public void fillEmptyCells() {
+
+		for (int i = 1; i < cells.length; i++) {
+			if (cells[i] == null) {
+				cells[i] = cells[i - 1];
+			}
+		}
+
+		for (int i = cells.length - 2; i >= 0; i--) {
+			if (cells[i] == null) {
+				cells[i] = cells[i + 1];
+			}
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getNearbyTriangle(double x, double z) {
+		return (T) cells[cellIndex(x, z)];
+	}
+
+	private int cellIndex(double x, double z) {
+
+		int cellX = (int)((x - bounds.minX) / bounds.sizeX() * cellsX);
+		int cellZ = (int)((z - bounds.minZ) / bounds.sizeZ() * cellsZ);
+
+		cellX = max(0, min(cellsX - 1, cellX));
+		cellZ = max(0, min(cellsZ - 1, cellZ));
+
+		return cellZ * cellsX + cellX;
+
+	}
+
+}
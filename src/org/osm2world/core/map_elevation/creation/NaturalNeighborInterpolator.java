@@ -8,11 +8,14 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 
 /**
- * uses natural neighbor interpolation of heights
+ * uses natural neighbor interpolation of heights.
+ * 
+ * Queries do not modify the triangulation,
+ * so they can be made from multiple threads.
  */
-public class NaturalNeighborInterpolator implements TerrainInterpolator {
+public class NaturalNeighborInterpolator extends AbstractTerrainInterpolator {
 
-	private DelaunayTriangulation triangulation;
+	private IndexedDelaunayTriangulation triangulation;
 	
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> sites) {
@@ -20,18 +23,9 @@ public class NaturalNeighborInterpolator implements TerrainInterpolator {
 		AxisAlignedBoundingBoxXZ boundingBox = new AxisAlignedBoundingBoxXZ(sites);
 		boundingBox = boundingBox.pad(100);
 		
-		triangulation = new DelaunayTriangulation(boundingBox);
+		triangulation = new IndexedDelaunayTriangulation(boundingBox, sites.size());
 		
-		int i = 0; //TODO remove
-		int total = sites.size();
-		long startTime = System.currentTimeMillis();
-		
-		for (VectorXYZ site : sites) {
-			if (++i % 1000 == 0) System.out.println("KS: " + i + "/" + total
-					+ " after " + ((System.currentTimeMillis() - startTime) / 1e3));
-			triangulation.insert(site);
-			
-		}
+		triangulation.insertAll(sites);
 		
 	}
 
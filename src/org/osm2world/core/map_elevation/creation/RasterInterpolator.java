@@ -0,0 +1,295 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Math.floor;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osm2world.core.map_data.creation.MapProjection;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * interpolates elevations directly from the raster of {@link SRTMData}.
+ *
+ * Unlike interpolators working with a set of known sites, this does not
+ * create an object for each raster pixel. Instead, query positions are
+ * converted to lat/lon, and the elevation is interpolated from the
+ * surrounding pixels of the SRTM tiles.
+ *
+ * The raster is set with {@link #setSRTMData(SRTMData)}. For other
+ * elevation data, {@link #setKnownSites(Collection)} can be used instead,
+ * which hands the sites to a fallback interpolator working with sites.
+ * Once the data has been set, elevations can be interpolated
+ * by multiple threads.
+ */
+public class RasterInterpolator extends AbstractTerrainInterpolator {
+
+	public static enum Method {
+		/** interpolation between the 4 surrounding pixels */
+		BILINEAR,
+		/** Catmull-Rom interpolation using the 16 surrounding pixels */
+		BICUBIC
+	}
+
+	private final Method method;
+	private final TerrainInterpolator fallbackInterpolator;
+
+	private SRTMData srtmData;
+	private boolean useFallback = false;
+	private MapProjection projection;
+
+	private final ConcurrentMap<Integer, SRTMTile> tiles =
+			new ConcurrentHashMap<Integer, SRTMTile>();
+	private final Set<Integer> missingTiles =
+			Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+	public RasterInterpolator() {
+		this(Method.BICUBIC);
+	}
+
+	public RasterInterpolator(Method method) {
+		this(method, new LeastSquaresInterpolator());
+	}
+
+	/**
+	 * @param fallbackInterpolator  interpolator for known sites set with
+	 *                              {@link #setKnownSites(Collection)}
+	 */
+	public RasterInterpolator(Method method,
+			TerrainInterpolator fallbackInterpolator) {
+		this.method = method;
+		this.fallbackInterpolator = fallbackInterpolator;
+	}
+
+	/**
+	 * returns the interpolator used for sites set with
+	 * {@link #setKnownSites(Collection)}
+	 */
+	public TerrainInterpolator getFallbackInterpolator() {
+		return fallbackInterpolator;
+	}
+
+	/**
+	 * sets the raster data. Must be called before interpolating.
+	 */
+	public void setSRTMData(SRTMData srtmData) {
+		this.srtmData = srtmData;
+		this.projection = srtmData.getProjection();
+		this.useFallback = false;
+		tiles.clear();
+		missingTiles.clear();
+	}
+
+	/**
+	 * sets known sites for elevation data that is not available as a raster.
+	 * Elevations are then interpolated by the fallback interpolator.
+	 */
+	@Override
+	public void setKnownSites(Collection<VectorXYZ> sites) {
+		fallbackInterpolator.setKnownSites(sites);
+		this.srtmData = null;
+		this.projection = null;
+		this.useFallback = true;
+		tiles.clear();
+		missingTiles.clear();
+	}
+
+	@Override
+	public VectorXYZ interpolateEle(VectorXZ pos) {
+		if (useFallback) {
+			return fallbackInterpolator.interpolateEle(pos);
+		} else {
+			return pos.xyz(interpolate(pos));
+		}
+	}
+
+	@Override
+	public void interpolateEles(double[] xz, double[] eles, int start, int end) {
+		if (useFallback) {
+			fallbackInterpolator.interpolateEles(xz, eles, start, end);
+		} else {
+			super.interpolateEles(xz, eles, start, end);
+		}
+	}
+
+	private double interpolate(VectorXZ pos) {
+
+		if (srtmData == null) {
+			throw new IllegalStateException(
+					"neither SRTM data nor known sites have been set");
+		}
+
+		double lat = projection.calcLat(pos);
+		double lon = projection.calcLon(pos);
+
+		int tileLon = (int)floor(lon);
+		int tileLat = (int)floor(lat);
+
+		SRTMTile tile = getTile(tileLon, tileLat);
+
+		if (tile == null) {
+			return 0;
+		}
+
+		/* calculate position in pixels. The first and last rows and columns
+		 * of each tile are on the tile's borders. */
+
+		int pixels = tile.pixels;
+
+		double x = (lon - tileLon) * (pixels - 1);
+		double y = (lat - tileLat) * (pixels - 1);
+
+		int x0 = (int)floor(x);
+		int y0 = (int)floor(y);
+
+		double tx = x - x0;
+		double ty = y - y0;
+
+		double ele = Double.NaN;
+
+		if (method == Method.BICUBIC) {
+			ele = interpolateBicubic(tileLon, tileLat, pixels, x0, y0, tx, ty);
+		}
+
+		if (Double.isNaN(ele)) {
+			ele = interpolateBilinear(tileLon, tileLat, pixels, x0, y0, tx, ty);
+		}
+
+		return ele;
+
+	}
+
+	/**
+	 * bilinear interpolation. Pixels without data are ignored,
+	 * returns 0 if none of the 4 pixels has data.
+	 */
+	private double interpolateBilinear(int tileLon, int tileLat, int pixels,
+			int x0, int y0, double tx, double ty) {
+
+		double eleSum = 0;
+		double weightSum = 0;
+
+		for (int dx = 0; dx <= 1; dx++) {
+			for (int dy = 0; dy <= 1; dy++) {
+
+				double value = getPixel(tileLon, tileLat, pixels, x0 + dx, y0 + dy);
+
+				if (!Double.isNaN(value)) {
+					double weight = (dx == 0 ? 1 - tx : tx) * (dy == 0 ? 1 - ty : ty);
+					eleSum += weight * value;
+					weightSum += weight;
+				}
+
+			}
+		}
+
+		if (weightSum > 0) {
+			return eleSum / weightSum;
+		} else {
+			return 0;
+		}
+
+	}
+
+	/**
+	 * bicubic interpolation.
+	 * Returns NaN if any of the 16 pixels has no data.
+	 */
+	private double interpolateBicubic(int tileLon, int tileLat, int pixels,
+			int x0, int y0, double tx, double ty) {
+
+		double[] column = new double[4];
+		double[] row = new double[4];
+
+		for (int i = 0; i < 4; i++) {
+
+			for (int j = 0; j < 4; j++) {
+				row[j] = getPixel(tileLon, tileLat, pixels, x0 - 1 + j, y0 - 1 + i);
+			}
+
+			column[i] = cubic(row[0], row[1], row[2], row[3], tx);
+
+		}
+
+		return cubic(column[0], column[1], column[2], column[3], ty);
+
+	}
+
+	/**
+	 * Catmull-Rom spline between p1 (t = 0) and p2 (t = 1)
+	 */
+	private static double cubic(double p0, double p1, double p2, double p3,
+			double t) {
+		return p1 + 0.5 * t * (p2 - p0 + t * (2 * p0 - 5 * p1 + 4 * p2 - p3
+				+ t * (3 * (p1 - p2) + p3 - p0)));
+	}
+
+	/**
+	 * returns the value of a pixel. Pixel coordinates outside the tile
+	 * are resolved to the neighboring tiles.
+	 *
+	 * @return  the elevation, or NaN if there is no data for that pixel
+	 */
+	private double getPixel(int tileLon, int tileLat, int pixels, int x, int y) {
+
+		/* adjacent tiles share their border pixels */
+
+		while (x < 0) { tileLon -= 1; x += pixels - 1; }
+		while (x > pixels - 1) { tileLon += 1; x -= pixels - 1; }
+		while (y < 0) { tileLat -= 1; y += pixels - 1; }
+		while (y > pixels - 1) { tileLat += 1; y -= pixels - 1; }
+
+		SRTMTile tile = getTile(tileLon, tileLat);
+
+		if (tile == null || tile.pixels != pixels) {
+			return Double.NaN;
+		}
+
+		short value = tile.getData(x, y);
+
+		if (value == SRTMTile.BLANK_VALUE) {
+			return Double.NaN;
+		} else {
+			return value;
+		}
+
+	}
+
+	/**
+	 * returns the tile with the given south-west corner.
+	 * Tiles are only requested from the {@link SRTMData} once.
+	 *
+	 * @return  the tile; null if it is not available
+	 */
+	private SRTMTile getTile(int tileLon, int tileLat) {
+
+		Integer key = (tileLon + 180) * 180 + (tileLat + 90);
+
+		SRTMTile tile = tiles.get(key);
+
+		if (tile == null && !missingTiles.contains(key)) {
+
+			try {
+				tile = srtmData.getTile(tileLon, tileLat);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			if (tile != null) {
+				tiles.put(key, tile);
+			} else {
+				missingTiles.add(key);
+			}
+
+		}
+
+		return tile;
+
+	}
+
+}
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import org.apache.commons.configuration.Configuration;
 import org.osm2world.core.map_data.creation.MapProjection;
 import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_data.data.MapNode;
@@ -15,20 +16,48 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 
 /**
- * SRTM data for a part of the planet
+ * SRTM data for a part of the planet.
+ * Tiles are loaded through a {@link SRTMTileCache}, which is shared
+ * with other instances unless a different cache is provided.
  */
 public class SRTMData implements TerrainElevationData {
 	
+	/**
+	 * configuration key for the maximum number of tiles
+	 * kept in memory by the shared cache.
+	 * Conversions with different values use different caches.
+	 */
+	public static final String TILE_CACHE_SIZE_KEY = "srtmTileCacheSize";
+	
 	private final File tileDirectory;
 	private final MapProjection projection;
-	private final SRTMTile[][] tiles;
+	private final SRTMTileCache tileCache;
 	
 	public SRTMData(File tileDirectory, MapProjection projection) {
+		this(tileDirectory, projection, SRTMTileCache.getSharedCache());
+	}
+	
+	/**
+	 * uses the shared cache for the size
+	 * from the {@link #TILE_CACHE_SIZE_KEY} value
+	 */
+	public SRTMData(File tileDirectory, MapProjection projection,
+			Configuration config) {
+		this(tileDirectory, projection, SRTMTileCache.getSharedCache(
+				config.getInt(TILE_CACHE_SIZE_KEY, SRTMTileCache.DEFAULT_MAX_TILES)));
+	}
+	
+	SRTMData(File tileDirectory, MapProjection projection,
+			SRTMTileCache tileCache) {
 		this.tileDirectory = tileDirectory;
 		this.projection = projection;
-		this.tiles = new SRTMTile[360][180];
+		this.tileCache = tileCache;
 	}
 		
+	MapProjection getProjection() {
+		return projection;
+	}
+	
 	@Override
 	public Collection<VectorXYZ> getSites(double minLon, double minLat,
 			double maxLon, double maxLat) throws IOException {
@@ -43,9 +72,7 @@ public class SRTMData implements TerrainElevationData {
 		for (int lon = minLonInt; lon < maxLonInt; lon++) {
 			for (int lat = minLatInt; lat < maxLatInt; lat++) {
 				
-				loadTileIfNecessary(lon, lat);
-				
-				addTileSites(result, lon, lat,
+				addTileSites(result, getTile(lon, lat), lon, lat,
 						minLon, minLat, maxLon, maxLat);
 				
 			}
@@ -102,66 +129,67 @@ public class SRTMData implements TerrainElevationData {
 		
 	}
 
-	private void loadTileIfNecessary(int lon, int lat) throws IOException {
+	/**
+	 * returns the tile with the given south-west corner
+	 * 
+	 * @return  the tile; null if there is no file for the tile
+	 */
+	SRTMTile getTile(int lon, int lat) throws IOException {
 		
-		if (getTile(lon, lat) == null) {
-			
-			String fileName = tileDirectory.getPath() + File.separator;
-			
-			if (lat >= 0) {
-				fileName += String.format("N%02d", lat);
-			} else {
-				fileName += String.format("S%02d", -lat);
-			}
+		String fileName = tileDirectory.getPath() + File.separator;
+		
+		if (lat >= 0) {
+			fileName += String.format("N%02d", lat);
+		} else {
+			fileName += String.format("S%02d", -lat);
+		}
 
-			if (lon >= 0) {
-				fileName += String.format("E%03d", lon);
-			} else {
-				fileName += String.format("W%03d", -lon);
-			}
-			
-			fileName += ".hgt";
-			
-			File file = new File(fileName);
-			
-			if (file.exists()) {
-				setTile(lon, lat, new SRTMTile(file));
-			} else {
-				System.err.println("warning: missing SRTM tile " + file.getName());
-			}
-			
+		if (lon >= 0) {
+			fileName += String.format("E%03d", lon);
+		} else {
+			fileName += String.format("W%03d", -lon);
+		}
+		
+		fileName += ".hgt";
+		
+		File file = new File(fileName);
+		
+		SRTMTile tile = tileCache.getTile(file);
+		
+		if (tile == null) {
+			System.err.println("warning: missing SRTM tile " + file.getName());
 		}
 		
+		return tile;
+		
 	}
 	
 	private void addTileSites(Collection<VectorXYZ> result,
-			int tileLon, int tileLat,
+			SRTMTile tile, int tileLon, int tileLat,
 			double minLon, double minLat, double maxLon, double maxLat) {
 		
-		SRTMTile tile = getTile(tileLon, tileLat);
-		
 		if (tile == null) return;
 		
 		/* add a site for each SRTM pixel (except last line and column,
 		 * which is duplicated in adjacent tiles) */
 		
 		int minX = max(0,
-				(int)ceil(SRTMTile.PIXELS * (minLon - tileLon)));
-		int maxX = min(SRTMTile.PIXELS - 1,
-				(int)floor(SRTMTile.PIXELS * (maxLon - tileLon)));
+				(int)ceil(tile.pixels * (minLon - tileLon)));
+		int maxX = min(tile.pixels - 1,
+				(int)floor(tile.pixels * (maxLon - tileLon)));
 
 		int minY = max(0,
-				(int)ceil(SRTMTile.PIXELS * (minLat - tileLat)));
-		int maxY = min(SRTMTile.PIXELS - 1,
-				(int)floor(SRTMTile.PIXELS * (maxLat - tileLat)));
+				(int)ceil(tile.pixels * (minLat - tileLat)));
+		int maxY = min(tile.pixels - 1,
+				(int)floor(tile.pixels * (maxLat - tileLat)));
 		
 		for (int x = minX; x < maxX; x++) {
 			for (int y = minY; y < maxY; y++) {
 				
 				short value = tile.getData(x, y);
 				
-				double lat = tileLat + 1.0 / SRTMTile.PIXELS * (y + 0.5);
-				double lon = tileLon + 1.0 / SRTMTile.PIXELS * (x + 0.5);
+				double lat = tileLat + 1.0 / tile.pixels * (y + 0.5);
+				double lon = tileLon + 1.0 / tile.pixels * (x + 0.5);
 				
 				VectorXZ pos = projection.calcPos(lat, lon);
 				
@@ -175,12 +203,4 @@ public class SRTMData implements TerrainElevationData {
 				
 	}
 	
-	private SRTMTile getTile(int tileLon, int tileLat) {
-		return tiles[tileLon+180][tileLat+90];
-	}
-	
-	private void setTile(int tileLon, int tileLat, SRTMTile tile) {
-		tiles[tileLon+180][tileLat+90] = tile;
-	}
-	
 }
@@ -1,28 +1,37 @@
 package org.osm2world.core.map_elevation.creation;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
 /**
  * a single SRTM data tile.
  * 
  * Multiple such tiles are used by {@link SRTMData} to build coverage
- * for larger regions.
+ * for larger regions. The tile's file is memory-mapped read-only,
+ * so the data is paged in by the operating system as needed,
+ * and tiles can be read by multiple threads at the same time.
  */
 class SRTMTile {
 
 	/** value indicating a lack of data */
 	public static final short BLANK_VALUE = -32768;
 	
-	/** length of each dimension of an SRTM tile in pixels */
-	static final int PIXELS = 1201;
-		
+	/** length of each dimension of a 3 arc-second SRTM tile in pixels */
+	static final int PIXELS_3_ARC_SECONDS = 1201;
+	
+	/** length of each dimension of a 1 arc-second SRTM tile in pixels */
+	static final int PIXELS_1_ARC_SECOND = 3601;
+	
 	public final File file;
+	
+	/** length of each dimension of this tile in pixels */
+	public final int pixels;
+	
 	private final ShortBuffer data;
 	
 	public SRTMTile(File file) throws IOException {
@@ -30,28 +39,44 @@ class SRTMTile {
 		this.file = file;
 		
 		data = loadDataFromFile(file);
-				
+		
+		pixels = getPixels(file, data.capacity());
+		
 	}
 
 	private static ShortBuffer loadDataFromFile(File file) throws IOException {
 
-		FileInputStream fis = new FileInputStream(file);
-		FileChannel fc = fis.getChannel();
-		ByteBuffer bb = ByteBuffer.allocateDirect((int) fc.size());
-		while (bb.remaining() > 0) fc.read(bb);
-		fc.close();
-		fis.close();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		
+		try {
+			
+			FileChannel fc = raf.getChannel();
+			
+			// the mapping remains valid after the channel has been closed
+			return fc.map(MapMode.READ_ONLY, 0, fc.size())
+					.order(ByteOrder.BIG_ENDIAN).asShortBuffer();
+			
+		} finally {
+			raf.close();
+		}
 		
-		bb.flip();
+	}
+	
+	private static int getPixels(File file, int values) throws IOException {
 		
-		// choose the right endianness
-		return bb.order(ByteOrder.BIG_ENDIAN).asShortBuffer();
+		if (values == PIXELS_3_ARC_SECONDS * PIXELS_3_ARC_SECONDS) {
+			return PIXELS_3_ARC_SECONDS;
+		} else if (values == PIXELS_1_ARC_SECOND * PIXELS_1_ARC_SECOND) {
+			return PIXELS_1_ARC_SECOND;
+		} else {
+			throw new IOException("unexpected size of SRTM tile " + file);
+		}
 		
 	}
 	
 	public final short getData(int x, int y) {
-		assert 0 <= x && x < PIXELS && 0 <= y && y < PIXELS;
-		return data.get((1200 - y) * 1201 + x);
+		assert 0 <= x && x < pixels && 0 <= y && y < pixels;
+		return data.get((pixels - 1 - y) * pixels + x);
 	}
 	
 	@Override
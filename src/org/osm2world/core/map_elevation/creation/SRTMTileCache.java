@@ -0,0 +1,209 @@
+package org.osm2world.core.map_elevation.creation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * cache for {@link SRTMTile}s which can be shared across conversions.
+ * 
+ * Keeps the most recently used tiles and evicts the least recently used
+ * ones once a maximum number of tiles is exceeded. Evicted tiles remain
+ * usable by anyone still holding a reference to them.
+ * 
+ * All methods are thread-safe. Files are mapped outside of the cache's lock,
+ * so a thread loading a tile only blocks other threads requesting
+ * the same tile.
+ */
+class SRTMTileCache {
+	
+	/** default maximum number of tiles kept by the shared cache */
+	static final int DEFAULT_MAX_TILES = 16;
+	
+	/** process-wide caches, one for each maximum number of tiles */
+	private static final Map<Integer, SRTMTileCache> SHARED_CACHES =
+			new HashMap<Integer, SRTMTileCache>();
+	
+	/**
+	 * returns the process-wide cache with the default size
+	 */
+	static SRTMTileCache getSharedCache() {
+		return getSharedCache(DEFAULT_MAX_TILES);
+	}
+	
+	/**
+	 * returns the process-wide cache for a maximum number of tiles.
+	 * Conversions asking for different sizes get different caches,
+	 * so they cannot change each other's limit or evict each other's tiles.
+	 * 
+	 * @param maxTiles  maximum number of tiles kept; > 0
+	 */
+	static SRTMTileCache getSharedCache(int maxTiles) {
+		
+		checkMaxTiles(maxTiles);
+		
+		synchronized (SHARED_CACHES) {
+			
+			SRTMTileCache cache = SHARED_CACHES.get(maxTiles);
+			
+			if (cache == null) {
+				cache = new SRTMTileCache(maxTiles);
+				SHARED_CACHES.put(maxTiles, cache);
+			}
+			
+			return cache;
+			
+		}
+		
+	}
+	
+	private int maxTiles;
+	
+	private final Map<File, Future<SRTMTile>> tiles;
+	
+	/**
+	 * @param maxTiles  maximum number of tiles kept; > 0
+	 */
+	SRTMTileCache(int maxTiles) {
+		
+		checkMaxTiles(maxTiles);
+		
+		this.maxTiles = maxTiles;
+		
+		tiles = new LinkedHashMap<File, Future<SRTMTile>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<File, Future<SRTMTile>> eldest) {
+				return size() > SRTMTileCache.this.maxTiles;
+			}
+		};
+		
+	}
+	
+	/**
+	 * changes the maximum number of tiles kept,
+	 * evicting the least recently used tiles if necessary
+	 * 
+	 * @param maxTiles  maximum number of tiles kept; > 0
+	 */
+	synchronized void setMaxTiles(int maxTiles) {
+		
+		checkMaxTiles(maxTiles);
+		
+		this.maxTiles = maxTiles;
+		
+		Iterator<File> iterator = tiles.keySet().iterator();
+		
+		while (tiles.size() > maxTiles) {
+			iterator.next();
+			iterator.remove();
+		}
+		
+	}
+	
+	private static void checkMaxTiles(int maxTiles) {
+		if (maxTiles <= 0) {
+			throw new IllegalArgumentException("maxTiles must be positive");
+		}
+	}
+	
+	/**
+	 * returns the tile for a file, loading it if it is not in the cache
+	 * 
+	 * @return  the tile; null if the file does not exist
+	 */
+	SRTMTile getTile(File file) throws IOException {
+		
+		final File tileFile = file.getAbsoluteFile();
+		
+		/* get the tile's future, or add a new one */
+		
+		Future<SRTMTile> future;
+		FutureTask<SRTMTile> newTask = null;
+		
+		synchronized (this) {
+			
+			future = tiles.get(tileFile);
+			
+			if (future == null) {
+				
+				newTask = new FutureTask<SRTMTile>(new Callable<SRTMTile>() {
+					@Override public SRTMTile call() throws IOException {
+						return tileFile.exists() ? new SRTMTile(tileFile) : null;
+					}
+				});
+				
+				future = newTask;
+				tiles.put(tileFile, future);
+				
+			}
+			
+		}
+		
+		/* load the tile if this thread has added the future */
+		
+		if (newTask != null) {
+			newTask.run();
+		}
+		
+		/* wait for the tile */
+		
+		try {
+			
+			SRTMTile tile = future.get();
+			
+			if (tile == null) {
+				remove(tileFile, future);
+			}
+			
+			return tile;
+			
+		} catch (InterruptedException e) {
+			
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while loading " + tileFile);
+			
+		} catch (ExecutionException e) {
+			
+			remove(tileFile, future);
+			
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			} else {
+				throw new IOException(e.getCause());
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * removes a failed or missing tile, so that later requests try again.
+	 * Does nothing if the entry has since been replaced.
+	 */
+	private synchronized void remove(File file, Future<SRTMTile> future) {
+		if (tiles.get(file) == future) {
+			tiles.remove(file);
+		}
+	}
+	
+	/**
+	 * returns the number of tiles currently in the cache
+	 */
+	synchronized int size() {
+		return tiles.size();
+	}
+	
+}
@@ -1,17 +1,16 @@
 package org.osm2world.core.map_elevation.creation;
 
-import static java.util.Arrays.asList;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.math.VectorXZ;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 
 /**
  * enforcer implementation that ignores many of the constraints,
@@ -26,8 +25,16 @@ public final class SimpleEleConstraintEnforcer implements EleConstraintEnforcer
 	private Collection<EleConnector> connectors = new ArrayList<EleConnector>();
 	
 	/**
-	 * associates each EleConnector with the {@link StiffConnectorSet}
-	 * it is part of (if any)
+	 * index of all connectors by position. Only connectors at the same
+	 * position can be connected, so this avoids comparing each connector
+	 * with all other connectors.
+	 */
+	private ListMultimap<VectorXZ, EleConnector> connectorPositionMap =
+			ArrayListMultimap.create();
+	
+	/**
+	 * associates each EleConnector with its node in the
+	 * {@link StiffConnectorSet} forest (if any)
 	 */
 	private Map<EleConnector, StiffConnectorSet> stiffSetMap =
 			new HashMap<EleConnector, StiffConnectorSet>();
@@ -36,91 +43,63 @@ public final class SimpleEleConstraintEnforcer implements EleConstraintEnforcer
 	public void addConnectors(Iterable<EleConnector> newConnectors) {
 		
 		for (EleConnector c : newConnectors) {
+			
 			connectors.add(c);
-		}
-		
-		/* connect connectors */
-		
-		for (EleConnector c1 : newConnectors) {
-			for (EleConnector c2 : connectors) {
-				
-				if (c1 != c2 && c1.connectsTo(c2)) {
-					requireSameEle(c1, c2);
+			
+			/* connect to previously added connectors at the same position */
+			
+			List<EleConnector> connectorsAtPos = connectorPositionMap.get(c.pos);
+			
+			for (EleConnector other : connectorsAtPos) {
+				if (c.connectsTo(other)) {
+					requireSameEle(c, other);
 				}
-				
 			}
+			
+			connectorsAtPos.add(c);
+			
 		}
 		
 	}
 	
 	@Override
 	public void requireSameEle(EleConnector c1, EleConnector c2) {
-		
-		//SUGGEST (performance): a special case implementation would be faster
-		
-		requireSameEle(asList(c1, c2));
-		
+		getStiffSet(c1).union(getStiffSet(c2));
 	}
 	
 	@Override
 	public void requireSameEle(Iterable<EleConnector> cs) {
 		
-		/* find stiff sets containing any of the affected connectors */
-		
-		Set<EleConnector> looseConnectors = new HashSet<EleConnector>();
-		Set<StiffConnectorSet> existingStiffSets = new HashSet<StiffConnectorSet>();
+		StiffConnectorSet commonStiffSet = null;
 		
 		for (EleConnector c : cs) {
 			
-			StiffConnectorSet stiffSet = stiffSetMap.get(c);
+			StiffConnectorSet stiffSet = getStiffSet(c);
 			
-			if (stiffSet != null) {
-				existingStiffSets.add(stiffSet);
+			if (commonStiffSet == null) {
+				commonStiffSet = stiffSet;
 			} else {
-				looseConnectors.add(c);
+				commonStiffSet = commonStiffSet.union(stiffSet);
 			}
 			
 		}
 		
-		/* return if the connectors are already in a set together */
-		
-		if (existingStiffSets.size() == 1 && looseConnectors.isEmpty()) return;
-		
-		/* merge existing sets (if any) into a single set */
+	}
+	
+	/**
+	 * returns the {@link StiffConnectorSet} node for a connector,
+	 * creating a new set containing only that connector if necessary
+	 */
+	private StiffConnectorSet getStiffSet(EleConnector c) {
 		
-		StiffConnectorSet commonStiffSet = null;
+		StiffConnectorSet stiffSet = stiffSetMap.get(c);
 		
-		if (existingStiffSets.isEmpty()) {
-			commonStiffSet = new StiffConnectorSet();
-		} else {
-			
-			for (StiffConnectorSet stiffSet : existingStiffSets) {
-				
-				if (commonStiffSet == null) {
-					commonStiffSet = stiffSet;
-				} else {
-					
-					for (EleConnector c : stiffSet) {
-						stiffSetMap.put(c, commonStiffSet);
-					}
-					
-					commonStiffSet.mergeFrom(stiffSet);
-					
-				}
-				
-			}
-			
+		if (stiffSet == null) {
+			stiffSet = new StiffConnectorSet();
+			stiffSetMap.put(c, stiffSet);
 		}
 		
-		/* add remaining (loose) connectors into the common set */
-		
-		for (EleConnector c : looseConnectors) {
-			
-			commonStiffSet.add(c);
-			
-			stiffSetMap.put(c, commonStiffSet);
-			
-		}
+		return stiffSet;
 		
 	}
 	
@@ -157,19 +136,17 @@ public final class SimpleEleConstraintEnforcer implements EleConstraintEnforcer
 		//TODO what for stiff sets above the ground?
 		
 		for (StiffConnectorSet stiffSet : stiffSetMap.values()) {
-			
-			double averageEle = 0;
-			
-			for (EleConnector connector : stiffSet) {
-				averageEle += connector.getPosXYZ().y;
-			}
-			
-			averageEle /= stiffSet.size();
-			
-			for (EleConnector connector : stiffSet) {
-				connector.setPosXYZ(connector.pos.xyz(averageEle));
-			}
-			
+			stiffSet.find().eleSum = 0;
+		}
+		
+		for (Map.Entry<EleConnector, StiffConnectorSet> e : stiffSetMap.entrySet()) {
+			e.getValue().find().eleSum += e.getKey().getPosXYZ().y;
+		}
+		
+		for (Map.Entry<EleConnector, StiffConnectorSet> e : stiffSetMap.entrySet()) {
+			StiffConnectorSet stiffSet = e.getValue().find();
+			double averageEle = stiffSet.eleSum / stiffSet.size;
+			e.getKey().setPosXYZ(e.getKey().pos.xyz(averageEle));
 		}
 		
 		/* TODO implement intended algorithm:
@@ -194,41 +171,68 @@ public final class SimpleEleConstraintEnforcer implements EleConstraintEnforcer
 	/**
 	 * a set of connectors that are required to have the same elevation
 	 * TODO or a precise vertical offset
+	 * 
+	 * Sets are represented as a union-find forest: Each connector has its own
+	 * node, and the nodes of connectors in the same set share the same root.
+	 * Only the root's fields describe the set.
 	 */
-	private static class StiffConnectorSet implements Iterable<EleConnector> {
+	private static class StiffConnectorSet {
+		
+		private StiffConnectorSet parent = this;
 		
-		//TODO maybe look for a more efficient set implementation
-		private Set<EleConnector> connectors = new HashSet<EleConnector>();
+		/** number of connectors in the set; only valid for the root */
+		private int size = 1;
+		
+		/** sum of the connectors' elevations, used during enforcement */
+		private double eleSum;
 		
 		/**
-		 * adds a connector to this set, requiring it to be at the set's
-		 * reference elevation
+		 * returns the root node of this set, shortening the path to it
 		 */
-		public void add(EleConnector connector) {
-			connectors.add(connector);
+		public StiffConnectorSet find() {
+			
+			StiffConnectorSet root = this;
+			
+			while (root.parent != root) {
+				root = root.parent;
+			}
+			
+			StiffConnectorSet node = this;
+			
+			while (node != root) {
+				StiffConnectorSet next = node.parent;
+				node.parent = root;
+				node = next;
+			}
+			
+			return root;
+			
 		}
 		
 		/**
-		 * combines this set with another, and makes the other set unusable.
-		 * This set will contain all {@link EleConnector}s from the other set
-		 * afterwards.
+		 * combines this set with another.
+		 * The smaller set is attached to the larger one.
+		 * 
+		 * @return  the root of the combined set
 		 */
-		public void mergeFrom(StiffConnectorSet otherSet) {
+		public StiffConnectorSet union(StiffConnectorSet otherSet) {
 			
-			connectors.addAll(otherSet.connectors);
+			StiffConnectorSet root = find();
+			StiffConnectorSet otherRoot = otherSet.find();
 			
-			// make sure that the other set cannot be used anymore
-			otherSet.connectors = null;
+			if (root == otherRoot) return root;
+			
+			if (root.size < otherRoot.size) {
+				StiffConnectorSet temp = root;
+				root = otherRoot;
+				otherRoot = temp;
+			}
+			
+			otherRoot.parent = root;
+			root.size += otherRoot.size;
+			
+			return root;
 			
-		}
-		
-		public double size() {
-			return connectors.size();
-		}
-		
-		@Override
-		public Iterator<EleConnector> iterator() {
-			return connectors.iterator();
 		}
 		
 	}
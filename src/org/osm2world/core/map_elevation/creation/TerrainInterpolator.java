@@ -6,7 +6,10 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 
 /**
- * strategy for elevation interpolation from a set of known points
+ * strategy for elevation interpolation from a set of known points.
+ * 
+ * Once the known sites have been set, implementations must allow
+ * multiple threads to interpolate elevations at the same time.
  */
 public interface TerrainInterpolator {
 
@@ -14,4 +17,14 @@ public interface TerrainInterpolator {
 	
 	VectorXYZ interpolateEle(VectorXZ pos);
 	
+	/**
+	 * interpolates the elevations of a range of positions at once.
+	 * 
+	 * @param xz     coordinates of the positions as x0, z0, x1, z1, ...
+	 * @param eles   receives the elevation for position i at index i
+	 * @param start  index of the first position to interpolate
+	 * @param end    index after the last position to interpolate
+	 */
+	void interpolateEles(double[] xz, double[] eles, int start, int end);
+	
 }
@@ -9,6 +9,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
+import org.osm2world.core.math.datastructures.ScanlinePolygonIndex;
+
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.LineSegment;
 
@@ -497,6 +499,8 @@ public final class GeometryUtil {
 	 * depending on density. In each of the boxes, POINTS_PER_BOX pseudo-random
 	 * positions will be calculated. If a position is far enough from previous
 	 * ones and not inside a hole, the position will be contained in the result.
+	 * Boxes which are not touched by the polygon's outline are either filled
+	 * or skipped without testing each position.
 	 * 
 	 * @param seed                a seed for random number generation
 	 * @param polygonWithHolesXZ  polygon on which the points should be placed
@@ -520,8 +524,16 @@ public final class GeometryUtil {
 		
 		double boxSize = sqrt(100 / density);
 		
-		for (int boxZ = 0; boxZ <= (int)(outerBox.sizeZ() / boxSize); ++boxZ) {
-			for (int boxX = 0; boxX <= (int)(outerBox.sizeX() / boxSize); ++boxX) {
+		int boxCountX = (int)(outerBox.sizeX() / boxSize) + 1;
+		int boxCountZ = (int)(outerBox.sizeZ() / boxSize) + 1;
+		
+		/* the index's rows match the rows of boxes */
+		
+		ScanlinePolygonIndex polygonIndex = new ScanlinePolygonIndex(
+				polygonWithHolesXZ, outerBox.minZ, boxSize, boxCountZ);
+		
+		for (int boxZ = 0; boxZ < boxCountZ; ++boxZ) {
+			for (int boxX = 0; boxX < boxCountX; ++boxX) {
 				
 				AxisAlignedBoundingBoxXZ box = new AxisAlignedBoundingBoxXZ(
 						outerBox.minX + boxSize * boxX,
@@ -533,9 +545,23 @@ public final class GeometryUtil {
 					continue;
 				}
 				
-				if (!polygonWithHolesXZ.contains(box.polygonXZ())
-						&& !polygonWithHolesXZ.intersects(box.polygonXZ())) {
-					continue;
+				/* boxes not touched by any of the polygon's edges are either
+				 * completely inside or outside, so they only need one test.
+				 * Other boxes use the same tests as a full polygon check. */
+				
+				boolean boxOnEdge = polygonIndex.touchesEdges(
+						box.minX, box.minZ, box.maxX, box.maxZ);
+				
+				if (boxOnEdge) {
+					if (!polygonWithHolesXZ.contains(box.polygonXZ())
+							&& !polygonWithHolesXZ.intersects(box.polygonXZ())) {
+						continue;
+					}
+				} else {
+					VectorXZ center = box.center();
+					if (!polygonIndex.contains(center.x, center.z)) {
+						continue;
+					}
 				}
 				
 				for (int i = 0; i < POINTS_PER_BOX; ++i) {
@@ -543,13 +569,11 @@ public final class GeometryUtil {
 					double x = box.minX + boxSize * rand.nextDouble();
 					double z = box.minZ + boxSize * rand.nextDouble();
 					
-					VectorXZ v = new VectorXZ(x, z);
-					
-					if (polygonWithHolesXZ.contains(v)) {
+					if (!boxOnEdge || polygonIndex.contains(x, z)) {
 						
 						//TODO: check minimumDistance
 						
-						result.add(v);
+						result.add(new VectorXZ(x, z));
 						
 					}
 					
@@ -144,12 +144,13 @@ public class VectorXZ implements Vector3D {
 	
 	@Override
 	public int hashCode() {
+		// adding 0.0 turns -0.0 into 0.0, which equals() treats as equal
 		final int prime = 31;
 		int result = 1;
 		long temp;
-		temp = Double.doubleToLongBits(x);
+		temp = Double.doubleToLongBits(x + 0.0);
 		result = prime * result + (int) (temp ^ (temp >>> 32));
-		temp = Double.doubleToLongBits(z);
+		temp = Double.doubleToLongBits(z + 0.0);
 		result = prime * result + (int) (temp ^ (temp >>> 32));
 		return result;
 	}
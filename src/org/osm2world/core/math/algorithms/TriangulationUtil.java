@@ -1,8 +1,11 @@
 package org.osm2world.core.math.algorithms;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.osm2world.core.math.InvalidGeometryException;
 import org.osm2world.core.math.LineSegmentXZ;
@@ -10,59 +13,115 @@ import org.osm2world.core.math.PolygonWithHolesXZ;
 import org.osm2world.core.math.SimplePolygonXZ;
 import org.osm2world.core.math.TriangleXZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.util.exception.TriangulationException;
+import org.osm2world.core.util.metrics.Metrics;
 
 import com.vividsolutions.jts.triangulate.ConstraintEnforcementException;
 
 /**
- * triangulation utility class that uses {@link EarClippingTriangulationUtil},
- * and, as a fallback, {@link JTSTriangulationUtil}
+ * triangulation utility class that chooses between
+ * {@link EarClippingTriangulationUtil}, {@link Poly2TriTriangulationUtil}
+ * and {@link JTSTriangulationUtil} based on the input.
+ * 
+ * Ear clipping is the fastest algorithm for very small polygons,
+ * but its running time grows quickly with the number of vertices.
+ * Poly2Tri is fast for larger polygons and supports unconnected points,
+ * but fails for some inputs. JTS is the slowest algorithm, but it is the
+ * most robust one and the only one supporting segments. It is therefore
+ * used as the fallback if the other algorithms fail.
+ * 
+ * Inputs that are known to make an algorithm fail are checked for in
+ * advance, so that time is not wasted on doomed attempts.
+ * Poly2Tri failures cannot be predicted cheaply, but are rare.
+ * 
+ * For each algorithm, {@link Metrics} counters record how often it
+ * produced the result (e.g. "triangulation.poly2Tri"), how often it has
+ * failed or has been skipped due to the input checks (".failed" and
+ * ".skipped" suffixes), and the time spent on it (".nanos" suffix).
  */
 public class TriangulationUtil {
 	
+	static enum Algorithm {
+		
+		EAR_CLIPPING("earClipping"), POLY2TRI("poly2Tri"), JTS("jts");
+		
+		private final String counterName;
+		
+		private Algorithm(String counterName) {
+			this.counterName = "triangulation." + counterName;
+		}
+		
+	}
+	
 	/**
-	 * triangulates a two-dimensional polygon with holes and unconnected points.
+	 * maximum number of vertices (including holes' vertices)
+	 * for which ear clipping is used
+	 */
+	static final int EAR_CLIPPING_MAX_VERTICES = 12;
+	
+	/**
+	 * triangulates a two-dimensional polygon with holes,
+	 * unconnected points and segments that must be triangle edges.
+	 * 
+	 * @return  the triangles; empty if all algorithms have failed
 	 */
 	public static final List<TriangleXZ> triangulate(
 			SimplePolygonXZ outerPolygon,
 			Collection<SimplePolygonXZ> holes,
+			Collection<LineSegmentXZ> segments,
 			Collection<VectorXZ> points) {
 		
-		if (points.isEmpty() && outerPolygon.size() <= 100) {
+		Metrics metrics = Metrics.current();
+		
+		for (Algorithm algorithm : chooseAlgorithms(
+				outerPolygon, holes, segments, points, metrics)) {
+			
+			long startNanos = System.nanoTime();
 			
 			try {
 				
-				return EarClippingTriangulationUtil.triangulate(outerPolygon, holes);
+				List<TriangleXZ> result = triangulate(algorithm,
+						outerPolygon, holes, segments, points);
 				
-			} catch (InvalidGeometryException e) {
+				metrics.count(algorithm.counterName + ".nanos",
+						System.nanoTime() - startNanos);
+				metrics.count(algorithm.counterName);
+				metrics.count("triangulation.triangles", result.size());
 				
-				//TODO (error handling): log failed triangulations properly (as info)
-				
-				// e.printStackTrace();
-				// System.err.println("outer: " + outerPolygon);
-				// System.err.println("holes: " + holes);
-				// System.err.println("using JTS triangulation instead");
+				return result;
 				
+			} catch (InvalidGeometryException e) {
+				// try the next algorithm
+			} catch (TriangulationException e) {
+				// try the next algorithm
+			} catch (ConstraintEnforcementException e) {
+				// try the next algorithm
 			}
 			
+			metrics.count(algorithm.counterName + ".nanos",
+					System.nanoTime() - startNanos);
+			metrics.count(algorithm.counterName + ".failed");
+			
 		}
 		
-		/* use JTS if there are unconnected points, or as a fallback */
+		System.err.println("triangulation failed, returning empty list");
+		System.err.println("outer: " + outerPolygon);
+		System.err.println("holes: " + holes);
 		
-		try {
-
-			return JTSTriangulationUtil.triangulate(outerPolygon, holes,
-					Collections.<LineSegmentXZ>emptyList(), points);
-			
-		} catch (ConstraintEnforcementException e2) {
-			
-			e2.printStackTrace();
-			System.err.println("outer: " + outerPolygon);
-			System.err.println("holes: " + holes);
-			System.err.println("JTS triangulation failed, returning empty list");
-			
-			return Collections.emptyList();
-			
-		}
+		return Collections.emptyList();
+		
+	}
+	
+	/**
+	 * triangulates a two-dimensional polygon with holes and unconnected points.
+	 */
+	public static final List<TriangleXZ> triangulate(
+			SimplePolygonXZ outerPolygon,
+			Collection<SimplePolygonXZ> holes,
+			Collection<VectorXZ> points) {
+		
+		return triangulate(outerPolygon, holes,
+				Collections.<LineSegmentXZ>emptyList(), points);
 		
 	}
 	
@@ -98,5 +157,99 @@ public class TriangulationUtil {
 		return triangulate(polygon.getOuter(), polygon.getHoles());
 		
 	}
+	
+	/**
+	 * returns the algorithms to try for an input, in order of preference.
+	 * The list always ends with {@link Algorithm#JTS}.
+	 */
+	static List<Algorithm> chooseAlgorithms(
+			SimplePolygonXZ outerPolygon,
+			Collection<SimplePolygonXZ> holes,
+			Collection<LineSegmentXZ> segments,
+			Collection<VectorXZ> points,
+			Metrics metrics) {
+		
+		List<Algorithm> result = new ArrayList<Algorithm>(3);
+		
+		/* only JTS supports segments */
+		
+		if (segments.isEmpty()) {
+			
+			int vertexCount = outerPolygon.size();
+			for (SimplePolygonXZ hole : holes) {
+				vertexCount += hole.size();
+			}
+			
+			if (points.isEmpty() && vertexCount <= EAR_CLIPPING_MAX_VERTICES) {
+				
+				/* ear clipping fails for outlines touching themselves or holes */
+				
+				if (!hasSharedVertices(outerPolygon, holes)) {
+					result.add(Algorithm.EAR_CLIPPING);
+				} else {
+					metrics.count(Algorithm.EAR_CLIPPING.counterName + ".skipped");
+				}
+				
+			}
+			
+			result.add(Algorithm.POLY2TRI);
+			
+		}
+		
+		result.add(Algorithm.JTS);
+		
+		return result;
+		
+	}
+	
+	private static final List<TriangleXZ> triangulate(Algorithm algorithm,
+			SimplePolygonXZ outerPolygon,
+			Collection<SimplePolygonXZ> holes,
+			Collection<LineSegmentXZ> segments,
+			Collection<VectorXZ> points) throws TriangulationException {
+		
+		switch (algorithm) {
+		
+		case EAR_CLIPPING:
+			return EarClippingTriangulationUtil.triangulate(outerPolygon, holes);
+		
+		case POLY2TRI:
+			return Poly2TriTriangulationUtil.triangulate(
+					outerPolygon, holes, segments, points);
+		
+		default:
+			return JTSTriangulationUtil.triangulate(
+					outerPolygon, holes, segments, points);
+			
+		}
+		
+	}
+	
+	/**
+	 * checks whether any vertex is used more than once,
+	 * either within a polygon or by more than one polygon
+	 */
+	private static final boolean hasSharedVertices(
+			SimplePolygonXZ outerPolygon, Collection<SimplePolygonXZ> holes) {
+		
+		Set<VectorXZ> vertices = new HashSet<VectorXZ>();
+		
+		for (VectorXZ v : outerPolygon.getVertices()) {
+			if (!vertices.add(v)) {
+				return true;
+			}
+		}
+		
+		for (SimplePolygonXZ hole : holes) {
+			for (VectorXZ v : hole.getVertices()) {
+				if (!vertices.add(v)) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+		
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,335 @@
+package org.osm2world.core.math.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * immutable k-d tree for nearest neighbor and radius queries
+ * on points in the XZ plane.
+ *
+ * The points are stored in packed primitive arrays, ordered so that each
+ * subtree occupies a contiguous range. The tree structure is implicit:
+ * The median element of a range is the split point, the elements before
+ * and after it form the two subtrees. The split dimension is chosen
+ * based on the extent of the range, so the tree adapts to varying
+ * point density.
+ *
+ * Queries do not allocate memory if a {@link Neighbors} buffer is reused.
+ * Multiple threads can query the tree at the same time,
+ * as long as each of them uses its own buffer.
+ */
+public class KDTreeXZ {
+
+	/** ranges of at most this size are searched linearly */
+	private static final int LEAF_SIZE = 8;
+
+	/** coordinates in tree order, packed as x0, z0, x1, z1, ... */
+	private final double[] xz;
+
+	/** the original index of each point in tree order */
+	private final int[] indices;
+
+	/** split dimension (true for x) of each inner node, by median position */
+	private final boolean[] splitX;
+
+	private final int size;
+
+	/**
+	 * builds the tree. The array is copied and not modified.
+	 *
+	 * @param xz  point coordinates, packed as x0, z0, x1, z1, ...
+	 *            Indices in query results refer to the points' order here.
+	 */
+	public KDTreeXZ(double[] xz) {
+
+		if (xz.length % 2 != 0) {
+			throw new IllegalArgumentException(
+					"coordinate array must have an even length");
+		}
+
+		this.size = xz.length / 2;
+		this.xz = Arrays.copyOf(xz, xz.length);
+		this.indices = new int[size];
+		this.splitX = new boolean[size];
+
+		for (int i = 0; i < size; i++) {
+			indices[i] = i;
+		}
+
+		build(0, size);
+
+	}
+
+	/** returns the number of points */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * finds the k points nearest to a position.
+	 * The result is sorted by ascending distance. If the tree contains
+	 * fewer than k points, all points are returned.
+	 *
+	 * @param result  buffer receiving the result; previous content is discarded
+	 */
+	public void findNearest(double x, double z, int k, Neighbors result) {
+
+		result.reset(k, Double.POSITIVE_INFINITY);
+
+		if (k > 0) {
+			search(0, size, x, z, result);
+		}
+
+	}
+
+	/**
+	 * finds all points with a distance less than radius from a position.
+	 * The result is in no particular order.
+	 *
+	 * @param result  buffer receiving the result; previous content is discarded
+	 */
+	public void findWithinRadius(double x, double z, double radius,
+			Neighbors result) {
+
+		result.reset(Integer.MAX_VALUE, radius * radius);
+
+		search(0, size, x, z, result);
+
+	}
+
+	private void search(int start, int end, double x, double z,
+			Neighbors result) {
+
+		if (end - start <= LEAF_SIZE) {
+
+			for (int i = start; i < end; i++) {
+				result.offer(indices[i], distanceSq(i, x, z));
+			}
+
+		} else {
+
+			int mid = (start + end) >>> 1;
+
+			double diff = splitX[mid] ? x - xz[2*mid] : z - xz[2*mid+1];
+
+			result.offer(indices[mid], distanceSq(mid, x, z));
+
+			/* search the side containing the position first,
+			 * then the other side if it can still contain results */
+
+			if (diff < 0) {
+				search(start, mid, x, z, result);
+				if (diff * diff < result.getMaxDistanceSq()) {
+					search(mid + 1, end, x, z, result);
+				}
+			} else {
+				search(mid + 1, end, x, z, result);
+				if (diff * diff < result.getMaxDistanceSq()) {
+					search(start, mid, x, z, result);
+				}
+			}
+
+		}
+
+	}
+
+	private double distanceSq(int i, double x, double z) {
+		double dx = xz[2*i] - x;
+		double dz = xz[2*i+1] - z;
+		return dx * dx + dz * dz;
+	}
+
+	private void build(int start, int end) {
+
+		if (end - start <= LEAF_SIZE) return;
+
+		double minX = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+
+		for (int i = start; i < end; i++) {
+			minX = Math.min(minX, xz[2*i]);
+			maxX = Math.max(maxX, xz[2*i]);
+			minZ = Math.min(minZ, xz[2*i+1]);
+			maxZ = Math.max(maxZ, xz[2*i+1]);
+		}
+
+		boolean x = (maxX - minX) >= (maxZ - minZ);
+
+		int mid = (start + end) >>> 1;
+
+		select(start, end, mid, x ? 0 : 1);
+
+		splitX[mid] = x;
+
+		build(start, mid);
+		build(mid + 1, end);
+
+	}
+
+	/**
+	 * partially sorts a range so that the element at position k is the one
+	 * that would be there if the range was sorted by one dimension,
+	 * with no larger elements before and no smaller elements after it
+	 * (Wirth's selection algorithm, which is robust against duplicates).
+	 *
+	 * @param dim  0 for x, 1 for z
+	 */
+	private void select(int start, int end, int k, int dim) {
+
+		int left = start;
+		int right = end - 1;
+
+		while (left < right) {
+
+			double pivot = xz[2*k + dim];
+
+			int i = left;
+			int j = right;
+
+			do {
+				while (xz[2*i + dim] < pivot) i++;
+				while (pivot < xz[2*j + dim]) j--;
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			} while (i <= j);
+
+			if (j < k) left = i;
+			if (k < i) right = j;
+
+		}
+
+	}
+
+	private void swap(int i, int j) {
+
+		double tempX = xz[2*i];
+		double tempZ = xz[2*i+1];
+		xz[2*i] = xz[2*j];
+		xz[2*i+1] = xz[2*j+1];
+		xz[2*j] = tempX;
+		xz[2*j+1] = tempZ;
+
+		int tempIndex = indices[i];
+		indices[i] = indices[j];
+		indices[j] = tempIndex;
+
+	}
+
+	/**
+	 * reusable buffer for query results.
+	 * Contains the indices of the points and their squared distances
+	 * to the query position.
+	 */
+	public static final class Neighbors {
+
+		private int[] indices;
+		private double[] distancesSq;
+		private int size = 0;
+
+		/** maximum number of results, sorted by distance unless unlimited */
+		private int limit = 0;
+		private double maxDistanceSq = Double.POSITIVE_INFINITY;
+
+		public Neighbors() {
+			this(16);
+		}
+
+		/**
+		 * @param initialCapacity  number of results that can be stored
+		 *                         before the buffer needs to grow
+		 */
+		public Neighbors(int initialCapacity) {
+			indices = new int[Math.max(1, initialCapacity)];
+			distancesSq = new double[indices.length];
+		}
+
+		public int size() {
+			return size;
+		}
+
+		/** returns the index of the i-th result point */
+		public int getIndex(int i) {
+			return indices[i];
+		}
+
+		/** returns the squared distance of the i-th result point */
+		public double getDistanceSq(int i) {
+			return distancesSq[i];
+		}
+
+		/** returns the distance of the i-th result point */
+		public double getDistance(int i) {
+			return Math.sqrt(distancesSq[i]);
+		}
+
+		private void reset(int limit, double maxDistanceSq) {
+
+			this.size = 0;
+			this.limit = limit;
+			this.maxDistanceSq = maxDistanceSq;
+
+			if (limit != Integer.MAX_VALUE && limit > indices.length) {
+				grow(limit);
+			}
+
+		}
+
+		/**
+		 * returns the squared distance a point must be below
+		 * to become part of the result
+		 */
+		private double getMaxDistanceSq() {
+			if (size == limit) {
+				return distancesSq[size - 1];
+			} else {
+				return maxDistanceSq;
+			}
+		}
+
+		private void offer(int index, double distanceSq) {
+
+			if (distanceSq >= getMaxDistanceSq()) return;
+
+			if (limit == Integer.MAX_VALUE) {
+
+				if (size == indices.length) {
+					grow(2 * size);
+				}
+
+				indices[size] = index;
+				distancesSq[size] = distanceSq;
+				size ++;
+
+			} else {
+
+				/* insert into the sorted results, dropping the farthest one if full */
+
+				int i = (size == limit) ? size - 1 : size;
+
+				while (i > 0 && distancesSq[i - 1] > distanceSq) {
+					indices[i] = indices[i - 1];
+					distancesSq[i] = distancesSq[i - 1];
+					i --;
+				}
+
+				indices[i] = index;
+				distancesSq[i] = distanceSq;
+
+				if (size < limit) {
+					size ++;
+				}
+
+			}
+
+		}
+
+		private void grow(int capacity) {
+			indices = Arrays.copyOf(indices, capacity);
+			distancesSq = Arrays.copyOf(distancesSq, capacity);
+		}
+
+	}
+
+}
@@ -0,0 +1,229 @@
+package org.osm2world.core.math.datastructures;
+
+import static java.lang.Math.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.osm2world.core.math.PolygonWithHolesXZ;
+import org.osm2world.core.math.SimplePolygonXZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * speeds up repeated inside tests for a {@link PolygonWithHolesXZ}.
+ *
+ * The polygon's edges are sorted into horizontal rows, so an inside test
+ * only needs to look at the edges within the row of the tested position.
+ * Results of {@link #contains(double, double)} are identical to those of
+ * {@link PolygonWithHolesXZ#contains(VectorXZ)}, including the behavior
+ * for positions on the polygon's boundary.
+ */
+public class ScanlinePolygonIndex {
+
+	/**
+	 * padding of each edge's bounding box. Ensures that rounding cannot
+	 * cause an edge to be missed when looking up a row or area.
+	 */
+	private static final double EPSILON = 1e-6;
+
+	private final double minZ;
+	private final double rowHeight;
+	private final int rowCount;
+
+	/** edges' start and end points, packed as xi, zi, xj, zj */
+	private final double[] edgeCoords;
+
+	/** index of each edge's ring; 0 for the outer ring, then the holes */
+	private final int[] edgeRings;
+
+	/** edge indices for each row, stored consecutively */
+	private final int[] rowEdges;
+
+	/** start of each row's section of {@link #rowEdges}, plus the end */
+	private final int[] rowStarts;
+
+	/**
+	 * @param minZ       lower boundary of the first row
+	 * @param rowHeight  height of each row; should be similar to the
+	 *                   size of the areas that will be tested
+	 * @param rowCount   number of rows; positions outside the rows
+	 *                   are treated as if they were in the nearest row
+	 */
+	public ScanlinePolygonIndex(PolygonWithHolesXZ polygon,
+			double minZ, double rowHeight, int rowCount) {
+
+		this.minZ = minZ;
+		this.rowHeight = rowHeight;
+		this.rowCount = max(1, rowCount);
+
+		/* collect the edges of all rings, outer ring first */
+
+		List<SimplePolygonXZ> rings = new ArrayList<SimplePolygonXZ>();
+		rings.add(polygon.getOuter());
+		rings.addAll(polygon.getHoles());
+
+		int edgeCount = 0;
+
+		for (SimplePolygonXZ ring : rings) {
+			edgeCount += ring.getVertexLoop().size();
+		}
+
+		edgeCoords = new double[4 * edgeCount];
+		edgeRings = new int[edgeCount];
+
+		int e = 0;
+
+		for (int r = 0; r < rings.size(); r++) {
+
+			/* same pairs of vertices as SimplePolygonXZ.contains */
+
+			List<VectorXZ> loop = rings.get(r).getVertexLoop();
+
+			for (int i = 0, j = loop.size() - 1; i < loop.size(); j = i++) {
+				edgeCoords[4*e] = loop.get(i).x;
+				edgeCoords[4*e+1] = loop.get(i).z;
+				edgeCoords[4*e+2] = loop.get(j).x;
+				edgeCoords[4*e+3] = loop.get(j).z;
+				edgeRings[e] = r;
+				e++;
+			}
+
+		}
+
+		/* sort the edges into rows.
+		 * Edges remain sorted by ring within each row. */
+
+		rowStarts = new int[this.rowCount + 1];
+
+		for (e = 0; e < edgeCount; e++) {
+			for (int row = getFirstRow(e); row <= getLastRow(e); row++) {
+				rowStarts[row + 1] ++;
+			}
+		}
+
+		for (int row = 0; row < this.rowCount; row++) {
+			rowStarts[row + 1] += rowStarts[row];
+		}
+
+		rowEdges = new int[rowStarts[this.rowCount]];
+
+		int[] rowFill = new int[this.rowCount];
+
+		for (e = 0; e < edgeCount; e++) {
+			for (int row = getFirstRow(e); row <= getLastRow(e); row++) {
+				rowEdges[rowStarts[row] + rowFill[row]] = e;
+				rowFill[row] ++;
+			}
+		}
+
+	}
+
+	/**
+	 * checks whether a position is inside the polygon and not in a hole
+	 */
+	public boolean contains(double x, double z) {
+
+		int row = rowForZ(z);
+
+		int k = rowStarts[row];
+		int end = rowStarts[row + 1];
+
+		/* outer ring */
+
+		boolean inside = false;
+
+		while (k < end && edgeRings[rowEdges[k]] == 0) {
+			if (crosses(rowEdges[k], x, z)) {
+				inside = !inside;
+			}
+			k++;
+		}
+
+		if (!inside) return false;
+
+		/* holes */
+
+		while (k < end) {
+
+			int ring = edgeRings[rowEdges[k]];
+			boolean insideHole = false;
+
+			while (k < end && edgeRings[rowEdges[k]] == ring) {
+				if (crosses(rowEdges[k], x, z)) {
+					insideHole = !insideHole;
+				}
+				k++;
+			}
+
+			if (insideHole) return false;
+
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * checks whether any of the polygon's edges (including those of holes)
+	 * might touch an axis-aligned rectangle. If this returns false,
+	 * all positions within the rectangle are either inside the polygon
+	 * or outside of it.
+	 */
+	public boolean touchesEdges(double minX, double minZ,
+			double maxX, double maxZ) {
+
+		int firstRow = rowForZ(minZ - EPSILON);
+		int lastRow = rowForZ(maxZ + EPSILON);
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+
+				int e = rowEdges[k];
+
+				double eMinX = min(edgeCoords[4*e], edgeCoords[4*e+2]) - EPSILON;
+				double eMaxX = max(edgeCoords[4*e], edgeCoords[4*e+2]) + EPSILON;
+				double eMinZ = min(edgeCoords[4*e+1], edgeCoords[4*e+3]) - EPSILON;
+				double eMaxZ = max(edgeCoords[4*e+1], edgeCoords[4*e+3]) + EPSILON;
+
+				if (eMinX <= maxX && eMaxX >= minX
+						&& eMinZ <= maxZ && eMaxZ >= minZ) {
+					return true;
+				}
+
+			}
+		}
+
+		return false;
+
+	}
+
+	/**
+	 * the crossing test for one edge, using the same arithmetic as
+	 * {@link SimplePolygonXZ#contains(List, VectorXZ)}
+	 */
+	private boolean crosses(int e, double x, double z) {
+
+		double xi = edgeCoords[4*e];
+		double zi = edgeCoords[4*e+1];
+		double xj = edgeCoords[4*e+2];
+		double zj = edgeCoords[4*e+3];
+
+		return ((zi > z) != (zj > z))
+				&& (x < (xj - xi) * (z - zi) / (zj - zi) + xi);
+
+	}
+
+	private int rowForZ(double z) {
+		int row = (int) floor((z - minZ) / rowHeight);
+		return min(max(row, 0), rowCount - 1);
+	}
+
+	private int getFirstRow(int e) {
+		return rowForZ(min(edgeCoords[4*e+1], edgeCoords[4*e+3]) - EPSILON);
+	}
+
+	private int getLastRow(int e) {
+		return rowForZ(max(edgeCoords[4*e+1], edgeCoords[4*e+3]) + EPSILON);
+	}
+
+}
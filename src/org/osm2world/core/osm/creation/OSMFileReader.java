@@ -15,14 +15,28 @@ import org.osm2world.core.osm.data.OSMData;
  * changed later. This class internally uses Osmosis to read the file.
  * 
  * At its core, this reader combines the capabilities of the {@link OSMFileReader}
- * and the {@link JOSMFileReader}.
+ * and the {@link JOSMFileReader}. Files with a .pbf extension are read
+ * using the {@link PBFFileReader}.
  */
 public class OSMFileReader implements OSMDataReader {
 
 	private final File file;
+	private final int threadCount;
 	
+	/**
+	 * creates a reader which decodes PBF files on the calling thread
+	 */
 	public OSMFileReader(File file) throws FileNotFoundException {
+		this(file, 1);
+	}
+	
+	/**
+	 * @param threadCount  number of threads decoding PBF files,
+	 *                     see {@link PBFFileReader#PBFFileReader(File, int)}
+	 */
+	public OSMFileReader(File file, int threadCount) throws FileNotFoundException {
 		this.file = file;
+		this.threadCount = threadCount;
 		if (!file.exists()) {
 			throw new FileNotFoundException(file.toString());
 		}
@@ -31,6 +45,10 @@ public class OSMFileReader implements OSMDataReader {
 	@Override
 	public OSMData getData() throws IOException {
 		
+		if (PBFFileReader.isPBFFile(file)) {
+			return new PBFFileReader(file, threadCount).getData();
+		}
+		
 		OSMData osmData = null;
 		boolean useJOSMReader = false;
 		
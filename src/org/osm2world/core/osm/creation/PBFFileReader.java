@@ -0,0 +1,381 @@
+package org.osm2world.core.osm.creation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.osm2world.core.osm.data.CompactOSMData;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.util.ParallelIterationUtil;
+
+import crosby.binary.Fileformat.Blob;
+import crosby.binary.Fileformat.BlobHeader;
+import crosby.binary.Osmformat.DenseNodes;
+import crosby.binary.Osmformat.HeaderBBox;
+import crosby.binary.Osmformat.HeaderBlock;
+import crosby.binary.Osmformat.Node;
+import crosby.binary.Osmformat.PrimitiveBlock;
+import crosby.binary.Osmformat.PrimitiveGroup;
+import crosby.binary.Osmformat.Relation;
+import crosby.binary.Osmformat.Way;
+
+/**
+ * DataSource providing information from a single .osm.pbf file.
+ * The file is read during the {@link #getData()} call.
+ *
+ * The file's blobs are decompressed and parsed on multiple threads,
+ * while the decoded blocks are added to a {@link CompactOSMData} instance
+ * in file order on the calling thread.
+ */
+public class PBFFileReader implements OSMDataReader {
+
+	/** features that this reader supports, see the PBF format specification */
+	private static final List<String> SUPPORTED_FEATURES =
+			Arrays.asList("OsmSchema-V0.6", "DenseNodes");
+
+	/** maximum number of blocks decoded ahead, per thread */
+	private static final int BLOCKS_AHEAD_PER_THREAD = 4;
+
+	private static final double NANO = 1e-9;
+
+	private final File file;
+	private final int threadCount;
+
+	/**
+	 * creates a reader which decodes all blocks on the calling thread
+	 */
+	public PBFFileReader(File file) throws FileNotFoundException {
+		this(file, 1);
+	}
+
+	/**
+	 * @param threadCount  number of threads decoding blocks;
+	 *                     1 or less to decode on the calling thread
+	 */
+	public PBFFileReader(File file, int threadCount) throws FileNotFoundException {
+		this.file = file;
+		this.threadCount = threadCount;
+		if (!file.exists()) {
+			throw new FileNotFoundException(file.toString());
+		}
+	}
+
+	/**
+	 * checks whether a file name indicates a PBF file
+	 */
+	public static final boolean isPBFFile(File file) {
+		return file.getName().toLowerCase().endsWith(".pbf");
+	}
+
+	@Override
+	public OSMData getData() throws IOException {
+
+		CompactOSMData.Builder builder = new CompactOSMData.Builder();
+
+		ExecutorService executor = ParallelIterationUtil.createExecutor(threadCount);
+
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+
+		try {
+
+			Deque<Future<DecodedBlock>> pendingBlocks =
+					new ArrayDeque<Future<DecodedBlock>>();
+
+			int maxPendingBlocks = Math.max(1, threadCount * BLOCKS_AHEAD_PER_THREAD);
+
+			int headerLength;
+
+			while ((headerLength = readHeaderLength(in)) >= 0) {
+
+				byte[] headerBytes = new byte[headerLength];
+				in.readFully(headerBytes);
+				BlobHeader header = BlobHeader.parseFrom(headerBytes);
+
+				final byte[] blobBytes = new byte[header.getDatasize()];
+				in.readFully(blobBytes);
+
+				if ("OSMHeader".equals(header.getType())) {
+
+					addHeader(HeaderBlock.parseFrom(decompress(blobBytes)), builder);
+
+				} else if ("OSMData".equals(header.getType())) {
+
+					if (executor == null) {
+						addBlock(decode(blobBytes), builder);
+					} else {
+
+						pendingBlocks.add(executor.submit(new Callable<DecodedBlock>() {
+							@Override public DecodedBlock call() throws IOException {
+								return decode(blobBytes);
+							}
+						}));
+
+						while (pendingBlocks.size() > maxPendingBlocks) {
+							addBlock(get(pendingBlocks.poll()), builder);
+						}
+
+					}
+
+				}
+
+				// unknown blob types are skipped, as required by the specification
+
+			}
+
+			while (!pendingBlocks.isEmpty()) {
+				addBlock(get(pendingBlocks.poll()), builder);
+			}
+
+		} finally {
+			in.close();
+			ParallelIterationUtil.shutdown(executor);
+		}
+
+		return builder.build();
+
+	}
+
+	/**
+	 * reads the length of the next blob header
+	 *
+	 * @return  the length, or -1 if the end of the file has been reached
+	 */
+	private static int readHeaderLength(DataInputStream in) throws IOException {
+		try {
+			return in.readInt();
+		} catch (EOFException e) {
+			return -1;
+		}
+	}
+
+	private static DecodedBlock decode(byte[] blobBytes) throws IOException {
+		return new DecodedBlock(PrimitiveBlock.parseFrom(decompress(blobBytes)));
+	}
+
+	private static byte[] decompress(byte[] blobBytes) throws IOException {
+
+		Blob blob = Blob.parseFrom(blobBytes);
+
+		if (blob.hasRaw()) {
+
+			return blob.getRaw().toByteArray();
+
+		} else if (blob.hasZlibData()) {
+
+			byte[] result = new byte[blob.getRawSize()];
+
+			Inflater inflater = new Inflater();
+			inflater.setInput(blob.getZlibData().toByteArray());
+
+			try {
+				inflater.inflate(result);
+				if (!inflater.finished()) {
+					throw new IOException("blob is larger than its stated raw size");
+				}
+			} catch (DataFormatException e) {
+				throw new IOException(e);
+			} finally {
+				inflater.end();
+			}
+
+			return result;
+
+		} else {
+			throw new IOException("unsupported blob compression");
+		}
+
+	}
+
+	private static DecodedBlock get(Future<DecodedBlock> future)
+			throws IOException {
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else {
+				throw new IOException(e.getCause());
+			}
+		}
+
+	}
+
+	private static void addHeader(HeaderBlock header,
+			CompactOSMData.Builder builder) throws IOException {
+
+		for (String feature : header.getRequiredFeaturesList()) {
+			if (!SUPPORTED_FEATURES.contains(feature)) {
+				throw new IOException("unsupported PBF feature: " + feature);
+			}
+		}
+
+		if (header.hasBbox()) {
+			HeaderBBox bbox = header.getBbox();
+			builder.addBound(new Bound(
+					bbox.getRight() * NANO, bbox.getLeft() * NANO,
+					bbox.getTop() * NANO, bbox.getBottom() * NANO,
+					header.hasSource() ? header.getSource() : "PBF"));
+		}
+
+	}
+
+	/**
+	 * a parsed {@link PrimitiveBlock}, with its string table already
+	 * converted to strings
+	 */
+	private static class DecodedBlock {
+
+		final PrimitiveBlock block;
+		final String[] strings;
+
+		DecodedBlock(PrimitiveBlock block) {
+
+			this.block = block;
+
+			strings = new String[block.getStringtable().getSCount()];
+
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = block.getStringtable().getS(i).toStringUtf8();
+			}
+
+		}
+
+		double getLat(long lat) {
+			return NANO * (block.getLatOffset() + (long)block.getGranularity() * lat);
+		}
+
+		double getLon(long lon) {
+			return NANO * (block.getLonOffset() + (long)block.getGranularity() * lon);
+		}
+
+	}
+
+	private static void addBlock(DecodedBlock decodedBlock,
+			CompactOSMData.Builder builder) {
+
+		String[] strings = decodedBlock.strings;
+
+		for (PrimitiveGroup group : decodedBlock.block.getPrimitivegroupList()) {
+
+			for (Node node : group.getNodesList()) {
+
+				builder.startNode(node.getId(),
+						decodedBlock.getLat(node.getLat()),
+						decodedBlock.getLon(node.getLon()));
+
+				for (int i = 0; i < node.getKeysCount(); i++) {
+					builder.addTag(strings[node.getKeys(i)], strings[node.getVals(i)]);
+				}
+
+			}
+
+			if (group.hasDense()) {
+
+				DenseNodes dense = group.getDense();
+
+				long id = 0;
+				long lat = 0;
+				long lon = 0;
+				int keyValIndex = 0;
+
+				for (int n = 0; n < dense.getIdCount(); n++) {
+
+					id += dense.getId(n);
+					lat += dense.getLat(n);
+					lon += dense.getLon(n);
+
+					builder.startNode(id,
+							decodedBlock.getLat(lat), decodedBlock.getLon(lon));
+
+					/* keys and values of all nodes are stored in one list,
+					 * with a 0 after the tags of each node */
+
+					if (keyValIndex < dense.getKeysValsCount()) {
+
+						while (dense.getKeysVals(keyValIndex) != 0) {
+							builder.addTag(strings[dense.getKeysVals(keyValIndex)],
+									strings[dense.getKeysVals(keyValIndex + 1)]);
+							keyValIndex += 2;
+						}
+
+						keyValIndex += 1;
+
+					}
+
+				}
+
+			}
+
+			for (Way way : group.getWaysList()) {
+
+				builder.startWay(way.getId());
+
+				for (int i = 0; i < way.getKeysCount(); i++) {
+					builder.addTag(strings[way.getKeys(i)], strings[way.getVals(i)]);
+				}
+
+				long ref = 0;
+
+				for (int i = 0; i < way.getRefsCount(); i++) {
+					ref += way.getRefs(i);
+					builder.addWayNode(ref);
+				}
+
+			}
+
+			for (Relation relation : group.getRelationsList()) {
+
+				builder.startRelation(relation.getId());
+
+				for (int i = 0; i < relation.getKeysCount(); i++) {
+					builder.addTag(strings[relation.getKeys(i)],
+							strings[relation.getVals(i)]);
+				}
+
+				long memberId = 0;
+
+				for (int i = 0; i < relation.getMemidsCount(); i++) {
+
+					memberId += relation.getMemids(i);
+
+					EntityType type;
+
+					switch (relation.getTypes(i)) {
+					case NODE: type = EntityType.Node; break;
+					case WAY: type = EntityType.Way; break;
+					default: type = EntityType.Relation; break;
+					}
+
+					builder.addMember(type, memberId,
+							strings[relation.getRolesSid(i)]);
+
+				}
+
+			}
+
+		}
+
+	}
+
+}
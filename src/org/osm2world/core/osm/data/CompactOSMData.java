@@ -0,0 +1,682 @@
+package org.osm2world.core.osm.data;
+
+import static org.openstreetmap.josm.plugins.graphview.core.data.EmptyTagGroup.EMPTY_TAG_GROUP;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+
+/**
+ * {@link OSMData} implementation which stores the dataset in primitive arrays
+ * instead of an object graph.
+ *
+ * Ids and coordinates are kept in parallel arrays, way nodes and relation
+ * members are stored as indices into these arrays, and tag keys, tag values
+ * and member roles are interned in a single string table.
+ * The {@link OSMNode}, {@link OSMWay} and {@link OSMRelation} objects returned
+ * by the accessors are lightweight views which are created on demand.
+ * They are therefore not identical across calls, but they are equal
+ * (as elements are compared by id).
+ *
+ * Instances are created using a {@link Builder}.
+ */
+public class CompactOSMData extends OSMData {
+
+	private static final byte NODE = 0;
+	private static final byte WAY = 1;
+	private static final byte RELATION = 2;
+
+	private final String[] strings;
+
+	private final long[] nodeIds;
+	private final double[] nodeLats;
+	private final double[] nodeLons;
+	private final TagTable nodeTags;
+
+	private final long[] wayIds;
+	private final int[] wayNodeOffsets;
+	private final int[] wayNodes;
+	private final TagTable wayTags;
+
+	private final long[] relationIds;
+	private final int[] memberOffsets;
+	private final byte[] memberTypes;
+	private final int[] memberIndices;
+	private final int[] memberRoles;
+	private final TagTable relationTags;
+
+	private CompactOSMData(Collection<Bound> bounds, Builder builder) {
+
+		super(bounds, null, null, null);
+
+		this.strings = builder.strings.toArray(new String[builder.strings.size()]);
+
+		/* nodes */
+
+		nodeIds = builder.nodeIds.toArray();
+		nodeLats = builder.nodeLats.toArray();
+		nodeLons = builder.nodeLons.toArray();
+		nodeTags = builder.nodeTags.toTagTable();
+
+		TLongIntHashMap nodeIndices = createIndexMap(nodeIds);
+
+		/* ways, dropping references to nodes which are not part of the data */
+
+		wayIds = builder.wayIds.toArray();
+		wayNodeOffsets = new int[wayIds.length + 1];
+
+		TIntArrayList wayNodeList = new TIntArrayList(builder.wayNodeRefs.size());
+
+		for (int w = 0; w < wayIds.length; w++) {
+
+			wayNodeOffsets[w] = wayNodeList.size();
+
+			for (int i = builder.wayNodeOffsets.get(w);
+					i < builder.getWayNodeEnd(w); i++) {
+
+				int nodeIndex = nodeIndices.get(builder.wayNodeRefs.get(i));
+
+				if (nodeIndex >= 0) {
+					wayNodeList.add(nodeIndex);
+				}
+
+			}
+
+		}
+
+		wayNodeOffsets[wayIds.length] = wayNodeList.size();
+		wayNodes = wayNodeList.toArray();
+		wayTags = builder.wayTags.toTagTable();
+
+		builder.wayNodeRefs = null;
+
+		/* relations, dropping members which are not part of the data */
+
+		TLongIntHashMap wayIndices = createIndexMap(wayIds);
+
+		relationIds = builder.relationIds.toArray();
+
+		TLongIntHashMap relationIndices = createIndexMap(relationIds);
+
+		memberOffsets = new int[relationIds.length + 1];
+
+		TByteArrayList memberTypeList = new TByteArrayList();
+		TIntArrayList memberIndexList = new TIntArrayList();
+		TIntArrayList memberRoleList = new TIntArrayList();
+
+		for (int r = 0; r < relationIds.length; r++) {
+
+			memberOffsets[r] = memberTypeList.size();
+
+			for (int i = builder.memberOffsets.get(r);
+					i < builder.getMemberEnd(r); i++) {
+
+				byte type = builder.memberTypes.get(i);
+				long ref = builder.memberRefs.get(i);
+
+				int index = (type == NODE) ? nodeIndices.get(ref)
+						: (type == WAY) ? wayIndices.get(ref)
+						: relationIndices.get(ref);
+
+				if (index >= 0) {
+					memberTypeList.add(type);
+					memberIndexList.add(index);
+					memberRoleList.add(builder.memberRoles.get(i));
+				}
+
+			}
+
+		}
+
+		memberOffsets[relationIds.length] = memberTypeList.size();
+		memberTypes = memberTypeList.toArray();
+		memberIndices = memberIndexList.toArray();
+		memberRoles = memberRoleList.toArray();
+		relationTags = builder.relationTags.toTagTable();
+
+	}
+
+	private static TLongIntHashMap createIndexMap(long[] ids) {
+
+		TLongIntHashMap result = new TLongIntHashMap(
+				Math.max(ids.length * 2, 16), 0.5f, Long.MIN_VALUE, -1);
+
+		for (int i = 0; i < ids.length; i++) {
+			result.put(ids[i], i);
+		}
+
+		return result;
+
+	}
+
+	@Override
+	public Collection<OSMNode> getNodes() {
+		return nodeList;
+	}
+
+	@Override
+	public Collection<OSMWay> getWays() {
+		return wayList;
+	}
+
+	@Override
+	public Collection<OSMRelation> getRelations() {
+		return relationList;
+	}
+
+	private final ElementList<OSMNode> nodeList = new ElementList<OSMNode>() {
+		@Override protected int getStoredCount() {
+			return nodeIds.length;
+		}
+		@Override protected OSMNode createElement(int index) {
+			return createNode(index);
+		}
+	};
+
+	private final ElementList<OSMWay> wayList = new ElementList<OSMWay>() {
+		@Override protected int getStoredCount() {
+			return wayIds.length;
+		}
+		@Override protected OSMWay createElement(int index) {
+			return createWay(index);
+		}
+	};
+
+	private final ElementList<OSMRelation> relationList = new ElementList<OSMRelation>() {
+		@Override protected int getStoredCount() {
+			return relationIds.length;
+		}
+		@Override protected OSMRelation createElement(int index) {
+			return createRelation(index);
+		}
+	};
+
+	/**
+	 * list view of the stored elements of one type.
+	 * Elements can be appended (e.g. fake nodes created during conversion),
+	 * these are kept as regular objects after the stored elements.
+	 */
+	private static abstract class ElementList<E extends OSMElement>
+			extends AbstractList<E> {
+
+		private final List<E> addedElements = new ArrayList<E>();
+
+		protected abstract int getStoredCount();
+
+		protected abstract E createElement(int index);
+
+		@Override
+		public E get(int index) {
+			if (index < getStoredCount()) {
+				return createElement(index);
+			} else {
+				return addedElements.get(index - getStoredCount());
+			}
+		}
+
+		@Override
+		public int size() {
+			return getStoredCount() + addedElements.size();
+		}
+
+		@Override
+		public boolean add(E element) {
+			return addedElements.add(element);
+		}
+
+	}
+
+	private OSMNode createNode(int index) {
+		return new OSMNode(nodeLats[index], nodeLons[index],
+				getTagGroup(nodeTags, index), nodeIds[index]);
+	}
+
+	private OSMWay createWay(final int index) {
+
+		List<OSMNode> nodes = new AbstractList<OSMNode>() {
+			@Override public OSMNode get(int i) {
+				return createNode(wayNodes[wayNodeOffsets[index] + i]);
+			}
+			@Override public int size() {
+				return wayNodeOffsets[index + 1] - wayNodeOffsets[index];
+			}
+		};
+
+		return new OSMWay(getTagGroup(wayTags, index), wayIds[index], nodes);
+
+	}
+
+	private OSMRelation createRelation(final int index) {
+
+		List<OSMMember> members = new AbstractList<OSMMember>() {
+
+			@Override public OSMMember get(int i) {
+
+				int m = memberOffsets[index] + i;
+
+				OSMElement member;
+
+				switch (memberTypes[m]) {
+				case NODE: member = createNode(memberIndices[m]); break;
+				case WAY: member = createWay(memberIndices[m]); break;
+				default: member = createRelation(memberIndices[m]); break;
+				}
+
+				return new OSMMember(strings[memberRoles[m]], member);
+
+			}
+
+			@Override public int size() {
+				return memberOffsets[index + 1] - memberOffsets[index];
+			}
+
+		};
+
+		return new OSMRelation(getTagGroup(relationTags, index),
+				relationIds[index], members);
+
+	}
+
+	/**
+	 * collects the data for a {@link CompactOSMData} instance.
+	 * Elements are added one after another, tags and references
+	 * always belong to the most recently started element.
+	 * References to elements which are not part of the data are dropped
+	 * when the instance is built, so elements may be added in any order.
+	 */
+	public static class Builder {
+
+		private final List<Bound> bounds = new ArrayList<Bound>();
+
+		private final List<String> strings = new ArrayList<String>();
+		private final TObjectIntHashMap<String> stringIndices =
+				new TObjectIntHashMap<String>(1000, 0.5f, -1);
+
+		private final TLongArrayList nodeIds = new TLongArrayList();
+		private final TDoubleArrayList nodeLats = new TDoubleArrayList();
+		private final TDoubleArrayList nodeLons = new TDoubleArrayList();
+		private final TagTableBuilder nodeTags = new TagTableBuilder();
+
+		private final TLongArrayList wayIds = new TLongArrayList();
+		private final TIntArrayList wayNodeOffsets = new TIntArrayList();
+		private TLongArrayList wayNodeRefs = new TLongArrayList();
+		private final TagTableBuilder wayTags = new TagTableBuilder();
+
+		private final TLongArrayList relationIds = new TLongArrayList();
+		private final TIntArrayList memberOffsets = new TIntArrayList();
+		private final TByteArrayList memberTypes = new TByteArrayList();
+		private final TLongArrayList memberRefs = new TLongArrayList();
+		private final TIntArrayList memberRoles = new TIntArrayList();
+		private final TagTableBuilder relationTags = new TagTableBuilder();
+
+		/** the tags of the most recently started element */
+		private TagTableBuilder currentTags = null;
+
+		private boolean built = false;
+
+		public void addBound(Bound bound) {
+			bounds.add(bound);
+		}
+
+		public void startNode(long id, double lat, double lon) {
+			nodeIds.add(id);
+			nodeLats.add(lat);
+			nodeLons.add(lon);
+			startElement(nodeTags);
+		}
+
+		public void startWay(long id) {
+			wayIds.add(id);
+			wayNodeOffsets.add(wayNodeRefs.size());
+			startElement(wayTags);
+		}
+
+		public void startRelation(long id) {
+			relationIds.add(id);
+			memberOffsets.add(memberTypes.size());
+			startElement(relationTags);
+		}
+
+		private void startElement(TagTableBuilder tags) {
+			checkNotBuilt();
+			tags.startElement();
+			currentTags = tags;
+		}
+
+		/**
+		 * adds a tag to the most recently started element
+		 */
+		public void addTag(String key, String value) {
+			if (currentTags == null) {
+				throw new IllegalStateException("no element has been started");
+			}
+			checkNotBuilt();
+			currentTags.add(intern(key), intern(value));
+		}
+
+		/**
+		 * adds a node reference to the most recently started way
+		 */
+		public void addWayNode(long nodeId) {
+			if (currentTags != wayTags) {
+				throw new IllegalStateException("no way has been started");
+			}
+			checkNotBuilt();
+			wayNodeRefs.add(nodeId);
+		}
+
+		/**
+		 * adds a member to the most recently started relation.
+		 * Members of types other than nodes, ways and relations are ignored.
+		 */
+		public void addMember(EntityType type, long id, String role) {
+
+			if (currentTags != relationTags) {
+				throw new IllegalStateException("no relation has been started");
+			}
+			checkNotBuilt();
+
+			switch (type) {
+			case Node: memberTypes.add(NODE); break;
+			case Way: memberTypes.add(WAY); break;
+			case Relation: memberTypes.add(RELATION); break;
+			default: return;
+			}
+
+			memberRefs.add(id);
+			memberRoles.add(intern(role));
+
+		}
+
+		/**
+		 * creates the {@link CompactOSMData} instance.
+		 * The builder cannot be used anymore afterwards.
+		 */
+		public CompactOSMData build() {
+			checkNotBuilt();
+			built = true;
+			return new CompactOSMData(bounds, this);
+		}
+
+		private void checkNotBuilt() {
+			if (built) {
+				throw new IllegalStateException("data has already been built");
+			}
+		}
+
+		private int intern(String string) {
+
+			int index = stringIndices.get(string);
+
+			if (index < 0) {
+				index = strings.size();
+				strings.add(string);
+				stringIndices.put(string, index);
+			}
+
+			return index;
+
+		}
+
+		private int getWayNodeEnd(int wayIndex) {
+			return (wayIndex + 1 < wayNodeOffsets.size())
+					? wayNodeOffsets.get(wayIndex + 1)
+					: wayNodeRefs.size();
+		}
+
+		private int getMemberEnd(int relationIndex) {
+			return (relationIndex + 1 < memberOffsets.size())
+					? memberOffsets.get(relationIndex + 1)
+					: memberTypes.size();
+		}
+
+		/**
+		 * collects the tags of all elements of one type
+		 */
+		private static class TagTableBuilder {
+
+			private final TIntArrayList offsets = new TIntArrayList();
+			private final TIntArrayList keys = new TIntArrayList();
+			private final TIntArrayList values = new TIntArrayList();
+
+			public void startElement() {
+				offsets.add(keys.size());
+			}
+
+			public void add(int key, int value) {
+				keys.add(key);
+				values.add(value);
+			}
+
+			public TagTable toTagTable() {
+				offsets.add(keys.size());
+				return new TagTable(offsets.toArray(),
+						keys.toArray(), values.toArray());
+			}
+
+		}
+
+	}
+
+	/**
+	 * tags of all elements of one type, stored as indices into the
+	 * string table. The tags of element i are at positions
+	 * offsets[i] (inclusive) to offsets[i+1] (exclusive).
+	 */
+	private static class TagTable {
+
+		private final int[] offsets;
+		private final int[] keys;
+		private final int[] values;
+
+		public TagTable(int[] offsets, int[] keys, int[] values) {
+			this.offsets = offsets;
+			this.keys = keys;
+			this.values = values;
+		}
+
+	}
+
+	private TagGroup getTagGroup(TagTable table, int index) {
+
+		int start = table.offsets[index];
+		int end = table.offsets[index + 1];
+
+		if (start == end) {
+			return EMPTY_TAG_GROUP;
+		} else {
+			return new ArrayTagGroup(table, start, end);
+		}
+
+	}
+
+	/**
+	 * a {@link TagGroup} view of a range of a {@link TagTable}.
+	 * As tags are usually few per element, lookups use a linear search.
+	 */
+	private class ArrayTagGroup implements TagGroup {
+
+		private final TagTable table;
+		private final int start;
+		private final int end;
+
+		public ArrayTagGroup(TagTable table, int start, int end) {
+			this.table = table;
+			this.start = start;
+			this.end = end;
+		}
+
+		private int indexOfKey(String key) {
+			for (int i = start; i < end; i++) {
+				if (strings[table.keys[i]].equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public String getValue(String key) {
+			assert key != null;
+			int i = indexOfKey(key);
+			return (i < 0) ? null : strings[table.values[i]];
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			assert key != null;
+			return indexOfKey(key) >= 0;
+		}
+
+		@Override
+		public boolean containsAnyKey(Iterable<String> keys) {
+			for (String key : keys) {
+				if (this.containsKey(key)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean containsValue(String value) {
+			assert value != null;
+			for (int i = start; i < end; i++) {
+				if (strings[table.values[i]].equals(value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean containsAnyValue(Iterable<String> values) {
+			for (String value : values) {
+				if (this.containsValue(value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean contains(Tag tag) {
+			assert tag != null;
+			return contains(tag.key, tag.value);
+		}
+
+		@Override
+		public boolean containsAny(Iterable<Tag> tags) {
+			for (Tag tag : tags) {
+				if (this.contains(tag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean contains(String key, String value) {
+			assert key != null;
+			assert value != null;
+			return value.equals(getValue(key));
+		}
+
+		@Override
+		public boolean containsAny(Iterable<String> keys, String value) {
+			for (String key : keys) {
+				if (this.contains(key, value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean containsAny(Iterable<String> keys, Iterable<String> values) {
+			for (String key : keys) {
+				if (this.containsAny(key, values)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean containsAny(String key, Iterable<String> values) {
+			for (String value : values) {
+				if (this.contains(key, value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return end == start;
+		}
+
+		/**
+		 * returns an Iterator providing access to all Tags.
+		 * The Iterator does not support the {@link Iterator#remove()} method.
+		 */
+		@Override
+		public Iterator<Tag> iterator() {
+			return new Iterator<Tag>() {
+
+				private int i = start;
+
+				@Override public boolean hasNext() {
+					return i < end;
+				}
+
+				@Override public Tag next() {
+					if (!hasNext()) throw new NoSuchElementException();
+					Tag tag = new Tag(strings[table.keys[i]], strings[table.values[i]]);
+					i++;
+					return tag;
+				}
+
+				@Override public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+			};
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder("{");
+			for (int i = start; i < end; i++) {
+				if (i > start) result.append(", ");
+				result.append(strings[table.keys[i]]);
+				result.append('=');
+				result.append(strings[table.values[i]]);
+			}
+			return result.append('}').toString();
+		}
+
+	}
+
+}
@@ -8,7 +8,7 @@ import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 public class OSMRelation extends OSMElement {
 		
 	public final List<OSMMember> relationMembers;
-		// content added after constructor call
+		// content added after constructor call (unless passed to the constructor)
 	
 	public OSMRelation(TagGroup tags, long id, int initialMemberSize) {
 		super(tags, id);
@@ -16,6 +16,14 @@ public class OSMRelation extends OSMElement {
 			new ArrayList<OSMMember>(initialMemberSize);
 	}
 	
+	/**
+	 * @param relationMembers  the relation's members; != null
+	 */
+	public OSMRelation(TagGroup tags, long id, List<OSMMember> relationMembers) {
+		super(tags, id);
+		this.relationMembers = relationMembers;
+	}
+	
 	@Override
 	public String toString() {
 		return "r" + id;
@@ -0,0 +1,32 @@
+package org.osm2world.core.target;
+
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * geometry that is drawn many times with different positions, rotations
+ * and sizes, such as the model of a tree.
+ * Used as a prototype for {@link Target#drawInstance}.
+ * 
+ * Targets may render the geometry only once and re-use the result
+ * for all instances. Implementations should therefore implement
+ * {@link #equals(Object)} and {@link #hashCode()} so that geometries
+ * which draw identical primitives are considered equal.
+ * 
+ * Texture coordinates are used unchanged for all instances.
+ * Geometry whose texture coordinates depend on its position or size,
+ * such as {@link Target#drawColumn} with a textured material,
+ * will therefore look different when drawn as an instance.
+ */
+public interface InstanceGeometry {
+	
+	/**
+	 * draws the geometry in local coordinates. The origin will be placed at
+	 * the instance's position, the positive z axis will point towards the
+	 * instance's direction. Coordinates will be multiplied with the scale.
+	 * 
+	 * @see Target#drawInstance(InstanceGeometry, VectorXYZ, VectorXZ, double)
+	 */
+	public void renderTo(Target<?> target);
+	
+}
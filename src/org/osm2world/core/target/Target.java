@@ -9,6 +9,7 @@ import org.osm2world.core.math.TriangleXYZWithNormals;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.world.data.WorldObject;
 
 /**
@@ -26,6 +27,20 @@ public interface Target<R extends Renderable> {
 
 	void setConfiguration(Configuration config);
 	
+	/**
+	 * sets the materials of the conversion that is rendered to this target.
+	 * Materials passed to the draw methods are resolved using this registry.
+	 * Defaults to {@link MaterialRegistry#DEFAULTS}.
+	 */
+	void setMaterialRegistry(MaterialRegistry materialRegistry);
+	
+	/**
+	 * returns the materials used by this target. Renderables need to
+	 * resolve materials with this registry before using their attributes,
+	 * e.g. for calculating texture coordinates.
+	 */
+	MaterialRegistry getMaterialRegistry();
+	
 	/**
 	 * renders a renderable object to this target.
 	 * Usually, this means calling a "renderTo" method on that renderable,
@@ -109,6 +124,24 @@ public interface Target<R extends Renderable> {
 	void drawColumn(Material material, Integer corners,
 			VectorXYZ base, double height, double radiusBottom,
 			double radiusTop, boolean drawBottom, boolean drawTop);
+	
+	/**
+	 * draws an instance of a geometry that is likely to be drawn
+	 * many times. Targets can use this to avoid re-creating
+	 * the geometry's primitives for each instance. Output formats
+	 * which can reference shared geometry, such as POV-Ray,
+	 * only need to contain the geometry once. The JOGL targets keep
+	 * one copy of the geometry and draw it with a transformation.
+	 * OBJ cannot reference shared geometry, so OBJ files still contain
+	 * the vertices of each instance, but the faces are only
+	 * created once for each geometry.
+	 * 
+	 * @param position   position of the geometry's origin
+	 * @param direction  direction of the geometry's positive z axis
+	 * @param scale      factor for the geometry's size, must be positive
+	 */
+	void drawInstance(InstanceGeometry geometry,
+			VectorXYZ position, VectorXZ direction, double scale);
 
 	/**
 	 * gives the target the chance to perform finish/cleanup operations
@@ -1,6 +1,6 @@
 package org.osm2world.core.target;
 
-import static org.osm2world.core.target.statistics.StatisticsTarget.Stat.PRIMITIVE_COUNT;
+import static org.osm2world.core.target.statistics.StatisticsTarget.Stat.*;
 import static org.osm2world.core.util.FaultTolerantIterationUtil.iterate;
 
 import java.util.Iterator;
@@ -9,8 +9,11 @@ import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.map_elevation.data.GroundState;
 import org.osm2world.core.target.common.RenderableToPrimitiveTarget;
+import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.statistics.StatisticsTarget;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Profile;
 import org.osm2world.core.world.data.WorldObject;
 
 public final class TargetUtil {
@@ -25,12 +28,21 @@ public final class TargetUtil {
 			final Target<R> target, final MapData mapData,
 			final boolean renderUnderground) {
 		
+		Profile profile = Metrics.current().getProfile();
+		StatisticsTarget primitiveCounter =
+				(profile != null) ? new StatisticsTarget() : null;
+		
 		for (MapElement mapElement : mapData.getMapElements()) {
 			for (WorldObject r : mapElement.getRepresentations()) {
 				if (renderUnderground || r.getGroundState() != GroundState.BELOW) {
 				
 					try {
-						renderObject(target, r);
+						if (profile == null) {
+							renderObject(target, r);
+						} else {
+							renderObjectWithProfile(target, r, mapElement,
+									profile, primitiveCounter);
+						}
 					} catch (Exception e) {
 						System.err.println("ignored exception:");
 						//TODO proper logging
@@ -44,6 +56,40 @@ public final class TargetUtil {
 		}
 	}
 
+	/**
+	 * renders an object to a target instance, and records its costs
+	 * in a {@link Profile}. Primitives are counted by additionally rendering
+	 * the object to a {@link StatisticsTarget}, with metrics disabled
+	 * to keep that pass out of the counters.
+	 */
+	private static final <R extends Renderable> void renderObjectWithProfile(
+			Target<R> target, WorldObject object, MapElement mapElement,
+			Profile profile, StatisticsTarget primitiveCounter) {
+		
+		long startNanos = System.nanoTime();
+		
+		renderObject(target, object);
+		
+		long nanos = System.nanoTime() - startNanos;
+		
+		primitiveCounter.clear();
+		
+		Metrics previous = Metrics.setCurrent(Metrics.DISABLED);
+		
+		try {
+			renderObject(primitiveCounter, object);
+		} finally {
+			Metrics.setCurrent(previous);
+		}
+		
+		profile.addWorldObjectCost(object.getClass().getSimpleName(), nanos,
+				primitiveCounter.getGlobalCount(PRIMITIVE_COUNT),
+				primitiveCounter.getGlobalCount(TOTAL_TRIANGLE_COUNT));
+		
+		profile.addElementCost(mapElement.getOsmElement(), nanos);
+		
+	}
+	
 	/**
 	 * render all world objects to a target instances
 	 * that are compatible with that target type.
@@ -115,4 +161,23 @@ public final class TargetUtil {
 		
 	}
 	
+	/**
+	 * checks whether any of the materials has textures after being
+	 * resolved with the target's material registry. Geometry using textured
+	 * materials should usually not be drawn with {@link Target#drawInstance},
+	 * as the texture coordinates would not be adjusted to each instance.
+	 */
+	public static boolean hasTextures(Target<?> target, Material... materials) {
+		
+		for (Material material : materials) {
+			if (target.getMaterialRegistry().resolve(material)
+					.getNumTextureLayers() > 0) {
+				return true;
+			}
+		}
+		
+		return false;
+		
+	}
+	
 }
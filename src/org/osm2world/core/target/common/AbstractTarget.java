@@ -8,14 +8,18 @@ import static org.osm2world.core.target.common.material.TexCoordUtil.texCoordLis
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.configuration.Configuration;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
 import org.osm2world.core.target.Renderable;
 import org.osm2world.core.target.Target;
 import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.world.data.WorldObject;
 
 /**
@@ -28,11 +32,31 @@ public abstract class AbstractTarget<R extends Renderable>
 	
 	protected Configuration config;
 	
+	private MaterialRegistry materialRegistry = MaterialRegistry.DEFAULTS;
+	
 	@Override
 	public void setConfiguration(Configuration config) {
 		this.config = config;
 	}
 	
+	@Override
+	public void setMaterialRegistry(MaterialRegistry materialRegistry) {
+		this.materialRegistry = materialRegistry;
+	}
+	
+	@Override
+	public MaterialRegistry getMaterialRegistry() {
+		return materialRegistry;
+	}
+	
+	/**
+	 * resolves a material using this target's {@link MaterialRegistry}.
+	 * Implementations need to do this before accessing a material's attributes.
+	 */
+	protected Material resolve(Material material) {
+		return materialRegistry.resolve(material);
+	}
+	
 	@Override
 	public void beginObject(WorldObject object) {}
 		
@@ -41,6 +65,8 @@ public abstract class AbstractTarget<R extends Renderable>
 			VectorXYZ bottomCenter, VectorXZ faceDirection,
 			double height, double width, double depth) {
 		
+		material = resolve(material);
+		
 		final VectorXYZ backVector = faceDirection.mult(-depth).xyz(0);
 		final VectorXYZ rightVector = faceDirection.rightNormal().mult(-width).xyz(0);
 		final VectorXYZ upVector = new VectorXYZ(0, height, 0);
@@ -105,6 +131,8 @@ public abstract class AbstractTarget<R extends Renderable>
 			double height, double radiusBottom, double radiusTop,
 			boolean drawBottom, boolean drawTop) {
 		
+		material = resolve(material);
+		
 		if (corners == null) {
 			corners = EDGES_FOR_CYLINDER;
 			material = material.makeSmooth();
@@ -157,6 +185,30 @@ public abstract class AbstractTarget<R extends Renderable>
 		
 	}
 	
+	private final Map<InstanceGeometry, RecordedGeometry> recordedGeometries =
+			new HashMap<InstanceGeometry, RecordedGeometry>();
+	
+	/**
+	 * draws the instance by replaying the geometry's draw calls with
+	 * transformed coordinates. The geometry is only rendered once
+	 * for each target. Targets with native instancing should override this.
+	 */
+	@Override
+	public void drawInstance(InstanceGeometry geometry,
+			VectorXYZ position, VectorXZ direction, double scale) {
+		
+		RecordedGeometry recordedGeometry = recordedGeometries.get(geometry);
+		
+		if (recordedGeometry == null) {
+			recordedGeometry = new RecordedGeometry(geometry, materialRegistry);
+			recordedGeometries.put(geometry, recordedGeometry);
+		}
+		
+		recordedGeometry.replay(this,
+				new InstanceTransform(position, direction, scale));
+		
+	}
+	
 	@Override
 	public void drawTriangleStrip(Material material, List<VectorXYZ> vs,
 			List<List<VectorXZ>> texCoordLists) {
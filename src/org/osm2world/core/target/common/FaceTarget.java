@@ -237,6 +237,8 @@ public abstract class FaceTarget<R extends Renderable>
 			Collection<? extends TriangleXYZ> triangles,
 			List<List<VectorXZ>> texCoordLists) {
 		
+		material = resolve(material);
+		
 		int i = 0;
 		
 		for (TriangleXYZ triangle : triangles) {
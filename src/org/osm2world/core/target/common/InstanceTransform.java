@@ -0,0 +1,94 @@
+package org.osm2world.core.target.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.Target;
+
+/**
+ * the transformation from an {@link InstanceGeometry}'s local coordinates
+ * to the position, rotation and size of an instance.
+ * 
+ * @see Target#drawInstance(InstanceGeometry, VectorXYZ, VectorXZ, double)
+ */
+public class InstanceTransform {
+	
+	private final VectorXYZ position;
+	private final double scale;
+	
+	/** normalized direction of the local x and z axes */
+	private final double rightX, rightZ, dirX, dirZ;
+	
+	public InstanceTransform(VectorXYZ position, VectorXZ direction,
+			double scale) {
+		
+		VectorXZ dir = direction.normalize();
+		VectorXZ right = dir.rightNormal();
+		
+		this.position = position;
+		this.scale = scale;
+		this.rightX = right.x;
+		this.rightZ = right.z;
+		this.dirX = dir.x;
+		this.dirZ = dir.z;
+		
+	}
+	
+	public VectorXYZ getPosition() {
+		return position;
+	}
+	
+	public double getScale() {
+		return scale;
+	}
+	
+	/**
+	 * returns the 3x3 matrix mapping local to global coordinates
+	 * (before translation) in row-major order,
+	 * with each row containing the global coordinates of a local axis
+	 */
+	public double[] getAxes() {
+		return new double[] {
+				scale * rightX, 0, scale * rightZ,
+				0, scale, 0,
+				scale * dirX, 0, scale * dirZ };
+	}
+	
+	public VectorXYZ applyToVertex(VectorXYZ v) {
+		return new VectorXYZ(
+				position.x + scale * (v.x * rightX + v.z * dirX),
+				position.y + scale * v.y,
+				position.z + scale * (v.x * rightZ + v.z * dirZ));
+	}
+	
+	/**
+	 * transforms a normal vector.
+	 * The scale is uniform, so only the rotation needs to be applied.
+	 */
+	public VectorXYZ applyToNormal(VectorXYZ n) {
+		return new VectorXYZ(
+				n.x * rightX + n.z * dirX,
+				n.y,
+				n.x * rightZ + n.z * dirZ);
+	}
+	
+	public List<VectorXYZ> applyToVertices(List<? extends VectorXYZ> vs) {
+		List<VectorXYZ> result = new ArrayList<VectorXYZ>(vs.size());
+		for (VectorXYZ v : vs) {
+			result.add(applyToVertex(v));
+		}
+		return result;
+	}
+	
+	public List<VectorXYZ> applyToNormals(List<? extends VectorXYZ> normals) {
+		List<VectorXYZ> result = new ArrayList<VectorXYZ>(normals.size());
+		for (VectorXYZ n : normals) {
+			result.add(applyToNormal(n));
+		}
+		return result;
+	}
+	
+}
@@ -37,6 +37,7 @@ public abstract class PrimitiveTarget<R extends Renderable>
 	@Override
 	public void drawTriangleStrip(Material material, List<VectorXYZ> vs,
 			List<List<VectorXZ>> texCoordLists) {
+		material = resolve(material);
 		boolean smooth = (material.getInterpolation() == Interpolation.SMOOTH);
 		drawPrimitive(TRIANGLE_STRIP, material, vs,
 				calculateTriangleStripNormals(vs, smooth),
@@ -46,6 +47,7 @@ public abstract class PrimitiveTarget<R extends Renderable>
 	@Override
 	public void drawTriangleFan(Material material, List<VectorXYZ> vs,
 			List<List<VectorXZ>> texCoordLists) {
+		material = resolve(material);
 		boolean smooth = (material.getInterpolation() == Interpolation.SMOOTH);
 		drawPrimitive(TRIANGLE_FAN, material, vs,
 				calculateTriangleFanNormals(vs, smooth),
@@ -57,6 +59,8 @@ public abstract class PrimitiveTarget<R extends Renderable>
 			Collection<? extends TriangleXYZ> triangles,
 			List<List<VectorXZ>> texCoordLists) {
 		
+		material = resolve(material);
+		
 		List<VectorXYZ> vectors = new ArrayList<VectorXYZ>(triangles.size()*3);
 		
 		for (TriangleXYZ triangle : triangles) {
@@ -77,6 +81,8 @@ public abstract class PrimitiveTarget<R extends Renderable>
 			Collection<? extends TriangleXYZWithNormals> triangles,
 			List<List<VectorXZ>> texCoordLists) {
 
+		material = resolve(material);
+		
 		List<VectorXYZ> vectors = new ArrayList<VectorXYZ>(triangles.size()*3);
 		List<VectorXYZ> normals = new ArrayList<VectorXYZ>(triangles.size()*3);
 				
@@ -0,0 +1,193 @@
+package org.osm2world.core.target.common;
+
+import static org.osm2world.core.target.common.Primitive.Type.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.osm2world.core.math.TriangleXYZ;
+import org.osm2world.core.math.TriangleXYZWithNormals;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.RenderableToAllTargets;
+import org.osm2world.core.target.Target;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.MaterialRegistry;
+
+/**
+ * records the draw calls of an {@link InstanceGeometry}
+ * so they can be replayed for each instance.
+ * Used by {@link AbstractTarget} for targets without native instancing.
+ * The draw calls are replayed unchanged apart from the coordinates,
+ * so the result is the same as drawing the geometry at each instance's
+ * position directly.
+ */
+class RecordedGeometry extends AbstractTarget<RenderableToAllTargets> {
+	
+	private static class DrawCall {
+		
+		final Primitive.Type type;
+		final Material material;
+		final List<VectorXYZ> vs;
+		
+		/** only used for triangles with explicit normals, null otherwise */
+		final List<VectorXYZ> normals;
+		
+		final List<List<VectorXZ>> texCoordLists;
+		
+		DrawCall(Primitive.Type type, Material material, List<VectorXYZ> vs,
+				List<VectorXYZ> normals, List<List<VectorXZ>> texCoordLists) {
+			this.type = type;
+			this.material = material;
+			this.vs = vs;
+			this.normals = normals;
+			this.texCoordLists = texCoordLists;
+		}
+		
+	}
+	
+	private final List<DrawCall> drawCalls = new ArrayList<DrawCall>();
+	
+	public RecordedGeometry(InstanceGeometry geometry,
+			MaterialRegistry materialRegistry) {
+		setMaterialRegistry(materialRegistry);
+		geometry.renderTo(this);
+	}
+	
+	/**
+	 * draws the recorded primitives with transformed coordinates
+	 */
+	public void replay(Target<?> target, InstanceTransform transform) {
+		
+		for (DrawCall call : drawCalls) {
+			
+			List<VectorXYZ> vs = transform.applyToVertices(call.vs);
+			
+			switch (call.type) {
+			
+			case TRIANGLE_STRIP:
+				target.drawTriangleStrip(call.material, vs, call.texCoordLists);
+				break;
+				
+			case TRIANGLE_FAN:
+				target.drawTriangleFan(call.material, vs, call.texCoordLists);
+				break;
+				
+			case CONVEX_POLYGON:
+				target.drawConvexPolygon(call.material, vs, call.texCoordLists);
+				break;
+				
+			case TRIANGLES:
+				
+				if (call.normals == null) {
+					
+					List<TriangleXYZ> triangles =
+							new ArrayList<TriangleXYZ>(vs.size() / 3);
+					
+					for (int i = 0; i + 2 < vs.size(); i += 3) {
+						triangles.add(new TriangleXYZ(
+								vs.get(i), vs.get(i+1), vs.get(i+2)));
+					}
+					
+					target.drawTriangles(call.material, triangles,
+							call.texCoordLists);
+					
+				} else {
+					
+					List<VectorXYZ> normals =
+							transform.applyToNormals(call.normals);
+					
+					List<TriangleXYZWithNormals> triangles =
+							new ArrayList<TriangleXYZWithNormals>(vs.size() / 3);
+					
+					for (int i = 0; i + 2 < vs.size(); i += 3) {
+						triangles.add(new TriangleXYZWithNormals(
+								vs.get(i), vs.get(i+1), vs.get(i+2),
+								normals.get(i), normals.get(i+1), normals.get(i+2)));
+					}
+					
+					target.drawTrianglesWithNormals(call.material, triangles,
+							call.texCoordLists);
+					
+				}
+				
+				break;
+				
+			}
+			
+		}
+		
+	}
+	
+	@Override
+	public Class<RenderableToAllTargets> getRenderableType() {
+		return RenderableToAllTargets.class;
+	}
+	
+	@Override
+	public void render(RenderableToAllTargets renderable) {
+		renderable.renderTo(this);
+	}
+	
+	@Override
+	public void drawTriangles(Material material,
+			Collection<? extends TriangleXYZ> triangles,
+			List<List<VectorXZ>> texCoordLists) {
+		
+		List<VectorXYZ> vs = new ArrayList<VectorXYZ>(triangles.size() * 3);
+		
+		for (TriangleXYZ triangle : triangles) {
+			vs.add(triangle.v1);
+			vs.add(triangle.v2);
+			vs.add(triangle.v3);
+		}
+		
+		drawCalls.add(new DrawCall(TRIANGLES, material, vs, null, texCoordLists));
+		
+	}
+	
+	@Override
+	public void drawTrianglesWithNormals(Material material,
+			Collection<? extends TriangleXYZWithNormals> triangles,
+			List<List<VectorXZ>> texCoordLists) {
+		
+		List<VectorXYZ> vs = new ArrayList<VectorXYZ>(triangles.size() * 3);
+		List<VectorXYZ> normals = new ArrayList<VectorXYZ>(triangles.size() * 3);
+		
+		for (TriangleXYZWithNormals triangle : triangles) {
+			vs.add(triangle.v1);
+			vs.add(triangle.v2);
+			vs.add(triangle.v3);
+			normals.add(triangle.n1);
+			normals.add(triangle.n2);
+			normals.add(triangle.n3);
+		}
+		
+		drawCalls.add(new DrawCall(TRIANGLES, material, vs, normals, texCoordLists));
+		
+	}
+	
+	@Override
+	public void drawTriangleStrip(Material material, List<VectorXYZ> vs,
+			List<List<VectorXZ>> texCoordLists) {
+		drawCalls.add(new DrawCall(TRIANGLE_STRIP, material,
+				new ArrayList<VectorXYZ>(vs), null, texCoordLists));
+	}
+	
+	@Override
+	public void drawTriangleFan(Material material, List<VectorXYZ> vs,
+			List<List<VectorXZ>> texCoordLists) {
+		drawCalls.add(new DrawCall(TRIANGLE_FAN, material,
+				new ArrayList<VectorXYZ>(vs), null, texCoordLists));
+	}
+	
+	@Override
+	public void drawConvexPolygon(Material material, List<VectorXYZ> vs,
+			List<List<VectorXZ>> texCoordLists) {
+		drawCalls.add(new DrawCall(CONVEX_POLYGON, material,
+				new ArrayList<VectorXYZ>(vs), null, texCoordLists));
+	}
+	
+}
@@ -7,15 +7,23 @@ import org.osm2world.core.target.common.TextureData;
 
 
 /**
- * a material whose attributes can be configured at runtime.
+ * a material whose attributes can be configured.
+ * 
+ * Instances are not modified after creation. Configured attributes
+ * are provided by a {@link MaterialRegistry}, which creates a variant
+ * of the default material for each configuration.
  */
 public class ConfMaterial extends Material {
 
+	/** the default material this is a configured variant of; null for defaults */
+	private final ConfMaterial defaultMaterial;
+	
 	public ConfMaterial(Interpolation interpolation, Color color,
 			float ambientFactor, float diffuseFactor, float specularFactor, int shininess,
 			Transparency transparency, Shadow shadow, AmbientOcclusion ao, List<TextureData> textureDataList) {
 		super(interpolation, color, ambientFactor, diffuseFactor, specularFactor, shininess,
 				transparency, shadow, ao, textureDataList);
+		this.defaultMaterial = null;
 	}
 	
 	public ConfMaterial(Interpolation interpolation, Color color,
@@ -23,71 +31,43 @@ public class ConfMaterial extends Material {
 			Transparency transparency, List<TextureData> textureDataList) {
 		super(interpolation, color, ambientFactor, diffuseFactor, 0.0f, 1,
 				transparency, Shadow.TRUE, AmbientOcclusion.TRUE, textureDataList);
+		this.defaultMaterial = null;
 	}
 	
 	public ConfMaterial(Interpolation interpolation, Color color,
 			Transparency transparency, List<TextureData> textureDataList) {
 		super(interpolation, color, transparency, textureDataList);
+		this.defaultMaterial = null;
 	}
 	
 	public ConfMaterial(Interpolation interpolation, Color color) {
 		super(interpolation, color);
+		this.defaultMaterial = null;
 	}
 	
-	public ConfMaterial setInterpolation(Interpolation interpolation) {
-		this.interpolation = interpolation;
-		return this;
-	}
-	
-	public ConfMaterial setColor(Color color) {
-		this.color = color;
-		return this;
-	}
-	
-	public ConfMaterial setAmbientFactor(float ambientFactor) {
-		this.ambientFactor = ambientFactor;
-		return this;
-	}
-	
-	public ConfMaterial setDiffuseFactor(float diffuseFactor) {
-		this.diffuseFactor = diffuseFactor;
-		return this;
-	}
-	
-	public ConfMaterial setSpecularFactor(float specularFactor) {
-		this.specularFactor = specularFactor;
-		return this;
-	}
-	
-	public ConfMaterial setShininess(int shininess) {
-		this.shininess = shininess;
-		return this;
-	}
-	
-	public ConfMaterial setTransparency(Transparency transparency) {
-		this.transparency = transparency;
-		return this;
-	}	
-	
-	public ConfMaterial setShadow(Shadow shadow) {
-		this.shadow = shadow;
-		return this;
-	}
-	
-	public ConfMaterial setAmbientOcclusion(AmbientOcclusion ao) {
-		this.ambientOcclusion = ao;
-		return this;
+	/**
+	 * creates a configured variant of a default material
+	 */
+	ConfMaterial(ConfMaterial defaultMaterial, Color color,
+			float specularFactor, int shininess, Transparency transparency,
+			Shadow shadow, AmbientOcclusion ao, List<TextureData> textureDataList) {
+		super(defaultMaterial.getInterpolation(), color,
+				defaultMaterial.getAmbientFactor(), defaultMaterial.getDiffuseFactor(),
+				specularFactor, shininess, transparency, shadow, ao, textureDataList);
+		this.defaultMaterial = defaultMaterial;
 	}
 	
-	public ConfMaterial setTextureDataList(List<TextureData> textureDataList) {
-		this.textureDataList = textureDataList;
-		this.updateBumpMap();
-		return this;
+	/**
+	 * returns the default material this is a configured variant of,
+	 * or the material itself if it is a default
+	 */
+	public ConfMaterial getDefault() {
+		return (defaultMaterial != null) ? defaultMaterial : this;
 	}
 	
 	/*
 	 * unlike ImmutableMaterial, this has no equals method.
-	 * It should not equal another material just because that one currently (!)
+	 * It should not equal another material just because that one
 	 * has the same visual parameters.
 	 */
 	
@@ -0,0 +1,260 @@
+package org.osm2world.core.target.common.material;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.osm2world.core.target.common.TextureData;
+import org.osm2world.core.target.common.TextureData.Wrap;
+import org.osm2world.core.target.common.material.Material.AmbientOcclusion;
+import org.osm2world.core.target.common.material.Material.Shadow;
+import org.osm2world.core.target.common.material.Material.Transparency;
+import org.osm2world.core.target.Target;
+import org.osm2world.core.util.ConfigUtil;
+
+/**
+ * the materials of a conversion, based on the conversion's configuration.
+ * 
+ * The materials defined in {@link Materials} are defaults that are never
+ * modified. For each default with configured attributes, the registry
+ * holds a variant with these attributes. Materials are resolved by calling
+ * {@link #resolve(Material)}, usually through
+ * {@link Target#getMaterialRegistry()}.
+ * 
+ * A registry is not modified after its creation, so it can be used by
+ * multiple threads. Conversions with different configurations use
+ * different registries and do not affect each other.
+ */
+public class MaterialRegistry {
+	
+	/** registry without any configured attributes */
+	public static final MaterialRegistry DEFAULTS =
+			new MaterialRegistry(new BaseConfiguration());
+	
+	private static final Pattern CONF_KEY_PATTERN = Pattern.compile(
+			"material_(.+)_(color|specular|shininess|shadow|ssao|transparency|texture\\d*_(?:file|width|height|bumpmap))");
+	
+	/** configured variants, by default material */
+	private final Map<ConfMaterial, ConfMaterial> configuredMaterials =
+			new HashMap<ConfMaterial, ConfMaterial>();
+	
+	/**
+	 * creates the configured variants of all materials
+	 * with attributes in the configuration
+	 */
+	public MaterialRegistry(Configuration config) {
+		
+		/* collect keys by material, preserving their order */
+		
+		Map<ConfMaterial, List<Matcher>> keysByMaterial =
+				new LinkedHashMap<ConfMaterial, List<Matcher>>();
+		
+		// unchecked type parameter necessary due to Apache libs' old interface
+		@SuppressWarnings("unchecked")
+		Iterator<String> keyIterator = config.getKeys();
+		
+		while (keyIterator.hasNext()) {
+			
+			String key = keyIterator.next();
+			
+			Matcher matcher = CONF_KEY_PATTERN.matcher(key);
+			
+			if (matcher.matches()) {
+				
+				String materialName = matcher.group(1);
+				ConfMaterial material = Materials.getMaterial(materialName);
+				
+				if (material != null) {
+					
+					if (!keysByMaterial.containsKey(material)) {
+						keysByMaterial.put(material, new ArrayList<Matcher>());
+					}
+					
+					keysByMaterial.get(material).add(matcher);
+					
+				} else {
+					System.err.println("unknown material: " + materialName);
+				}
+				
+			}
+			
+		}
+		
+		/* create a variant for each of these materials */
+		
+		for (ConfMaterial material : keysByMaterial.keySet()) {
+			configuredMaterials.put(material, createConfiguredMaterial(
+					material, keysByMaterial.get(material), config));
+		}
+		
+	}
+	
+	/**
+	 * returns the material to be used instead of the parameter.
+	 * This is the configured variant for defaults with configured attributes,
+	 * and the parameter itself for all other materials.
+	 */
+	public Material resolve(Material material) {
+		
+		if (material instanceof ConfMaterial) {
+			
+			ConfMaterial configuredMaterial = configuredMaterials.get(material);
+			
+			if (configuredMaterial != null) {
+				return configuredMaterial;
+			}
+			
+		}
+		
+		return material;
+		
+	}
+	
+	/**
+	 * returns all materials defined in {@link Materials},
+	 * with configured attributes where applicable
+	 */
+	public Collection<Material> getMaterials() {
+		
+		List<Material> result = new ArrayList<Material>();
+		
+		for (ConfMaterial material : Materials.getMaterials()) {
+			result.add(resolve(material));
+		}
+		
+		return Collections.unmodifiableList(result);
+		
+	}
+	
+	private static ConfMaterial createConfiguredMaterial(ConfMaterial material,
+			List<Matcher> keys, Configuration config) {
+		
+		Color color = material.getColor();
+		float specularFactor = material.getSpecularFactor();
+		int shininess = material.getShininess();
+		Transparency transparency = material.getTransparency();
+		Shadow shadow = material.getShadow();
+		AmbientOcclusion ao = material.getAmbientOcclusion();
+		List<TextureData> textureDataList = material.getTextureDataList();
+		
+		for (Matcher matcher : keys) {
+			
+			String key = matcher.group(0);
+			String materialName = matcher.group(1);
+			String attribute = matcher.group(2);
+			
+			if ("color".equals(attribute)) {
+				
+				Color configuredColor = ConfigUtil.parseColor(
+						config.getString(key));
+				
+				if (configuredColor != null) {
+					color = configuredColor;
+				} else {
+					System.err.println("incorrect color value: "
+							+ config.getString(key));
+				}
+				
+			} else if ("specular".equals(attribute)) {
+				
+				specularFactor = config.getFloat(key);
+				
+			} else if ("shininess".equals(attribute)) {
+				
+				shininess = config.getInt(key);
+				
+			} else if ("shadow".equals(attribute)) {
+				
+				String value = config.getString(key).toUpperCase();
+				shadow = Shadow.valueOf(value);
+				
+			} else if ("ssao".equals(attribute)) {
+				
+				String value = config.getString(key).toUpperCase();
+				ao = AmbientOcclusion.valueOf(value);
+				
+			} else if ("transparency".equals(attribute)) {
+				
+				String value = config.getString(key).toUpperCase();
+				transparency = Transparency.valueOf(value);
+				
+			} else if (attribute.startsWith("texture")) {
+				
+				textureDataList = createTextureDataList(materialName, config);
+				
+			} else {
+				System.err.println("unknown material attribute: "
+						+ attribute);
+			}
+			
+		}
+		
+		return new ConfMaterial(material, color, specularFactor, shininess,
+				transparency, shadow, ao, textureDataList);
+		
+	}
+	
+	private static List<TextureData> createTextureDataList(
+			String materialName, Configuration config) {
+		
+		List<TextureData> textureDataList = new ArrayList<TextureData>();
+		
+		for (int i = 0; i < 32; i++) {
+			
+			String fileKey = "material_" + materialName + "_texture" + i + "_file";
+			String widthKey = "material_" + materialName + "_texture" + i + "_width";
+			String heightKey = "material_" + materialName + "_texture" + i + "_height";
+			String wrapKey = "material_" + materialName + "_texture" + i + "_wrap";
+			String coordFunctionKey = "material_" + materialName + "_texture" + i + "_coord_function";
+			String colorableKey = "material_" + materialName + "_texture" + i + "_colorable";
+			String bumpmapKey = "material_" + materialName + "_texture" + i + "_bumpmap";
+
+			if (config.getString(fileKey) == null) break;
+			
+			File file = new File(config.getString(fileKey));
+			
+			double width = config.getDouble(widthKey, 1);
+			double height = config.getDouble(heightKey, 1);
+			boolean colorable = config.getBoolean(colorableKey, false);
+			boolean isBumpMap = config.getBoolean(bumpmapKey, false);
+			
+			String wrapString = config.getString(wrapKey);
+			Wrap wrap = Wrap.REPEAT;
+			if ("clamp_to_border".equalsIgnoreCase(wrapString)) {
+				wrap = Wrap.CLAMP_TO_BORDER;
+			} else if ("clamp".equalsIgnoreCase(wrapString)) {
+				wrap = Wrap.CLAMP;
+			}
+			
+			String coordFunctionString = config.getString(coordFunctionKey);
+			TexCoordFunction coordFunction = null;
+			if (coordFunctionString != null) {
+				coordFunction = NamedTexCoordFunction.valueOf(
+						coordFunctionString.toUpperCase());
+			}
+			
+			// bumpmaps are only supported in the shader implementation, skip for others
+			if (!isBumpMap || "shader".equals(config.getString("joglImplementation"))) {
+				TextureData textureData = new TextureData(
+						file, width, height, wrap, coordFunction, colorable, isBumpMap);
+				textureDataList.add(textureData);
+			}
+			
+		}
+		
+		return textureDataList;
+		
+	}
+	
+}
@@ -14,6 +14,8 @@ import com.jogamp.opengl.GL;
 
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.common.InstanceTransform;
 import org.osm2world.core.target.common.Primitive;
 import org.osm2world.core.target.common.Primitive.Type;
 import org.osm2world.core.target.common.PrimitiveTarget;
@@ -63,6 +65,33 @@ public abstract class AbstractJOGLTarget extends PrimitiveTarget<RenderableToJOG
 		
 		primitiveBuffer.drawPrimitive(type, material, vertices, normals, texCoordLists);
 		
+		cacheTextures(material);
+		
+	}
+	
+	/**
+	 * stores the instance in the {@link PrimitiveBuffer}, which keeps
+	 * only one copy of the geometry's primitives for all instances
+	 */
+	@Override
+	public void drawInstance(InstanceGeometry geometry,
+			VectorXYZ position, VectorXZ direction, double scale) {
+		
+		boolean newPrototype = primitiveBuffer.getPrototype(geometry) == null;
+		
+		primitiveBuffer.drawInstance(geometry, position, direction, scale);
+		
+		if (newPrototype) {
+			PrimitiveBuffer prototype = primitiveBuffer.getPrototype(geometry);
+			for (Material material : prototype.flattenInstances().getMaterials()) {
+				cacheTextures(material);
+			}
+		}
+		
+	}
+	
+	private void cacheTextures(Material material) {
+		
 		// cache textures. they should not be loaded in the render function (see https://www.opengl.org/wiki/Common_Mistakes#glGenTextures_in_render_function)
 		// in some situations even errors were encountered
 		if (material.getNumTextureLayers() > 0) {
@@ -188,6 +217,23 @@ public abstract class AbstractJOGLTarget extends PrimitiveTarget<RenderableToJOG
         
 	}
 	
+	/**
+	 * returns the column-major OpenGL matrix for an instance.
+	 * Like the vertices in the vertex buffers, it uses negated z coordinates.
+	 */
+	static final double[] getGLMatrix(InstanceTransform transform) {
+		
+		double[] axes = transform.getAxes();
+		VectorXYZ pos = transform.getPosition();
+		
+		return new double[] {
+				axes[0], axes[1], -axes[2], 0,
+				axes[3], axes[4], -axes[5], 0,
+				-axes[6], -axes[7], axes[8], 0,
+				pos.x, pos.y, -pos.z, 1 };
+		
+	}
+	
 	static final FloatBuffer getFloatBuffer(Color color) {
 		float colorArray[] = {0, 0, 0, color.getAlpha() / 255f};
 		color.getRGBColorComponents(colorArray);
@@ -3,6 +3,7 @@ package org.osm2world.core.target.jogl;
 import static java.lang.Math.PI;
 import static java.lang.Math.abs;
 import static com.jogamp.opengl.GL4bc.GL_COMPILE;
+import static com.jogamp.opengl.fixedfunc.GLLightingFunc.GL_NORMALIZE;
 import static org.osm2world.core.target.common.rendering.OrthoTilesUtil.CardinalDirection.closestCardinal;
 import static org.osm2world.core.target.jogl.JOGLTargetFixedFunction.drawPrimitive;
 
@@ -14,6 +15,7 @@ import java.util.List;
 import com.jogamp.opengl.GL4bc;
 
 import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.target.common.InstanceTransform;
 import org.osm2world.core.target.common.Primitive;
 import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.material.Material.Transparency;
@@ -24,6 +26,8 @@ import org.osm2world.core.target.common.rendering.Projection;
 /**
  * renders the contents of a {@link PrimitiveBuffer} using JOGL.
  * Uses display lists to speed up the process.
+ * Each instanced prototype gets its own display list,
+ * which is called for each of its instances.
  * 
  * If you don't need the renderer anymore, it's recommended to manually call
  * {@link #freeResources()} to delete the display lists. Otherwise, this will
@@ -36,6 +40,9 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 	/** pointer to the display list with static, non-transparent geometry */
 	private Integer displayListPointer;
 	
+	/** pointers to the display lists with the prototypes' non-transparent geometry */
+	private List<Integer> prototypeDisplayListPointers = new ArrayList<Integer>();
+	
 	/** transparent primitives, need to be sorted by distance from camera */
 	private List<PrimitiveWithMaterial> transparentPrimitives =
 			new ArrayList<PrimitiveWithMaterial>();
@@ -64,6 +71,35 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 		super(textureManager);
 		this.gl = gl;
 		
+		/* create a display list for each prototype */
+		
+		for (PrimitiveBuffer prototype : primitiveBuffer.getPrototypes()) {
+			
+			PrimitiveBuffer prototypePrimitives = prototype.flattenInstances();
+			
+			for (Material material : prototypePrimitives.getMaterials()) {
+				if (material.getTransparency() == Transparency.TRUE) {
+					for (InstanceTransform transform : primitiveBuffer.getInstances(prototype)) {
+						for (Primitive primitive : prototypePrimitives.getPrimitives(material)) {
+							transparentPrimitives.add(new PrimitiveWithMaterial(
+									PrimitiveBuffer.transformPrimitive(primitive, transform),
+									material));
+						}
+					}
+				}
+			}
+			
+			int pointer = gl.glGenLists(1);
+			prototypeDisplayListPointers.add(pointer);
+			
+			gl.glNewList(pointer, GL_COMPILE);
+			drawOpaquePrimitives(prototypePrimitives);
+			gl.glEndList();
+			
+		}
+		
+		/* create the display list with the static geometry */
+		
 		displayListPointer = gl.glGenLists(1);
 		
 		gl.glNewList(displayListPointer, GL_COMPILE);
@@ -77,7 +113,40 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 							new PrimitiveWithMaterial(primitive, material));
 				}
 				
-			} else {
+			}
+			
+		}
+		
+		drawOpaquePrimitives(primitiveBuffer);
+		
+		gl.glEnable(GL_NORMALIZE);
+		
+		int prototypeIndex = 0;
+		
+		for (PrimitiveBuffer prototype : primitiveBuffer.getPrototypes()) {
+			
+			int pointer = prototypeDisplayListPointers.get(prototypeIndex++);
+			
+			for (InstanceTransform transform : primitiveBuffer.getInstances(prototype)) {
+				gl.glPushMatrix();
+				gl.glMultMatrixd(AbstractJOGLTarget.getGLMatrix(transform), 0);
+				gl.glCallList(pointer);
+				gl.glPopMatrix();
+			}
+			
+		}
+		
+		gl.glDisable(GL_NORMALIZE);
+
+		gl.glEndList();
+		
+	}
+	
+	private void drawOpaquePrimitives(PrimitiveBuffer primitiveBuffer) {
+		
+		for (Material material : primitiveBuffer.getMaterials()) {
+			
+			if (material.getTransparency() != Transparency.TRUE) {
 				
 				JOGLTargetFixedFunction.setMaterial(gl, material, textureManager);
 	
@@ -90,8 +159,6 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 			}
 			
 		}
-
-		gl.glEndList();
 		
 	}
 
@@ -236,6 +303,10 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 			gl.glDeleteLists(displayListPointer, 1);
 			displayListPointer = null;
 		}
+		for (int pointer : prototypeDisplayListPointers) {
+			gl.glDeleteLists(pointer, 1);
+		}
+		prototypeDisplayListPointers.clear();
 		gl = null;
 
 		super.freeResources();
@@ -12,6 +12,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.target.common.InstanceTransform;
 import org.osm2world.core.target.common.Primitive;
 import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.material.Material.Transparency;
@@ -32,6 +33,9 @@ public abstract class JOGLRendererVBO extends JOGLRenderer {
 	/** VBOs with static, non-alphablended geometry for each material */
 	protected List<VBOData<?>> vbos = new ArrayList<VBOData<?>>();
 	
+	/** VBOs with the non-alphablended geometry of instanced prototypes */
+	protected List<PrototypeVBOs> prototypeVBOs = new ArrayList<PrototypeVBOs>();
+	
 	/** alphablended primitives, need to be sorted by distance from camera */
 	protected List<PrimitiveWithMaterial> transparentPrimitives =
 			new ArrayList<PrimitiveWithMaterial>();
@@ -56,6 +60,23 @@ public abstract class JOGLRendererVBO extends JOGLRenderer {
 		
 	}
 
+	/**
+	 * the VBOs for one prototype's materials, which are rendered
+	 * for each of the prototype's instances
+	 */
+	protected static final class PrototypeVBOs {
+		
+		public final List<VBOData<?>> vbos;
+		public final List<InstanceTransform> instances;
+		
+		private PrototypeVBOs(List<VBOData<?>> vbos,
+				List<InstanceTransform> instances) {
+			this.vbos = vbos;
+			this.instances = instances;
+		}
+		
+	}
+	
 	/**
 	 * returns the number of values for each vertex
 	 * in the vertex buffer layout appropriate for a given material.
@@ -81,10 +102,56 @@ public abstract class JOGLRendererVBO extends JOGLRenderer {
 	
 	/**
 	 * Create the VBOs from a {@link PrimitiveBuffer}.
+	 * The opaque geometry of each instanced prototype is stored
+	 * in {@link #prototypeVBOs} only once. Renderers which cannot
+	 * render these should pass a buffer with flattened instances,
+	 * see {@link PrimitiveBuffer#flattenInstances()}.
+	 * 
 	 * @param primitiveBuffer the source for the VBOs
 	 */
 	protected void init(PrimitiveBuffer primitiveBuffer) {
 		
+		for (PrimitiveBuffer prototype : primitiveBuffer.getPrototypes()) {
+			
+			PrimitiveBuffer prototypePrimitives = prototype.flattenInstances();
+			List<InstanceTransform> instances =
+					primitiveBuffer.getInstances(prototype);
+			
+			List<VBOData<?>> vbosForPrototype = new ArrayList<VBOData<?>>();
+			
+			for (Material material : prototypePrimitives.getMaterials()) {
+				
+				Collection<Primitive> primitives =
+						prototypePrimitives.getPrimitives(material);
+				
+				if (material.getTransparency() == Transparency.TRUE) {
+					
+					/* transparent primitives are sorted individually */
+					
+					for (InstanceTransform transform : instances) {
+						for (Primitive primitive : primitives) {
+							Primitive transformedPrimitive =
+									PrimitiveBuffer.transformPrimitive(primitive, transform);
+							transparentPrimitives.add(new PrimitiveWithMaterial(
+									transformedPrimitive, material, this.createVBOData(
+											textureManager, material,
+											Arrays.asList(transformedPrimitive))));
+						}
+					}
+					
+				} else {
+					
+					vbosForPrototype.add(this.createVBOData(
+							textureManager, material, primitives));
+					
+				}
+				
+			}
+			
+			prototypeVBOs.add(new PrototypeVBOs(vbosForPrototype, instances));
+			
+		}
+		
 		for (Material material : primitiveBuffer.getMaterials()) {
 			
 			if (material.getTransparency() == Transparency.TRUE) {
@@ -224,6 +291,15 @@ public abstract class JOGLRendererVBO extends JOGLRenderer {
 			vbos = null;
 		}
 		
+		if (prototypeVBOs != null) {
+			for (PrototypeVBOs p : prototypeVBOs) {
+				for (VBOData<?> vbo : p.vbos) {
+					vbo.delete();
+				}
+			}
+			prototypeVBOs = null;
+		}
+		
 		super.freeResources();
 		
 	}
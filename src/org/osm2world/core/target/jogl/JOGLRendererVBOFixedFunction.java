@@ -3,6 +3,7 @@ package org.osm2world.core.target.jogl;
 import static com.jogamp.opengl.GL.GL_ARRAY_BUFFER;
 import static com.jogamp.opengl.GL.GL_FLOAT;
 import static com.jogamp.opengl.GL4.GL_DOUBLE;
+import static com.jogamp.opengl.fixedfunc.GLLightingFunc.GL_NORMALIZE;
 import static com.jogamp.opengl.fixedfunc.GLPointerFunc.GL_NORMAL_ARRAY;
 import static com.jogamp.opengl.fixedfunc.GLPointerFunc.GL_TEXTURE_COORD_ARRAY;
 import static com.jogamp.opengl.fixedfunc.GLPointerFunc.GL_VERTEX_ARRAY;
@@ -16,6 +17,7 @@ import com.jogamp.opengl.GL4bc;
 
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.common.InstanceTransform;
 import org.osm2world.core.target.common.Primitive;
 import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.rendering.Camera;
@@ -26,6 +28,7 @@ import com.jogamp.common.nio.Buffers;
 /**
  * Renders the contents of a {@link PrimitiveBuffer} using JOGL and the old fixed function OpengGL pipeline.
  * Uses vertex buffer objects (VBO) to speed up the process.
+ * Instances share their prototype's VBOs and are drawn with a model matrix.
  * 
  * If you don't need the renderer anymore, it's recommended to manually call
  * {@link #freeResources()} to delete the VBOs and other resources.
@@ -134,6 +137,27 @@ public class JOGLRendererVBOFixedFunction extends JOGLRendererVBO {
 			vboData.render();
 		}
 		
+		/* render instances of prototypes, re-using the prototype's VBOs */
+		
+		gl.glEnable(GL_NORMALIZE);
+		
+		for (PrototypeVBOs p : prototypeVBOs) {
+			for (InstanceTransform transform : p.instances) {
+				
+				gl.glPushMatrix();
+				gl.glMultMatrixd(AbstractJOGLTarget.getGLMatrix(transform), 0);
+				
+				for (VBOData<?> vboData : p.vbos) {
+					vboData.render();
+				}
+				
+				gl.glPopMatrix();
+				
+			}
+		}
+		
+		gl.glDisable(GL_NORMALIZE);
+		
 		gl.glDisableClientState(GL_VERTEX_ARRAY);
 		gl.glDisableClientState(GL_NORMAL_ARRAY);
 		
@@ -124,6 +124,8 @@ public class JOGLRendererVBOShader extends JOGLRendererVBO {
 	
 	/**
 	 * Creates vertex buffer objects for all primitives and computes a bounding box around them.
+	 * Instances are flattened, i.e. each instance gets its own copy of the prototype's primitives,
+	 * because the shaders do not support a per-instance model matrix.
 	 * @param primitiveBuffer the primitives to create the VBOs for
 	 * @param xzBoundary the boundary of the OSM file. Used to tighten the bounding box to only primitives within these bounds.
 	 */
@@ -132,6 +134,9 @@ public class JOGLRendererVBOShader extends JOGLRendererVBO {
 		
 		super(textureManager);
 		this.gl = gl;
+		
+		primitiveBuffer = primitiveBuffer.flattenInstances();
+		
 		this.init(primitiveBuffer);
 		
 		ArrayList<VectorXYZ> boundedVertices = new ArrayList<VectorXYZ>();
@@ -113,6 +113,8 @@ public class JOGLRendererVBOShadowVolume  {
 	
 	protected void init(PrimitiveBuffer primitiveBuffer) {
 		
+		primitiveBuffer = primitiveBuffer.flattenInstances();
+		
 		Collection<Primitive> combinedPrimitives = new ArrayList<Primitive>();
 		for (Material material : primitiveBuffer.getMaterials()) {
 			
@@ -4,6 +4,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.imageio.ImageIO;
@@ -11,14 +12,35 @@ import com.jogamp.opengl.GL;
 
 import com.jogamp.opengl.util.awt.ImageUtil;
 import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
 import com.jogamp.opengl.util.texture.TextureIO;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 
 /**
- * loads textures from files to JOGL and keeps them available for future use
+ * loads textures from files to JOGL and keeps them available for future use.
+ * 
+ * Textures belong to a GL context, but the decoded image data is shared
+ * by all texture managers, so textures do not have to be read from
+ * their files again when a new context is created (e.g. for each
+ * image export in a long-running process).
  */
 public class JOGLTextureManager {
 
+	/** maximum number of decoded images kept in {@link #SHARED_DATA} */
+	private static final int MAX_SHARED_DATA = 64;
+	
+	/**
+	 * decoded images, by file, profile and mipmap setting;
+	 * least recently used entries are evicted first
+	 */
+	private static final Map<String, TextureData> SHARED_DATA =
+			new LinkedHashMap<String, TextureData>(MAX_SHARED_DATA * 2, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TextureData> eldest) {
+			return size() > MAX_SHARED_DATA;
+		}
+	};
+	
 	private final GL gl;
 	
 	private final Map<File, Texture> availableTextures = new HashMap<File, Texture>();
@@ -47,20 +69,8 @@ public class JOGLTextureManager {
 				
 				try {
 					
-					if (!file.getName().toLowerCase().endsWith("png")) {
-						
-						//flip to ensure consistent tex coords with png images
-						BufferedImage bufferedImage = ImageIO.read(file);
-						ImageUtil.flipImageVertically(bufferedImage);
-						
-						result = AWTTextureIO.newTexture(
-								gl.getGLProfile(), bufferedImage, createMipmaps);
-						
-					} else {
-					
-						result = TextureIO.newTexture(file, createMipmaps);
-						
-					}
+					result = TextureIO.newTexture(gl,
+							getTextureData(file, createMipmaps));
 					
 					/* workaround for OpenGL 3: call to glGenerateMipmap is missing in [AWT]TextureIO.newTexture()
 					 * May be fixed in new versions of JOGL.
@@ -87,6 +97,48 @@ public class JOGLTextureManager {
 	}
 	
 	
+	/**
+	 * returns the decoded image data for a file,
+	 * reading it only if it is not in the shared cache
+	 */
+	private TextureData getTextureData(File file, boolean createMipmaps)
+			throws IOException {
+		
+		String key = file.getAbsolutePath() + "|" + file.lastModified()
+				+ "|" + gl.getGLProfile().getName() + "|" + createMipmaps;
+		
+		synchronized (SHARED_DATA) {
+			
+			TextureData data = SHARED_DATA.get(key);
+			
+			if (data == null) {
+				
+				if (!file.getName().toLowerCase().endsWith("png")) {
+					
+					//flip to ensure consistent tex coords with png images
+					BufferedImage bufferedImage = ImageIO.read(file);
+					ImageUtil.flipImageVertically(bufferedImage);
+					
+					data = AWTTextureIO.newTextureData(
+							gl.getGLProfile(), bufferedImage, createMipmaps);
+					
+				} else {
+					
+					data = TextureIO.newTextureData(gl.getGLProfile(),
+							file, createMipmaps, TextureIO.PNG);
+					
+				}
+				
+				SHARED_DATA.put(key, data);
+				
+			}
+			
+			return data;
+			
+		}
+		
+	}
+	
 	public void releaseAll() {
 				
 		for (Texture texture : availableTextures.values()) {
@@ -1,18 +1,24 @@
 package org.osm2world.core.target.jogl;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.common.InstanceTransform;
 import org.osm2world.core.target.common.Primitive;
 import org.osm2world.core.target.common.Primitive.Type;
 import org.osm2world.core.target.common.PrimitiveTarget;
 import org.osm2world.core.target.common.RenderableToPrimitiveTarget;
 import org.osm2world.core.target.common.material.Material;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 
 /**
@@ -20,6 +26,12 @@ import com.google.common.collect.Multimap;
  * that can be displayed using graphics APIs, e.g. OpenGL.
  * Higher-level information, such as object coherence, OSM attributes
  * or representations, isn't present in a PrimitiveBuffer.
+ * 
+ * Instances drawn with {@link #drawInstance} are stored as one
+ * prototype buffer per {@link InstanceGeometry}, containing the
+ * geometry's primitives in local coordinates, and a list of
+ * {@link InstanceTransform}s. Renderers can therefore re-use
+ * the prototype's primitives for all instances.
  */
 public class PrimitiveBuffer extends
 		PrimitiveTarget<RenderableToPrimitiveTarget> {
@@ -36,12 +48,41 @@ public class PrimitiveBuffer extends
 	
 	private Multimap<Material, Primitive> primitiveMap = HashMultimap.create();
 	
+	private Map<InstanceGeometry, PrimitiveBuffer> prototypeMap =
+			new LinkedHashMap<InstanceGeometry, PrimitiveBuffer>();
+	
+	private ListMultimap<PrimitiveBuffer, InstanceTransform> instanceMap =
+			ArrayListMultimap.create();
+	
+	/** result of {@link #flattenInstances()}, null if it needs to be updated */
+	private PrimitiveBuffer flattenedBuffer = null;
+	
 	@Override
 	protected void drawPrimitive(Type type, Material material,
 			List<VectorXYZ> vertices, List<VectorXYZ> normals,
 			List<List<VectorXZ>> texCoordLists) {
 		primitiveMap.put(material,
 				new Primitive(type, vertices, normals, texCoordLists));
+		flattenedBuffer = null;
+	}
+	
+	@Override
+	public void drawInstance(InstanceGeometry geometry,
+			VectorXYZ position, VectorXZ direction, double scale) {
+		
+		PrimitiveBuffer prototype = prototypeMap.get(geometry);
+		
+		if (prototype == null) {
+			prototype = new PrimitiveBuffer();
+			prototype.setMaterialRegistry(getMaterialRegistry());
+			geometry.renderTo(prototype);
+			prototypeMap.put(geometry, prototype);
+		}
+		
+		instanceMap.put(prototype,
+				new InstanceTransform(position, direction, scale));
+		flattenedBuffer = null;
+		
 	}
 	
 	/**
@@ -58,4 +99,77 @@ public class PrimitiveBuffer extends
 		return primitiveMap.get(material);
 	}
 	
+	/**
+	 * returns the prototype buffer for an instanced geometry,
+	 * or null if no instance of that geometry has been drawn
+	 */
+	public PrimitiveBuffer getPrototype(InstanceGeometry geometry) {
+		return prototypeMap.get(geometry);
+	}
+	
+	/**
+	 * returns the prototype buffers of all instanced geometries.
+	 * Their primitives are not included in {@link #getPrimitives(Material)}.
+	 */
+	public Collection<PrimitiveBuffer> getPrototypes() {
+		return prototypeMap.values();
+	}
+	
+	/**
+	 * returns the transforms of all instances of a prototype
+	 */
+	public List<InstanceTransform> getInstances(PrimitiveBuffer prototype) {
+		return instanceMap.get(prototype);
+	}
+	
+	/**
+	 * returns a buffer with this buffer's primitives and a transformed copy
+	 * of the prototype's primitives for each instance.
+	 * For renderers which cannot draw instances natively.
+	 * The prototypes' normals are rotated rather than calculated again.
+	 */
+	public PrimitiveBuffer flattenInstances() {
+		
+		if (prototypeMap.isEmpty()) {
+			return this;
+		}
+		
+		if (flattenedBuffer == null) {
+			
+			flattenedBuffer = new PrimitiveBuffer();
+			flattenedBuffer.primitiveMap.putAll(primitiveMap);
+			
+			for (PrimitiveBuffer prototype : getPrototypes()) {
+				
+				PrimitiveBuffer prototypePrimitives = prototype.flattenInstances();
+				
+				for (InstanceTransform transform : getInstances(prototype)) {
+					for (Material material : prototypePrimitives.getMaterials()) {
+						for (Primitive primitive :
+								prototypePrimitives.getPrimitives(material)) {
+							flattenedBuffer.primitiveMap.put(material,
+									transformPrimitive(primitive, transform));
+						}
+					}
+				}
+				
+			}
+			
+		}
+		
+		return flattenedBuffer;
+		
+	}
+	
+	/**
+	 * returns a copy of a primitive with transformed vertices and normals
+	 */
+	static Primitive transformPrimitive(Primitive primitive,
+			InstanceTransform transform) {
+		return new Primitive(primitive.type,
+				transform.applyToVertices(primitive.vertices),
+				transform.applyToNormals(primitive.normals),
+				primitive.texCoordLists);
+	}
+	
 }
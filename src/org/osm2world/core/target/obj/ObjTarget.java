@@ -22,7 +22,10 @@ import org.osm2world.core.math.TriangleXYZWithNormals;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.data.OSMElement;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.common.FaceTarget;
+import org.osm2world.core.target.common.InstanceTransform;
 import org.osm2world.core.target.common.TextureData;
 import org.osm2world.core.target.common.material.Material;
 import static org.osm2world.core.target.common.material.Material.Transparency.TRUE;
@@ -37,22 +40,35 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 	private final Map<VectorXYZ, Integer> vertexIndexMap = new HashMap<VectorXYZ, Integer>();
 	private final Map<VectorXYZ, Integer> normalsIndexMap = new HashMap<VectorXYZ, Integer>();
 	private final Map<VectorXZ, Integer> texCoordsIndexMap = new HashMap<VectorXZ, Integer>();
-	private final Map<Material, String> materialMap = new HashMap<Material, String>();
+	private final Map<Material, String> materialMap;
 	
 	private Class<? extends WorldObject> currentWOGroup = null;
 	private int anonymousWOCounter = 0;
 	
 	private Material currentMaterial = null;
 	private int currentMaterialLayer = 0;
-	private static int anonymousMaterialCounter = 0;
+	
+	private final Map<InstanceGeometry, FaceRecorder> prototypes =
+			new HashMap<InstanceGeometry, FaceRecorder>();
 	
 	// this is approximatly one millimeter
 	private static final double SMALL_OFFSET = 1e-3;
 	
 	public ObjTarget(PrintStream objStream, PrintStream mtlStream) {
+		this(objStream, mtlStream, new HashMap<Material, String>());
+	}
+	
+	/**
+	 * @param materialMap  names of the materials that have already been
+	 *                     written to the mtl stream. Needs to be shared by
+	 *                     all targets writing to the same mtl stream.
+	 */
+	public ObjTarget(PrintStream objStream, PrintStream mtlStream,
+			Map<Material, String> materialMap) {
 		
 		this.objStream = objStream;
 		this.mtlStream = mtlStream;
+		this.materialMap = materialMap;
 				
 	}
 	
@@ -116,10 +132,66 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 		
 	}
 	
+	/**
+	 * draws an instance using the faces of the geometry. Faces are only
+	 * created (and, if enabled, reconstructed) once for each geometry.
+	 * For each instance, the faces' vertices and normals are transformed
+	 * and written to the file. OBJ cannot reference shared geometry,
+	 * so the file still contains the vertices of every instance.
+	 */
+	@Override
+	public void drawInstance(InstanceGeometry geometry,
+			VectorXYZ position, VectorXZ direction, double scale) {
+		
+		FaceRecorder prototype = prototypes.get(geometry);
+		
+		if (prototype == null) {
+			prototype = new FaceRecorder(reconstructFaces());
+			prototype.setMaterialRegistry(getMaterialRegistry());
+			geometry.renderTo(prototype);
+			prototype.finish();
+			prototypes.put(geometry, prototype);
+		}
+		
+		InstanceTransform transform =
+				new InstanceTransform(position, direction, scale);
+		
+		for (RecordedFace face : prototype.faces) {
+			
+			List<VectorXYZ> vs = transform.applyToVertices(face.vs);
+			List<VectorXYZ> normals = (face.normals == null) ? null
+					: transform.applyToNormals(face.normals);
+			
+			if (face.isTriangles) {
+				
+				List<TriangleXYZWithNormals> triangles =
+						new ArrayList<TriangleXYZWithNormals>(vs.size() / 3);
+				
+				for (int i = 0; i + 2 < vs.size(); i += 3) {
+					triangles.add(new TriangleXYZWithNormals(
+							vs.get(i), vs.get(i+1), vs.get(i+2),
+							normals.get(i), normals.get(i+1), normals.get(i+2)));
+				}
+				
+				drawTrianglesWithNormals(face.material, triangles,
+						face.texCoordLists);
+				
+			} else {
+				
+				drawFace(face.material, vs, normals, face.texCoordLists);
+				
+			}
+			
+		}
+		
+	}
+	
 	@Override
 	public void drawFace(Material material, List<VectorXYZ> vs,
 			List<VectorXYZ> normals, List<List<VectorXZ>> texCoordLists) {
 
+		material = resolve(material);
+		
 		int[] normalIndices = null;
 		if (normals != null) {
 			normalIndices = normalsToIndices(normals);
@@ -146,6 +218,8 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 			Collection<? extends TriangleXYZWithNormals> triangles,
 			List<List<VectorXZ>> texCoordLists) {
 		
+		material = resolve(material);
+		
 		for (int layer = 0; layer < max(1, material.getNumTextureLayers()); layer++) {
 			
 			useMaterial(material, layer);
@@ -177,8 +251,7 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 			if (name == null) {
 				name = Materials.getUniqueName(material);
 				if (name == null) {
-					name = "MAT_" + anonymousMaterialCounter;
-					anonymousMaterialCounter += 1;
+					name = "MAT_" + materialMap.size();
 				}
 				materialMap.put(material, name);
 				writeMaterial(material, name);
@@ -335,4 +408,84 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 		
 	}
 
+	/**
+	 * records the faces of an {@link InstanceGeometry} in local coordinates,
+	 * after faces have been reconstructed if that is enabled
+	 */
+	private static class FaceRecorder
+			extends FaceTarget<RenderableToAllTargets> {
+		
+		private final boolean reconstructFaces;
+		
+		final List<RecordedFace> faces = new ArrayList<RecordedFace>();
+		
+		FaceRecorder(boolean reconstructFaces) {
+			this.reconstructFaces = reconstructFaces;
+		}
+		
+		@Override
+		public Class<RenderableToAllTargets> getRenderableType() {
+			return RenderableToAllTargets.class;
+		}
+		
+		@Override
+		public void render(RenderableToAllTargets renderable) {
+			renderable.renderTo(this);
+		}
+		
+		@Override
+		public boolean reconstructFaces() {
+			return reconstructFaces;
+		}
+		
+		@Override
+		public void drawFace(Material material, List<VectorXYZ> vs,
+				List<VectorXYZ> normals, List<List<VectorXZ>> texCoordLists) {
+			faces.add(new RecordedFace(false, material,
+					new ArrayList<VectorXYZ>(vs),
+					normals == null ? null : new ArrayList<VectorXYZ>(normals),
+					texCoordLists));
+		}
+		
+		@Override
+		public void drawTrianglesWithNormals(Material material,
+				Collection<? extends TriangleXYZWithNormals> triangles,
+				List<List<VectorXZ>> texCoordLists) {
+			
+			List<VectorXYZ> vs = new ArrayList<VectorXYZ>(triangles.size() * 3);
+			List<VectorXYZ> normals = new ArrayList<VectorXYZ>(triangles.size() * 3);
+			
+			for (TriangleXYZWithNormals t : triangles) {
+				vs.addAll(t.getVertices());
+				normals.addAll(t.getNormals());
+			}
+			
+			faces.add(new RecordedFace(true, material, vs, normals, texCoordLists));
+			
+		}
+		
+	}
+	
+	private static class RecordedFace {
+		
+		/** whether this is a list of triangles with normals, not a single face */
+		final boolean isTriangles;
+		
+		final Material material;
+		final List<VectorXYZ> vs;
+		final List<VectorXYZ> normals;
+		final List<List<VectorXZ>> texCoordLists;
+		
+		RecordedFace(boolean isTriangles, Material material,
+				List<VectorXYZ> vs, List<VectorXYZ> normals,
+				List<List<VectorXZ>> texCoordLists) {
+			this.isTriangles = isTriangles;
+			this.material = material;
+			this.vs = vs;
+			this.normals = normals;
+			this.texCoordLists = texCoordLists;
+		}
+		
+	}
+	
 }
@@ -3,11 +3,15 @@ package org.osm2world.core.target.obj;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import org.osm2world.core.GlobalValues;
 import org.osm2world.core.map_data.creation.MapProjection;
@@ -15,6 +19,8 @@ import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.target.TargetUtil;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.Projection;
 
@@ -27,7 +33,7 @@ public final class ObjWriter {
 	private ObjWriter() { }
 	
 	public static final void writeObjFile(
-			File objFile, MapData mapData,
+			File objFile, MapData mapData, MaterialRegistry materialRegistry,
 			MapProjection mapProjection,
 			Camera camera, Projection projection, boolean underground)
 			throws IOException {
@@ -41,8 +47,8 @@ public final class ObjWriter {
 			mtlFile.createNewFile();
 		}
 		
-		PrintStream objStream = new PrintStream(objFile);
-		PrintStream mtlStream = new PrintStream(mtlFile);
+		PrintStream objStream = createPrintStream(objFile);
+		PrintStream mtlStream = createPrintStream(mtlFile);
 		
 		/* write comments at the beginning of both files */
 		
@@ -57,6 +63,7 @@ public final class ObjWriter {
 		/* write actual file content */
 		
 		ObjTarget target = new ObjTarget(objStream, mtlStream);
+		target.setMaterialRegistry(materialRegistry);
                 
 		TargetUtil.renderWorldObjects(target, mapData, underground);
 		
@@ -67,6 +74,7 @@ public final class ObjWriter {
 	
 	public static final void writeObjFiles(
 			final File objDirectory, MapData mapData,
+			final MaterialRegistry materialRegistry,
 			final MapProjection mapProjection,
 			Camera camera, Projection projection,
 			int primitiveThresholdPerFile)
@@ -84,13 +92,15 @@ public final class ObjWriter {
 			mtlFile.createNewFile();
 		}
 		
-		final PrintStream mtlStream = new PrintStream(mtlFile);
+		final PrintStream mtlStream = createPrintStream(mtlFile);
 		
 		writeMtlHeader(mtlStream);
 		
+		final Map<Material, String> materialMap = new HashMap<Material, String>();
+		
 		/* create iterator which creates and wraps .obj files as needed */
 				
-		Iterator<ObjTarget> objIterator = new Iterator<ObjTarget>() {
+		class ObjFileIterator implements Iterator<ObjTarget> {
 
 			private int fileCounter = 0;
 			PrintStream objStream = null;
@@ -117,13 +127,17 @@ public final class ObjWriter {
 						objFile.createNewFile();
 					}
 					
-					objStream = new PrintStream(objFile);
+					objStream = createPrintStream(objFile);
 					
 					writeObjHeader(objStream, mapProjection);
 	
 					objStream.println("mtllib " + mtlFile.getName() + "\n");
 					
-					return new ObjTarget(objStream, mtlStream);
+					ObjTarget target =
+							new ObjTarget(objStream, mtlStream, materialMap);
+					target.setMaterialRegistry(materialRegistry);
+					
+					return target;
 					
 				} catch (FileNotFoundException e) {
 					throw new RuntimeException(e);
@@ -138,16 +152,32 @@ public final class ObjWriter {
 				throw new UnsupportedOperationException();
 			}
 			
-		};
+		}
+		
+		ObjFileIterator objIterator = new ObjFileIterator();
 		
 		/* write file content */
 		
 		TargetUtil.renderWorldObjects(objIterator, mapData, primitiveThresholdPerFile);
 		
+		if (objIterator.objStream != null) {
+			objIterator.objStream.close();
+		}
+		
 		mtlStream.close();
 		
 	}
 
+	/**
+	 * opens a buffered stream for a file. A PrintStream created directly
+	 * from the file would write every line to the file separately.
+	 */
+	private static final PrintStream createPrintStream(File file)
+			throws FileNotFoundException {
+		return new PrintStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+	}
+	
 	private static final void writeObjHeader(PrintStream objStream,
 			MapProjection mapProjection) {
 		
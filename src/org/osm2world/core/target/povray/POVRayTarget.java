@@ -12,7 +12,9 @@ import org.osm2world.core.math.TriangleXYZ;
 import org.osm2world.core.math.TriangleXYZWithNormals;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
 import org.osm2world.core.target.common.AbstractTarget;
+import org.osm2world.core.target.common.InstanceTransform;
 import org.osm2world.core.target.common.TextureData;
 import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.material.Materials;
@@ -28,6 +30,8 @@ public class POVRayTarget extends AbstractTarget<RenderableToPOVRay> {
 	
 	private Map<TextureData, String> textureNames = new HashMap<TextureData, String>();
 	
+	private Map<InstanceGeometry, String> instanceNames = new HashMap<InstanceGeometry, String>();
+	
 	public POVRayTarget(PrintStream output) {
 		this.output = output;
 	}
@@ -116,7 +120,7 @@ public class POVRayTarget extends AbstractTarget<RenderableToPOVRay> {
 	
 	public void appendMaterialDefinitions() {
 		
-		for (Material material : Materials.getMaterials()) {
+		for (Material material : getMaterialRegistry().getMaterials()) {
 			
 			String uniqueName = Materials.getUniqueName(material);
 			String name = "texture_" + uniqueName;
@@ -140,6 +144,48 @@ public class POVRayTarget extends AbstractTarget<RenderableToPOVRay> {
 		
 	}
 
+	/**
+	 * declares the geometry when it is first used,
+	 * then references the declaration with a transformation matrix
+	 */
+	@Override
+	public void drawInstance(InstanceGeometry geometry,
+			VectorXYZ position, VectorXZ direction, double scale) {
+		
+		String name = instanceNames.get(geometry);
+		
+		if (name == null) {
+			
+			name = "instance_" + instanceNames.size();
+			instanceNames.put(geometry, name);
+			
+			append("#declare " + name + " = union {\n");
+			geometry.renderTo(this);
+			append("}\n\n");
+			
+		}
+		
+		InstanceTransform transform =
+				new InstanceTransform(position, direction, scale);
+		
+		double[] axes = transform.getAxes();
+		
+		append("object { " + name + " matrix <");
+		
+		for (double value : axes) {
+			append(value);
+			append(", ");
+		}
+		
+		append(position.x);
+		append(", ");
+		append(position.y);
+		append(", ");
+		append(position.z);
+		append("> }\n");
+		
+	}
+	
 	@Override
 	public void drawTriangles(Material material,
 			Collection<? extends TriangleXYZ> triangles,
@@ -148,6 +194,8 @@ public class POVRayTarget extends AbstractTarget<RenderableToPOVRay> {
 		if (!checkMeshValidity(triangles))
 			return;
 		
+		material = resolve(material);
+		
 		for (TriangleXYZ triangle : triangles) {
 			performNaNCheck(triangle);
 		}
@@ -198,6 +246,8 @@ public class POVRayTarget extends AbstractTarget<RenderableToPOVRay> {
 		if (!checkMeshValidity(triangles))
 			return;
 
+		material = resolve(material);
+		
 		if (material.getNumTextureLayers() > 1) {
 			
 			int count = 0;
@@ -594,6 +644,8 @@ public class POVRayTarget extends AbstractTarget<RenderableToPOVRay> {
 	
 	public void appendMaterialOrName(Material material) {
 		
+		material = resolve(material);
+		
 		String materialName = Materials.getUniqueName(material);
 
 		if (materialName != null) {
@@ -11,6 +11,7 @@ import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.target.TargetUtil;
 import org.osm2world.core.target.common.lighting.GlobalLightingParameters;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.Projection;
 import org.osm2world.core.world.data.WorldObject;
@@ -24,6 +25,7 @@ public final class POVRayWriter {
 	private POVRayWriter() { }
 	
 	public static final void writePOVInstructionFile(File file, MapData mapData,
+			MaterialRegistry materialRegistry,
 			Camera camera, Projection projection)
 			throws IOException {
 		
@@ -34,7 +36,7 @@ public final class POVRayWriter {
 		PrintStream printStream = new PrintStream(file);
 		
 		writePOVInstructionStringToStream(printStream,
-				mapData, camera, projection);
+				mapData, materialRegistry, camera, projection);
 		
 		printStream.close();
 		
@@ -42,9 +44,11 @@ public final class POVRayWriter {
 
 	private static final void writePOVInstructionStringToStream(
 			PrintStream stream, MapData mapData,
+			MaterialRegistry materialRegistry,
 			Camera camera, Projection projection) {
 				
 		POVRayTarget target = new POVRayTarget(stream);
+		target.setMaterialRegistry(materialRegistry);
 		
 		addCommentHeader(target);
 		
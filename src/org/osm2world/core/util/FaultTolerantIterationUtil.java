@@ -19,14 +19,21 @@ final public class FaultTolerantIterationUtil {
 			try {
 				operation.perform(input);
 			} catch (Exception e) {
-				System.err.println("ignored exception:");
-				//TODO proper logging
-				e.printStackTrace();
-				System.err.println("this exception occurred for the following input:\n"
-						+ input);
+				reportException(e, input);
 			}
 		}
 		
 	}
 	
+	/**
+	 * reports an exception that is ignored while processing an input
+	 */
+	public static final void reportException(Exception e, Object input) {
+		System.err.println("ignored exception:");
+		//TODO proper logging
+		e.printStackTrace();
+		System.err.println("this exception occurred for the following input:\n"
+				+ input);
+	}
+	
 }
@@ -0,0 +1,355 @@
+package org.osm2world.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.commons.configuration.Configuration;
+import org.osm2world.core.util.metrics.Metrics;
+
+/**
+ * utility class that allows the elements of a collection to be processed
+ * by multiple threads.
+ *
+ * The collection is split into contiguous chunks, and the methods only
+ * return after all chunks have been processed. Each call can therefore
+ * be used as a barrier between conversion steps that depend on each other.
+ */
+final public class ParallelIterationUtil {
+
+	private ParallelIterationUtil() { }
+
+	/**
+	 * configuration key for the number of threads used by conversion steps
+	 * that support parallel execution. Defaults to 1, i.e. sequential.
+	 */
+	public static final String THREAD_COUNT_KEY = "threadCount";
+
+	/** number of chunks created per thread, for better load balancing */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	public static interface Operation<T> {
+		public void perform(T input);
+	}
+
+	/**
+	 * operation working on a contiguous range of indices,
+	 * for data that is stored in arrays rather than collections
+	 */
+	public static interface RangeOperation {
+		/**
+		 * @param start  first index of the range, inclusive
+		 * @param end    last index of the range, exclusive
+		 */
+		public void perform(int start, int end);
+	}
+
+	/**
+	 * a {@link ThreadLocal} whose value is passed on from the thread calling
+	 * {@link #iterateRanges(int, RangeOperation, ExecutorService)} to the
+	 * worker threads performing the operation, just like
+	 * {@link Metrics#current()}. Null values are not passed on.
+	 */
+	public static class PropagatedThreadLocal<T> extends ThreadLocal<T> {
+
+		public PropagatedThreadLocal() {
+			synchronized (PROPAGATED_LOCALS) {
+				PROPAGATED_LOCALS.add(this);
+			}
+		}
+
+	}
+
+	/** all {@link PropagatedThreadLocal}s that have not been garbage collected */
+	private static final Set<PropagatedThreadLocal<?>> PROPAGATED_LOCALS =
+			Collections.newSetFromMap(
+					new WeakHashMap<PropagatedThreadLocal<?>, Boolean>());
+
+	/**
+	 * returns the thread count from a configuration,
+	 * never less than 1
+	 */
+	public static final int getThreadCount(Configuration config) {
+
+		if (config == null) {
+			return 1;
+		}
+
+		int threadCount = config.getInt(THREAD_COUNT_KEY, 1);
+
+		if (threadCount <= 0) {
+			threadCount = Runtime.getRuntime().availableProcessors();
+		}
+
+		return threadCount;
+
+	}
+
+	/**
+	 * creates an executor with a fixed number of daemon threads.
+	 * The caller is responsible for shutting it down.
+	 *
+	 * @return  the executor; null if threadCount is 1 or less,
+	 *          which will make {@link #iterate(Collection, Operation, ExecutorService)}
+	 *          run sequentially
+	 */
+	public static final ExecutorService createExecutor(int threadCount) {
+
+		if (threadCount <= 1) {
+			return null;
+		}
+
+		return Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			@Override public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "OSM2World worker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	}
+
+	/**
+	 * shuts down an executor created by {@link #createExecutor(int)}.
+	 * Does nothing if the executor is null.
+	 */
+	public static final void shutdown(ExecutorService executor) {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * performs an operation for each element of a collection.
+	 *
+	 * If the operation throws an exception for any of the elements,
+	 * the exception for the first of those elements (in iteration order)
+	 * is re-thrown once all chunks have been processed.
+	 *
+	 * @param executor  executor used to run the chunks;
+	 *                  null to process all elements on the calling thread
+	 */
+	public static final <T> void iterate(Collection<? extends T> collection,
+			final Operation<? super T> operation, ExecutorService executor) {
+
+		if (executor == null || collection.size() < 2) {
+
+			for (T input : collection) {
+				operation.perform(input);
+			}
+
+		} else {
+
+			final List<? extends T> list = (collection instanceof List<?>)
+					? (List<? extends T>) collection
+					: new ArrayList<T>(collection);
+
+			iterateRanges(list.size(), new RangeOperation() {
+				@Override public void perform(int start, int end) {
+					for (int i = start; i < end; i++) {
+						operation.perform(list.get(i));
+					}
+				}
+			}, executor);
+
+		}
+
+	}
+
+	/**
+	 * performs an operation for contiguous ranges covering the indices
+	 * [0, size). Exceptions are handled as in
+	 * {@link #iterate(Collection, Operation, ExecutorService)}.
+	 *
+	 * @param executor  executor used to run the ranges;
+	 *                  null to process the entire range on the calling thread
+	 */
+	public static final void iterateRanges(int size,
+			final RangeOperation operation, ExecutorService executor) {
+
+		if (executor == null || size < 2) {
+
+			if (size > 0) {
+				operation.perform(0, size);
+			}
+
+		} else {
+
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+
+			/* worker threads record to the calling thread's metrics,
+			 * and use its values of propagated thread locals */
+
+			final Metrics metrics = Metrics.current();
+			final Map<PropagatedThreadLocal<Object>, Object> locals =
+					getPropagatedValues();
+
+			for (final int[] range : createChunks(size, getThreadCount(executor))) {
+				futures.add(executor.submit(new Runnable() {
+					@Override public void run() {
+						Metrics previousMetrics = Metrics.setCurrent(metrics);
+						Map<PropagatedThreadLocal<Object>, Object> previousLocals =
+								setPropagatedValues(locals);
+						try {
+							operation.perform(range[0], range[1]);
+						} finally {
+							setPropagatedValues(previousLocals);
+							Metrics.setCurrent(previousMetrics);
+						}
+					}
+				}));
+			}
+
+			waitFor(futures);
+
+		}
+
+	}
+
+	/**
+	 * returns the current thread's non-null values
+	 * of all {@link PropagatedThreadLocal}s
+	 */
+	@SuppressWarnings("unchecked")
+	private static final Map<PropagatedThreadLocal<Object>, Object>
+			getPropagatedValues() {
+
+		Map<PropagatedThreadLocal<Object>, Object> result =
+				new HashMap<PropagatedThreadLocal<Object>, Object>();
+
+		synchronized (PROPAGATED_LOCALS) {
+			for (PropagatedThreadLocal<?> local : PROPAGATED_LOCALS) {
+				Object value = local.get();
+				if (value != null) {
+					result.put((PropagatedThreadLocal<Object>) local, value);
+				}
+			}
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * sets the current thread's values of {@link PropagatedThreadLocal}s.
+	 * Null values remove the thread's value.
+	 *
+	 * @return  the previous values, which can be restored with this method
+	 */
+	private static final Map<PropagatedThreadLocal<Object>, Object>
+			setPropagatedValues(Map<PropagatedThreadLocal<Object>, Object> values) {
+
+		Map<PropagatedThreadLocal<Object>, Object> previousValues =
+				new HashMap<PropagatedThreadLocal<Object>, Object>();
+
+		for (Map.Entry<PropagatedThreadLocal<Object>, Object> entry
+				: values.entrySet()) {
+
+			PropagatedThreadLocal<Object> local = entry.getKey();
+
+			previousValues.put(local, local.get());
+
+			if (entry.getValue() != null) {
+				local.set(entry.getValue());
+			} else {
+				local.remove();
+			}
+
+		}
+
+		return previousValues;
+
+	}
+
+	/**
+	 * returns the number of threads of an executor.
+	 * This is known for executors created by {@link #createExecutor(int)};
+	 * other executors are treated as having a single thread.
+	 */
+	private static final int getThreadCount(ExecutorService executor) {
+
+		if (executor instanceof ThreadPoolExecutor) {
+			return Math.max(1, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+		} else {
+			return 1;
+		}
+
+	}
+
+	/**
+	 * splits an index range [0, size) into contiguous chunks,
+	 * {@value #CHUNKS_PER_THREAD} per thread
+	 *
+	 * @return  list of {start, end} pairs in ascending order
+	 */
+	static final List<int[]> createChunks(int size, int threadCount) {
+
+		int chunkCount = Math.min(size, threadCount * CHUNKS_PER_THREAD);
+
+		List<int[]> chunks = new ArrayList<int[]>(chunkCount);
+
+		for (int c = 0; c < chunkCount; c++) {
+			chunks.add(new int[] {
+					(int)((long)size * c / chunkCount),
+					(int)((long)size * (c + 1) / chunkCount)});
+		}
+
+		return chunks;
+
+	}
+
+	/**
+	 * waits until all futures are done. Re-throws the exception
+	 * of the first failed future in list order, if any.
+	 */
+	public static final void waitFor(List<? extends Future<?>> futures) {
+
+		RuntimeException firstException = null;
+
+		for (Future<?> future : futures) {
+
+			try {
+
+				future.get();
+
+			} catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+				if (firstException == null) {
+					firstException = new RuntimeException(e);
+				}
+
+			} catch (ExecutionException e) {
+
+				if (firstException == null) {
+					if (e.getCause() instanceof RuntimeException) {
+						firstException = (RuntimeException) e.getCause();
+					} else if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					} else {
+						firstException = new RuntimeException(e.getCause());
+					}
+				}
+
+			}
+
+		}
+
+		if (firstException != null) {
+			throw firstException;
+		}
+
+	}
+
+}
@@ -0,0 +1,435 @@
+package org.osm2world.core.util.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * collects performance metrics of a conversion:
+ * hierarchical timers, counters and the peak heap usage.
+ *
+ * Timers started by a thread become children of the timer that thread
+ * has most recently started and not yet stopped. This results in a tree
+ * such as phase, then module, then sub-step. Timers started by threads
+ * without a running timer become top-level timers, so sub-steps should
+ * be timed by the thread coordinating a parallel computation.
+ *
+ * Code that is not given a Metrics instance explicitly uses
+ * {@link #current()}. If no metrics have been set for a thread, this is
+ * {@link #DISABLED}, whose methods do nothing. Callers in hot loops
+ * should look up the instance once, rather than for each iteration.
+ *
+ * Timers, counters and the heap sampling are thread-safe.
+ */
+public class Metrics {
+
+	/** metrics which do not record anything */
+	public static final Metrics DISABLED = new Metrics(false, 0);
+
+	/** default interval for sampling the heap usage */
+	public static final long DEFAULT_HEAP_SAMPLING_MS = 10;
+
+	private static final ThreadLocal<Metrics> CURRENT = new ThreadLocal<Metrics>();
+
+	/**
+	 * returns the metrics the calling thread should record to,
+	 * {@link #DISABLED} if none have been set
+	 */
+	public static final Metrics current() {
+		Metrics metrics = CURRENT.get();
+		return (metrics != null) ? metrics : DISABLED;
+	}
+
+	/**
+	 * sets the metrics the calling thread should record to
+	 *
+	 * @param metrics  the metrics; null or {@link #DISABLED} to stop recording
+	 * @return  the previous metrics, to be restored with another call
+	 */
+	public static final Metrics setCurrent(Metrics metrics) {
+		Metrics previous = current();
+		if (metrics == null || metrics == DISABLED) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(metrics);
+		}
+		return previous;
+	}
+
+	private final boolean enabled;
+
+	private final long startNanos;
+	private volatile long endNanos = -1;
+
+	private final TimerNode rootNode = new TimerNode(null, "");
+
+	private final ThreadLocal<TimerNode> currentNode = new ThreadLocal<TimerNode>();
+
+	private final ConcurrentMap<String, AtomicLong> counters =
+			new ConcurrentHashMap<String, AtomicLong>();
+
+	private final AtomicLong peakHeapBytes = new AtomicLong();
+
+	private final Thread heapSampler;
+
+	private volatile Profile profile = null;
+
+	/**
+	 * creates enabled metrics with the default heap sampling interval
+	 */
+	public Metrics() {
+		this(true, DEFAULT_HEAP_SAMPLING_MS);
+	}
+
+	/**
+	 * @param heapSamplingMs  interval for sampling the heap usage while the
+	 *                        metrics are running; 0 to only sample it
+	 *                        when timers are stopped
+	 */
+	public Metrics(long heapSamplingMs) {
+		this(true, heapSamplingMs);
+	}
+
+	private Metrics(boolean enabled, final long heapSamplingMs) {
+
+		this.enabled = enabled;
+		this.startNanos = System.nanoTime();
+
+		if (enabled && heapSamplingMs > 0) {
+
+			heapSampler = new Thread(new Runnable() {
+				@Override public void run() {
+					try {
+						while (!Thread.currentThread().isInterrupted()) {
+							sampleHeap();
+							Thread.sleep(heapSamplingMs);
+						}
+					} catch (InterruptedException e) {
+						// finished
+					}
+				}
+			}, "OSM2World heap sampler");
+
+			heapSampler.setDaemon(true);
+			heapSampler.start();
+
+		} else {
+			heapSampler = null;
+		}
+
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * starts a timer as a child of the calling thread's running timer
+	 *
+	 * @return  the timer, which must be stopped by the same thread
+	 */
+	public Timer startTimer(String name) {
+
+		if (!enabled) return Timer.DISABLED;
+
+		TimerNode parent = currentNode.get();
+
+		if (parent == null) {
+			parent = rootNode;
+		}
+
+		TimerNode node = parent.getChild(name);
+
+		currentNode.set(node);
+
+		return new Timer(this, node, parent);
+
+	}
+
+	/**
+	 * adds to a counter
+	 */
+	public void count(String name, long delta) {
+
+		if (!enabled) return;
+
+		AtomicLong counter = counters.get(name);
+
+		if (counter == null) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = counters.putIfAbsent(name, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+
+		counter.addAndGet(delta);
+
+	}
+
+	/**
+	 * increments a counter by 1
+	 */
+	public void count(String name) {
+		count(name, 1);
+	}
+
+	/**
+	 * starts recording a {@link Profile} in addition to timers and counters.
+	 * Has no effect if a profile has already been enabled.
+	 *
+	 * @param topCount  number of most expensive elements to report
+	 */
+	public synchronized void enableProfile(int topCount) {
+		if (enabled && profile == null) {
+			profile = new Profile(topCount);
+		}
+	}
+
+	/**
+	 * returns the profile. Callers should record to it only if it
+	 * is not null, as profiling has noticeable overhead.
+	 *
+	 * @return  the profile; null if it has not been enabled
+	 */
+	public Profile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * stops the heap sampling and the total time measurement.
+	 * Timers and counters can still be used afterwards.
+	 */
+	public void finish() {
+
+		if (!enabled || endNanos >= 0) return;
+
+		if (heapSampler != null) {
+			heapSampler.interrupt();
+		}
+
+		sampleHeap();
+
+		endNanos = System.nanoTime();
+
+	}
+
+	/**
+	 * returns the time since the metrics have been created,
+	 * or until {@link #finish()} if it has been called
+	 */
+	public long getTotalNanos() {
+		long end = endNanos;
+		return ((end >= 0) ? end : System.nanoTime()) - startNanos;
+	}
+
+	/**
+	 * returns the highest heap usage that has been observed
+	 */
+	public long getPeakHeapBytes() {
+		return peakHeapBytes.get();
+	}
+
+	/**
+	 * returns the top-level timers in the order they have first been started
+	 */
+	public List<TimerNode> getTimers() {
+		return rootNode.getChildren();
+	}
+
+	/**
+	 * returns a top-level timer, or a descendant if the name is a path
+	 * with names separated by '/'
+	 *
+	 * @return  the timer; null if it has never been started
+	 */
+	public TimerNode getTimer(String path) {
+
+		TimerNode node = rootNode;
+
+		for (String name : path.split("/")) {
+			node = node.findChild(name);
+			if (node == null) return null;
+		}
+
+		return node;
+
+	}
+
+	/**
+	 * returns the counters, sorted by name
+	 */
+	public SortedMap<String, Long> getCounters() {
+
+		SortedMap<String, Long> result = new TreeMap<String, Long>();
+
+		for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().get());
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * returns a counter's value; 0 if it has never been used
+	 */
+	public long getCounter(String name) {
+		AtomicLong counter = counters.get(name);
+		return (counter != null) ? counter.get() : 0;
+	}
+
+	private long sampleHeap() {
+
+		Runtime runtime = Runtime.getRuntime();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+
+		long peak;
+		do {
+			peak = peakHeapBytes.get();
+		} while (used > peak && !peakHeapBytes.compareAndSet(peak, used));
+
+		return used;
+
+	}
+
+	/**
+	 * a running measurement for a {@link TimerNode}
+	 */
+	public static final class Timer {
+
+		static final Timer DISABLED = new Timer(null, null, null);
+
+		private final Metrics metrics;
+		private final TimerNode node;
+		private final TimerNode parent;
+		private final long startNanos;
+
+		private boolean stopped = false;
+
+		private Timer(Metrics metrics, TimerNode node, TimerNode parent) {
+			this.metrics = metrics;
+			this.node = node;
+			this.parent = parent;
+			this.startNanos = (metrics != null) ? System.nanoTime() : 0;
+		}
+
+		/**
+		 * stops the timer, adding the elapsed time to its node.
+		 * Further calls have no effect.
+		 */
+		public void stop() {
+
+			if (metrics == null || stopped) return;
+
+			long nanos = System.nanoTime() - startNanos;
+
+			stopped = true;
+
+			node.add(nanos, metrics.sampleHeap());
+
+			metrics.currentNode.set(parent == metrics.rootNode ? null : parent);
+
+		}
+
+	}
+
+	/**
+	 * accumulated measurements of all runs of a timer with the same
+	 * name and parent
+	 */
+	public static final class TimerNode {
+
+		private final TimerNode parent;
+		private final String name;
+
+		private final Map<String, TimerNode> children =
+				new LinkedHashMap<String, TimerNode>();
+
+		private long count = 0;
+		private long totalNanos = 0;
+		private long maxNanos = 0;
+		private long maxHeapBytes = 0;
+
+		private TimerNode(TimerNode parent, String name) {
+			this.parent = parent;
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * returns the names of the ancestors and this node,
+		 * separated by '/'
+		 */
+		public String getPath() {
+			if (parent == null || parent.parent == null) {
+				return name;
+			} else {
+				return parent.getPath() + "/" + name;
+			}
+		}
+
+		/** returns how often the timer has been stopped */
+		public synchronized long getCount() {
+			return count;
+		}
+
+		/** returns the sum of all runs' durations */
+		public synchronized long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/** returns the longest run's duration */
+		public synchronized long getMaxNanos() {
+			return maxNanos;
+		}
+
+		/** returns the highest heap usage observed when the timer was stopped */
+		public synchronized long getMaxHeapBytes() {
+			return maxHeapBytes;
+		}
+
+		/** returns the children in the order they have first been started */
+		public synchronized List<TimerNode> getChildren() {
+			return Collections.unmodifiableList(
+					new ArrayList<TimerNode>(children.values()));
+		}
+
+		private synchronized TimerNode getChild(String name) {
+			TimerNode child = children.get(name);
+			if (child == null) {
+				child = new TimerNode(this, name);
+				children.put(name, child);
+			}
+			return child;
+		}
+
+		private synchronized TimerNode findChild(String name) {
+			return children.get(name);
+		}
+
+		private synchronized void add(long nanos, long heapBytes) {
+			count += 1;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+			maxHeapBytes = Math.max(maxHeapBytes, heapBytes);
+		}
+
+		@Override
+		public String toString() {
+			return getPath() + ": " + getTotalNanos() + " ns";
+		}
+
+	}
+
+}
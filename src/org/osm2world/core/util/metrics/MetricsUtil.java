@@ -0,0 +1,322 @@
+package org.osm2world.core.util.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import org.osm2world.core.util.metrics.Metrics.TimerNode;
+import org.osm2world.core.util.metrics.Profile.Cost;
+
+/**
+ * writes {@link Metrics} in machine-readable formats
+ */
+public final class MetricsUtil {
+
+	private MetricsUtil() {}
+
+	public static enum Format {JSON, CSV};
+
+	/**
+	 * returns the format for a file based on its extension
+	 *
+	 * @return  the format; null if the extension is not supported
+	 */
+	public static final Format getFormat(File file) {
+
+		String name = file.getName().toLowerCase();
+
+		if (name.endsWith(".json")) {
+			return Format.JSON;
+		} else if (name.endsWith(".csv")) {
+			return Format.CSV;
+		} else {
+			return null;
+		}
+
+	}
+
+	/**
+	 * writes metrics to a file, using the format matching its extension
+	 */
+	public static final void write(Metrics metrics, File file)
+			throws IOException {
+
+		Format format = getFormat(file);
+
+		if (format == null) {
+			throw new IllegalArgumentException("unsupported metrics format: " + file);
+		}
+
+		Writer writer = new FileWriter(file);
+
+		try {
+			write(metrics, format, writer);
+		} finally {
+			writer.close();
+		}
+
+	}
+
+	public static final void write(Metrics metrics, Format format,
+			Writer writer) {
+
+		PrintWriter out = new PrintWriter(writer);
+
+		switch (format) {
+		case JSON: writeJSON(metrics, out); break;
+		case CSV: writeCSV(metrics, out); break;
+		}
+
+		out.flush();
+
+	}
+
+	/**
+	 * writes an object with the totals, a tree of timers, the counters
+	 * and the profile (if enabled)
+	 */
+	private static final void writeJSON(Metrics metrics, PrintWriter out) {
+
+		out.println("{");
+		out.println("  \"totalNanos\": " + metrics.getTotalNanos() + ",");
+		out.println("  \"peakHeapBytes\": " + metrics.getPeakHeapBytes() + ",");
+
+		out.print("  \"timers\": ");
+		writeJSONTimers(metrics.getTimers(), "  ", out);
+		out.println(",");
+
+		out.print("  \"counters\": {");
+
+		boolean first = true;
+
+		for (Map.Entry<String, Long> counter : metrics.getCounters().entrySet()) {
+			out.print(first ? "\n" : ",\n");
+			out.print("    " + jsonString(counter.getKey()) + ": " + counter.getValue());
+			first = false;
+		}
+
+		out.print(first ? "}" : "\n  }");
+
+		Profile profile = metrics.getProfile();
+
+		if (profile != null) {
+
+			out.println(",");
+			out.println("  \"profile\": {");
+
+			out.print("    \"modules\": ");
+			writeJSONCosts(profile.getModuleCosts(), out);
+			out.println(",");
+
+			out.print("    \"worldObjects\": ");
+			writeJSONCosts(profile.getWorldObjectCosts(), out);
+			out.println(",");
+
+			out.print("    \"topElements\": [");
+
+			List<Map.Entry<String, Long>> elements = profile.getTopElements();
+
+			for (int i = 0; i < elements.size(); i++) {
+				out.print(i == 0 ? "\n" : ",\n");
+				out.print("      {\"element\": " + jsonString(elements.get(i).getKey())
+						+ ", \"nanos\": " + elements.get(i).getValue() + "}");
+			}
+
+			out.println(elements.isEmpty() ? "]" : "\n    ]");
+			out.print("  }");
+
+		}
+
+		out.println();
+		out.println("}");
+
+	}
+
+	private static final void writeJSONCosts(Map<String, Cost> costs,
+			PrintWriter out) {
+
+		out.print("[");
+
+		boolean first = true;
+
+		for (Map.Entry<String, Cost> entry : costs.entrySet()) {
+			Cost cost = entry.getValue();
+			out.print(first ? "\n" : ",\n");
+			out.print("      {\"name\": " + jsonString(entry.getKey())
+					+ ", \"count\": " + cost.getCount()
+					+ ", \"nanos\": " + cost.getNanos()
+					+ ", \"primitives\": " + cost.getPrimitives()
+					+ ", \"triangles\": " + cost.getTriangles() + "}");
+			first = false;
+		}
+
+		out.print(first ? "]" : "\n    ]");
+
+	}
+
+	private static final void writeJSONTimers(List<TimerNode> timers,
+			String indent, PrintWriter out) {
+
+		if (timers.isEmpty()) {
+			out.print("[]");
+			return;
+		}
+
+		out.println("[");
+
+		for (int i = 0; i < timers.size(); i++) {
+
+			TimerNode timer = timers.get(i);
+
+			out.println(indent + "  {");
+			out.println(indent + "    \"name\": " + jsonString(timer.getName()) + ",");
+			out.println(indent + "    \"count\": " + timer.getCount() + ",");
+			out.println(indent + "    \"totalNanos\": " + timer.getTotalNanos() + ",");
+			out.println(indent + "    \"maxNanos\": " + timer.getMaxNanos() + ",");
+			out.println(indent + "    \"maxHeapBytes\": " + timer.getMaxHeapBytes() + ",");
+			out.print(indent + "    \"children\": ");
+			writeJSONTimers(timer.getChildren(), indent + "    ", out);
+			out.println();
+			out.print(indent + "  }");
+
+			out.println(i + 1 < timers.size() ? "," : "");
+
+		}
+
+		out.print(indent + "]");
+
+	}
+
+	private static final String jsonString(String s) {
+
+		StringBuilder result = new StringBuilder("\"");
+
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < 0x20) {
+				result.append(String.format("\\u%04x", (int)c));
+			} else {
+				result.append(c);
+			}
+		}
+
+		return result.append('"').toString();
+
+	}
+
+	/**
+	 * writes one row per timer (identified by its path) and counter,
+	 * plus rows for the totals and the profile (if enabled)
+	 */
+	private static final void writeCSV(Metrics metrics, PrintWriter out) {
+
+		out.println("type,name,count,totalNanos,maxNanos,maxHeapBytes,primitives,triangles");
+
+		out.println("total,,1," + metrics.getTotalNanos()
+				+ "," + metrics.getTotalNanos() + "," + metrics.getPeakHeapBytes() + ",,");
+
+		writeCSVTimers(metrics.getTimers(), out);
+
+		for (Map.Entry<String, Long> counter : metrics.getCounters().entrySet()) {
+			out.println("counter," + csvString(counter.getKey())
+					+ "," + counter.getValue() + ",,,,,");
+		}
+
+		Profile profile = metrics.getProfile();
+
+		if (profile != null) {
+
+			writeCSVCosts("module", profile.getModuleCosts(), out);
+			writeCSVCosts("worldObject", profile.getWorldObjectCosts(), out);
+
+			for (Map.Entry<String, Long> element : profile.getTopElements()) {
+				out.println("element," + csvString(element.getKey())
+						+ ",1," + element.getValue() + ",,,,");
+			}
+
+		}
+
+	}
+
+	private static final void writeCSVCosts(String type,
+			Map<String, Cost> costs, PrintWriter out) {
+
+		for (Map.Entry<String, Cost> entry : costs.entrySet()) {
+			Cost cost = entry.getValue();
+			out.println(type + "," + csvString(entry.getKey())
+					+ "," + cost.getCount()
+					+ "," + cost.getNanos() + ",,"
+					+ "," + cost.getPrimitives()
+					+ "," + cost.getTriangles());
+		}
+
+	}
+
+	private static final void writeCSVTimers(List<TimerNode> timers,
+			PrintWriter out) {
+
+		for (TimerNode timer : timers) {
+
+			out.println("timer," + csvString(timer.getPath())
+					+ "," + timer.getCount()
+					+ "," + timer.getTotalNanos()
+					+ "," + timer.getMaxNanos()
+					+ "," + timer.getMaxHeapBytes() + ",,");
+
+			writeCSVTimers(timer.getChildren(), out);
+
+		}
+
+	}
+
+	/**
+	 * prints a human-readable report of a profile: tables of the modules'
+	 * and world object types' costs, and the most expensive elements
+	 */
+	public static final void printProfile(Profile profile, PrintStream out) {
+
+		out.println("world modules:");
+		out.printf("  %-36s %10s %10s%n", "module", "ms", "objects");
+
+		for (Map.Entry<String, Cost> entry : profile.getModuleCosts().entrySet()) {
+			out.printf("  %-36s %10d %10d%n", entry.getKey(),
+					entry.getValue().getNanos() / 1000000,
+					entry.getValue().getCount());
+		}
+
+		out.println("world objects (rendering):");
+		out.printf("  %-36s %10s %10s %10s %10s%n",
+				"type", "ms", "objects", "primitives", "triangles");
+
+		for (Map.Entry<String, Cost> entry : profile.getWorldObjectCosts().entrySet()) {
+			out.printf("  %-36s %10d %10d %10d %10d%n", entry.getKey(),
+					entry.getValue().getNanos() / 1000000,
+					entry.getValue().getCount(),
+					entry.getValue().getPrimitives(),
+					entry.getValue().getTriangles());
+		}
+
+		out.println("top " + profile.getTopCount() + " elements:");
+
+		for (Map.Entry<String, Long> element : profile.getTopElements()) {
+			out.printf("  %-36s %10.3f ms%n", element.getKey(),
+					element.getValue() / 1e6);
+		}
+
+	}
+
+	private static final String csvString(String s) {
+		if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
+			return "\"" + s.replace("\"", "\"\"") + "\"";
+		} else {
+			return s;
+		}
+	}
+
+}
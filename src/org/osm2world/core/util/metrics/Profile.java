@@ -0,0 +1,248 @@
+package org.osm2world.core.util.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osm2world.core.map_data.creation.EmptyTerrainBuilder;
+import org.osm2world.core.osm.data.OSMElement;
+
+/**
+ * opt-in breakdown of a conversion's costs, recorded as part of
+ * {@link Metrics} if enabled with {@link Metrics#enableProfile(int)}.
+ *
+ * Contains the costs of each world module, the costs of each class of
+ * world objects, and the total time spent on each OSM element. Of the
+ * latter, only the most expensive elements are reported.
+ *
+ * All methods are thread-safe.
+ */
+public class Profile {
+
+	private final int topCount;
+
+	private final SortedMap<String, Cost> moduleCosts = new TreeMap<String, Cost>();
+	private final SortedMap<String, Cost> worldObjectCosts = new TreeMap<String, Cost>();
+
+	private final ConcurrentMap<String, AtomicLong> elementNanos =
+			new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * @param topCount  number of elements returned by {@link #getTopElements()}
+	 */
+	Profile(int topCount) {
+		this.topCount = topCount;
+	}
+
+	public int getTopCount() {
+		return topCount;
+	}
+
+	/**
+	 * adds the costs of applying a world module
+	 *
+	 * @param worldObjects  number of world objects created by the module
+	 */
+	public void addModuleCost(String module, long nanos, long worldObjects) {
+		addCost(moduleCosts, module, worldObjects, nanos, 0, 0);
+	}
+
+	/**
+	 * adds the costs of rendering a world object
+	 *
+	 * @param worldObjectClass  the class of the rendered object
+	 */
+	public void addWorldObjectCost(String worldObjectClass, long nanos,
+			long primitives, long triangles) {
+		addCost(worldObjectCosts, worldObjectClass, 1, nanos, primitives, triangles);
+	}
+
+	/**
+	 * adds time spent on an OSM element, e.g. for creating or rendering
+	 * its world objects.
+	 *
+	 * Synthetic elements with id 0, such as the areas created by
+	 * {@link EmptyTerrainBuilder}, are ignored. They are shared by many
+	 * map elements, which would otherwise be reported as a single element.
+	 */
+	public void addElementCost(OSMElement element, long nanos) {
+		if (element.id != 0) {
+			addElementCost(element.toString(), nanos);
+		}
+	}
+
+	/**
+	 * adds time spent on an element, e.g. for creating or rendering
+	 * its world objects
+	 *
+	 * @param element  identifier of the element, such as "w42"
+	 */
+	public void addElementCost(String element, long nanos) {
+
+		AtomicLong total = elementNanos.get(element);
+
+		if (total == null) {
+			AtomicLong newTotal = new AtomicLong();
+			total = elementNanos.putIfAbsent(element, newTotal);
+			if (total == null) {
+				total = newTotal;
+			}
+		}
+
+		total.addAndGet(nanos);
+
+	}
+
+	private static void addCost(SortedMap<String, Cost> costs, String name,
+			long count, long nanos, long primitives, long triangles) {
+
+		synchronized (costs) {
+
+			Cost cost = costs.get(name);
+
+			if (cost == null) {
+				cost = new Cost();
+				costs.put(name, cost);
+			}
+
+			cost.count += count;
+			cost.nanos += nanos;
+			cost.primitives += primitives;
+			cost.triangles += triangles;
+
+		}
+
+	}
+
+	/**
+	 * returns the costs of each world module, sorted by name.
+	 * The count is the number of world objects created by the module.
+	 */
+	public SortedMap<String, Cost> getModuleCosts() {
+		return copy(moduleCosts);
+	}
+
+	/**
+	 * returns the costs of rendering each class of world objects,
+	 * sorted by name. The count is the number of rendered objects.
+	 */
+	public SortedMap<String, Cost> getWorldObjectCosts() {
+		return copy(worldObjectCosts);
+	}
+
+	private static SortedMap<String, Cost> copy(SortedMap<String, Cost> costs) {
+
+		synchronized (costs) {
+
+			SortedMap<String, Cost> result = new TreeMap<String, Cost>();
+
+			for (Map.Entry<String, Cost> entry : costs.entrySet()) {
+				Cost cost = new Cost();
+				cost.count = entry.getValue().count;
+				cost.nanos = entry.getValue().nanos;
+				cost.primitives = entry.getValue().primitives;
+				cost.triangles = entry.getValue().triangles;
+				result.put(entry.getKey(), cost);
+			}
+
+			return result;
+
+		}
+
+	}
+
+	/**
+	 * returns the elements with the highest total time, most expensive first
+	 *
+	 * @return  up to {@link #getTopCount()} pairs of element and nanoseconds
+	 */
+	public List<Map.Entry<String, Long>> getTopElements() {
+
+		List<Map.Entry<String, Long>> result =
+				new ArrayList<Map.Entry<String, Long>>();
+
+		for (Map.Entry<String, AtomicLong> entry : elementNanos.entrySet()) {
+			result.add(new ElementEntry(entry.getKey(), entry.getValue().get()));
+		}
+
+		Collections.sort(result, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+				int c = e2.getValue().compareTo(e1.getValue());
+				return (c != 0) ? c : e1.getKey().compareTo(e2.getKey());
+			}
+		});
+
+		if (result.size() > topCount) {
+			result = new ArrayList<Map.Entry<String, Long>>(result.subList(0, topCount));
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * accumulated costs of a module or a class of world objects
+	 */
+	public static final class Cost {
+
+		private long count;
+		private long nanos;
+		private long primitives;
+		private long triangles;
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		/** returns the number of primitives; 0 for modules */
+		public long getPrimitives() {
+			return primitives;
+		}
+
+		/** returns the number of triangles; 0 for modules */
+		public long getTriangles() {
+			return triangles;
+		}
+
+	}
+
+	private static final class ElementEntry implements Map.Entry<String, Long> {
+
+		private final String key;
+		private final Long value;
+
+		ElementEntry(String key, Long value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Long getValue() {
+			return value;
+		}
+
+		@Override
+		public Long setValue(Long value) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+package org.osm2world.core.world.creation;
+
+import java.util.concurrent.ExecutorService;
+
+import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.map_data.data.MapElement;
+import org.osm2world.core.world.data.WorldObject;
+
+/**
+ * a {@link WorldModule} that is able to distribute its work
+ * across multiple threads.
+ * 
+ * Implementations must produce the same {@link WorldObject}s,
+ * in the same order for each {@link MapElement},
+ * as a call to {@link #applyTo(MapData)}.
+ */
+public interface ParallelWorldModule extends WorldModule {
+	
+	/**
+	 * adds {@link WorldObject}s to {@link MapElement}s,
+	 * using an executor for parallel execution.
+	 * 
+	 * @param executor  executor to run tasks with; null to run sequentially
+	 */
+	public void applyTo(MapData mapData, ExecutorService executor);
+	
+}
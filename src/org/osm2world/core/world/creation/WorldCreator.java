@@ -3,32 +3,112 @@ package org.osm2world.core.world.creation;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.configuration.Configuration;
 import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.map_data.data.MapElement;
+import org.osm2world.core.target.common.material.MaterialRegistry;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Metrics.Timer;
+import org.osm2world.core.util.metrics.Profile;
 
+/**
+ * applies {@link WorldModule}s to {@link MapData}.
+ * 
+ * Modules are applied in the order of the module list,
+ * because modules may depend on the representations created by
+ * earlier modules (e.g. bridges and tunnels need the roads they belong to).
+ * If a thread count greater than 1 is configured, the work of
+ * {@link ParallelWorldModule}s is distributed across multiple threads.
+ * Network information is calculated once all modules have finished.
+ */
 public class WorldCreator {
 
 	private Collection<WorldModule> modules;
 		
+	private final int threadCount;
+	
 	public WorldCreator(Configuration config, WorldModule... modules) {
 		this(config, Arrays.asList(modules));
 	}
 	
 	public WorldCreator(Configuration config, List<WorldModule> modules) {
+		this(config, new MaterialRegistry(config), modules);
+	}
+	
+	public WorldCreator(Configuration config, MaterialRegistry materialRegistry,
+			List<WorldModule> modules) {
 		this.modules = modules;
 		for (WorldModule module : modules) {
 			module.setConfiguration(config);
+			module.setMaterialRegistry(materialRegistry);
 		}
+		this.threadCount = ParallelIterationUtil.getThreadCount(config);
 	}
 	
 	public void addRepresentationsTo(MapData mapData) {
 		
-		for (WorldModule module : modules) {
-			module.applyTo(mapData);
+		Metrics metrics = Metrics.current();
+		
+		ExecutorService executor =
+				ParallelIterationUtil.createExecutor(threadCount);
+		
+		try {
+			
+			Profile profile = metrics.getProfile();
+			
+			for (WorldModule module : modules) {
+				
+				String moduleName = module.getClass().getSimpleName();
+				
+				Timer timer = metrics.startTimer(moduleName);
+				
+				long representationsBefore = 0;
+				long startNanos = 0;
+				
+				if (profile != null) {
+					representationsBefore = countRepresentations(mapData);
+					startNanos = System.nanoTime();
+				}
+				
+				try {
+					if (executor != null && module instanceof ParallelWorldModule) {
+						((ParallelWorldModule)module).applyTo(mapData, executor);
+					} else {
+						module.applyTo(mapData);
+					}
+				} finally {
+					timer.stop();
+				}
+				
+				if (profile != null) {
+					profile.addModuleCost(moduleName, System.nanoTime() - startNanos,
+							countRepresentations(mapData) - representationsBefore);
+				}
+				
+			}
+			
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
 		}
 		
+		Timer timer = metrics.startTimer("NetworkCalculator");
 		NetworkCalculator.calculateNetworkInformationInGrid(mapData);
+		timer.stop();
+		
+	}
+	
+	private static long countRepresentations(MapData mapData) {
+		
+		long count = 0;
+		
+		for (MapElement element : mapData.getMapElements()) {
+			count += element.getRepresentations().size();
+		}
+		
+		return count;
 		
 	}
 	
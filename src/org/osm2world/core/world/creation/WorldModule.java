@@ -3,6 +3,7 @@ package org.osm2world.core.world.creation;
 import org.apache.commons.configuration.Configuration;
 import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_data.data.MapElement;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.world.data.WorldObject;
 
 public interface WorldModule {
@@ -17,6 +18,15 @@ public interface WorldModule {
 	 */
 	public void setConfiguration(Configuration config);
 	
+	/**
+	 * provides the materials of the conversion. WorldModules need to
+	 * resolve materials with it before deriving new materials
+	 * from their attributes while creating {@link WorldObject}s.
+	 * 
+	 * This is guaranteed to be called before {@link #applyTo(MapData)}.
+	 */
+	public void setMaterialRegistry(MaterialRegistry materialRegistry);
+	
 	/**
 	 * adds {@link WorldObject}s to {@link MapElement}s
 	 */
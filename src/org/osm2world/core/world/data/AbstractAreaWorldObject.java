@@ -1,22 +1,17 @@
 package org.osm2world.core.world.data;
 
 import java.util.Collection;
-import java.util.Collections;
 
 import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
 import org.osm2world.core.map_elevation.data.EleConnectorGroup;
 import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
-import org.osm2world.core.math.LineSegmentXZ;
 import org.osm2world.core.math.PolygonXYZ;
 import org.osm2world.core.math.SimplePolygonXZ;
 import org.osm2world.core.math.TriangleXYZ;
 import org.osm2world.core.math.TriangleXZ;
-import org.osm2world.core.math.VectorXZ;
-import org.osm2world.core.math.algorithms.JTSTriangulationUtil;
-import org.osm2world.core.math.algorithms.Poly2TriTriangulationUtil;
+import org.osm2world.core.math.algorithms.TriangulationUtil;
 import org.osm2world.core.math.datastructures.IntersectionTestObject;
-import org.osm2world.core.util.exception.TriangulationException;
 
 /**
  * implementation of {@link AreaWorldObject} that offers some basic features:
@@ -88,27 +83,7 @@ public abstract class AbstractAreaWorldObject
 	 */
 	protected Collection<TriangleXZ> getTriangulationXZ() {
 		
-		try {
-		
-			return Poly2TriTriangulationUtil.triangulate(
-				area.getPolygon().getOuter(),
-				area.getPolygon().getHoles(),
-				Collections.<LineSegmentXZ>emptyList(),
-				Collections.<VectorXZ>emptyList());
-			
-		} catch (TriangulationException e) {
-			
-			System.err.println("Poly2Tri exception for " + this + ":");
-			e.printStackTrace();
-			System.err.println("... falling back to JTS triangulation.");
-			
-			return JTSTriangulationUtil.triangulate(
-					area.getPolygon().getOuter(),
-					area.getPolygon().getHoles(),
-					Collections.<LineSegmentXZ>emptyList(),
-					Collections.<VectorXZ>emptyList());
-			
-		}
+		return TriangulationUtil.triangulate(area.getPolygon());
 		
 	}
 	
@@ -128,6 +128,8 @@ public class BarrierModule extends AbstractModule {
 			
 			//TODO: join ways back together to reduce the number of caps
 			
+			Material material = target.getMaterialRegistry().resolve(this.material);
+			
 			List<VectorXYZ> wallShape = asList(
 				new VectorXYZ(-width/2, 0, 0),
 				new VectorXYZ(-width/2, height, 0),
@@ -234,10 +236,13 @@ public class BarrierModule extends AbstractModule {
 			
 			List<VectorXYZ> vsFence = createVerticalTriangleStrip(
 					pointsWithEle, 0, height);
+			Material fenceMaterial =
+					target.getMaterialRegistry().resolve(CHAIN_LINK_FENCE);
+			
 			List<List<VectorXZ>> texCoordListsFence = texCoordLists(
-					vsFence, CHAIN_LINK_FENCE, STRIP_WALL);
+					vsFence, fenceMaterial, STRIP_WALL);
 			
-			target.drawTriangleStrip(CHAIN_LINK_FENCE, vsFence, texCoordListsFence);
+			target.drawTriangleStrip(fenceMaterial, vsFence, texCoordListsFence);
 
 			List<VectorXYZ> pointsWithEleBack =
 					new ArrayList<VectorXYZ>(pointsWithEle);
@@ -246,9 +251,9 @@ public class BarrierModule extends AbstractModule {
 			List<VectorXYZ> vsFenceBack = createVerticalTriangleStrip(
 					pointsWithEleBack, 0, height);
 			List<List<VectorXZ>> texCoordListsFenceBack = texCoordLists(
-					vsFenceBack, CHAIN_LINK_FENCE, STRIP_WALL);
+					vsFenceBack, fenceMaterial, STRIP_WALL);
 			
-			target.drawTriangleStrip(CHAIN_LINK_FENCE, vsFenceBack,
+			target.drawTriangleStrip(fenceMaterial, vsFenceBack,
 					texCoordListsFenceBack);
 						
 			/* render poles */
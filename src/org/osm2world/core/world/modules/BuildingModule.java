@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 import org.osm2world.core.map_data.data.MapArea;
@@ -55,9 +56,15 @@ import org.osm2world.core.target.Target;
 import org.osm2world.core.target.common.TextureData;
 import org.osm2world.core.target.common.material.ImmutableMaterial;
 import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.util.MinMaxUtil;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.RangeOperation;
 import org.osm2world.core.util.exception.TriangulationException;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Profile;
+import org.osm2world.core.world.creation.ParallelWorldModule;
 import org.osm2world.core.world.data.AreaWorldObject;
 import org.osm2world.core.world.data.NodeWorldObject;
 import org.osm2world.core.world.data.TerrainBoundaryWorldObject;
@@ -71,28 +78,65 @@ import com.google.common.base.Function;
 /**
  * adds buildings to the world
  */
-public class BuildingModule extends ConfigurableWorldModule {
+public class BuildingModule extends ConfigurableWorldModule
+		implements ParallelWorldModule {
 	
 	@Override
 	public void applyTo(MapData mapData) {
+		applyTo(mapData, null);
+	}
+	
+	/**
+	 * creates the buildings concurrently. Entrances are added afterwards,
+	 * in the order of the areas, because neighboring buildings can share
+	 * the entrance nodes on their outlines.
+	 */
+	@Override
+	public void applyTo(MapData mapData, ExecutorService executor) {
 		
-		boolean useBuildingColors = config.getBoolean("useBuildingColors", true);
-		boolean drawBuildingWindows = config.getBoolean("drawBuildingWindows", true);
+		final boolean useBuildingColors =
+				config.getBoolean("useBuildingColors", true);
+		final boolean drawBuildingWindows =
+				config.getBoolean("drawBuildingWindows", true);
 		
-		for (MapArea area : mapData.getMapAreas()) {
-			
-			if (!area.getRepresentations().isEmpty()) continue;
-			
-			String buildingValue = area.getTags().getValue("building");
-			
-			if (buildingValue != null && !buildingValue.equals("no")) {
-				
-				Building building = new Building(area,
-						useBuildingColors, drawBuildingWindows);
-				area.addRepresentation(building);
-								
+		final Profile profile = Metrics.current().getProfile();
+		
+		final List<MapArea> areas = new ArrayList<MapArea>(mapData.getMapAreas());
+		final Building[] buildings = new Building[areas.size()];
+		
+		ParallelIterationUtil.iterateRanges(areas.size(), new RangeOperation() {
+			@Override public void perform(int start, int end) {
+				for (int i = start; i < end; i++) {
+					
+					MapArea area = areas.get(i);
+					
+					if (!area.getRepresentations().isEmpty()) continue;
+					
+					String buildingValue = area.getTags().getValue("building");
+					
+					if (buildingValue != null && !buildingValue.equals("no")) {
+						
+						long startNanos = (profile != null) ? System.nanoTime() : 0;
+						
+						buildings[i] = new Building(area, materialRegistry,
+								useBuildingColors, drawBuildingWindows);
+						
+						if (profile != null) {
+							profile.addElementCost(area.getOsmElement(),
+									System.nanoTime() - startNanos);
+						}
+						
+					}
+					
+				}
+			}
+		}, executor);
+		
+		for (Building building : buildings) {
+			if (building != null) {
+				building.addEntrances();
+				building.getArea().addRepresentation(building);
 			}
-			
 		}
 		
 	}
@@ -106,8 +150,8 @@ public class BuildingModule extends ConfigurableWorldModule {
 		
 		private final EleConnectorGroup outlineConnectors;
 		
-		public Building(MapArea area, boolean useBuildingColors,
-				boolean drawBuildingWindows) {
+		public Building(MapArea area, MaterialRegistry materialRegistry,
+				boolean useBuildingColors, boolean drawBuildingWindows) {
 			
 			this.area = area;
 			
@@ -122,8 +166,8 @@ public class BuildingModule extends ConfigurableWorldModule {
 					if (area.getPolygon().contains(
 							otherArea.getPolygon().getOuter())) {
 						parts.add(new BuildingPart(this, otherArea,
-							otherArea.getPolygon(), useBuildingColors,
-							drawBuildingWindows));
+							otherArea.getPolygon(), materialRegistry,
+							useBuildingColors, drawBuildingWindows));
 					}
 					
 				}
@@ -135,8 +179,8 @@ public class BuildingModule extends ConfigurableWorldModule {
 				isBuildingPart = !("no".equals(area.getTags().getValue("building:part")));
 			
 			if (parts.isEmpty() || isBuildingPart) {
-				parts.add(new BuildingPart(this, area,
-						area.getPolygon(), useBuildingColors, drawBuildingWindows));
+				parts.add(new BuildingPart(this, area, area.getPolygon(),
+						materialRegistry, useBuildingColors, drawBuildingWindows));
 			} else {
 				List<SimplePolygonXZ> subtractPolygons = new ArrayList<SimplePolygonXZ>();
 				
@@ -152,7 +196,7 @@ public class BuildingModule extends ConfigurableWorldModule {
 				
 				for (PolygonWithHolesXZ remainingPoly : remainingPolys) {
 					parts.add(new BuildingPart(this, area, remainingPoly,
-							useBuildingColors, drawBuildingWindows));
+							materialRegistry, useBuildingColors, drawBuildingWindows));
 				}
 				
 			}
@@ -167,6 +211,16 @@ public class BuildingModule extends ConfigurableWorldModule {
 			
 		}
 
+		/**
+		 * adds entrances to the outline nodes of the building's parts.
+		 * Nodes which already have a representation are left alone.
+		 */
+		private void addEntrances() {
+			for (BuildingPart part : parts) {
+				part.addEntrances();
+			}
+		}
+		
 		public MapArea getArea() { //TODO: redundant because of getPrimaryMapElement
 			return area;
 		}
@@ -313,13 +367,18 @@ public class BuildingModule extends ConfigurableWorldModule {
 		
 		public BuildingPart(Building building,
 				MapArea area, PolygonWithHolesXZ polygon,
+				MaterialRegistry materialRegistry,
 				boolean useBuildingColors, boolean drawBuildingWindows) {
 
 			this.building = building;
 			this.area = area;
 			this.polygon = polygon;
 
-			setAttributes(useBuildingColors, drawBuildingWindows);
+			setAttributes(materialRegistry, useBuildingColors, drawBuildingWindows);
+			
+		}
+		
+		private void addEntrances() {
 			
 			for (MapNode node : area.getBoundaryNodes()) {
 				if ((node.getTags().contains("building", "entrance")
@@ -654,8 +713,8 @@ public class BuildingModule extends ConfigurableWorldModule {
 		 * (level height) or ultimately the building class as determined
 		 * by the "building" key.
 		 */
-		private void setAttributes(boolean useBuildingColors,
-				boolean drawBuildingWindows) {
+		private void setAttributes(MaterialRegistry materialRegistry,
+				boolean useBuildingColors, boolean drawBuildingWindows) {
 			
 			TagGroup tags = area.getTags();
 			TagGroup buildingTags = building.area.getTags();
@@ -825,20 +884,20 @@ public class BuildingModule extends ConfigurableWorldModule {
 		    	materialWall = buildMaterial(
 		    			getValue("building:material"),
 		    			getValue("building:colour"),
-		    			defaultMaterialWall, false);
+		    			defaultMaterialWall, false, materialRegistry);
 		    	materialRoof = buildMaterial(
 		    			getValue("roof:material"),
 		    			getValue("roof:colour"),
-		    			defaultMaterialRoof, true);
+		    			defaultMaterialRoof, true, materialRegistry);
 		    	
 		    } else {
 		    	
-		    	materialWall = defaultMaterialWall;
-		    	materialRoof = defaultMaterialRoof;
+		    	materialWall = materialRegistry.resolve(defaultMaterialWall);
+		    	materialRoof = materialRegistry.resolve(defaultMaterialRoof);
 		    	
 		    }
 		    
-		    if (materialWall == Materials.GLASS) {
+		    if (materialWall == materialRegistry.resolve(Materials.GLASS)) {
 				// avoid placing windows into a glass front
 				// TODO: the == currently only works if GLASS is not colorable
 				defaultMaterialWindows = null;
@@ -853,7 +912,8 @@ public class BuildingModule extends ConfigurableWorldModule {
 		    	if (materialWindows != null) {
 		    		
 		    		materialWallWithWindows = materialWallWithWindows.
-		    				withAddedLayers(materialWindows.getTextureDataList());
+		    				withAddedLayers(materialRegistry.resolve(
+		    						materialWindows).getTextureDataList());
 			    	
 		    	}
 		    	
@@ -863,7 +923,7 @@ public class BuildingModule extends ConfigurableWorldModule {
 		
 		private Material buildMaterial(String materialString,
 				String colorString, Material defaultMaterial,
-				boolean roof) {
+				boolean roof, MaterialRegistry materialRegistry) {
 			
 			Material material = defaultMaterial;
 			
@@ -879,6 +939,8 @@ public class BuildingModule extends ConfigurableWorldModule {
 				}
 			}
 			
+			material = materialRegistry.resolve(material);
+			
 			boolean colorable = material.getNumTextureLayers() == 0
 					|| material.getTextureDataList().get(0).colorable;
 			
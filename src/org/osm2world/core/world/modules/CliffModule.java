@@ -117,7 +117,8 @@ public class CliffModule extends ConfigurableWorldModule {
 					getOutline(false), getOutline(true));
 			
 			target.drawTriangleStrip(getMaterial(), groundVs,
-					texCoordLists(groundVs, Materials.RAIL_BALLAST_DEFAULT, GLOBAL_X_Z));
+					texCoordLists(groundVs, target.getMaterialRegistry().resolve(
+							Materials.RAIL_BALLAST_DEFAULT), GLOBAL_X_Z));
 			
 		}
 		
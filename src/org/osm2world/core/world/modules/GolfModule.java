@@ -10,7 +10,6 @@ import static org.osm2world.core.world.modules.common.WorldModuleGeometryUtil.cr
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 
 import org.osm2world.core.map_data.data.MapArea;
@@ -19,15 +18,13 @@ import org.osm2world.core.map_data.data.MapNode;
 import org.osm2world.core.map_data.data.overlaps.MapOverlap;
 import org.osm2world.core.map_elevation.data.EleConnectorGroup;
 import org.osm2world.core.map_elevation.data.GroundState;
-import org.osm2world.core.math.LineSegmentXZ;
 import org.osm2world.core.math.PolygonXYZ;
 import org.osm2world.core.math.SimplePolygonXZ;
 import org.osm2world.core.math.TriangleXYZ;
 import org.osm2world.core.math.TriangleXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
-import org.osm2world.core.math.algorithms.JTSTriangulationUtil;
-import org.osm2world.core.math.algorithms.Poly2TriTriangulationUtil;
+import org.osm2world.core.math.algorithms.TriangulationUtil;
 import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.Target;
 import org.osm2world.core.target.common.material.ImmutableMaterial;
@@ -35,7 +32,6 @@ import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.material.Material.Interpolation;
 import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.util.MinMaxUtil;
-import org.osm2world.core.util.exception.TriangulationException;
 import org.osm2world.core.world.data.AbstractAreaWorldObject;
 import org.osm2world.core.world.data.TerrainBoundaryWorldObject;
 import org.osm2world.core.world.modules.SurfaceAreaModule.SurfaceArea;
@@ -182,6 +178,8 @@ public class GolfModule extends AbstractModule {
 			if (surfaceValue != null && !"grass".equals(surfaceValue)) {
 				material = Materials.getSurfaceMaterial(surfaceValue, material);
 			}
+			
+			material = target.getMaterialRegistry().resolve(material);
 
 			Collection<TriangleXZ> trianglesXZ = getGreenTriangulation();
 			Collection<TriangleXYZ> triangles = getEleConnectors().getTriangulationXYZ(trianglesXZ);
@@ -203,27 +201,8 @@ public class GolfModule extends AbstractModule {
 			
 			holes.add(pinHoleLoop);
 			
-			try {
-				
-				return Poly2TriTriangulationUtil.triangulate(
-					area.getPolygon().getOuter(),
-					holes,
-					Collections.<LineSegmentXZ>emptyList(),
-					Collections.<VectorXZ>emptyList());
-				
-			} catch (TriangulationException e) {
-				
-				System.err.println("Poly2Tri exception for " + this + ":");
-				e.printStackTrace();
-				System.err.println("... falling back to JTS triangulation.");
-				
-				return JTSTriangulationUtil.triangulate(
-						area.getPolygon().getOuter(),
-						holes,
-						Collections.<LineSegmentXZ>emptyList(),
-						Collections.<VectorXZ>emptyList());
-				
-			}
+			return TriangulationUtil.triangulate(
+					area.getPolygon().getOuter(), holes);
 			
 		}
 
@@ -249,7 +228,8 @@ public class GolfModule extends AbstractModule {
 			List<VectorXYZ> vs = createTriangleStripBetween(
 					upperHoleRing, lowerHoleRing);
 			
-			Material groundMaterial = Materials.EARTH.makeSmooth();
+			Material groundMaterial = target.getMaterialRegistry()
+					.resolve(Materials.EARTH).makeSmooth();
 			
 			target.drawTriangleStrip(groundMaterial, vs,
 					texCoordLists(vs, groundMaterial, STRIP_WALL));
@@ -259,7 +239,8 @@ public class GolfModule extends AbstractModule {
 			
 			/* draw flag */
 			
-			target.drawColumn(Materials.PLASTIC_GREY.makeSmooth(), null,
+			target.drawColumn(target.getMaterialRegistry()
+					.resolve(Materials.PLASTIC_GREY).makeSmooth(), null,
 					pos.xyz(holeBottomEle), 1.5, 0.007, 0.007, false, true);
 			
 			ImmutableMaterial flagcloth = new ImmutableMaterial(Interpolation.SMOOTH, Color.YELLOW);
@@ -50,7 +50,8 @@ public class ParkingModule extends AbstractModule {
 		public void renderTo(Target<?> target) {
 			
 			String surface = area.getTags().getValue("surface");
-			Material material = getSurfaceMaterial(surface, ASPHALT_LIGHT);
+			Material material = target.getMaterialRegistry().resolve(
+					getSurfaceMaterial(surface, ASPHALT_LIGHT));
 			
 			Collection<TriangleXYZ> triangles = getTriangulation();
 			
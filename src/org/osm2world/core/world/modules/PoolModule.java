@@ -17,6 +17,7 @@ import org.osm2world.core.math.TriangleXYZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.Target;
+import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.world.data.AbstractAreaWorldObject;
 import org.osm2world.core.world.data.TerrainBoundaryWorldObject;
@@ -63,10 +64,11 @@ public class PoolModule extends AbstractModule {
 
 			/* render water */
 			
+			Material water = target.getMaterialRegistry().resolve(PURIFIED_WATER);
 			Collection<TriangleXYZ> triangles = getTriangulation();
 			
-			target.drawTriangles(PURIFIED_WATER, triangles,
-					triangleTexCoordLists(triangles, PURIFIED_WATER, GLOBAL_X_Z));
+			target.drawTriangles(water, triangles,
+					triangleTexCoordLists(triangles, water, GLOBAL_X_Z));
 
 			/* draw a small area around the pool */
 
@@ -86,9 +88,12 @@ public class PoolModule extends AbstractModule {
 					wallShape, path,
 					nCopies(path.size(), VectorXYZ.Y_UNIT));
 			
+			Material concrete =
+					target.getMaterialRegistry().resolve(Materials.CONCRETE);
+			
 			for (List<VectorXYZ> strip : strips) {
-				target.drawTriangleStrip(Materials.CONCRETE, strip,
-						texCoordLists(strip, Materials.CONCRETE, GLOBAL_X_Z));
+				target.drawTriangleStrip(concrete, strip,
+						texCoordLists(strip, concrete, GLOBAL_X_Z));
 			}
 		}
 	}
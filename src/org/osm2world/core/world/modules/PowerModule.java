@@ -4,6 +4,7 @@ import static java.lang.Math.PI;
 import static java.util.Arrays.asList;
 import static java.util.Collections.*;
 import static org.osm2world.core.math.VectorXYZ.Z_UNIT;
+import static org.osm2world.core.target.TargetUtil.hasTextures;
 import static org.osm2world.core.target.common.material.Materials.PLASTIC_GREY;
 import static org.osm2world.core.target.common.material.NamedTexCoordFunction.STRIP_WALL;
 import static org.osm2world.core.target.common.material.TexCoordUtil.texCoordLists;
@@ -24,6 +25,7 @@ import org.osm2world.core.math.LineSegmentXZ;
 import org.osm2world.core.math.SimplePolygonXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
 import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.Target;
 import org.osm2world.core.target.common.material.Material;
@@ -62,7 +64,11 @@ public final class PowerModule extends AbstractModule {
 				voltage = Integer.valueOf(powerLine.getTags().getValue("voltage"));
 			} catch (NumberFormatException e) {}
 		}
-		dir = dir.mult(1.0/powerLines.size());
+		if (dir.lengthSquared() > 0) {
+			dir = dir.normalize();
+		} else {
+			dir = VectorXZ.Z_UNIT;
+		}
 
 		return new TowerConfig(node, cables, voltage, dir);
 	}
@@ -537,7 +543,6 @@ public final class PowerModule extends AbstractModule {
 		@Override
 		public void renderTo(Target<?> target) {
 
-			VectorXYZ base = getBase().addY(-0.5);
 			double height = parseHeight(node.getTags(), 14);
 
 			Material material = Materials.getSurfaceMaterial(node.getTags().getValue("material"));
@@ -545,24 +550,74 @@ public final class PowerModule extends AbstractModule {
 				material = Materials.getSurfaceMaterial(node.getTags().getValue("surface"), Materials.STEEL);
 			}
 			
+			PowerTowerGeometry geometry =
+					new PowerTowerGeometry(material, height, config.cables);
+			
+			if (hasTextures(target, material, Materials.CONCRETE)) {
+				geometry.draw(target, getBase(), config.direction);
+			} else {
+				target.drawInstance(geometry, getBase(), config.direction, 1);
+			}
+			
+		}
+	}
+	
+	private static final class PowerTowerGeometry implements InstanceGeometry {
+		
+		private final Material material;
+		private final double height;
+		private final int cables;
+		
+		public PowerTowerGeometry(Material material, double height, int cables) {
+			this.material = material;
+			this.height = height;
+			this.cables = cables;
+		}
+		
+		@Override
+		public void renderTo(Target<?> target) {
+			draw(target, VectorXYZ.NULL_VECTOR, VectorXZ.Z_UNIT);
+		}
+		
+		private void draw(Target<?> target, VectorXYZ position, VectorXZ direction) {
+			
+			VectorXYZ base = position.addY(-0.5);
+			
 			// draw base column
 			target.drawColumn(material, null, base, height, 0.5, 0.25, true, true);
 			
 			// draw cross "column"
-			target.drawBox(material, base.add(0, height, 0), config.direction, 0.25, 5, 0.25);
+			target.drawBox(material, base.add(0, height, 0), direction, 0.25, 5, 0.25);
 		
 			// draw pieces holding the power lines
 			base = base.add(0, height + 0.25, 0);
-			target.drawColumn(Materials.CONCRETE, null, base.add(config.direction.rightNormal().mult(2)), 0.5, 0.1, 0.1, true, true);
-			target.drawColumn(Materials.CONCRETE, null, base.add(config.direction.rightNormal().mult(-2)), 0.5, 0.1, 0.1, true, true);
-			if (config.cables >= 3) {
+			target.drawColumn(Materials.CONCRETE, null, base.add(direction.rightNormal().mult(2)), 0.5, 0.1, 0.1, true, true);
+			target.drawColumn(Materials.CONCRETE, null, base.add(direction.rightNormal().mult(-2)), 0.5, 0.1, 0.1, true, true);
+			if (cables >= 3) {
 				target.drawColumn(Materials.CONCRETE, null, base, 0.5, 0.1, 0.1, true, true);
 			}
-			if (config.cables >= 5) {
-				target.drawColumn(Materials.CONCRETE, null, base.add(config.direction.rightNormal().mult(1.5)), -0.5, 0.1, 0.1, true, true);
-				target.drawColumn(Materials.CONCRETE, null, base.add(config.direction.rightNormal().mult(-1.5)), -0.5, 0.1, 0.1, true, true);
+			if (cables >= 5) {
+				target.drawColumn(Materials.CONCRETE, null, base.add(direction.rightNormal().mult(1.5)), -0.5, 0.1, 0.1, true, true);
+				target.drawColumn(Materials.CONCRETE, null, base.add(direction.rightNormal().mult(-1.5)), -0.5, 0.1, 0.1, true, true);
 			}
 		}
+		
+		@Override
+		public int hashCode() {
+			long heightBits = Double.doubleToLongBits(height);
+			return 31 * (31 * material.hashCode() + cables)
+					+ (int) (heightBits ^ (heightBits >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PowerTowerGeometry)) return false;
+			PowerTowerGeometry other = (PowerTowerGeometry) obj;
+			return material.equals(other.material)
+					&& height == other.height
+					&& cables == other.cables;
+		}
+		
 	}
 
 
@@ -570,12 +625,10 @@ public final class PowerModule extends AbstractModule {
 		implements RenderableToAllTargets {
 
 		private TowerConfig config;
-		private VectorXZ direction;
 		
 		public HighVoltagePowerTower(MapNode node, TowerConfig config) {
 			super(node);
 			this.config = config;
-			this.direction = config.direction;
 		}
 	
 		@Override
@@ -594,14 +647,47 @@ public final class PowerModule extends AbstractModule {
 			return height;
 		}
 		
+		@Override
+		public void renderTo(Target<?> target) {
+			
+			/* texture coordinates are relative to each segment of the tower,
+			 * so textured towers can be drawn as instances as well */
+			
+			target.drawInstance(new HighVoltagePowerTowerGeometry(
+					config.voltage > 150000, getTowerHeight(), config.cables > 6),
+					getBase(), config.direction, 1);
+			
+		}
+	}
+	
+	/**
+	 * geometry of a {@link HighVoltagePowerTower},
+	 * with the power lines running along the z axis
+	 */
+	private static final class HighVoltagePowerTowerGeometry
+		implements InstanceGeometry {
+		
+		private static final VectorXZ LINE_DIRECTION = VectorXZ.Z_UNIT;
+		
+		private final boolean highVoltage;
+		private final double height;
+		private final boolean upperPole;
+		
+		public HighVoltagePowerTowerGeometry(boolean highVoltage,
+				double height, boolean upperPole) {
+			this.highVoltage = highVoltage;
+			this.height = height;
+			this.upperPole = upperPole;
+		}
+		
 		private VectorXZ[][] getCorners(VectorXZ center, double diameter) {
 			double half = diameter/2;
-			VectorXZ ortho = direction.rightNormal();
+			VectorXZ ortho = LINE_DIRECTION.rightNormal();
 			
-			VectorXZ right_in = center.add(direction.mult(half));
-			VectorXZ left_in = center.add(direction.mult(-half));
-			VectorXZ right_out = center.add(direction.mult(half));
-			VectorXZ left_out = center.add(direction.mult(-half));
+			VectorXZ right_in = center.add(LINE_DIRECTION.mult(half));
+			VectorXZ left_in = center.add(LINE_DIRECTION.mult(-half));
+			VectorXZ right_out = center.add(LINE_DIRECTION.mult(half));
+			VectorXZ left_out = center.add(LINE_DIRECTION.mult(-half));
 
 			// TODO: if we can switch off backface culling we'd only need one face here
 			return new VectorXZ[][]{
@@ -627,7 +713,8 @@ public final class PowerModule extends AbstractModule {
 				List<VectorXYZ> vs = new ArrayList<VectorXYZ>();
 				List<VectorXZ> tex = new ArrayList<VectorXZ>();
 				List<List<VectorXZ>> texList =
-					nCopies(Materials.POWER_TOWER_VERTICAL.getNumTextureLayers(), tex);
+					nCopies(target.getMaterialRegistry().resolve(
+							Materials.POWER_TOWER_VERTICAL).getNumTextureLayers(), tex);
 				
 				for (int i = 0; i < 2; i++) {
 					int idx = (a+i)%4;
@@ -648,7 +735,8 @@ public final class PowerModule extends AbstractModule {
 			List<VectorXYZ> vs = new ArrayList<VectorXYZ>();
 			List<VectorXZ> tex = new ArrayList<VectorXZ>();
 			List<List<VectorXZ>> texList =
-					nCopies(Materials.POWER_TOWER_HORIZONTAL.getNumTextureLayers(), tex);
+					nCopies(target.getMaterialRegistry().resolve(
+							Materials.POWER_TOWER_HORIZONTAL).getNumTextureLayers(), tex);
 		
 			vs.add(right.xyz(base));
 			vs.add(left.xyz(base));
@@ -674,7 +762,8 @@ public final class PowerModule extends AbstractModule {
 				List<VectorXYZ> vs = new ArrayList<VectorXYZ>();
 				List<VectorXZ> tex = new ArrayList<VectorXZ>();
 				List<List<VectorXZ>> texList =
-						nCopies(Materials.POWER_TOWER_VERTICAL.getNumTextureLayers(), tex);
+						nCopies(target.getMaterialRegistry().resolve(
+								Materials.POWER_TOWER_VERTICAL).getNumTextureLayers(), tex);
 
 				for (int i = 0; i < 2; i++) {
 					vs.add(points[1][a+i].xyz(base + height[a+i]));
@@ -696,8 +785,8 @@ public final class PowerModule extends AbstractModule {
 				double bottom = ground_size + i * (top_size - ground_size) / nr_segments;
 				double top = ground_size + (i + 1) * (top_size - ground_size) / nr_segments;
 
-				VectorXZ[][] low = getCorners(node.getPos(), bottom);
-				VectorXZ[][] high = getCorners(node.getPos(), top);
+				VectorXZ[][] low = getCorners(VectorXZ.NULL_VECTOR, bottom);
+				VectorXZ[][] high = getCorners(VectorXZ.NULL_VECTOR, top);
 
 				drawSegment(target, low[0], high[0], elevation, elevation + segment_height);
 				drawSegment(target, low[1], high[1], elevation, elevation + segment_height);
@@ -725,14 +814,14 @@ public final class PowerModule extends AbstractModule {
 				double diameter, double width) {
 
 			double half = diameter / 2;
-			VectorXZ ortho = direction.rightNormal();
+			VectorXZ ortho = LINE_DIRECTION.rightNormal();
 
 			// TODO: if we can switch off backface culling we'd only need one face here
 			VectorXZ[][] draw = new VectorXZ[][] {
-					getPoleCoordinates(node.getPos().add(direction.mult(-half)), ortho, width, half),
-					getPoleCoordinates(node.getPos().add(direction.mult(-half)), ortho.invert(), width, half),
-					getPoleCoordinates(node.getPos().add(direction.mult(half)), ortho.invert(), width, half),
-					getPoleCoordinates(node.getPos().add(direction.mult(half)), ortho, width, half)
+					getPoleCoordinates(VectorXZ.NULL_VECTOR.add(LINE_DIRECTION.mult(-half)), ortho, width, half),
+					getPoleCoordinates(VectorXZ.NULL_VECTOR.add(LINE_DIRECTION.mult(-half)), ortho.invert(), width, half),
+					getPoleCoordinates(VectorXZ.NULL_VECTOR.add(LINE_DIRECTION.mult(half)), ortho.invert(), width, half),
+					getPoleCoordinates(VectorXZ.NULL_VECTOR.add(LINE_DIRECTION.mult(half)), ortho, width, half)
 			};
 
 			for (int i = 0; i < 4; i++) {
@@ -751,12 +840,11 @@ public final class PowerModule extends AbstractModule {
 		@Override
 		public void renderTo(Target<?> target) {
 
-			float pole_width = config.voltage > 150000 ? 16 : 13;
-			float[] tower_width = config.voltage > 150000 ? new float[]{11,6,4f,0} : new float[]{8,5,3,0};
-			double height = getTowerHeight();
+			float pole_width = highVoltage ? 16 : 13;
+			float[] tower_width = highVoltage ? new float[]{11,6,4f,0} : new float[]{8,5,3,0};
 
 			double segment_height = 2.5;
-			double base = getBase().y - 0.5;
+			double base = -0.5;
 
 			int parts = (int) (height / segment_height);
 			int low_parts = parts / 5;
@@ -768,10 +856,27 @@ public final class PowerModule extends AbstractModule {
 
 			// draw the vertical poles
 			drawHorizontalPole(target, base + height/2, 0.7*tower_width[1], pole_width);
-			if (config.cables > 6) {
+			if (upperPole) {
 				drawHorizontalPole(target, ele, 0.55*tower_width[2], 0.6*pole_width);
 			}
 		}
+		
+		@Override
+		public int hashCode() {
+			long heightBits = Double.doubleToLongBits(height);
+			return 31 * (31 * (highVoltage ? 1 : 0) + (upperPole ? 1 : 0))
+					+ (int) (heightBits ^ (heightBits >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof HighVoltagePowerTowerGeometry)) return false;
+			HighVoltagePowerTowerGeometry other = (HighVoltagePowerTowerGeometry) obj;
+			return highVoltage == other.highVoltage
+					&& height == other.height
+					&& upperPole == other.upperPole;
+		}
+		
 	}
 	
 	private static final class PhotovoltaicPlant extends AbstractAreaWorldObject
@@ -916,15 +1021,21 @@ public final class PowerModule extends AbstractModule {
 					bottomRight.add(upVector),
 					bottomRight);
 			
-			target.drawTriangleStrip(Materials.SOLAR_PANEL, vs,
-					texCoordLists(vs, Materials.SOLAR_PANEL, STRIP_WALL));
+			Material panelMaterial =
+					target.getMaterialRegistry().resolve(Materials.SOLAR_PANEL);
+			
+			target.drawTriangleStrip(panelMaterial, vs,
+					texCoordLists(vs, panelMaterial, STRIP_WALL));
 			
 			/* draw back */
 			
 			vs = asList(vs.get(2), vs.get(3), vs.get(0), vs.get(1));
 			
-			target.drawTriangleStrip(Materials.PLASTIC_GREY, vs,
-					texCoordLists(vs, Materials.PLASTIC_GREY, STRIP_WALL));
+			Material backMaterial =
+					target.getMaterialRegistry().resolve(Materials.PLASTIC_GREY);
+			
+			target.drawTriangleStrip(backMaterial, vs,
+					texCoordLists(vs, backMaterial, STRIP_WALL));
 						
 		}
 		
@@ -119,8 +119,11 @@ public class RailwayModule extends ConfigurableWorldModule {
 			List<VectorXYZ> groundVs = WorldModuleGeometryUtil.createTriangleStripBetween(
 					getOutline(false), getOutline(true));
 			
-			target.drawTriangleStrip(Materials.RAIL_BALLAST_DEFAULT, groundVs,
-					texCoordLists(groundVs, Materials.RAIL_BALLAST_DEFAULT, GLOBAL_X_Z));
+			Material groundMaterial = target.getMaterialRegistry().resolve(
+					Materials.RAIL_BALLAST_DEFAULT);
+			
+			target.drawTriangleStrip(groundMaterial, groundVs,
+					texCoordLists(groundVs, groundMaterial, GLOBAL_X_Z));
 			
 			
 			/* draw rails */
@@ -213,7 +216,8 @@ public class RailwayModule extends ConfigurableWorldModule {
 
 			List<VectorXYZ> vectors = getOutlinePolygon().getVertexLoop();
 
-			Material material = Materials.RAIL_BALLAST_DEFAULT;
+			Material material = target.getMaterialRegistry().resolve(
+					Materials.RAIL_BALLAST_DEFAULT);
 			
 			target.drawConvexPolygon(material, vectors,
 					texCoordLists(vectors, material, GLOBAL_X_Z));
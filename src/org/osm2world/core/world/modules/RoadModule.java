@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
 import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
@@ -39,8 +40,12 @@ import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.Target;
 import org.osm2world.core.target.common.TextureData;
 import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.target.common.material.TexCoordFunction;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.Operation;
+import org.osm2world.core.world.creation.ParallelWorldModule;
 import org.osm2world.core.world.data.TerrainBoundaryWorldObject;
 import org.osm2world.core.world.modules.common.ConfigurableWorldModule;
 import org.osm2world.core.world.network.AbstractNetworkWaySegmentWorldObject;
@@ -51,67 +56,91 @@ import org.osm2world.core.world.network.VisibleConnectorNodeWorldObject;
 /**
  * adds roads to the world
  */
-public class RoadModule extends ConfigurableWorldModule {
+public class RoadModule extends ConfigurableWorldModule
+		implements ParallelWorldModule {
 	
 	/** determines whether right-hand or left-hand traffic is the default */
 	private static final boolean RIGHT_HAND_TRAFFIC_BY_DEFAULT = true;
 	
 	@Override
 	public void applyTo(MapData grid) {
+		applyTo(grid, null);
+	}
+	
+	/**
+	 * creates roads for segments and areas first. Junctions and connectors
+	 * depend on the roads of all connected segments, so nodes are processed
+	 * once all segments are done.
+	 */
+	@Override
+	public void applyTo(MapData grid, ExecutorService executor) {
 		
-		for (MapWaySegment line : grid.getMapWaySegments()) {
-			if (isRoad(line.getTags())) {
-				line.addRepresentation(new Road(line, line.getTags()));
+		ParallelIterationUtil.iterate(grid.getMapWaySegments(),
+				new Operation<MapWaySegment>() {
+			@Override public void perform(MapWaySegment line) {
+				if (isRoad(line.getTags())) {
+					line.addRepresentation(new Road(line, line.getTags()));
+				}
 			}
-		}
+		}, executor);
 
-		for (MapArea area : grid.getMapAreas()) {
-				
-			if (isRoad(area.getTags())) {
+		ParallelIterationUtil.iterate(grid.getMapAreas(),
+				new Operation<MapArea>() {
+			@Override public void perform(MapArea area) {
 				
-				List<VectorXZ> coords = new ArrayList<VectorXZ>();
-				for (MapNode node : area.getBoundaryNodes()) {
-					coords.add(node.getPos());
+				if (isRoad(area.getTags())) {
+					
+					List<VectorXZ> coords = new ArrayList<VectorXZ>();
+					for (MapNode node : area.getBoundaryNodes()) {
+						coords.add(node.getPos());
+					}
+					coords.remove(coords.size()-1);
+					
+					area.addRepresentation(new RoadArea(area));
 				}
-				coords.remove(coords.size()-1);
 				
-				area.addRepresentation(new RoadArea(area));
 			}
-			
-		}
-
-		for (MapNode node : grid.getMapNodes()) {
+		}, executor);
 
-			TagGroup tags = node.getOsmNode().tags;
+		ParallelIterationUtil.iterate(grid.getMapNodes(),
+				new Operation<MapNode>() {
+			@Override public void perform(MapNode node) {
+				applyToNode(node);
+			}
+		}, executor);
+		
+	}
+	
+	private static void applyToNode(MapNode node) {
+		
+		TagGroup tags = node.getOsmNode().tags;
+		
+		List<Road> connectedRoads = getConnectedRoads(node, false);
+		
+		if (connectedRoads.size() > 2 && connectedRoads.size() < 5) {
 			
-			List<Road> connectedRoads = getConnectedRoads(node, false);
+			node.addRepresentation(new RoadJunction(node));
 			
-			if (connectedRoads.size() > 2 && connectedRoads.size() < 5) {
-				
-				node.addRepresentation(new RoadJunction(node));
-				
-			} else if (connectedRoads.size() == 2
-					&& tags.contains("highway", "crossing")
-					&& !tags.contains("crossing", "no")) {
-				
-				node.addRepresentation(new RoadCrossingAtConnector(node));
-				
-			} else if (connectedRoads.size() == 2) {
-				
-				Road road1 = connectedRoads.get(0);
-				Road road2 = connectedRoads.get(1);
-				
-				if (road1.getWidth() != road2.getWidth()
-						/* TODO: || lane layouts not identical */) {
-					node.addRepresentation(new RoadConnector(node));
-				}
-				
+		} else if (connectedRoads.size() == 2
+				&& tags.contains("highway", "crossing")
+				&& !tags.contains("crossing", "no")) {
+			
+			node.addRepresentation(new RoadCrossingAtConnector(node));
+			
+		} else if (connectedRoads.size() == 2) {
+			
+			Road road1 = connectedRoads.get(0);
+			Road road2 = connectedRoads.get(1);
+			
+			if (road1.getWidth() != road2.getWidth()
+					/* TODO: || lane layouts not identical */) {
+				node.addRepresentation(new RoadConnector(node));
 			}
 			
 		}
 		
 	}
-
+	
 	private static boolean isRoad(TagGroup tags) {
 		if (tags.containsKey("highway")
 				&& !tags.contains("highway", "construction")
@@ -552,7 +581,8 @@ public class RoadModule extends ConfigurableWorldModule {
 		@Override
 		public void renderTo(Target<?> target) {
 			
-			Material material = getSurfaceForNode(node);
+			Material material = target.getMaterialRegistry().resolve(
+					getSurfaceForNode(node));
 			Collection<TriangleXYZ> triangles = super.getTriangulation();
 			
 			target.drawTriangles(material, triangles,
@@ -638,7 +668,8 @@ public class RoadModule extends ConfigurableWorldModule {
 			
 			//TODO: subtract area covered by connections
 			
-			Material material = getSurfaceForNode(node);
+			Material material = target.getMaterialRegistry().resolve(
+					getSurfaceForNode(node));
 			
 			Collection<TriangleXYZ> trianglesXYZ = getTriangulation();
 			
@@ -700,18 +731,20 @@ public class RoadModule extends ConfigurableWorldModule {
 			
 			/* determine surface material */
 			
-			Material surface = getSurfaceForNode(node);
+			MaterialRegistry materialRegistry = target.getMaterialRegistry();
+			
+			Material surface = materialRegistry.resolve(getSurfaceForNode(node));
 			
 			if (node.getTags().contains("crossing", "zebra")
 					|| node.getTags().contains("crossing_ref", "zebra")) {
 				
-				surface = surface.withAddedLayers(
-						ROAD_MARKING_ZEBRA.getTextureDataList());
+				surface = surface.withAddedLayers(materialRegistry.resolve(
+						ROAD_MARKING_ZEBRA).getTextureDataList());
 				
 			} else if (!node.getTags().contains("crossing", "unmarked")) {
 
-				surface = surface.withAddedLayers(
-						ROAD_MARKING_CROSSING.getTextureDataList());
+				surface = surface.withAddedLayers(materialRegistry.resolve(
+						ROAD_MARKING_CROSSING).getTextureDataList());
 				
 			}
 			
@@ -1244,8 +1277,10 @@ public class RoadModule extends ConfigurableWorldModule {
 			List<VectorXYZ> vs = createTriangleStripBetween(
 					leftOutline, rightOutline);
 
-			target.drawTriangleStrip(ASPHALT, vs,
-					texCoordLists(vs, ASPHALT, GLOBAL_X_Z));
+			Material asphalt = target.getMaterialRegistry().resolve(ASPHALT);
+			
+			target.drawTriangleStrip(asphalt, vs,
+					texCoordLists(vs, asphalt, GLOBAL_X_Z));
 			
 			/* determine the length of each individual step */
 			
@@ -1340,9 +1375,12 @@ public class RoadModule extends ConfigurableWorldModule {
 					HANDRAIL_SHAPE, handrailLine,
 					Collections.nCopies(handrailLine.size(), VectorXYZ.Y_UNIT));
 				
+				Material handrailMaterial =
+						target.getMaterialRegistry().resolve(HANDRAIL_DEFAULT);
+				
 				for (List<VectorXYZ> strip : strips) {
-					target.drawTriangleStrip(HANDRAIL_DEFAULT, strip,
-							texCoordLists(strip, HANDRAIL_DEFAULT, STRIP_WALL));
+					target.drawTriangleStrip(handrailMaterial, strip,
+							texCoordLists(strip, handrailMaterial, STRIP_WALL));
 				}
 				
 				target.drawColumn(HANDRAIL_DEFAULT, 4,
@@ -1371,14 +1409,16 @@ public class RoadModule extends ConfigurableWorldModule {
 			Lane firstLane = lanesLeftToRight.get(0);
 			Lane lastLane = lanesLeftToRight.get(lanesLeftToRight.size() - 1);
 			
+			Material surface = target.getMaterialRegistry().resolve(getSurface());
+			
 			if (firstLane.getHeightAboveRoad() > 0) {
 				
 				List<VectorXYZ> vs = createTriangleStripBetween(
 						getOutline(false),
 						addYList(getOutline(false), firstLane.getHeightAboveRoad()));
 				
-				target.drawTriangleStrip(getSurface(), vs,
-						texCoordLists(vs, getSurface(), STRIP_WALL));
+				target.drawTriangleStrip(surface, vs,
+						texCoordLists(vs, surface, STRIP_WALL));
 				
 			}
 			
@@ -1388,8 +1428,8 @@ public class RoadModule extends ConfigurableWorldModule {
 						addYList(getOutline(true), lastLane.getHeightAboveRoad()),
 						getOutline(true));
 				
-				target.drawTriangleStrip(getSurface(), vs,
-						texCoordLists(vs, getSurface(), STRIP_WALL));
+				target.drawTriangleStrip(surface, vs,
+						texCoordLists(vs, surface, STRIP_WALL));
 				
 			}
 						
@@ -1421,7 +1461,8 @@ public class RoadModule extends ConfigurableWorldModule {
 		public void renderTo(Target<?> target) {
 			
 			String surface = area.getTags().getValue("surface");
-			Material material = getSurfaceMaterial(surface, ASPHALT);
+			Material material = target.getMaterialRegistry().resolve(
+					getSurfaceMaterial(surface, ASPHALT));
 			Collection<TriangleXYZ> triangles = getTriangulation();
 			
 			target.drawTriangles(material, triangles,
@@ -1797,8 +1838,15 @@ public class RoadModule extends ConfigurableWorldModule {
 				List<VectorXYZ> leftLaneBorder,
 				List<VectorXYZ> rightLaneBorder) {
 			
-			Material surface = getSurface(roadTags, laneTags);
+			MaterialRegistry materialRegistry = target.getMaterialRegistry();
+			
+			Material surface = materialRegistry.resolve(
+					getSurface(roadTags, laneTags));
 			Material surfaceMiddle = getSurfaceMiddle(roadTags, laneTags);
+			
+			if (surfaceMiddle != null) {
+				surfaceMiddle = materialRegistry.resolve(surfaceMiddle);
+			}
 						
 			/* draw lane triangle strips */
 			
@@ -1812,7 +1860,7 @@ public class RoadModule extends ConfigurableWorldModule {
 				
 				
 				if (!roadTags.contains("highway", "motorway")) {
-					surface = addTurnArrows(surface, laneTags);
+					surface = addTurnArrows(surface, laneTags, materialRegistry);
 				}
 				
 				target.drawTriangleStrip(surface, vs,
@@ -1961,13 +2009,15 @@ public class RoadModule extends ConfigurableWorldModule {
 
 			List<VectorXYZ> vs1_2 = createTriangleStripBetween(
 					border1, border2);
-			target.drawTriangleStrip(Materials.KERB, vs1_2,
-					texCoordLists(vs1_2, Materials.KERB, STRIP_FIT_HEIGHT));
+			Material kerb = target.getMaterialRegistry().resolve(Materials.KERB);
+			
+			target.drawTriangleStrip(kerb, vs1_2,
+					texCoordLists(vs1_2, kerb, STRIP_FIT_HEIGHT));
 
 			List<VectorXYZ> vs2_3 = createTriangleStripBetween(
 					border2, border3);
-			target.drawTriangleStrip(Materials.KERB, vs2_3,
-					texCoordLists(vs2_3, Materials.KERB, STRIP_FIT_HEIGHT));
+			target.drawTriangleStrip(kerb, vs2_3,
+					texCoordLists(vs2_3, kerb, STRIP_FIT_HEIGHT));
 			
 		}
 		
@@ -1986,10 +2036,11 @@ public class RoadModule extends ConfigurableWorldModule {
 	/**
 	 * adds a texture layer for turn arrows (if any) to a material
 	 * 
+	 * @param material  the material, already resolved using the registry
 	 * @return  a material based on the input, possibly with added turn arrows
 	 */
 	private static Material addTurnArrows(Material material,
-			TagGroup laneTags) {
+			TagGroup laneTags, MaterialRegistry materialRegistry) {
 		
 		Material arrowMaterial = null;
 		
@@ -2030,7 +2081,8 @@ public class RoadModule extends ConfigurableWorldModule {
 		/* apply the results */
 		
 		if (arrowMaterial != null) {
-			material = material.withAddedLayers(arrowMaterial.getTextureDataList());
+			material = material.withAddedLayers(materialRegistry.resolve(
+					arrowMaterial).getTextureDataList());
 		}
 		
 		return material;
@@ -2,6 +2,7 @@ package org.osm2world.core.world.modules;
 
 import static java.lang.Math.*;
 import static java.util.Arrays.asList;
+import static org.osm2world.core.target.TargetUtil.hasTextures;
 import static org.osm2world.core.target.common.material.Materials.*;
 import static org.osm2world.core.target.common.material.NamedTexCoordFunction.*;
 import static org.osm2world.core.target.common.material.TexCoordUtil.texCoordLists;
@@ -16,6 +17,7 @@ import org.osm2world.core.map_data.data.MapWaySegment;
 import org.osm2world.core.map_elevation.data.GroundState;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
 import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.Target;
 import org.osm2world.core.target.common.material.ImmutableMaterial;
@@ -209,8 +211,11 @@ public class StreetFurnitureModule extends AbstractModule {
 			
 			List<VectorXYZ> vsListPoster = asList(vsPoster);
 			
-			target.drawTriangleStrip(ADVERTISING_POSTER, vsListPoster,
-					texCoordLists(vsListPoster, ADVERTISING_POSTER, STRIP_FIT));
+			Material posterMaterial =
+					target.getMaterialRegistry().resolve(ADVERTISING_POSTER);
+			
+			target.drawTriangleStrip(posterMaterial, vsListPoster,
+					texCoordLists(vsListPoster, posterMaterial, STRIP_FIT));
 			
 			VectorXYZ[] vsBoard = {
 					vsPoster[2],
@@ -221,8 +226,10 @@ public class StreetFurnitureModule extends AbstractModule {
 			
 			List<VectorXYZ> vsListBoard = asList(vsBoard);
 									
-			target.drawTriangleStrip(CONCRETE, vsListBoard,
-					texCoordLists(vsListBoard, CONCRETE, STRIP_WALL));
+			Material boardMaterial = target.getMaterialRegistry().resolve(CONCRETE);
+			
+			target.drawTriangleStrip(boardMaterial, vsListBoard,
+					texCoordLists(vsListBoard, boardMaterial, STRIP_WALL));
 			
 			
 			/* draw poles */
@@ -497,14 +504,53 @@ public class StreetFurnitureModule extends AbstractModule {
 						node.getTags().getValue("surface"), STEEL);
 			}
 			
+			WasteBasketGeometry geometry = new WasteBasketGeometry(material);
+			
+			if (hasTextures(target, material)) {
+				geometry.draw(target, getBase());
+			} else {
+				target.drawInstance(geometry, getBase(), VectorXZ.Z_UNIT, 1);
+			}
+			
+		}
+		
+	}
+	
+	private static final class WasteBasketGeometry implements InstanceGeometry {
+		
+		private final Material material;
+		
+		public WasteBasketGeometry(Material material) {
+			this.material = material;
+		}
+		
+		@Override
+		public void renderTo(Target<?> target) {
+			draw(target, VectorXYZ.NULL_VECTOR);
+		}
+		
+		private void draw(Target<?> target, VectorXYZ base) {
+			
 			/* draw pole */
-			target.drawColumn(material, null, getBase(),
+			target.drawColumn(material, null, base,
 					1.2, 0.06, 0.06, false, true);
 			
 			/* draw basket */
 			target.drawColumn(material, null,
-					getBase().addY(0.5).add(0.25, 0f, 0f),
+					base.addY(0.5).add(0.25, 0f, 0f),
 					0.5, 0.2, 0.2, true, true);
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return material.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof WasteBasketGeometry
+					&& ((WasteBasketGeometry) obj).material.equals(material);
 		}
 		
 	}
@@ -562,7 +608,8 @@ public class StreetFurnitureModule extends AbstractModule {
 			vs.add(getBase().add(boardVector.mult(width/2)).add(faceVector.mult(-depth/2)).addY(height));
 			vs.add(getBase().add(boardVector.mult(width/2)).add(faceVector.mult(depth/2)).addY(height));
 			
-			target.drawTriangleFan(material.brighter(), vs, null);
+			target.drawTriangleFan(target.getMaterialRegistry()
+					.resolve(material).brighter(), vs, null);
 			
 		}
 	
@@ -936,14 +983,41 @@ public class StreetFurnitureModule extends AbstractModule {
 			
 			float height = parseHeight(node.getTags(), 1f);
 			
+			FireHydrantGeometry geometry = new FireHydrantGeometry(height);
+			
+			if (hasTextures(target, FIREHYDRANT)) {
+				geometry.draw(target, getBase());
+			} else {
+				target.drawInstance(geometry, getBase(), VectorXZ.Z_UNIT, 1);
+			}
+			
+		}
+		
+	}
+	
+	private static final class FireHydrantGeometry implements InstanceGeometry {
+		
+		private final float height;
+		
+		public FireHydrantGeometry(float height) {
+			this.height = height;
+		}
+		
+		@Override
+		public void renderTo(Target<?> target) {
+			draw(target, VectorXYZ.NULL_VECTOR);
+		}
+		
+		private void draw(Target<?> target, VectorXYZ base) {
+			
 			/* draw main pole */
 			target.drawColumn(FIREHYDRANT, null,
-					getBase(),
+					base,
 					height,
 					0.15, 0.15, false, true);
 			
 			/* draw two small and one large valve */
-			VectorXYZ valveBaseVector = getBase().addY(height - 0.3);
+			VectorXYZ valveBaseVector = base.addY(height - 0.3);
 			VectorXZ smallValveVector = VectorXZ.X_UNIT;
 			VectorXZ largeValveVector = VectorXZ.Z_UNIT;
 			
@@ -953,10 +1027,23 @@ public class StreetFurnitureModule extends AbstractModule {
 			target.drawBox(FIREHYDRANT,
 				valveBaseVector.add(0.2f, -0.1f, 0f),
 				largeValveVector, 0.15f, 0.15f, 0.15f);
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return Float.floatToIntBits(height);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof FireHydrantGeometry
+					&& ((FireHydrantGeometry) obj).height == height;
 		}
 		
 	}
 	
+	
 	private static final class StreetLamp extends NoOutlineNodeWorldObject
 			implements RenderableToAllTargets {
 		
@@ -972,9 +1059,7 @@ public class StreetFurnitureModule extends AbstractModule {
 		@Override
 		public void renderTo(Target<?> target) {
 			
-			float lampHeight = 0.8f;
-			float lampHalfWidth = 0.4f;
-			float poleHeight = parseHeight(node.getTags(), 5f) - lampHeight;
+			float height = parseHeight(node.getTags(), 5f);
 			
 			/* determine material */
 			
@@ -990,37 +1075,85 @@ public class StreetFurnitureModule extends AbstractModule {
 						node.getTags().getValue("surface"), STEEL);
 			}
 			
+			StreetLampGeometry geometry =
+					new StreetLampGeometry(material, height);
+			
+			if (hasTextures(target, material, LIGHT)) {
+				geometry.draw(target, getBase());
+			} else {
+				target.drawInstance(geometry, getBase(), VectorXZ.Z_UNIT, 1);
+			}
+			
+		}
+		
+	}
+	
+	private static final class StreetLampGeometry implements InstanceGeometry {
+		
+		private final Material material;
+		private final float height;
+		
+		public StreetLampGeometry(Material material, float height) {
+			this.material = material;
+			this.height = height;
+		}
+		
+		@Override
+		public void renderTo(Target<?> target) {
+			draw(target, VectorXYZ.NULL_VECTOR);
+		}
+		
+		private void draw(Target<?> target, VectorXYZ base) {
+			
+			float lampHeight = 0.8f;
+			float lampHalfWidth = 0.4f;
+			float poleHeight = height - lampHeight;
+			
 			/* draw pole */
 			target.drawColumn(material, null,
-					getBase(),
+					base,
 					0.5, 0.16, 0.08, false, false);
 			target.drawColumn(material, null,
-					getBase().addY(0.5),
+					base.addY(0.5),
 					poleHeight, 0.08, 0.08, false, false);
 			
 			/* draw lamp */
 					
 			// lower part
 			List<VectorXYZ> vs = new ArrayList<VectorXYZ>();
-			vs.add(getBase().addY(poleHeight));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, -lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, -lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
+			vs.add(base.addY(poleHeight));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, -lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, -lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
 			
 			target.drawTriangleFan(LIGHT, vs, null);
 			
 			// upper part
 			vs = new ArrayList<VectorXYZ>();
-			vs.add(getBase().addY(poleHeight + lampHeight));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, -lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, -lampHalfWidth));
-			vs.add(getBase().addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(-lampHalfWidth, 0, -lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, -lampHalfWidth));
+			vs.add(base.addY(poleHeight + lampHeight * 0.8).add(lampHalfWidth, 0, lampHalfWidth));
 			
 			target.drawTriangleFan(LIGHT, vs, null);
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * material.hashCode() + Float.floatToIntBits(height);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StreetLampGeometry)) return false;
+			StreetLampGeometry other = (StreetLampGeometry) obj;
+			return material.equals(other.material)
+					&& height == other.height;
 		}
 		
 	}
@@ -139,8 +139,11 @@ public class TrafficSignModule extends AbstractModule {
 				
 				TextureData textureData = null;
 				
-				if (types.get(sign).material.getNumTextureLayers() != 0) {
-					textureData = types.get(sign).material.getTextureDataList().get(0);
+				Material material = target.getMaterialRegistry().resolve(
+						types.get(sign).material);
+				
+				if (material.getNumTextureLayers() != 0) {
+					textureData = material.getTextureDataList().get(0);
 				}
 				
 				if (textureData == null) {
@@ -221,18 +224,21 @@ public class TrafficSignModule extends AbstractModule {
 			
 			/* render the sign (front, then back) */
 			
+			Material steel = target.getMaterialRegistry().resolve(STEEL);
+			
 			for (int sign = 0; sign < types.size(); sign++) {
 				
-				TrafficSignType type = types.get(sign);
+				Material material = target.getMaterialRegistry().resolve(
+						types.get(sign).material);
 				List<VectorXYZ> vs = signGeometries.get(sign);
 				
-				target.drawTriangleStrip(type.material, vs,
-						texCoordLists(vs, type.material, STRIP_FIT));
+				target.drawTriangleStrip(material, vs,
+						texCoordLists(vs, material, STRIP_FIT));
 				
 				vs = asList(vs.get(2), vs.get(3), vs.get(0), vs.get(1));
 				
-				target.drawTriangleStrip(STEEL, vs,
-						texCoordLists(vs, STEEL, STRIP_FIT));
+				target.drawTriangleStrip(steel, vs,
+						texCoordLists(vs, steel, STRIP_FIT));
 			
 			}
 			
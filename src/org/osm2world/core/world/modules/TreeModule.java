@@ -1,6 +1,7 @@
 package org.osm2world.core.world.modules;
 
 import static java.util.Arrays.asList;
+import static org.osm2world.core.target.TargetUtil.hasTextures;
 import static org.osm2world.core.world.modules.common.WorldModuleGeometryUtil.filterWorldObjectCollisions;
 import static org.osm2world.core.world.modules.common.WorldModuleParseUtil.parseHeight;
 
@@ -8,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.configuration.Configuration;
 import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
@@ -25,6 +27,7 @@ import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.GeometryUtil;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
 import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.Target;
 import org.osm2world.core.target.common.FaceTarget;
@@ -33,6 +36,9 @@ import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.target.povray.POVRayTarget;
 import org.osm2world.core.target.povray.RenderableToPOVRay;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.Operation;
+import org.osm2world.core.world.creation.ParallelWorldModule;
 import org.osm2world.core.world.data.AreaWorldObject;
 import org.osm2world.core.world.data.NoOutlineNodeWorldObject;
 import org.osm2world.core.world.data.WaySegmentWorldObject;
@@ -43,7 +49,8 @@ import org.osm2world.core.world.modules.common.WorldModuleBillboardUtil;
 /**
  * adds trees, tree rows, tree groups and forests to the world
  */
-public class TreeModule extends ConfigurableWorldModule {
+public class TreeModule extends ConfigurableWorldModule
+		implements ParallelWorldModule {
 	
 	private static final List<String> LEAF_TYPE_KEYS =
 			asList("leaf_type", "wood", "type");
@@ -147,33 +154,46 @@ public class TreeModule extends ConfigurableWorldModule {
 	
 	@Override
 	public final void applyTo(MapData mapData) {
+		applyTo(mapData, null);
+	}
+	
+	/**
+	 * creates the tree objects concurrently. Tree positions within forests
+	 * are still calculated lazily, because they depend on the other
+	 * objects overlapping the forest.
+	 */
+	@Override
+	public final void applyTo(final MapData mapData, ExecutorService executor) {
 		
-		for (MapNode node : mapData.getMapNodes()) {
-			
-			if (node.getTags().contains("natural", "tree")) {
-				node.addRepresentation(new Tree(node));
+		ParallelIterationUtil.iterate(mapData.getMapNodes(),
+				new Operation<MapNode>() {
+			@Override public void perform(MapNode node) {
+				if (node.getTags().contains("natural", "tree")) {
+					node.addRepresentation(new Tree(node));
+				}
 			}
-			
-		}
+		}, executor);
 
-		for (MapWaySegment segment : mapData.getMapWaySegments()) {
-			
-			if (segment.getTags().contains(new Tag("natural", "tree_row"))) {
-				segment.addRepresentation(new TreeRow(segment));
+		ParallelIterationUtil.iterate(mapData.getMapWaySegments(),
+				new Operation<MapWaySegment>() {
+			@Override public void perform(MapWaySegment segment) {
+				if (segment.getTags().contains(new Tag("natural", "tree_row"))) {
+					segment.addRepresentation(new TreeRow(segment));
+				}
 			}
-			
-		}
+		}, executor);
 
-		for (MapArea area : mapData.getMapAreas()) {
-			
-			if (area.getTags().contains("natural", "wood")
-					|| area.getTags().contains("landuse", "forest")
-					|| area.getTags().containsKey("wood")
-					|| area.getTags().contains("landuse", "orchard")) {
-				area.addRepresentation(new Forest(area, mapData));
+		ParallelIterationUtil.iterate(mapData.getMapAreas(),
+				new Operation<MapArea>() {
+			@Override public void perform(MapArea area) {
+				if (area.getTags().contains("natural", "wood")
+						|| area.getTags().contains("landuse", "forest")
+						|| area.getTags().containsKey("wood")
+						|| area.getTags().contains("landuse", "orchard")) {
+					area.addRepresentation(new Forest(area, mapData));
+				}
 			}
-			
-		}
+		}, executor);
 		
 	}
 
@@ -207,14 +227,58 @@ public class TreeModule extends ConfigurableWorldModule {
 			WorldModuleBillboardUtil.renderCrosstree(target, material, pos,
 					(species != null ? 1.0 : 0.5 ) * height, height, mirrored);
 			
-		} else {
+		} else if (hasTextures(target, Materials.TREE_TRUNK, Materials.TREE_CROWN)) {
 			
+			// texture coordinates would not be adjusted to the instance's size
 			renderTreeGeometry(target, pos, leafType, height);
 			
+		} else {
+			
+			InstanceGeometry geometry = (leafType == LeafType.NEEDLELEAVED)
+					? NEEDLELEAVED_TREE_GEOMETRY
+					: BROADLEAVED_TREE_GEOMETRY;
+			
+			target.drawInstance(geometry, pos, VectorXZ.Z_UNIT, height);
+			
 		}
 		
 	}
 	
+	/**
+	 * tree geometry with a height of 1, used for instancing
+	 */
+	private static final class TreeGeometry implements InstanceGeometry {
+		
+		private final LeafType leafType;
+		
+		public TreeGeometry(LeafType leafType) {
+			this.leafType = leafType;
+		}
+		
+		@Override
+		public void renderTo(Target<?> target) {
+			renderTreeGeometry(target, VectorXYZ.NULL_VECTOR, leafType, 1);
+		}
+		
+		@Override
+		public int hashCode() {
+			return leafType.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TreeGeometry
+					&& ((TreeGeometry) obj).leafType == leafType;
+		}
+		
+	}
+	
+	private static final TreeGeometry BROADLEAVED_TREE_GEOMETRY =
+			new TreeGeometry(LeafType.BROADLEAVED);
+	
+	private static final TreeGeometry NEEDLELEAVED_TREE_GEOMETRY =
+			new TreeGeometry(LeafType.NEEDLELEAVED);
+	
 	private static void renderTreeGeometry(Target<?> target,
 			VectorXYZ posXYZ, LeafType leafType, double height) {
 		
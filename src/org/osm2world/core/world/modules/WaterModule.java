@@ -29,6 +29,7 @@ import org.osm2world.core.math.TriangleXYZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.target.RenderableToAllTargets;
 import org.osm2world.core.target.Target;
+import org.osm2world.core.target.common.material.Material;
 import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.world.data.AbstractAreaWorldObject;
 import org.osm2world.core.world.data.TerrainBoundaryWorldObject;
@@ -191,9 +192,12 @@ public class WaterModule extends ConfigurableWorldModule {
 							rightWaterBorder, rightOutline)
 				);
 				
+				Material terrain =
+						target.getMaterialRegistry().resolve(TERRAIN_DEFAULT);
+				
 				for (List<VectorXYZ> strip : strips) {
-					target.drawTriangleStrip(TERRAIN_DEFAULT, strip,
-						texCoordLists(strip, TERRAIN_DEFAULT, GLOBAL_X_Z));
+					target.drawTriangleStrip(terrain, strip,
+						texCoordLists(strip, terrain, GLOBAL_X_Z));
 				}
 				
 				/* render water */
@@ -201,8 +205,10 @@ public class WaterModule extends ConfigurableWorldModule {
 				List<VectorXYZ> vs = createTriangleStripBetween(
 						leftWaterBorder, rightWaterBorder);
 				
-				target.drawTriangleStrip(WATER, vs,
-						texCoordLists(vs, WATER, GLOBAL_X_Z));
+				Material water = target.getMaterialRegistry().resolve(WATER);
+				
+				target.drawTriangleStrip(water, vs,
+						texCoordLists(vs, water, GLOBAL_X_Z));
 				
 			}
 			
@@ -253,8 +259,10 @@ public class WaterModule extends ConfigurableWorldModule {
 			
 			List<VectorXYZ> vertices = getOutlinePolygon().getVertices();
 			
-			target.drawConvexPolygon(WATER, vertices,
-					texCoordLists(vertices, WATER, GLOBAL_X_Z));
+			Material water = target.getMaterialRegistry().resolve(WATER);
+			
+			target.drawConvexPolygon(water, vertices,
+					texCoordLists(vertices, water, GLOBAL_X_Z));
 			
 			//TODO: only cover with water to 0.95 * distance to center; add land below
 			
@@ -286,9 +294,10 @@ public class WaterModule extends ConfigurableWorldModule {
 		
 		@Override
 		public void renderTo(Target<?> target) {
+			Material water = target.getMaterialRegistry().resolve(WATER);
 			Collection<TriangleXYZ> triangles = getTriangulation();
-			target.drawTriangles(WATER, triangles,
-					triangleTexCoordLists(triangles, WATER, GLOBAL_X_Z));
+			target.drawTriangles(water, triangles,
+					triangleTexCoordLists(triangles, water, GLOBAL_X_Z));
 		}
 		
 	}
@@ -310,9 +319,10 @@ public class WaterModule extends ConfigurableWorldModule {
 
 			/* render water */
 				
+			Material water = target.getMaterialRegistry().resolve(PURIFIED_WATER);
 			Collection<TriangleXYZ> triangles = getTriangulation();
-			target.drawTriangles(PURIFIED_WATER, triangles,
-					triangleTexCoordLists(triangles, PURIFIED_WATER, GLOBAL_X_Z));
+			target.drawTriangles(water, triangles,
+					triangleTexCoordLists(triangles, water, GLOBAL_X_Z));
 			
 			/* render walls */
 			//note: mostly copy-pasted from BarrierModule
@@ -334,9 +344,12 @@ public class WaterModule extends ConfigurableWorldModule {
 					path,
 					nCopies(path.size(), VectorXYZ.Y_UNIT));
 			
+			Material concrete =
+					target.getMaterialRegistry().resolve(Materials.CONCRETE);
+			
 			for (List<VectorXYZ> strip : strips) {
-				target.drawTriangleStrip(Materials.CONCRETE, strip,
-						texCoordLists(strip, Materials.CONCRETE, STRIP_WALL));
+				target.drawTriangleStrip(concrete, strip,
+						texCoordLists(strip, concrete, STRIP_WALL));
 			}
 							
 		}
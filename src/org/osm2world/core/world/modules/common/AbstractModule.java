@@ -1,10 +1,17 @@
 package org.osm2world.core.world.modules.common;
 
+import java.util.concurrent.ExecutorService;
+
 import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.map_data.data.MapNode;
 import org.osm2world.core.map_data.data.MapWaySegment;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.Operation;
+import org.osm2world.core.util.metrics.Metrics;
+import org.osm2world.core.util.metrics.Profile;
+import org.osm2world.core.world.creation.ParallelWorldModule;
 import org.osm2world.core.world.creation.WorldModule;
 import org.osm2world.core.world.data.WorldObject;
 
@@ -13,25 +20,63 @@ import org.osm2world.core.world.data.WorldObject;
  * 
  * Subclasses need to be able to create {@link WorldObject}s
  * for each {@link MapElement} in isolation.
- * This can make parallel application of the module possible.
+ * This makes parallel application of the module possible:
+ * Nodes, way segments and areas are processed one after another,
+ * but the elements of each of these groups can be processed concurrently.
+ * Subclasses therefore must not add representations to other elements,
+ * or inspect the representations of other elements of the same group.
  */
-public abstract class AbstractModule extends ConfigurableWorldModule {
+public abstract class AbstractModule extends ConfigurableWorldModule
+		implements ParallelWorldModule {
 		
 	@Override
 	public final void applyTo(MapData grid) {
+		applyTo(grid, null);
+	}
+	
+	@Override
+	public final void applyTo(MapData grid, ExecutorService executor) {
 		
-		for (MapNode node : grid.getMapNodes()) {
-			applyToNode(node);
-		}
-
-		for (MapWaySegment segment : grid.getMapWaySegments()) {
-			applyToWaySegment(segment);
-		}
-
-		for (MapArea area : grid.getMapAreas()) {
-			applyToArea(area);
-		}
+		final Profile profile = Metrics.current().getProfile();
 		
+		ParallelIterationUtil.iterate(grid.getMapNodes(),
+				new Operation<MapNode>() {
+			@Override public void perform(MapNode node) {
+				long startNanos = (profile != null) ? System.nanoTime() : 0;
+				applyToNode(node);
+				addElementCost(profile, node, startNanos);
+			}
+		}, executor);
+		
+		ParallelIterationUtil.iterate(grid.getMapWaySegments(),
+				new Operation<MapWaySegment>() {
+			@Override public void perform(MapWaySegment segment) {
+				long startNanos = (profile != null) ? System.nanoTime() : 0;
+				applyToWaySegment(segment);
+				addElementCost(profile, segment, startNanos);
+			}
+		}, executor);
+		
+		ParallelIterationUtil.iterate(grid.getMapAreas(),
+				new Operation<MapArea>() {
+			@Override public void perform(MapArea area) {
+				long startNanos = (profile != null) ? System.nanoTime() : 0;
+				applyToArea(area);
+				addElementCost(profile, area, startNanos);
+			}
+		}, executor);
+		
+	}
+	
+	/**
+	 * records the time spent on an element if profiling is enabled
+	 */
+	static void addElementCost(Profile profile, MapElement element,
+			long startNanos) {
+		if (profile != null) {
+			profile.addElementCost(element.getOsmElement(),
+					System.nanoTime() - startNanos);
+		}
 	}
 
 	/**
@@ -1,19 +1,28 @@
 package org.osm2world.core.world.modules.common;
 
 import org.apache.commons.configuration.Configuration;
+import org.osm2world.core.target.common.material.MaterialRegistry;
 import org.osm2world.core.world.creation.WorldModule;
 
 /**
  * simple superclass for {@link WorldModule}s that stores a configuration set by
  * {@link #setConfiguration(org.apache.commons.configuration.Configuration)}
+ * and a material registry set by {@link #setMaterialRegistry(MaterialRegistry)}
  */
 public abstract class ConfigurableWorldModule implements WorldModule {
 	
 	protected Configuration config;
 	
+	protected MaterialRegistry materialRegistry = MaterialRegistry.DEFAULTS;
+	
 	@Override
 	public void setConfiguration(Configuration config) {
 		this.config = config;
 	}
 	
+	@Override
+	public void setMaterialRegistry(MaterialRegistry materialRegistry) {
+		this.materialRegistry = materialRegistry;
+	}
+	
 }
@@ -30,6 +30,8 @@ public final class WorldModuleBillboardUtil {
 			double width, double height,
 			boolean mirroredTextures) {
 
+		material = target.getMaterialRegistry().resolve(material);
+		
 		double halfWidth = 0.5 * width;
 		
 		VectorXYZ xPosBottom = pos.add(halfWidth, 0, 0);
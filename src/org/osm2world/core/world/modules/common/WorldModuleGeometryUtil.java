@@ -1,20 +1,22 @@
 package org.osm2world.core.world.modules.common;
 
-import static java.lang.Math.toRadians;
+import static java.lang.Math.*;
 import static java.util.Arrays.asList;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
 import org.osm2world.core.map_elevation.data.GroundState;
+import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.GeometryUtil;
 import org.osm2world.core.math.InvalidGeometryException;
 import org.osm2world.core.math.SimplePolygonXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.math.datastructures.IntersectionGrid;
+import org.osm2world.core.math.datastructures.IntersectionTestObject;
 import org.osm2world.core.world.creation.WorldModule;
 import org.osm2world.core.world.data.WorldObject;
 import org.osm2world.core.world.data.WorldObjectWithOutline;
@@ -260,7 +262,7 @@ public final class WorldModuleGeometryUtil {
 		 * instead of doing this within the loop iterating over positions.
 		 */
 		
-		List<SimplePolygonXZ> filterPolygons = new ArrayList<SimplePolygonXZ>();
+		List<FilterPolygon> filterPolygons = new ArrayList<FilterPolygon>();
 		
 		for (WorldObject worldObject : worldObjects) {
 			
@@ -277,28 +279,98 @@ public final class WorldModuleGeometryUtil {
 				}
 				
 				if (outline != null) {
-					filterPolygons.add(outline);
+					filterPolygons.add(new FilterPolygon(outline));
 				}
 				
 			}
 		
 		}
 		
+		if (filterPolygons.isEmpty() || positions.isEmpty()) return;
+		
+		/*
+		 * insert the polygons into a grid, so each position only needs to be
+		 * compared with the polygons in its cell
+		 */
+		
+		AxisAlignedBoundingBoxXZ polygonBounds = filterPolygons.get(0).box;
+		
+		for (FilterPolygon filterPolygon : filterPolygons) {
+			polygonBounds = AxisAlignedBoundingBoxXZ.union(
+					polygonBounds, filterPolygon.box);
+		}
+		
+		/* padding ensures that all boxes are strictly within the grid */
+		AxisAlignedBoundingBoxXZ gridBounds = polygonBounds.pad(1);
+		
+		int cellCount = max(1, min(MAX_FILTER_GRID_CELLS,
+				(int) sqrt(filterPolygons.size())));
+		
+		IntersectionGrid<FilterPolygon> grid = new IntersectionGrid<FilterPolygon>(
+				gridBounds, cellCount, cellCount);
+		
+		for (FilterPolygon filterPolygon : filterPolygons) {
+			grid.insert(filterPolygon);
+		}
+		
+		Collection<FilterPolygon>[][] cells = grid.getCellArray();
+		
 		/* perform filtering of positions */
 		
-		Iterator<VectorXZ> positionIterator = positions.iterator();
+		List<VectorXZ> remainingPositions = new ArrayList<VectorXZ>(positions.size());
 		
-		while (positionIterator.hasNext()) {
-			
-			VectorXZ pos = positionIterator.next();
+		positionLoop:
+		for (VectorXZ pos : positions) {
 			
-			for (SimplePolygonXZ filterPolygon : filterPolygons) {
-				if (filterPolygon.contains(pos)) {
-					positionIterator.remove();
-					break;
+			if (polygonBounds.contains(pos)) {
+				
+				int cellX = min(grid.cellXForCoord(pos.x, pos.z), cellCount - 1);
+				int cellZ = min(grid.cellZForCoord(pos.x, pos.z), cellCount - 1);
+				
+				if (cells[cellX][cellZ] != null) {
+					for (FilterPolygon filterPolygon : cells[cellX][cellZ]) {
+						if (filterPolygon.box.contains(pos)
+								&& filterPolygon.polygon.contains(pos)) {
+							continue positionLoop;
+						}
+					}
 				}
+				
 			}
 			
+			remainingPositions.add(pos);
+			
+		}
+		
+		if (remainingPositions.size() < positions.size()) {
+			positions.clear();
+			positions.addAll(remainingPositions);
+		}
+		
+	}
+	
+	/** maximum number of grid cells per dimension for collision filtering */
+	private static final int MAX_FILTER_GRID_CELLS = 64;
+	
+	/**
+	 * outline polygon used by
+	 * {@link WorldModuleGeometryUtil#filterWorldObjectCollisions(Collection, Collection)},
+	 * with a slightly padded bounding box to avoid rounding issues
+	 */
+	private static final class FilterPolygon implements IntersectionTestObject {
+		
+		final SimplePolygonXZ polygon;
+		final AxisAlignedBoundingBoxXZ box;
+		
+		FilterPolygon(SimplePolygonXZ polygon) {
+			this.polygon = polygon;
+			this.box = new AxisAlignedBoundingBoxXZ(
+					polygon.getVertices()).pad(1e-6);
+		}
+		
+		@Override
+		public AxisAlignedBoundingBoxXZ getAxisAlignedBoundingBoxXZ() {
+			return box;
 		}
 		
 	}
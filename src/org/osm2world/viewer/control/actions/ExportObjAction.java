@@ -47,6 +47,7 @@ public class ExportObjAction extends AbstractExportAction {
 			ObjWriter.writeObjFile(
 					file,
 					data.getConversionResults().getMapData(),
+					data.getConversionResults().getMaterialRegistry(),
 					data.getConversionResults().getMapProjection(),
 					null, renderOptions.projection, underground);
 
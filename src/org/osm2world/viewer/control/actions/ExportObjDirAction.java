@@ -49,6 +49,7 @@ public class ExportObjDirAction extends AbstractExportAction {
 			ObjWriter.writeObjFiles(
 					file,
 					data.getConversionResults().getMapData(),
+					data.getConversionResults().getMaterialRegistry(),
 					data.getConversionResults().getMapProjection(),
 					null, renderOptions.projection,
 					primitiveThresholdPerFile);
@@ -11,6 +11,7 @@ import javax.swing.KeyStroke;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import org.osm2world.core.osm.creation.OSMFileReader;
+import org.osm2world.core.util.ParallelIterationUtil;
 import org.osm2world.viewer.model.Data;
 import org.osm2world.viewer.model.RenderOptions;
 import org.osm2world.viewer.view.RecentFilesUpdater;
@@ -68,7 +69,9 @@ public class OpenOSMAction extends AbstractLoadOSMAction {
 		}
 		
 		try {
-			loadOSMData(new OSMFileReader(osmFile), resetCamera);
+			loadOSMData(new OSMFileReader(osmFile,
+					ParallelIterationUtil.getThreadCount(data.getConfig())),
+					resetCamera);
 		} catch (IOException e) {
 			
 			String msg = "File not found:\n" + osmFile;
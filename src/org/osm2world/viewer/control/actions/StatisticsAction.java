@@ -44,6 +44,7 @@ public class StatisticsAction extends AbstractAction implements Observer {
 		Results conversionResults = data.getConversionResults();
 		
 		StatisticsTarget stats = new StatisticsTarget();
+		stats.setMaterialRegistry(conversionResults.getMaterialRegistry());
 		
 		TargetUtil.renderWorldObjects(stats, conversionResults.getMapData(), true);
 		new StatisticsDialog(viewerFrame, stats).setVisible(true);
@@ -64,6 +64,7 @@ public class FaceDebugView extends DebugView {
 	protected void fillTarget(JOGLTarget target) {
 		
 		FaceSink faceSink = new FaceSink();
+		faceSink.setMaterialRegistry(materialRegistry);
 		
 		TargetUtil.renderWorldObjects(faceSink, map, true);
 		
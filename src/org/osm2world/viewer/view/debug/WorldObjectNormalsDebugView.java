@@ -32,14 +32,17 @@ public class WorldObjectNormalsDebugView extends DebugView {
 	@Override
 	protected void fillTarget(JOGLTarget target) {
 		
-		final PrimitiveBuffer primitiveBuffer = new PrimitiveBuffer();
+		final PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.setMaterialRegistry(materialRegistry);
 
 		iterate(map.getWorldObjects(), new Operation<WorldObject>() {
 			@Override public void perform(WorldObject w) {
-				TargetUtil.renderObject(primitiveBuffer, w);
+				TargetUtil.renderObject(buffer, w);
 			}
 		});
 		
+		PrimitiveBuffer primitiveBuffer = buffer.flattenInstances();
+		
 		for (Material material : primitiveBuffer .getMaterials()) {
 			
 			Color color = material.getInterpolation() == Interpolation.FLAT ?
@@ -11,6 +11,8 @@ import java.util.Random;
 import org.junit.Test;
 import org.osm2world.core.map_elevation.creation.DelaunayTriangulation;
 import org.osm2world.core.map_elevation.creation.DelaunayTriangulation.DelaunayTriangle;
+import org.osm2world.core.map_elevation.creation.DelaunayTriangulation.NaturalNeighbors;
+import org.osm2world.core.map_elevation.creation.IndexedDelaunayTriangulation;
 import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
@@ -61,7 +63,7 @@ public class DelaunayTriangulationTest {
 				triangulation.insert(point);
 				triangulation2.insert(point);
 				
-				assertTriangulationProperties(triangulation, points);
+				assertTriangulationProperties(triangulation.getTriangles(), points);
 				
 			}
 			
@@ -69,6 +71,105 @@ public class DelaunayTriangulationTest {
 		
 	}
 	
+	@Test
+	public void testProbe() {
+		
+		Random random = new Random(4000);
+		
+		AxisAlignedBoundingBoxXZ bounds = new AxisAlignedBoundingBoxXZ(
+				-SIZE, -SIZE, +SIZE, +SIZE);
+		
+		List<VectorXYZ> points = new ArrayList<VectorXYZ>();
+		
+		for (int i = 0; i < 1000; i++) {
+			points.add(new VectorXYZ(
+					(random.nextDouble() * 2 * SIZE) - SIZE, 0,
+					(random.nextDouble() * 2 * SIZE) - SIZE));
+		}
+		
+		DelaunayTriangulation triangulation = new DelaunayTriangulation(bounds);
+		triangulation.insertAll(points);
+		
+		assertTriangulationProperties(triangulation.getTriangles(), points);
+		
+		for (int i = 0; i < 100; i++) {
+			
+			VectorXZ point = new VectorXZ(
+					(random.nextDouble() * 2 * SIZE) - SIZE,
+					(random.nextDouble() * 2 * SIZE) - SIZE);
+			
+			NaturalNeighbors nn = triangulation.probe(point);
+			
+			/* natural neighbor coordinates sum up to 1
+			 * and reproduce the point's position */
+			
+			double weightSum = 0;
+			double x = 0;
+			double z = 0;
+			
+			for (int n = 0; n < nn.neighbors.length; n++) {
+				weightSum += nn.relativeWeights[n];
+				x += nn.relativeWeights[n] * nn.neighbors[n].x;
+				z += nn.relativeWeights[n] * nn.neighbors[n].z;
+			}
+			
+			assertAlmostEquals(1, weightSum);
+			assertAlmostEquals(point.x, x);
+			assertAlmostEquals(point.z, z);
+			
+		}
+		
+	}
+	
+	@Test
+	public void testIndexedTriangulation() {
+		
+		Random random = new Random(50000);
+		
+		AxisAlignedBoundingBoxXZ bounds = new AxisAlignedBoundingBoxXZ(
+				-SIZE, -SIZE, +SIZE, +SIZE);
+		
+		List<VectorXYZ> points = new ArrayList<VectorXYZ>();
+		
+		for (int i = 0; i < 1000; i++) {
+			points.add(new VectorXYZ(
+					(random.nextDouble() * 2 * SIZE) - SIZE, 0,
+					(random.nextDouble() * 2 * SIZE) - SIZE));
+		}
+		
+		DelaunayTriangulation triangulation = new DelaunayTriangulation(bounds);
+		triangulation.insertAll(points);
+		
+		IndexedDelaunayTriangulation indexedTriangulation =
+				new IndexedDelaunayTriangulation(bounds);
+		indexedTriangulation.insertAll(points);
+		
+		assertTriangulationProperties(indexedTriangulation.getTriangles(), points);
+		
+		/* both triangulations produce the same natural neighbors */
+		
+		for (int i = 0; i < 100; i++) {
+			
+			VectorXZ point = new VectorXZ(
+					(random.nextDouble() * 2 * SIZE) - SIZE,
+					(random.nextDouble() * 2 * SIZE) - SIZE);
+			
+			NaturalNeighbors nn = triangulation.probe(point);
+			NaturalNeighbors indexedNN = indexedTriangulation.probe(point);
+			
+			assertEquals(nn.neighbors.length, indexedNN.neighbors.length);
+			
+			for (int n = 0; n < nn.neighbors.length; n++) {
+				int index = asList(indexedNN.neighbors).indexOf(nn.neighbors[n]);
+				assertTrue(index >= 0);
+				assertAlmostEquals(nn.relativeWeights[n],
+						indexedNN.relativeWeights[index]);
+			}
+			
+		}
+		
+	}
+	
 	/**
 	 * asserts that two triangulations are equal
 	 */
@@ -113,9 +214,9 @@ public class DelaunayTriangulationTest {
 	 * asserts that a triangulation confirms to a set of required properties
 	 */
 	private static void assertTriangulationProperties(
-			DelaunayTriangulation triangulation, List<VectorXYZ> points) {
+			Iterable<DelaunayTriangle> triangles, List<VectorXYZ> points) {
 		
-		for (DelaunayTriangle triangle : triangulation.getTriangles()) {
+		for (DelaunayTriangle triangle : triangles) {
 			
 			/* check that neighborship relations are symmetric */
 			
@@ -0,0 +1,96 @@
+package org.osm2world.console;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConversionServerTest {
+
+	private static final String INPUT = "test/files/validFile.osm";
+
+	private ConversionServer server;
+	private File tempDir;
+
+	@Before
+	public void setUp() throws IOException {
+
+		server = new ConversionServer(2);
+
+		tempDir = File.createTempFile("osm2world", "server");
+		tempDir.delete();
+		tempDir.mkdir();
+
+	}
+
+	@After
+	public void tearDown() {
+
+		server.shutdown();
+
+		for (File file : tempDir.listFiles()) {
+			file.delete();
+		}
+		tempDir.delete();
+
+	}
+
+	@Test
+	public void testSocket() throws IOException {
+
+		int port = server.listen(0);
+
+		File outputA = new File(tempDir, "a.obj");
+		File outputB = new File(tempDir, "b.obj");
+
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+		boolean success = ConversionClient.send(port, asList(
+				"-i " + INPUT + " -o " + outputA,
+				"-i " + INPUT + " -o " + outputB),
+				new PrintStream(log, true));
+
+		assertTrue(log.toString(), success);
+		assertTrue(outputA.length() > 0);
+		assertTrue(outputB.length() > 0);
+
+		/* invalid jobs are reported as failures */
+
+		log.reset();
+
+		assertFalse(ConversionClient.send(port, asList("--version"),
+				new PrintStream(log, true)));
+		assertTrue(log.toString().trim().endsWith(ConversionServer.STATUS_FAILED));
+
+	}
+
+	@Test
+	public void testSpool() throws IOException, InterruptedException {
+
+		server.watch(tempDir);
+
+		File output = new File(tempDir, "spooled.obj");
+
+		ConversionClient.spool(tempDir, "job1",
+				asList("-i " + INPUT + " -o " + output));
+
+		File doneFile = new File(tempDir, "job1.done");
+
+		for (int i = 0; i < 200 && !doneFile.exists(); i++) {
+			Thread.sleep(ConversionServer.SPOOL_POLL_INTERVAL_MS / 5);
+		}
+
+		assertTrue(doneFile.exists());
+		assertTrue(new File(tempDir, "job1.log").length() > 0);
+		assertTrue(output.length() > 0);
+
+	}
+
+}
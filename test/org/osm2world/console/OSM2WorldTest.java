@@ -0,0 +1,127 @@
+package org.osm2world.console;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+import org.osm2world.console.OSM2World.ThreadBufferedOutputStream;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.ParallelIterationUtil.RangeOperation;
+
+public class OSM2WorldTest {
+
+	private static final String INPUT = "test/files/validFile.osm";
+	private static final String OTHER_INPUT = "test/files/sameCoordNodes.osm";
+
+	@Test
+	public void testCreateArgumentsGroups() throws Exception {
+
+		File parameterFile = File.createTempFile("osm2world", "parameters");
+		parameterFile.deleteOnExit();
+
+		PrintWriter writer = new PrintWriter(new FileWriter(parameterFile));
+
+		try {
+			writer.println("# comment");
+			writer.println("-i " + INPUT + " -o a.obj");
+			writer.println("-i " + INPUT + " -o b.obj --performancePrint");
+			writer.println("-i " + OTHER_INPUT + " -o c.obj");
+			writer.println("-i " + INPUT + " -o d.obj --tiled");
+			writer.println("-i " + INPUT + " -o e.obj --config "
+					+ parameterFile.getPath());
+			writer.println("");
+			writer.println("-i " + INPUT + " -o f.obj");
+		} finally {
+			writer.close();
+		}
+
+		List<CLIArguments> argumentsList = new ArrayList<CLIArguments>();
+
+		for (String[] unparsedArgs :
+				CLIArgumentsUtil.getUnparsedParameterGroups(parameterFile)) {
+			argumentsList.add(OSM2World.parseArguments(unparsedArgs));
+		}
+
+		assertEquals(6, argumentsList.size());
+
+		List<CLIArgumentsGroup> groups =
+				OSM2World.createArgumentsGroups(argumentsList);
+
+		assertEquals(4, groups.size());
+
+		assertEquals(3, groups.get(0).getCLIArgumentsList().size());
+		assertSame(argumentsList.get(1), groups.get(0).getCLIArgumentsList().get(1));
+		assertSame(argumentsList.get(5), groups.get(0).getCLIArgumentsList().get(2));
+
+		for (int i = 1; i < 4; i++) {
+			assertEquals(1, groups.get(i).getCLIArgumentsList().size());
+			assertSame(argumentsList.get(i + 1), groups.get(i).getRepresentative());
+		}
+
+		assertFalse(groups.get(1).isCompatible(argumentsList.get(0)));
+		assertFalse(groups.get(0).isCompatible(argumentsList.get(3)));
+		assertFalse(groups.get(0).isCompatible(argumentsList.get(4)));
+
+	}
+
+	/**
+	 * checks that output of worker threads ends up in the buffer
+	 * of the thread that has started the parallel iteration
+	 */
+	@Test
+	public void testThreadBufferedOutputStreamParallel() throws IOException {
+
+		ByteArrayOutputStream original = new ByteArrayOutputStream();
+
+		final ThreadBufferedOutputStream out =
+				new ThreadBufferedOutputStream(original);
+
+		RangeOperation writeRange = new RangeOperation() {
+			@Override public void perform(int start, int end) {
+				try {
+					for (int i = start; i < end; i++) {
+						out.write('x');
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+
+		ExecutorService executor = ParallelIterationUtil.createExecutor(4);
+
+		try {
+
+			ByteArrayOutputStream buffer = out.startBuffer();
+
+			try {
+				ParallelIterationUtil.iterateRanges(100, writeRange, executor);
+			} finally {
+				out.endBuffer();
+			}
+
+			assertEquals(100, buffer.size());
+			assertEquals(0, original.size());
+
+			/* the worker threads no longer use the buffer */
+
+			ParallelIterationUtil.iterateRanges(100, writeRange, executor);
+
+			assertEquals(100, buffer.size());
+			assertEquals(100, original.size());
+
+		} finally {
+			ParallelIterationUtil.shutdown(executor);
+		}
+
+	}
+
+}
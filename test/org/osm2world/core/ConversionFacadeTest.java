@@ -0,0 +1,153 @@
+package org.osm2world.core;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.core.map_elevation.creation.AbstractTerrainInterpolator;
+import org.osm2world.core.map_elevation.creation.InverseDistanceWeightingInterpolator;
+import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator;
+import org.osm2world.core.map_elevation.creation.LinearInterpolator;
+import org.osm2world.core.map_elevation.creation.NaturalNeighborInterpolator;
+import org.osm2world.core.map_elevation.creation.RasterInterpolator;
+import org.osm2world.core.map_elevation.creation.TerrainInterpolator;
+import org.osm2world.core.map_elevation.creation.ZeroInterpolator;
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.map_elevation.data.GroundState;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+public class ConversionFacadeTest {
+
+	private static List<VectorXYZ> createSites() {
+
+		Random random = new Random(1);
+
+		List<VectorXYZ> sites = new ArrayList<VectorXYZ>();
+
+		for (int x = -500; x <= 500; x += 50) {
+			for (int z = -500; z <= 500; z += 50) {
+				sites.add(new VectorXYZ(x, 100 * random.nextDouble(), z));
+			}
+		}
+
+		return sites;
+
+	}
+
+	private static List<EleConnector> createConnectors(int count) {
+
+		Random random = new Random(2);
+
+		List<EleConnector> connectors = new ArrayList<EleConnector>();
+
+		for (int i = 0; i < count; i++) {
+			VectorXZ pos = new VectorXZ(
+					800 * random.nextDouble() - 400,
+					800 * random.nextDouble() - 400);
+			connectors.add(new EleConnector(pos, null, GroundState.ON));
+		}
+
+		return connectors;
+
+	}
+
+	/**
+	 * checks that the sorted batches produce the same elevations,
+	 * for the same connectors, as interpolating each position on its own
+	 */
+	@Test
+	public void testInterpolateElesMatchesSinglePositions() {
+
+		List<VectorXYZ> sites = createSites();
+
+		List<TerrainInterpolator> interpolators = asList(
+				new ZeroInterpolator(),
+				new LeastSquaresInterpolator(),
+				new NaturalNeighborInterpolator(),
+				new InverseDistanceWeightingInterpolator(),
+				new LinearInterpolator(),
+				new RasterInterpolator());
+
+		for (TerrainInterpolator interpolator : interpolators) {
+
+			interpolator.setKnownSites(sites);
+
+			String name = interpolator.getClass().getSimpleName();
+
+			for (int threadCount : new int[] {1, 4}) {
+
+				List<EleConnector> connectors = createConnectors(1000);
+				List<EleConnector> originalConnectors =
+						new ArrayList<EleConnector>(connectors);
+
+				ConversionFacade.interpolateEles(connectors, interpolator, threadCount);
+
+				assertEquals(name, originalConnectors, connectors);
+
+				for (EleConnector connector : connectors) {
+					assertEquals(name,
+							interpolator.interpolateEle(connector.pos).y,
+							connector.getPosXYZ().y, 1e-9);
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * checks that failing batches are retried position by position,
+	 * and that only the connectors that cannot be interpolated are removed
+	 */
+	@Test
+	public void testInterpolateElesFallback() {
+
+		final VectorXZ failingPos = new VectorXZ(12, 34);
+
+		TerrainInterpolator interpolator = new AbstractTerrainInterpolator() {
+
+			@Override
+			public void setKnownSites(Collection<VectorXYZ> sites) {}
+
+			@Override
+			public VectorXYZ interpolateEle(VectorXZ pos) {
+				if (pos.equals(failingPos)) {
+					throw new IllegalArgumentException("test exception");
+				}
+				return pos.xyz(pos.x + pos.z);
+			}
+
+		};
+
+		for (int threadCount : new int[] {1, 4}) {
+
+			List<EleConnector> connectors = createConnectors(100);
+			EleConnector failingConnector =
+					new EleConnector(failingPos, null, GroundState.ON);
+			connectors.add(50, failingConnector);
+
+			List<EleConnector> expectedConnectors =
+					new ArrayList<EleConnector>(connectors);
+			expectedConnectors.remove(failingConnector);
+
+			ConversionFacade.interpolateEles(connectors, interpolator, threadCount);
+
+			assertEquals(expectedConnectors, connectors);
+
+			for (EleConnector connector : connectors) {
+				assertEquals(connector.pos.x + connector.pos.z,
+						connector.getPosXYZ().y, 1e-9);
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,268 @@
+package org.osm2world.core;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Test;
+import org.openstreetmap.josm.plugins.graphview.core.data.EmptyTagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.osm2world.core.ConversionFacade.Phase;
+import org.osm2world.core.ConversionFacade.ProgressListener;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.TiledConversion.TileHandler;
+import org.osm2world.core.map_data.creation.LatLonBounds;
+import org.osm2world.core.map_data.data.MapArea;
+import org.osm2world.core.map_data.data.MapNode;
+import org.osm2world.core.map_data.data.MapWaySegment;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMRelation;
+import org.osm2world.core.osm.data.OSMWay;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.world.creation.WorldModule;
+import org.osm2world.core.world.modules.BuildingModule;
+import org.osm2world.core.world.modules.BuildingModule.Building;
+import org.osm2world.core.world.modules.RoadModule;
+import org.osm2world.core.world.modules.RoadModule.Road;
+
+public class TiledConversionTest {
+
+	private static final double GRID_SPACING = 0.005;
+	private static final int GRID_SIZE = 7;
+
+	private static final long BUILDING_ID = 1000;
+
+	/**
+	 * creates a grid of nodes covering 0 to 0.03 degrees in both directions,
+	 * with nodes on tile borders and on the data bounds,
+	 * one way per grid row, a building on a tile corner,
+	 * and one node just beyond the data bounds
+	 */
+	private static OSMData createTestData() {
+
+		List<OSMNode> nodes = new ArrayList<OSMNode>();
+		List<OSMWay> ways = new ArrayList<OSMWay>();
+
+		OSMNode[][] grid = new OSMNode[GRID_SIZE][GRID_SIZE];
+
+		for (int row = 0; row < GRID_SIZE; row++) {
+
+			for (int column = 0; column < GRID_SIZE; column++) {
+				grid[row][column] = new OSMNode(
+						row * GRID_SPACING, column * GRID_SPACING,
+						EmptyTagGroup.EMPTY_TAG_GROUP, row * GRID_SIZE + column + 1);
+				nodes.add(grid[row][column]);
+			}
+
+			ways.add(new OSMWay(new MapBasedTagGroup(new Tag("highway", "residential")),
+					BUILDING_ID + 1 + row, asList(grid[row])));
+
+		}
+
+		ways.add(new OSMWay(new MapBasedTagGroup(new Tag("building", "yes")),
+				BUILDING_ID, asList(grid[1][1], grid[3][1], grid[3][3], grid[1][3], grid[1][1])));
+
+		nodes.add(new OSMNode(-0.0005, 0.012, EmptyTagGroup.EMPTY_TAG_GROUP, 500));
+
+		List<Bound> bounds = asList(new Bound(0.03, 0, 0.03, 0, "test"));
+
+		return new OSMData(bounds, nodes, ways, Collections.<OSMRelation>emptyList());
+
+	}
+
+	/**
+	 * collects the ids of owned elements for all tiles
+	 */
+	private static class CollectingTileHandler implements TileHandler {
+
+		final Map<Long, Integer> nodeCounts = new HashMap<Long, Integer>();
+		final Map<String, Integer> segmentCounts = new HashMap<String, Integer>();
+		final Map<Long, Integer> areaCounts = new HashMap<Long, Integer>();
+
+		int tileCount = 0;
+		int roadCount = 0;
+		int buildingCount = 0;
+
+		@Override
+		public void handleTile(int column, int row, LatLonBounds bounds,
+				Results results) throws IOException {
+
+			tileCount += 1;
+
+			for (MapNode node : results.getMapData().getMapNodes()) {
+				if (!Double.isNaN(node.getOsmNode().lat)) { // skip fake nodes
+					increment(nodeCounts, node.getOsmNode().id);
+				}
+			}
+
+			for (MapWaySegment segment : results.getMapData().getMapWaySegments()) {
+				increment(segmentCounts, segment.getOsmWay().id + "/"
+						+ segment.getStartNode().getOsmNode().id);
+				if (segment.getPrimaryRepresentation() instanceof Road) {
+					roadCount += 1;
+				}
+			}
+
+			for (MapArea area : results.getMapData().getMapAreas()) {
+				if (area.getOsmObject().id == BUILDING_ID) {
+					increment(areaCounts, area.getOsmObject().id);
+					if (area.getPrimaryRepresentation() instanceof Building) {
+						buildingCount += 1;
+					}
+				}
+			}
+
+		}
+
+		private static <K> void increment(Map<K, Integer> counts, K key) {
+			Integer count = counts.get(key);
+			counts.put(key, count == null ? 1 : count + 1);
+		}
+
+	}
+
+	private static CollectingTileHandler convert(List<WorldModule> modules,
+			int threadCount) throws IOException {
+
+		CollectingTileHandler handler = new CollectingTileHandler();
+
+		new TiledConversion(new ConversionFacade()).createRepresentations(
+				createTestData(), modules, createConfig(threadCount), handler);
+
+		return handler;
+
+	}
+
+	private static Configuration createConfig(int threadCount) {
+
+		Configuration config = new BaseConfiguration();
+		config.setProperty(TiledConversion.TILE_SIZE_KEY, 0.01);
+		config.setProperty(TiledConversion.TILE_MARGIN_KEY, 0.001);
+		config.setProperty(ParallelIterationUtil.THREAD_COUNT_KEY, threadCount);
+
+		return config;
+
+	}
+
+	private static void assertOwnedOnce(CollectingTileHandler handler) {
+
+		assertEquals(9, handler.tileCount);
+
+		assertEquals(GRID_SIZE * GRID_SIZE + 1, handler.nodeCounts.size());
+		assertEquals(GRID_SIZE * (GRID_SIZE - 1), handler.segmentCounts.size());
+		assertEquals(1, handler.areaCounts.size());
+
+		for (Map<?, Integer> counts : asList(handler.nodeCounts,
+				handler.segmentCounts, handler.areaCounts)) {
+			for (Map.Entry<?, Integer> entry : counts.entrySet()) {
+				assertEquals("owner count of " + entry.getKey(),
+						1, (int) entry.getValue());
+			}
+		}
+
+		assertTrue("node beyond the data bounds",
+				handler.nodeCounts.containsKey(500L));
+
+	}
+
+	@Test
+	public void testEachElementOwnedOnce() throws IOException {
+		assertOwnedOnce(convert(Collections.<WorldModule>emptyList(), 1));
+	}
+
+	/**
+	 * converts tiles in parallel with the default modules,
+	 * and tiles one after another with modules running in parallel
+	 */
+	@Test
+	public void testEachElementOwnedOnceParallel() throws IOException {
+
+		assertOwnedOnce(convert(null, 4));
+
+		CollectingTileHandler handler = convert(asList(
+				new RoadModule(), new BuildingModule()), 4);
+
+		assertOwnedOnce(handler);
+		assertEquals(GRID_SIZE * (GRID_SIZE - 1), handler.roadCount);
+		assertEquals(1, handler.buildingCount);
+
+	}
+
+	@Test
+	public void testSingleThreadedConfigKeepsValues() {
+
+		PropertiesConfiguration config = new PropertiesConfiguration();
+		config.setListDelimiter(';');
+		config.addProperty("text", "a, b");
+		config.addProperty("list", "c;d");
+		config.setProperty(ParallelIterationUtil.THREAD_COUNT_KEY, 4);
+
+		Configuration tileConfig =
+				TiledConversion.createSingleThreadedConfig(config);
+
+		assertEquals("a, b", tileConfig.getString("text"));
+		assertEquals(asList("c", "d"), tileConfig.getList("list"));
+		assertEquals(1, ParallelIterationUtil.getThreadCount(tileConfig));
+
+	}
+
+	/**
+	 * checks that listeners are never called concurrently
+	 * while tiles are converted in parallel
+	 */
+	@Test
+	public void testProgressListenerParallel() throws IOException {
+
+		final AtomicInteger activeCalls = new AtomicInteger();
+		final AtomicInteger finishedTiles = new AtomicInteger();
+		final AtomicBoolean concurrentCall = new AtomicBoolean(false);
+
+		ConversionFacade facade = new ConversionFacade();
+
+		facade.addProgressListener(new ProgressListener() {
+			@Override public void updatePhase(Phase newPhase) {
+
+				if (activeCalls.incrementAndGet() > 1) {
+					concurrentCall.set(true);
+				}
+
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				if (newPhase == Phase.FINISHED) {
+					finishedTiles.incrementAndGet();
+				}
+
+				activeCalls.decrementAndGet();
+
+			}
+		});
+
+		CollectingTileHandler handler = new CollectingTileHandler();
+
+		new TiledConversion(facade).createRepresentations(
+				createTestData(), null, createConfig(4), handler);
+
+		assertFalse(concurrentCall.get());
+		assertEquals(9, finishedTiles.get());
+
+	}
+
+}
@@ -1,22 +1,36 @@
 package org.osm2world.core.map_data.creation;
 
 import static java.util.Arrays.asList;
+import static org.openstreetmap.josm.plugins.graphview.core.data.EmptyTagGroup.EMPTY_TAG_GROUP;
 import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.configuration.BaseConfiguration;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.map_data.data.MapNode;
+import org.osm2world.core.map_data.data.overlaps.MapOverlap;
+import org.osm2world.core.map_data.data.overlaps.MapOverlapType;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.creation.StrictOSMFileReader;
 import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMRelation;
+import org.osm2world.core.osm.data.OSMWay;
+import org.osm2world.core.util.ParallelIterationUtil;
 
 public class OSMToMapDataConverterTest {
 
@@ -210,4 +224,108 @@ public class OSMToMapDataConverterTest {
 		
 	}
 	
+	/**
+	 * creates data with crossing ways, overlapping areas, ways crossing
+	 * areas and nodes within areas
+	 */
+	private static OSMData createOverlapTestData() {
+		
+		List<OSMNode> nodes = new ArrayList<OSMNode>();
+		List<OSMWay> ways = new ArrayList<OSMWay>();
+		
+		long id = 1;
+		
+		for (int i = 0; i < 10; i++) {
+			
+			OSMNode west = new OSMNode(i * 0.001, 0, EMPTY_TAG_GROUP, id++);
+			OSMNode east = new OSMNode(i * 0.001, 0.01, EMPTY_TAG_GROUP, id++);
+			OSMNode south = new OSMNode(-0.0005, i * 0.001 + 0.0005, EMPTY_TAG_GROUP, id++);
+			OSMNode north = new OSMNode(0.0095, i * 0.001 + 0.0005, EMPTY_TAG_GROUP, id++);
+			
+			nodes.addAll(asList(west, east, south, north));
+			
+			ways.add(new OSMWay(new MapBasedTagGroup(new Tag("highway", "residential")),
+					id++, asList(west, east)));
+			ways.add(new OSMWay(new MapBasedTagGroup(new Tag("highway", "residential")),
+					id++, asList(south, north)));
+			
+		}
+		
+		for (int i = 0; i < 12; i++) {
+			
+			double min = i * 0.0007;
+			double max = min + 0.0025;
+			
+			List<OSMNode> outline = asList(
+					new OSMNode(min, min, EMPTY_TAG_GROUP, id++),
+					new OSMNode(min, max, EMPTY_TAG_GROUP, id++),
+					new OSMNode(max, max, EMPTY_TAG_GROUP, id++),
+					new OSMNode(max, min, EMPTY_TAG_GROUP, id++));
+			
+			nodes.addAll(outline);
+			
+			List<OSMNode> closedOutline = new ArrayList<OSMNode>(outline);
+			closedOutline.add(outline.get(0));
+			
+			ways.add(new OSMWay(new MapBasedTagGroup(new Tag("landuse", "grass")),
+					id++, closedOutline));
+			
+			nodes.add(new OSMNode(min + 0.0003, min + 0.0003,
+					new MapBasedTagGroup(new Tag("natural", "tree")), id++));
+			
+		}
+		
+		List<Bound> bounds = asList(new Bound(0.02, -0.01, 0.02, -0.01, "test"));
+		
+		return new OSMData(bounds, nodes, ways, Collections.<OSMRelation>emptyList());
+		
+	}
+	
+	/**
+	 * returns descriptions of the overlaps of all way segments and areas,
+	 * in the order in which they have been added to the elements
+	 */
+	private static List<String> calculateOverlaps(int threadCount)
+			throws IOException {
+		
+		OSMData osmData = createOverlapTestData();
+		OriginMapProjection mapProjection = new MetricMapProjection();
+		mapProjection.setOrigin(osmData);
+		
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty(ParallelIterationUtil.THREAD_COUNT_KEY, threadCount);
+		
+		MapData mapData = new OSMToMapDataConverter(
+				mapProjection, config).createMapData(osmData);
+		
+		List<String> overlaps = new ArrayList<String>();
+		
+		for (MapElement element : mapData.getMapElements()) {
+			for (MapOverlap<?, ?> overlap : element.getOverlaps()) {
+				overlaps.add(element + ": " + overlap.type + " " + overlap);
+			}
+		}
+		
+		return overlaps;
+		
+	}
+	
+	@Test
+	public void testOverlapsIndependentOfThreadCount() throws IOException {
+		
+		List<String> sequentialOverlaps = calculateOverlaps(1);
+		
+		Set<MapOverlapType> types = new HashSet<MapOverlapType>();
+		for (String overlap : sequentialOverlaps) {
+			types.add(MapOverlapType.valueOf(overlap.split(" ")[1]));
+		}
+		
+		assertTrue(types.contains(MapOverlapType.INTERSECT));
+		assertTrue(types.contains(MapOverlapType.CONTAIN));
+		
+		assertEquals(sequentialOverlaps, calculateOverlaps(4));
+		assertEquals(sequentialOverlaps, calculateOverlaps(7));
+		
+	}
+	
 }
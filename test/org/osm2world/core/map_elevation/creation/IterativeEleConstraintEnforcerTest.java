@@ -0,0 +1,71 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.osm2world.core.map_elevation.creation.EleConstraintEnforcer.ConstraintType.*;
+import static org.osm2world.core.map_elevation.data.GroundState.*;
+
+import org.junit.Test;
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.map_elevation.data.GroundState;
+import org.osm2world.core.math.VectorXZ;
+
+public class IterativeEleConstraintEnforcerTest {
+
+	private static final double TOLERANCE = 0.01;
+
+	private static EleConnector connector(double x, double ele,
+			GroundState groundState) {
+		VectorXZ pos = new VectorXZ(x, 0);
+		EleConnector c = new EleConnector(pos, null, groundState);
+		c.setPosXYZ(pos.xyz(ele));
+		return c;
+	}
+
+	@Test
+	public void testIncline() {
+
+		EleConnector c1 = connector(0, 0, ON);
+		EleConnector c2 = connector(10, 5, ON);
+		EleConnector c3 = connector(20, 0, ON);
+
+		EleConstraintEnforcer enforcer = new IterativeEleConstraintEnforcer();
+		enforcer.addConnectors(asList(c1, c2, c3));
+		enforcer.requireIncline(MAX, 0.1, asList(c1, c2, c3));
+		enforcer.requireIncline(MIN, -0.1, asList(c1, c2, c3));
+		enforcer.enforceConstraints();
+
+		double ele1 = c1.getPosXYZ().y;
+		double ele2 = c2.getPosXYZ().y;
+		double ele3 = c3.getPosXYZ().y;
+
+		assertTrue(ele2 - ele1 <= 1 + TOLERANCE);
+		assertTrue(ele2 - ele3 <= 1 + TOLERANCE);
+
+		/* equal weights: the connectors move towards each other symmetrically */
+		assertEquals(ele1, ele3, TOLERANCE);
+
+	}
+
+	@Test
+	public void testVerticalDistance() {
+
+		EleConnector ground = connector(0, 3, ON);
+		EleConnector bridge = connector(0, 3, ABOVE);
+		EleConnector unconstrained = connector(5, 7, ON);
+
+		EleConstraintEnforcer enforcer = new IterativeEleConstraintEnforcer();
+		enforcer.addConnectors(asList(ground, bridge, unconstrained));
+		enforcer.requireVerticalDistance(MIN, 5, bridge, ground);
+		enforcer.enforceConstraints();
+
+		/* mostly the connector above the ground moves, as it has a lower weight */
+
+		assertEquals(5, bridge.getPosXYZ().y - ground.getPosXYZ().y, TOLERANCE);
+		assertEquals(3, ground.getPosXYZ().y, 0.1);
+		assertEquals(7, unconstrained.getPosXYZ().y, 0);
+
+	}
+
+}
@@ -0,0 +1,239 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Math.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.junit.Test;
+import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator.PolynomialFit;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+public class LeastSquaresInterpolatorTest {
+	
+	private static final int SITES_FOR_APPROX = 9;
+	private static final int SITES_FOR_INTERPOL = 29;
+	
+	@Test
+	public void testCoeffsMatchQRDecomposition() {
+		
+		Random random = new Random(1);
+		
+		PolynomialFit fit = new PolynomialFit(SITES_FOR_APPROX);
+		
+		for (int test = 0; test < 1000; test++) {
+			
+			VectorXYZ[] positions = new VectorXYZ[SITES_FOR_APPROX];
+			
+			for (int i = 0; i < positions.length; i++) {
+				positions[i] = new VectorXYZ(
+						200 * random.nextDouble() - 100,
+						50 * random.nextDouble(),
+						200 * random.nextDouble() - 100);
+			}
+			
+			double[] expected = calculateCoeffsWithQRDecomposition(positions);
+			double[] actual = fit.calculateCoeffs(positions);
+			
+			if (expected == null) {
+				assertNull(actual);
+			} else {
+				assertNotNull(actual);
+				for (int c = 0; c < expected.length; c++) {
+					assertEquals(expected[c], actual[c],
+							1e-9 * max(1, abs(expected[c])));
+				}
+			}
+			
+		}
+		
+	}
+	
+	@Test
+	public void testCollinearSites() {
+		
+		VectorXYZ[] positions = new VectorXYZ[SITES_FOR_APPROX];
+		
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = new VectorXYZ(10 * i, i % 3, 0);
+		}
+		
+		assertNull(new PolynomialFit(SITES_FOR_APPROX).calculateCoeffs(positions));
+		
+	}
+	
+	@Test
+	public void testDuplicateSites() {
+		
+		VectorXYZ[] positions = new VectorXYZ[SITES_FOR_APPROX];
+		Arrays.fill(positions, new VectorXYZ(5, 3, 7));
+		
+		assertNull(new PolynomialFit(SITES_FOR_APPROX).calculateCoeffs(positions));
+		
+	}
+	
+	/**
+	 * checks that implausibly large coefficients are rejected
+	 */
+	@Test
+	public void testLargeCoeffs() {
+		
+		VectorXYZ[] positions = new VectorXYZ[SITES_FOR_APPROX];
+		
+		for (int i = 0; i < positions.length; i++) {
+			double x = 0.001 * (i % 3);
+			double z = 0.001 * (i / 3);
+			positions[i] = new VectorXYZ(x, (i % 3 == 1) ? 0 : 1, z);
+		}
+		
+		double maxCoeff = Double.NEGATIVE_INFINITY;
+		for (double coeff : calculateCoeffs(positions)) {
+			maxCoeff = max(maxCoeff, coeff);
+		}
+		assertTrue(maxCoeff > 10e3);
+		
+		assertNull(new PolynomialFit(SITES_FOR_APPROX).calculateCoeffs(positions));
+		
+	}
+	
+	@Test
+	public void testElesMatchQRDecomposition() {
+		
+		Random random = new Random(2);
+		
+		List<VectorXYZ> sites = new ArrayList<VectorXYZ>();
+		
+		for (int i = 0; i < 500; i++) {
+			sites.add(new VectorXYZ(
+					1000 * random.nextDouble() - 500,
+					100 * random.nextDouble(),
+					1000 * random.nextDouble() - 500));
+		}
+		
+		/* calculate the polynomials with QRDecomposition */
+		
+		List<VectorXYZ> polynomialSites = new ArrayList<VectorXYZ>();
+		List<double[]> polynomials = new ArrayList<double[]>();
+		
+		for (VectorXYZ site : sites) {
+			
+			List<VectorXYZ> nearestSites = findNearest(sites, site.xz(),
+					SITES_FOR_APPROX);
+			
+			double[] coeffs = calculateCoeffsWithQRDecomposition(
+					nearestSites.toArray(new VectorXYZ[SITES_FOR_APPROX]));
+			
+			if (coeffs != null) {
+				polynomialSites.add(site);
+				polynomials.add(coeffs);
+			}
+			
+		}
+		
+		/* compare the interpolated elevations */
+		
+		for (int threadCount : new int[] {1, 4}) {
+			
+			LeastSquaresInterpolator interpolator = new LeastSquaresInterpolator();
+			interpolator.setThreadCount(threadCount);
+			interpolator.setKnownSites(sites);
+			
+			for (int i = 0; i < 200; i++) {
+				
+				VectorXZ pos = new VectorXZ(
+						800 * random.nextDouble() - 400,
+						800 * random.nextDouble() - 400);
+				
+				double eleSum = 0;
+				double weightSum = 0;
+				
+				for (VectorXYZ site : findNearest(polynomialSites, pos,
+						SITES_FOR_INTERPOL)) {
+					
+					double[] c = polynomials.get(polynomialSites.indexOf(site));
+					
+					double weight = max(1 - site.xz().distanceTo(pos) / 120, 0);
+					
+					weightSum += weight;
+					eleSum += weight * (c[0] + c[1] * pos.x + c[2] * pos.z
+							+ c[3] * pos.x * pos.x + c[4] * pos.x * pos.z
+							+ c[5] * pos.z * pos.z);
+					
+				}
+				
+				assertEquals(eleSum / weightSum,
+						interpolator.interpolateEle(pos).y, 1e-6);
+				
+			}
+			
+		}
+		
+	}
+	
+	private static List<VectorXYZ> findNearest(List<VectorXYZ> sites,
+			final VectorXZ pos, int count) {
+		
+		List<VectorXYZ> result = new ArrayList<VectorXYZ>(sites);
+		
+		Collections.sort(result, new Comparator<VectorXYZ>() {
+			@Override
+			public int compare(VectorXYZ s1, VectorXYZ s2) {
+				return Double.compare(s1.xz().distanceTo(pos),
+						s2.xz().distanceTo(pos));
+			}
+		});
+		
+		return result.subList(0, min(count, result.size()));
+		
+	}
+	
+	/**
+	 * calculates coefficients with commons-math, without rejecting any
+	 */
+	private static double[] calculateCoeffs(VectorXYZ[] positions) {
+		
+		RealMatrix matrix = new Array2DRowRealMatrix(positions.length, 6);
+		RealVector vector = new ArrayRealVector(positions.length);
+		
+		for (int row = 0; row < positions.length; row++) {
+			double x = positions[row].x;
+			double z = positions[row].z;
+			matrix.setRow(row, new double[] {1, x, z, x*x, x*z, z*z});
+			vector.setEntry(row, positions[row].y);
+		}
+		
+		return new QRDecomposition(matrix).getSolver().solve(vector).toArray();
+		
+	}
+	
+	/**
+	 * calculates coefficients the way the interpolator did before
+	 * it used its own QR decomposition
+	 */
+	private static double[] calculateCoeffsWithQRDecomposition(
+			VectorXYZ[] positions) {
+		
+		double[] coeffs = calculateCoeffs(positions);
+		
+		for (double coeff : coeffs) {
+			if (coeff > 10e3) {
+				return null;
+			}
+		}
+		
+		return coeffs;
+		
+	}
+	
+}
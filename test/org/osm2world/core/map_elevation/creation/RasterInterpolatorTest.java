@@ -0,0 +1,97 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static org.junit.Assert.*;
+import static org.osm2world.core.map_elevation.creation.SRTMTestUtil.writeTileFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.osm2world.core.map_data.creation.LatLon;
+import org.osm2world.core.map_data.creation.OrthographicAzimuthalMapProjection;
+import org.osm2world.core.map_elevation.creation.RasterInterpolator.Method;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+public class RasterInterpolatorTest {
+	
+	@Test
+	public void testLinearRamp() throws IOException {
+		
+		File dir = File.createTempFile("srtm", "");
+		dir.delete();
+		dir.mkdir();
+		dir.deleteOnExit();
+		
+		/* tiles with offsets 0 and 1200 form a continuous linear ramp */
+		
+		writeTileFile(new File(dir, "N00E000.hgt"), 1201, 0);
+		writeTileFile(new File(dir, "N00E001.hgt"), 1201, 1200);
+		
+		OrthographicAzimuthalMapProjection projection =
+				new OrthographicAzimuthalMapProjection();
+		projection.setOrigin(new LatLon(0.5, 1));
+		
+		SRTMData srtmData = new SRTMData(dir, projection, new SRTMTileCache(4));
+		
+		for (Method method : Method.values()) {
+			
+			RasterInterpolator interpolator = new RasterInterpolator(method);
+			interpolator.setSRTMData(srtmData);
+			
+			for (double pixelX : new double[] {10.25, 600, 1199.5, 1200.5}) {
+				
+				double lon = pixelX / 1200;
+				
+				assertEquals(method.toString(), pixelX, interpolator.interpolateEle(
+						projection.calcPos(0.5, lon)).y, 1e-3);
+				
+			}
+			
+		}
+		
+	}
+	
+	@Test
+	public void testKnownSitesFallback() {
+		
+		List<VectorXYZ> sites = new ArrayList<VectorXYZ>();
+		
+		for (int x = -100; x <= 100; x += 50) {
+			for (int z = -100; z <= 100; z += 50) {
+				sites.add(new VectorXYZ(x, 5, z));
+			}
+		}
+		
+		LeastSquaresInterpolator fallback = new LeastSquaresInterpolator();
+		RasterInterpolator interpolator =
+				new RasterInterpolator(Method.BICUBIC, fallback);
+		
+		assertSame(fallback, interpolator.getFallbackInterpolator());
+		
+		interpolator.setKnownSites(sites);
+		
+		VectorXZ pos = new VectorXZ(10, -20);
+		
+		assertEquals(fallback.interpolateEle(pos).y,
+				interpolator.interpolateEle(pos).y, 1e-10);
+		assertEquals(5, interpolator.interpolateEle(pos).y, 1e-3);
+		
+		double[] xz = {10, -20, -30, 40};
+		double[] eles = new double[2];
+		
+		interpolator.interpolateEles(xz, eles, 0, 2);
+		
+		assertEquals(fallback.interpolateEle(new VectorXZ(10, -20)).y, eles[0], 1e-10);
+		assertEquals(fallback.interpolateEle(new VectorXZ(-30, 40)).y, eles[1], 1e-10);
+		
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testNoData() {
+		new RasterInterpolator().interpolateEle(VectorXZ.NULL_VECTOR);
+	}
+	
+}
@@ -0,0 +1,53 @@
+package org.osm2world.core.map_elevation.creation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * creates SRTM tile files for tests
+ */
+final class SRTMTestUtil {
+	
+	private SRTMTestUtil() {}
+	
+	/**
+	 * writes a square tile where each pixel's value is its column index
+	 * plus an offset. The file is deleted when the VM exits.
+	 */
+	static void writeTileFile(File file, int pixels, int offset)
+			throws IOException {
+		
+		file.deleteOnExit();
+		
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+		
+		try {
+			for (int row = 0; row < pixels; row++) {
+				for (int column = 0; column < pixels; column++) {
+					out.writeShort(column + offset);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		
+	}
+	
+	/**
+	 * writes a tile to a new temporary file,
+	 * see {@link #writeTileFile(File, int, int)}
+	 */
+	static File createTileFile(int pixels) throws IOException {
+		
+		File file = File.createTempFile("srtm", ".hgt");
+		writeTileFile(file, pixels, 0);
+		
+		return file;
+		
+	}
+	
+}
@@ -0,0 +1,151 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static org.junit.Assert.*;
+import static org.osm2world.core.map_elevation.creation.SRTMTestUtil.createTileFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class SRTMTileCacheTest {
+	
+	@Test
+	public void testTileSizes() throws IOException {
+		
+		SRTMTileCache cache = new SRTMTileCache(2);
+		
+		SRTMTile tile3 = cache.getTile(createTileFile(1201));
+		assertEquals(1201, tile3.pixels);
+		assertEquals(1200, tile3.getData(1200, 0));
+		
+		SRTMTile tile1 = cache.getTile(createTileFile(3601));
+		assertEquals(3601, tile1.pixels);
+		assertEquals(3000, tile1.getData(3000, 3600));
+		
+	}
+	
+	@Test
+	public void testEviction() throws IOException {
+		
+		SRTMTileCache cache = new SRTMTileCache(2);
+		
+		File file1 = createTileFile(1201);
+		File file2 = createTileFile(1201);
+		File file3 = createTileFile(1201);
+		
+		SRTMTile tile1 = cache.getTile(file1);
+		SRTMTile tile2 = cache.getTile(file2);
+		
+		assertSame(tile1, cache.getTile(file1));
+		
+		cache.getTile(file3);
+		assertEquals(2, cache.size());
+		
+		/* file2 was the least recently used tile and has been evicted */
+		
+		assertSame(tile1, cache.getTile(file1));
+		assertNotSame(tile2, cache.getTile(file2));
+		
+		/* evicted tiles remain usable */
+		
+		assertEquals(5, tile2.getData(5, 5));
+		
+	}
+	
+	@Test
+	public void testMissingFile() throws IOException {
+		
+		SRTMTileCache cache = new SRTMTileCache(1);
+		
+		assertNull(cache.getTile(new File("missing.hgt")));
+		assertEquals(0, cache.size());
+		
+	}
+	
+	@Test
+	public void testSetMaxTiles() throws IOException {
+		
+		SRTMTileCache cache = new SRTMTileCache(3);
+		
+		File file1 = createTileFile(1201);
+		File file2 = createTileFile(1201);
+		File file3 = createTileFile(1201);
+		
+		SRTMTile tile1 = cache.getTile(file1);
+		SRTMTile tile2 = cache.getTile(file2);
+		SRTMTile tile3 = cache.getTile(file3);
+		
+		cache.getTile(file1);
+		
+		/* shrinking evicts the least recently used tiles */
+		
+		cache.setMaxTiles(2);
+		assertEquals(2, cache.size());
+		
+		assertSame(tile1, cache.getTile(file1));
+		assertSame(tile3, cache.getTile(file3));
+		assertNotSame(tile2, cache.getTile(file2));
+		
+	}
+	
+	@Test
+	public void testSharedCachesBySize() {
+		
+		assertSame(SRTMTileCache.getSharedCache(),
+				SRTMTileCache.getSharedCache(SRTMTileCache.DEFAULT_MAX_TILES));
+		
+		/* different sizes do not change the size of another cache */
+		
+		SRTMTileCache cache5 = SRTMTileCache.getSharedCache(5);
+		SRTMTileCache cache7 = SRTMTileCache.getSharedCache(7);
+		
+		assertNotSame(cache5, cache7);
+		assertNotSame(SRTMTileCache.getSharedCache(), cache5);
+		assertSame(cache5, SRTMTileCache.getSharedCache(5));
+		
+	}
+	
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		
+		final SRTMTileCache cache = new SRTMTileCache(2);
+		final File file = createTileFile(3601);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		
+		try {
+			
+			List<Future<SRTMTile>> futures = new ArrayList<Future<SRTMTile>>();
+			
+			for (int i = 0; i < 16; i++) {
+				futures.add(executor.submit(new Callable<SRTMTile>() {
+					@Override public SRTMTile call() throws IOException {
+						return cache.getTile(file);
+					}
+				}));
+			}
+			
+			/* the tile has only been loaded once */
+			
+			SRTMTile tile = futures.get(0).get();
+			
+			for (Future<SRTMTile> future : futures) {
+				assertSame(tile, future.get());
+			}
+			
+			assertEquals(1, cache.size());
+			
+		} finally {
+			executor.shutdown();
+		}
+		
+	}
+	
+}
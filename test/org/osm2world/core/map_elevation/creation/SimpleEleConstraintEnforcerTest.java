@@ -0,0 +1,158 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.osm2world.core.map_elevation.data.GroundState.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.map_elevation.data.GroundState;
+import org.osm2world.core.math.VectorXZ;
+
+public class SimpleEleConstraintEnforcerTest {
+
+	private static EleConnector connector(VectorXZ pos, double ele,
+			Object reference, GroundState groundState) {
+		EleConnector c = new EleConnector(pos, reference, groundState);
+		c.setPosXYZ(pos.xyz(ele));
+		return c;
+	}
+
+	@Test
+	public void testConnectorsAtSamePosition() {
+
+		VectorXZ pos = new VectorXZ(0.0, 5);
+		VectorXZ posNegativeZero = new VectorXZ(-0.0, 5);
+
+		Object reference = new Object();
+
+		EleConnector ground1 = connector(pos, 2, null, ON);
+		EleConnector ground2 = connector(posNegativeZero, 4, null, ON);
+		EleConnector above = connector(pos, 10, null, ABOVE);
+		EleConnector bridge1 = connector(pos, 6, reference, ABOVE);
+		EleConnector bridge2 = connector(pos, 8, reference, ABOVE);
+		EleConnector elsewhere = connector(new VectorXZ(1, 5), 20, null, ON);
+
+		EleConstraintEnforcer enforcer = new SimpleEleConstraintEnforcer();
+		enforcer.addConnectors(asList(ground1, above, bridge1));
+		enforcer.addConnectors(asList(ground2, bridge2, elsewhere));
+		enforcer.enforceConstraints();
+
+		/* connectors on the ground, or with the same reference, are joined */
+
+		assertEquals(3, ground1.getPosXYZ().y, 0);
+		assertEquals(3, ground2.getPosXYZ().y, 0);
+		assertEquals(7 + 5, bridge1.getPosXYZ().y, 0);
+		assertEquals(7 + 5, bridge2.getPosXYZ().y, 0);
+
+		/* connectors that do not connect keep their elevation */
+
+		assertEquals(10 + 5, above.getPosXYZ().y, 0);
+		assertEquals(20, elsewhere.getPosXYZ().y, 0);
+
+	}
+
+	/**
+	 * checks that chains of requireSameEle calls result in the same
+	 * elevations as merging sets of connectors whenever they share one
+	 */
+	@Test
+	public void testRequireSameEleChained() {
+
+		Random random = new Random(1);
+
+		List<EleConnector> connectors = new ArrayList<EleConnector>();
+
+		for (int i = 0; i < 200; i++) {
+			connectors.add(connector(new VectorXZ(i, 0),
+					100 * random.nextDouble(), null, ON));
+		}
+
+		EleConstraintEnforcer enforcer = new SimpleEleConstraintEnforcer();
+		enforcer.addConnectors(connectors);
+
+		List<Set<EleConnector>> expectedSets = new ArrayList<Set<EleConnector>>();
+
+		for (int i = 0; i < 150; i++) {
+
+			List<EleConnector> cs = new ArrayList<EleConnector>();
+
+			for (int j = random.nextInt(3); j >= 0; j--) {
+				cs.add(connectors.get(random.nextInt(connectors.size())));
+			}
+
+			if (cs.size() == 2) {
+				enforcer.requireSameEle(cs.get(0), cs.get(1));
+			} else {
+				enforcer.requireSameEle(cs);
+			}
+
+			mergeSets(expectedSets, cs);
+
+		}
+
+		/* calculate the expected elevations before they are changed */
+
+		double[] expectedEles = new double[connectors.size()];
+
+		for (int i = 0; i < connectors.size(); i++) {
+			expectedEles[i] = connectors.get(i).getPosXYZ().y;
+		}
+
+		for (Set<EleConnector> set : expectedSets) {
+
+			double eleSum = 0;
+
+			for (EleConnector c : set) {
+				eleSum += c.getPosXYZ().y;
+			}
+
+			for (EleConnector c : set) {
+				expectedEles[connectors.indexOf(c)] = eleSum / set.size();
+			}
+
+		}
+
+		enforcer.enforceConstraints();
+
+		for (int i = 0; i < connectors.size(); i++) {
+			assertEquals(expectedEles[i], connectors.get(i).getPosXYZ().y, 1e-9);
+		}
+
+	}
+
+	/**
+	 * merges the sets containing any of the connectors into one set,
+	 * which also contains the connectors
+	 */
+	private static void mergeSets(List<Set<EleConnector>> sets,
+			List<EleConnector> cs) {
+
+		Set<EleConnector> mergedSet = new HashSet<EleConnector>(cs);
+
+		for (Iterator<Set<EleConnector>> it = sets.iterator(); it.hasNext(); ) {
+
+			Set<EleConnector> set = it.next();
+
+			for (EleConnector c : cs) {
+				if (set.contains(c)) {
+					mergedSet.addAll(set);
+					it.remove();
+					break;
+				}
+			}
+
+		}
+
+		sets.add(mergedSet);
+
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.osm2world.core.math;
 
+import static org.junit.Assert.assertEquals;
 import static org.osm2world.core.math.VectorXYZ.*;
 import static org.osm2world.core.test.TestUtil.assertAlmostEquals;
 
@@ -34,4 +35,15 @@ public class VectorXYZTest {
 		
 	}
 	
+	@Test
+	public void testNegativeZeroHashCode() {
+		
+		VectorXYZ v = new VectorXYZ(0.0, 1, 0.0);
+		VectorXYZ vNegativeZero = new VectorXYZ(-0.0, 1, -0.0);
+		
+		assertEquals(v, vNegativeZero);
+		assertEquals(v.hashCode(), vNegativeZero.hashCode());
+		
+	}
+	
 }
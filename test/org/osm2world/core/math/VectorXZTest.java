@@ -1,6 +1,7 @@
 package org.osm2world.core.math;
 
 import static java.lang.Math.PI;
+import static org.junit.Assert.assertEquals;
 import static org.osm2world.core.math.VectorXZ.*;
 import static org.osm2world.core.test.TestUtil.assertAlmostEquals;
 
@@ -61,4 +62,15 @@ public class VectorXZTest {
 		
 	}
 	
+	@Test
+	public void testNegativeZeroHashCode() {
+		
+		VectorXZ v = new VectorXZ(0.0, 1);
+		VectorXZ vNegativeZero = new VectorXZ(-0.0, 1);
+		
+		assertEquals(v, vNegativeZero);
+		assertEquals(v.hashCode(), vNegativeZero.hashCode());
+		
+	}
+	
 }
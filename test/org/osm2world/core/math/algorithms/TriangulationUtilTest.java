@@ -0,0 +1,73 @@
+package org.osm2world.core.math.algorithms;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.osm2world.core.math.algorithms.TriangulationUtil.Algorithm.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.osm2world.core.math.LineSegmentXZ;
+import org.osm2world.core.math.SimplePolygonXZ;
+import org.osm2world.core.math.TriangleXZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.math.algorithms.TriangulationUtil.Algorithm;
+import org.osm2world.core.util.metrics.Metrics;
+
+public class TriangulationUtilTest {
+
+	private static final SimplePolygonXZ square = new SimplePolygonXZ(asList(
+			new VectorXZ(0, 0), new VectorXZ(10, 0),
+			new VectorXZ(10, 10), new VectorXZ(0, 10),
+			new VectorXZ(0, 0)));
+
+	private static final SimplePolygonXZ touchingHole = new SimplePolygonXZ(asList(
+			new VectorXZ(0, 0), new VectorXZ(5, 2),
+			new VectorXZ(2, 5), new VectorXZ(0, 0)));
+
+	private static final List<SimplePolygonXZ> NO_HOLES = emptyList();
+	private static final List<LineSegmentXZ> NO_SEGMENTS = emptyList();
+	private static final List<VectorXZ> NO_POINTS = emptyList();
+
+	@Test
+	public void testChooseAlgorithms() {
+
+		assertEquals(asList(EAR_CLIPPING, POLY2TRI, JTS), choose(
+				square, NO_HOLES, NO_SEGMENTS, NO_POINTS));
+
+		assertEquals(asList(POLY2TRI, JTS), choose(
+				square, NO_HOLES, NO_SEGMENTS, asList(new VectorXZ(5, 5))));
+
+		assertEquals(asList(POLY2TRI, JTS), choose(
+				square, asList(touchingHole), NO_SEGMENTS, NO_POINTS));
+
+		assertEquals(asList(JTS), choose(square, NO_HOLES,
+				asList(new LineSegmentXZ(new VectorXZ(0, 0), new VectorXZ(10, 10))),
+				NO_POINTS));
+
+	}
+
+	@Test
+	public void testTriangulate() {
+
+		List<TriangleXZ> triangles = TriangulationUtil.triangulate(
+				square, NO_HOLES, asList(new VectorXZ(5, 5)));
+
+		double area = 0;
+		for (TriangleXZ t : triangles) {
+			area += t.getArea();
+		}
+
+		assertEquals(100, area, 1e-6);
+
+	}
+
+	private static List<Algorithm> choose(SimplePolygonXZ outer,
+			List<SimplePolygonXZ> holes, List<LineSegmentXZ> segments,
+			List<VectorXZ> points) {
+		return TriangulationUtil.chooseAlgorithms(
+				outer, holes, segments, points, Metrics.DISABLED);
+	}
+
+}
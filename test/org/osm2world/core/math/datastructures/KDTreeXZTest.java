@@ -0,0 +1,141 @@
+package org.osm2world.core.math.datastructures;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.core.math.datastructures.KDTreeXZ.Neighbors;
+
+public class KDTreeXZTest {
+
+	private static double[] createRandomPoints(int count, Random random) {
+		double[] xz = new double[2 * count];
+		for (int i = 0; i < xz.length; i++) {
+			xz[i] = random.nextDouble() * 1000;
+		}
+		return xz;
+	}
+
+	/**
+	 * creates points on a regular grid, which contains many
+	 * identical coordinates and equal distances
+	 */
+	private static double[] createGridPoints(int columns, int rows) {
+		double[] xz = new double[2 * columns * rows];
+		for (int i = 0; i < columns * rows; i++) {
+			xz[2*i] = 90 * (i % columns);
+			xz[2*i+1] = 90 * (i / columns);
+		}
+		return xz;
+	}
+
+	private static double[] getSortedDistancesSq(double[] xz, double x, double z) {
+		double[] result = new double[xz.length / 2];
+		for (int i = 0; i < result.length; i++) {
+			double dx = xz[2*i] - x;
+			double dz = xz[2*i+1] - z;
+			result[i] = dx * dx + dz * dz;
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static void assertNearestCorrect(double[] xz, double x, double z, int k) {
+
+		KDTreeXZ tree = new KDTreeXZ(xz);
+		Neighbors neighbors = new Neighbors(1);
+
+		tree.findNearest(x, z, k, neighbors);
+
+		double[] expected = getSortedDistancesSq(xz, x, z);
+
+		assertEquals(Math.min(k, expected.length), neighbors.size());
+
+		for (int i = 0; i < neighbors.size(); i++) {
+
+			assertEquals(expected[i], neighbors.getDistanceSq(i), 1e-9);
+
+			int index = neighbors.getIndex(i);
+			double dx = xz[2*index] - x;
+			double dz = xz[2*index+1] - z;
+			assertEquals(dx * dx + dz * dz, neighbors.getDistanceSq(i), 1e-9);
+
+		}
+
+	}
+
+	@Test
+	public void testFindNearestRandom() {
+
+		Random random = new Random(42);
+		double[] xz = createRandomPoints(2000, random);
+
+		for (int i = 0; i < 50; i++) {
+			assertNearestCorrect(xz,
+					random.nextDouble() * 1200 - 100,
+					random.nextDouble() * 1200 - 100,
+					1 + random.nextInt(30));
+		}
+
+	}
+
+	@Test
+	public void testFindNearestGrid() {
+
+		double[] xz = createGridPoints(40, 30);
+
+		assertNearestCorrect(xz, 0, 0, 9);
+		assertNearestCorrect(xz, 450, 450, 29);
+		assertNearestCorrect(xz, 1000, 1000, 9);
+		assertNearestCorrect(xz, 5000, -300, 4);
+
+	}
+
+	@Test
+	public void testFindNearestFewPoints() {
+
+		assertNearestCorrect(new double[] {1, 2, 3, 4}, 0, 0, 5);
+
+		Neighbors neighbors = new Neighbors();
+		new KDTreeXZ(new double[0]).findNearest(0, 0, 3, neighbors);
+		assertEquals(0, neighbors.size());
+
+	}
+
+	@Test
+	public void testFindWithinRadius() {
+
+		Random random = new Random(7);
+		double[] xz = createRandomPoints(2000, random);
+
+		KDTreeXZ tree = new KDTreeXZ(xz);
+		Neighbors neighbors = new Neighbors(1);
+
+		for (int i = 0; i < 20; i++) {
+
+			double x = random.nextDouble() * 1000;
+			double z = random.nextDouble() * 1000;
+			double radius = random.nextDouble() * 200;
+
+			tree.findWithinRadius(x, z, radius, neighbors);
+
+			boolean[] found = new boolean[xz.length / 2];
+
+			for (int n = 0; n < neighbors.size(); n++) {
+				assertFalse(found[neighbors.getIndex(n)]);
+				found[neighbors.getIndex(n)] = true;
+			}
+
+			for (int p = 0; p < found.length; p++) {
+				double dx = xz[2*p] - x;
+				double dz = xz[2*p+1] - z;
+				assertEquals(dx * dx + dz * dz < radius * radius, found[p]);
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.osm2world.core.math.datastructures;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.core.math.PolygonWithHolesXZ;
+import org.osm2world.core.math.SimplePolygonXZ;
+import org.osm2world.core.math.VectorXZ;
+
+public class ScanlinePolygonIndexTest {
+
+	private static final SimplePolygonXZ OUTER = new SimplePolygonXZ(asList(
+			new VectorXZ(0, 0), new VectorXZ(10, 0), new VectorXZ(10, 10),
+			new VectorXZ(5, 4), new VectorXZ(0, 10), new VectorXZ(0, 0)));
+
+	private static final SimplePolygonXZ HOLE = new SimplePolygonXZ(asList(
+			new VectorXZ(2, 1), new VectorXZ(2, 3), new VectorXZ(4, 3),
+			new VectorXZ(4, 1), new VectorXZ(2, 1)));
+
+	private static void assertSameAsPolygon(PolygonWithHolesXZ polygon,
+			double rowHeight, int rowCount) {
+
+		ScanlinePolygonIndex index = new ScanlinePolygonIndex(
+				polygon, 0, rowHeight, rowCount);
+
+		Random random = new Random(1);
+
+		for (int i = 0; i < 2000; i++) {
+
+			/* include positions on vertices and edges */
+
+			double x = (i % 2 == 0)
+					? random.nextDouble() * 14 - 2
+					: random.nextInt(12) - 1;
+			double z = (i % 3 == 0)
+					? random.nextDouble() * 14 - 2
+					: random.nextInt(12) - 1;
+
+			assertEquals(polygon.contains(new VectorXZ(x, z)),
+					index.contains(x, z));
+
+		}
+
+	}
+
+	@Test
+	public void testContains() {
+
+		List<SimplePolygonXZ> noHoles = Collections.emptyList();
+
+		assertSameAsPolygon(new PolygonWithHolesXZ(OUTER, noHoles), 1, 10);
+		assertSameAsPolygon(new PolygonWithHolesXZ(OUTER, asList(HOLE)), 1, 10);
+		assertSameAsPolygon(new PolygonWithHolesXZ(OUTER, asList(HOLE)), 3.3, 2);
+		assertSameAsPolygon(new PolygonWithHolesXZ(OUTER, asList(HOLE)), 100, 1);
+
+	}
+
+	@Test
+	public void testTouchesEdges() {
+
+		ScanlinePolygonIndex index = new ScanlinePolygonIndex(
+				new PolygonWithHolesXZ(OUTER, asList(HOLE)), 0, 1, 10);
+
+		assertFalse(index.touchesEdges(6, 1, 8, 2));
+		assertFalse(index.touchesEdges(20, 20, 30, 30));
+		assertTrue(index.touchesEdges(3, 0.5, 3.5, 1.5));
+		assertTrue(index.touchesEdges(9, 5, 11, 6));
+		assertTrue(index.touchesEdges(10, 5, 11, 6));
+
+	}
+
+}
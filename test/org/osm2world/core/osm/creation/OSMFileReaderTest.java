@@ -35,4 +35,30 @@ public class OSMFileReaderTest {
 		
 	}
 
+	@Test
+	public void testValidPBFFile() throws IOException {
+		
+		File testFile = new File("test"+File.separator+"files"
+				+File.separator+"validFile.osm.pbf");
+		OSMData osmData = new PBFFileReader(testFile, 2).getData();
+		
+		assertSame(4, osmData.getNodes().size());
+		assertSame(1, osmData.getWays().size());
+		assertSame(1, osmData.getRelations().size());
+		
+		List<OSMNode> wayNodes = osmData.getWays().iterator().next().nodes;
+		assertSame(3, wayNodes.size());
+		
+		assertEquals("traffic_signals", wayNodes.get(1).tags.getValue("highway"));
+		assertEquals(48.574122, wayNodes.get(1).lat, 1e-6);
+		assertEquals(13.465483, wayNodes.get(1).lon, 1e-6);
+		
+		OSMRelation relation = osmData.getRelations().iterator().next();
+		assertEquals("associatedStreet", relation.tags.getValue("type"));
+		assertEquals("house", relation.relationMembers.get(1).role);
+		
+		assertEquals(48.570133, osmData.getBounds().iterator().next().getBottom(), 1e-6);
+		
+	}
+	
 }
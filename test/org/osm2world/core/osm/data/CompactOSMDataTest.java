@@ -0,0 +1,93 @@
+package org.osm2world.core.osm.data;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+
+public class CompactOSMDataTest {
+	
+	@Test
+	public void testBuild() {
+		
+		CompactOSMData.Builder builder = new CompactOSMData.Builder();
+		
+		builder.startRelation(1);
+		builder.addTag("type", "multipolygon");
+		builder.addMember(EntityType.Way, 10, "outer");
+		builder.addMember(EntityType.Way, 99, "inner"); // missing
+		builder.addMember(EntityType.Relation, 1, "self");
+		
+		builder.startNode(100, 1.0, 2.0);
+		builder.startNode(101, 3.0, 4.0);
+		builder.addTag("highway", "traffic_signals");
+		builder.startNode(102, 5.0, 6.0);
+		
+		builder.startWay(10);
+		builder.addTag("highway", "residential");
+		builder.addTag("name", "Main Street");
+		builder.addWayNode(100);
+		builder.addWayNode(101);
+		builder.addWayNode(999); // missing
+		builder.addWayNode(102);
+		builder.addWayNode(100);
+		
+		OSMData data = builder.build();
+		
+		assertEquals(3, data.getNodes().size());
+		assertEquals(1, data.getWays().size());
+		assertEquals(1, data.getRelations().size());
+		
+		OSMNode node = data.getNodes().iterator().next();
+		assertEquals(100, node.id);
+		assertEquals(1.0, node.lat, 0);
+		assertEquals(2.0, node.lon, 0);
+		assertTrue(node.tags.isEmpty());
+		
+		OSMWay way = data.getWays().iterator().next();
+		assertEquals(10, way.id);
+		assertEquals(2, way.tags.size());
+		assertEquals("Main Street", way.tags.getValue("name"));
+		assertTrue(way.tags.contains("highway", "residential"));
+		assertNull(way.tags.getValue("building"));
+		
+		List<OSMNode> wayNodes = way.nodes;
+		assertEquals(4, wayNodes.size());
+		assertEquals(101, wayNodes.get(1).id);
+		assertEquals("traffic_signals", wayNodes.get(1).tags.getValue("highway"));
+		assertTrue(way.isClosed());
+		
+		OSMRelation relation = data.getRelations().iterator().next();
+		assertEquals("multipolygon", relation.tags.getValue("type"));
+		assertEquals(2, relation.relationMembers.size());
+		assertEquals("outer", relation.relationMembers.get(0).role);
+		assertEquals(way, relation.relationMembers.get(0).member);
+		assertEquals(relation, relation.relationMembers.get(1).member);
+		
+	}
+	
+	@Test
+	public void testAddNode() {
+		
+		CompactOSMData.Builder builder = new CompactOSMData.Builder();
+		builder.startNode(1, 0, 0);
+		OSMData data = builder.build();
+		
+		OSMNode addedNode = new OSMNode(1, 1, data.getNodes().iterator().next().tags, 2);
+		data.getNodes().add(addedNode);
+		
+		assertEquals(2, data.getNodes().size());
+		assertSame(addedNode, ((List<OSMNode>)data.getNodes()).get(1));
+		
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testWayNodeWithoutWay() {
+		CompactOSMData.Builder builder = new CompactOSMData.Builder();
+		builder.startNode(1, 0, 0);
+		builder.addWayNode(1);
+	}
+	
+}
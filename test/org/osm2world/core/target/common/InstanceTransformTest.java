@@ -0,0 +1,92 @@
+package org.osm2world.core.target.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.osm2world.core.test.TestUtil.assertAlmostEquals;
+
+import org.junit.Test;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+public class InstanceTransformTest {
+
+	@Test
+	public void testIdentity() {
+
+		InstanceTransform transform = new InstanceTransform(
+				VectorXYZ.NULL_VECTOR, VectorXZ.Z_UNIT, 1);
+
+		assertAlmostEquals(1, 2, 3,
+				transform.applyToVertex(new VectorXYZ(1, 2, 3)));
+		assertAlmostEquals(1, 0, 0,
+				transform.applyToNormal(VectorXYZ.X_UNIT));
+
+	}
+
+	@Test
+	public void testApplyToVertex() {
+
+		InstanceTransform transform = new InstanceTransform(
+				new VectorXYZ(10, 5, 20), VectorXZ.X_UNIT, 2);
+
+		// the local z axis points towards the direction,
+		// the local x axis to the right of it
+
+		assertAlmostEquals(10, 5, 20,
+				transform.applyToVertex(VectorXYZ.NULL_VECTOR));
+		assertAlmostEquals(12, 5, 20,
+				transform.applyToVertex(VectorXYZ.Z_UNIT));
+		assertAlmostEquals(10, 5, 18,
+				transform.applyToVertex(VectorXYZ.X_UNIT));
+		assertAlmostEquals(10, 7, 20,
+				transform.applyToVertex(VectorXYZ.Y_UNIT));
+
+	}
+
+	@Test
+	public void testApplyToNormal() {
+
+		InstanceTransform transform = new InstanceTransform(
+				new VectorXYZ(10, 5, 20), VectorXZ.X_UNIT, 2);
+
+		// normals are rotated, but neither scaled nor moved
+
+		assertAlmostEquals(1, 0, 0, transform.applyToNormal(VectorXYZ.Z_UNIT));
+		assertAlmostEquals(0, 0, -1, transform.applyToNormal(VectorXYZ.X_UNIT));
+		assertAlmostEquals(0, 1, 0, transform.applyToNormal(VectorXYZ.Y_UNIT));
+
+	}
+
+	@Test
+	public void testDirectionIsNormalized() {
+
+		InstanceTransform transform = new InstanceTransform(
+				VectorXYZ.NULL_VECTOR, new VectorXZ(0, 3), 1);
+
+		assertAlmostEquals(1, 2, 3,
+				transform.applyToVertex(new VectorXYZ(1, 2, 3)));
+
+	}
+
+	@Test
+	public void testAxesMatchVertexTransformation() {
+
+		VectorXYZ position = new VectorXYZ(-3, 1, 7);
+
+		InstanceTransform transform = new InstanceTransform(
+				position, VectorXZ.fromAngle(0.7), 1.5);
+
+		double[] axes = transform.getAxes();
+		assertEquals(9, axes.length);
+
+		VectorXYZ v = new VectorXYZ(0.5, 2, -1.25);
+
+		VectorXYZ expected = position.add(new VectorXYZ(
+				v.x * axes[0] + v.y * axes[3] + v.z * axes[6],
+				v.x * axes[1] + v.y * axes[4] + v.z * axes[7],
+				v.x * axes[2] + v.y * axes[5] + v.z * axes[8]));
+
+		assertAlmostEquals(expected, transform.applyToVertex(v));
+
+	}
+
+}
@@ -0,0 +1,224 @@
+package org.osm2world.core.target.common;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.osm2world.core.target.common.Primitive.Type.*;
+import static org.osm2world.core.test.TestUtil.assertAlmostEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.osm2world.core.math.TriangleXYZ;
+import org.osm2world.core.math.TriangleXYZWithNormals;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.RenderableToAllTargets;
+import org.osm2world.core.target.Target;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.MaterialRegistry;
+import org.osm2world.core.target.common.material.Materials;
+
+public class RecordedGeometryTest {
+
+	private static final List<List<VectorXZ>> TEX_COORDS = singletonList(asList(
+			new VectorXZ(0, 0), new VectorXZ(1, 0), new VectorXZ(0, 1)));
+
+	/**
+	 * geometry using different types of draw calls,
+	 * which can also be drawn directly at any base position
+	 */
+	private static class TestGeometry implements InstanceGeometry {
+
+		int renderCount = 0;
+
+		@Override
+		public void renderTo(Target<?> target) {
+			renderCount += 1;
+			draw(target, VectorXYZ.NULL_VECTOR);
+		}
+
+		void draw(Target<?> target, VectorXYZ base) {
+
+			target.drawTriangleStrip(Materials.STEEL, asList(
+					base, base.add(1, 0, 0), base.add(0, 1, 0)), TEX_COORDS);
+
+			target.drawTriangleFan(Materials.WOOD, asList(
+					base, base.add(0, 0, 1), base.add(1, 0, 1)), null);
+
+			target.drawConvexPolygon(Materials.STEEL, asList(
+					base, base.add(0, 2, 0), base.add(0, 2, 2)), null);
+
+			target.drawTriangles(Materials.WOOD, singletonList(new TriangleXYZ(
+					base, base.add(0, 0, 1), base.add(0, 1, 0))), null);
+
+			target.drawTrianglesWithNormals(Materials.STEEL, singletonList(
+					new TriangleXYZWithNormals(
+							base, base.add(1, 0, 0), base.add(0, 0, 1),
+							VectorXYZ.Z_UNIT, VectorXYZ.Z_UNIT, VectorXYZ.X_UNIT)),
+					TEX_COORDS);
+
+		}
+
+	}
+
+	/**
+	 * collects all draw calls reaching the target
+	 */
+	private static class CollectingTarget
+			extends AbstractTarget<RenderableToAllTargets> {
+
+		final List<Primitive.Type> types = new ArrayList<Primitive.Type>();
+		final List<Material> materials = new ArrayList<Material>();
+		final List<List<VectorXYZ>> vertexLists = new ArrayList<List<VectorXYZ>>();
+		final List<List<VectorXYZ>> normalLists = new ArrayList<List<VectorXYZ>>();
+		final List<List<List<VectorXZ>>> texCoordLists = new ArrayList<List<List<VectorXZ>>>();
+
+		private void add(Primitive.Type type, Material material,
+				List<VectorXYZ> vs, List<VectorXYZ> normals,
+				List<List<VectorXZ>> texCoordLists) {
+			this.types.add(type);
+			this.materials.add(material);
+			this.vertexLists.add(vs);
+			this.normalLists.add(normals);
+			this.texCoordLists.add(texCoordLists);
+		}
+
+		@Override
+		public Class<RenderableToAllTargets> getRenderableType() {
+			return RenderableToAllTargets.class;
+		}
+
+		@Override
+		public void render(RenderableToAllTargets renderable) {
+			renderable.renderTo(this);
+		}
+
+		@Override
+		public void drawTriangleStrip(Material material, List<VectorXYZ> vs,
+				List<List<VectorXZ>> texCoordLists) {
+			add(TRIANGLE_STRIP, material, vs, null, texCoordLists);
+		}
+
+		@Override
+		public void drawTriangleFan(Material material, List<VectorXYZ> vs,
+				List<List<VectorXZ>> texCoordLists) {
+			add(TRIANGLE_FAN, material, vs, null, texCoordLists);
+		}
+
+		@Override
+		public void drawConvexPolygon(Material material, List<VectorXYZ> vs,
+				List<List<VectorXZ>> texCoordLists) {
+			add(CONVEX_POLYGON, material, vs, null, texCoordLists);
+		}
+
+		@Override
+		public void drawTriangles(Material material,
+				Collection<? extends TriangleXYZ> triangles,
+				List<List<VectorXZ>> texCoordLists) {
+
+			List<VectorXYZ> vs = new ArrayList<VectorXYZ>();
+
+			for (TriangleXYZ t : triangles) {
+				vs.addAll(t.getVertices());
+			}
+
+			add(TRIANGLES, material, vs, null, texCoordLists);
+
+		}
+
+		@Override
+		public void drawTrianglesWithNormals(Material material,
+				Collection<? extends TriangleXYZWithNormals> triangles,
+				List<List<VectorXZ>> texCoordLists) {
+
+			List<VectorXYZ> vs = new ArrayList<VectorXYZ>();
+			List<VectorXYZ> normals = new ArrayList<VectorXYZ>();
+
+			for (TriangleXYZWithNormals t : triangles) {
+				vs.addAll(t.getVertices());
+				normals.addAll(t.getNormals());
+			}
+
+			add(TRIANGLES, material, vs, normals, texCoordLists);
+
+		}
+
+	}
+
+	@Test
+	public void testReplayMatchesDirectDrawing() {
+
+		VectorXYZ position = new VectorXYZ(10, -2, 5);
+
+		TestGeometry geometry = new TestGeometry();
+
+		CollectingTarget direct = new CollectingTarget();
+		geometry.draw(direct, position);
+
+		CollectingTarget replayed = new CollectingTarget();
+		new RecordedGeometry(geometry, MaterialRegistry.DEFAULTS).replay(replayed,
+				new InstanceTransform(position, VectorXZ.Z_UNIT, 1));
+
+		assertEquals(direct.types, replayed.types);
+		assertEquals(direct.materials, replayed.materials);
+		assertEquals(direct.texCoordLists, replayed.texCoordLists);
+
+		for (int i = 0; i < direct.types.size(); i++) {
+
+			List<VectorXYZ> expectedVs = direct.vertexLists.get(i);
+			List<VectorXYZ> actualVs = replayed.vertexLists.get(i);
+
+			assertEquals(expectedVs.size(), actualVs.size());
+
+			for (int v = 0; v < expectedVs.size(); v++) {
+				assertAlmostEquals(expectedVs.get(v), actualVs.get(v));
+			}
+
+			assertEquals(direct.normalLists.get(i) == null,
+					replayed.normalLists.get(i) == null);
+
+		}
+
+	}
+
+	@Test
+	public void testReplayTransformsVerticesAndNormals() {
+
+		CollectingTarget target = new CollectingTarget();
+
+		new RecordedGeometry(new TestGeometry(), MaterialRegistry.DEFAULTS).replay(
+				target, new InstanceTransform(
+						new VectorXYZ(1, 1, 1), VectorXZ.X_UNIT, 2));
+
+		assertEquals(TRIANGLES, target.types.get(4));
+
+		List<VectorXYZ> vs = target.vertexLists.get(4);
+		assertAlmostEquals(1, 1, 1, vs.get(0));
+		assertAlmostEquals(1, 1, -1, vs.get(1));
+		assertAlmostEquals(3, 1, 1, vs.get(2));
+
+		List<VectorXYZ> normals = target.normalLists.get(4);
+		assertAlmostEquals(1, 0, 0, normals.get(0));
+		assertAlmostEquals(0, 0, -1, normals.get(2));
+
+	}
+
+	@Test
+	public void testGeometryIsRecordedOnce() {
+
+		TestGeometry geometry = new TestGeometry();
+		CollectingTarget target = new CollectingTarget();
+
+		target.drawInstance(geometry, VectorXYZ.NULL_VECTOR, VectorXZ.Z_UNIT, 1);
+		target.drawInstance(geometry, VectorXYZ.X_UNIT, VectorXZ.X_UNIT, 3);
+
+		assertEquals(1, geometry.renderCount);
+		assertEquals(10, target.types.size());
+
+	}
+
+}
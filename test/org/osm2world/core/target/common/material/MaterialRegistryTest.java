@@ -0,0 +1,61 @@
+package org.osm2world.core.target.common.material;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Test;
+
+public class MaterialRegistryTest {
+
+	@Test
+	public void testResolveConfiguredColor() {
+
+		Configuration config = new BaseConfiguration();
+		config.setProperty("material_ASPHALT_color", "#ff0000");
+
+		MaterialRegistry registry = new MaterialRegistry(config);
+
+		Material asphalt = registry.resolve(Materials.ASPHALT);
+
+		assertNotSame(Materials.ASPHALT, asphalt);
+		assertEquals(Color.RED, asphalt.getColor());
+		assertEquals("ASPHALT", Materials.getUniqueName(asphalt));
+
+		/* other materials and the defaults are not affected */
+
+		assertSame(Materials.CONCRETE, registry.resolve(Materials.CONCRETE));
+		assertFalse(Color.RED.equals(Materials.ASPHALT.getColor()));
+		assertSame(Materials.ASPHALT,
+				MaterialRegistry.DEFAULTS.resolve(Materials.ASPHALT));
+
+		/* resolving is idempotent */
+
+		assertSame(asphalt, registry.resolve(asphalt));
+
+	}
+
+	@Test
+	public void testIndependentRegistries() {
+
+		Configuration configA = new BaseConfiguration();
+		configA.setProperty("material_WATER_color", "#ff0000");
+
+		Configuration configB = new BaseConfiguration();
+		configB.setProperty("material_WATER_color", "#0000ff");
+
+		MaterialRegistry registryA = new MaterialRegistry(configA);
+		MaterialRegistry registryB = new MaterialRegistry(configB);
+
+		assertEquals(Color.RED, registryA.resolve(Materials.WATER).getColor());
+		assertEquals(Color.BLUE, registryB.resolve(Materials.WATER).getColor());
+
+		assertTrue(registryA.getMaterials().contains(
+				registryA.resolve(Materials.WATER)));
+		assertFalse(registryA.getMaterials().contains(Materials.WATER));
+
+	}
+
+}
@@ -0,0 +1,218 @@
+package org.osm2world.core.target.jogl;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.osm2world.core.test.TestUtil.assertAlmostEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+import org.osm2world.core.math.TriangleXYZ;
+import org.osm2world.core.math.TriangleXYZWithNormals;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.Target;
+import org.osm2world.core.target.common.InstanceTransform;
+import org.osm2world.core.target.common.Primitive;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Materials;
+
+public class PrimitiveBufferTest {
+
+	private static final List<List<VectorXZ>> TEX_COORDS = singletonList(asList(
+			new VectorXZ(0, 0), new VectorXZ(1, 0), new VectorXZ(0, 1)));
+
+	/**
+	 * geometry which can also be drawn directly with a transform applied
+	 */
+	private static class TestGeometry implements InstanceGeometry {
+
+		int renderCount = 0;
+
+		@Override
+		public void renderTo(Target<?> target) {
+			renderCount += 1;
+			draw(target, new InstanceTransform(
+					VectorXYZ.NULL_VECTOR, VectorXZ.Z_UNIT, 1));
+		}
+
+		void draw(Target<?> target, InstanceTransform t) {
+
+			target.drawTriangleStrip(Materials.STEEL, t.applyToVertices(asList(
+					new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0),
+					new VectorXYZ(0, 1, 0))), TEX_COORDS);
+
+			target.drawConvexPolygon(Materials.WOOD, t.applyToVertices(asList(
+					new VectorXYZ(0, 1, 1), new VectorXYZ(0, 2, 1),
+					new VectorXYZ(0, 2, 2))), null);
+
+			target.drawTriangles(Materials.WOOD, singletonList(new TriangleXYZ(
+					t.applyToVertex(new VectorXYZ(2, 0, 0)),
+					t.applyToVertex(new VectorXYZ(2, 0, 1)),
+					t.applyToVertex(new VectorXYZ(2, 1, 0)))), null);
+
+			target.drawTrianglesWithNormals(Materials.STEEL, singletonList(
+					new TriangleXYZWithNormals(
+							t.applyToVertex(new VectorXYZ(3, 0, 0)),
+							t.applyToVertex(new VectorXYZ(4, 0, 0)),
+							t.applyToVertex(new VectorXYZ(3, 0, 1)),
+							t.applyToNormal(VectorXYZ.Z_UNIT),
+							t.applyToNormal(VectorXYZ.Z_UNIT),
+							t.applyToNormal(VectorXYZ.X_UNIT))),
+					TEX_COORDS);
+
+		}
+
+	}
+
+	@Test
+	public void testPrototypeIsRenderedOnce() {
+
+		TestGeometry geometry = new TestGeometry();
+
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+
+		for (int i = 0; i < 3; i++) {
+			buffer.drawInstance(geometry, new VectorXYZ(i, 0, 0),
+					VectorXZ.X_UNIT, 1);
+		}
+
+		assertEquals(1, geometry.renderCount);
+		assertEquals(1, buffer.getPrototypes().size());
+		assertTrue(buffer.getMaterials().isEmpty());
+
+		PrimitiveBuffer prototype = buffer.getPrototype(geometry);
+
+		assertSame(prototype, buffer.getPrototypes().iterator().next());
+		assertEquals(3, buffer.getInstances(prototype).size());
+		assertEquals(2, prototype.getPrimitives(Materials.STEEL).size());
+
+	}
+
+	@Test
+	public void testFlattenInstances() {
+
+		TestGeometry geometry = new TestGeometry();
+
+		List<InstanceTransform> transforms = asList(
+				new InstanceTransform(new VectorXYZ(10, 5, 20), VectorXZ.X_UNIT, 2),
+				new InstanceTransform(new VectorXYZ(-3, 0, 7), new VectorXZ(1, 1), 0.5));
+
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		PrimitiveBuffer expectedBuffer = new PrimitiveBuffer();
+
+		buffer.drawTriangleFan(Materials.STEEL, asList(new VectorXYZ(0, 9, 0),
+				new VectorXYZ(1, 9, 0), new VectorXYZ(0, 9, 1)), null);
+		expectedBuffer.drawTriangleFan(Materials.STEEL, asList(new VectorXYZ(0, 9, 0),
+				new VectorXYZ(1, 9, 0), new VectorXYZ(0, 9, 1)), null);
+
+		for (InstanceTransform t : transforms) {
+			buffer.drawInstance(geometry, t.getPosition(),
+					getDirection(t), t.getScale());
+			geometry.draw(expectedBuffer, t);
+		}
+
+		PrimitiveBuffer flattenedBuffer = buffer.flattenInstances();
+
+		assertSame(flattenedBuffer, buffer.flattenInstances());
+		assertEquals(expectedBuffer.getMaterials(), flattenedBuffer.getMaterials());
+
+		for (Material material : expectedBuffer.getMaterials()) {
+
+			List<Primitive> expected = sorted(expectedBuffer.getPrimitives(material));
+			List<Primitive> actual = sorted(flattenedBuffer.getPrimitives(material));
+
+			assertEquals(expected.size(), actual.size());
+
+			for (int i = 0; i < expected.size(); i++) {
+				assertPrimitiveAlmostEquals(expected.get(i), actual.get(i));
+			}
+
+		}
+
+	}
+
+	@Test
+	public void testGLMatrix() {
+
+		InstanceTransform transform = new InstanceTransform(
+				new VectorXYZ(10, 5, 20), new VectorXZ(1, 2), 3);
+
+		double[] m = AbstractJOGLTarget.getGLMatrix(transform);
+
+		for (VectorXYZ v : asList(VectorXYZ.NULL_VECTOR, VectorXYZ.X_UNIT,
+				VectorXYZ.Y_UNIT, VectorXYZ.Z_UNIT, new VectorXYZ(1, -2, 3))) {
+
+			/* vertices are stored with negated z coordinates */
+
+			double[] glV = {v.x, v.y, -v.z, 1};
+			double[] result = new double[3];
+
+			for (int row = 0; row < 3; row++) {
+				for (int col = 0; col < 4; col++) {
+					result[row] += m[4 * col + row] * glV[col];
+				}
+			}
+
+			VectorXYZ expected = transform.applyToVertex(v);
+
+			assertAlmostEquals(expected.x, expected.y, -expected.z,
+					new VectorXYZ(result[0], result[1], result[2]));
+
+		}
+
+	}
+
+	private static VectorXZ getDirection(InstanceTransform transform) {
+		double[] axes = transform.getAxes();
+		return new VectorXZ(axes[6], axes[8]);
+	}
+
+	private static void assertPrimitiveAlmostEquals(
+			Primitive expected, Primitive actual) {
+
+		assertEquals(expected.type, actual.type);
+		assertEquals(expected.texCoordLists, actual.texCoordLists);
+		assertEquals(expected.vertices.size(), actual.vertices.size());
+
+		for (int i = 0; i < expected.vertices.size(); i++) {
+			assertAlmostEquals(expected.vertices.get(i), actual.vertices.get(i));
+			assertAlmostEquals(expected.normals.get(i), actual.normals.get(i));
+		}
+
+	}
+
+	/**
+	 * sorts primitives by their first vertex
+	 */
+	private static List<Primitive> sorted(Collection<Primitive> primitives) {
+
+		List<Primitive> result = new ArrayList<Primitive>(primitives);
+
+		Collections.sort(result, new Comparator<Primitive>() {
+			@Override
+			public int compare(Primitive p1, Primitive p2) {
+				VectorXYZ v1 = p1.vertices.get(0);
+				VectorXYZ v2 = p2.vertices.get(0);
+				int result = Double.compare(round(v1.x), round(v2.x));
+				if (result == 0) result = Double.compare(round(v1.y), round(v2.y));
+				if (result == 0) result = Double.compare(round(v1.z), round(v2.z));
+				return result;
+			}
+		});
+
+		return result;
+
+	}
+
+	private static double round(double d) {
+		return Math.round(d * 1000) / 1000.0;
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.osm2world.core.target.obj;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.Test;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.Target;
+import org.osm2world.core.target.common.InstanceTransform;
+import org.osm2world.core.target.common.material.Materials;
+
+public class ObjTargetTest {
+
+	/**
+	 * a quad made of two triangles, which face reconstruction turns into
+	 * a single face
+	 */
+	private static class TestGeometry implements InstanceGeometry {
+
+		int renderCount = 0;
+
+		@Override
+		public void renderTo(Target<?> target) {
+			renderCount += 1;
+			draw(target, new InstanceTransform(
+					VectorXYZ.NULL_VECTOR, VectorXZ.Z_UNIT, 1));
+		}
+
+		void draw(Target<?> target, InstanceTransform t) {
+			target.drawTriangleStrip(Materials.STEEL, t.applyToVertices(asList(
+					new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0),
+					new VectorXYZ(0, 1, 0), new VectorXYZ(1, 1, 0))), null);
+		}
+
+	}
+
+	@Test
+	public void testInstancesMatchDirectDrawing() {
+
+		for (boolean reconstructFaces : new boolean[] {false, true}) {
+
+			TestGeometry geometry = new TestGeometry();
+
+			ByteArrayOutputStream instanceBytes = new ByteArrayOutputStream();
+			ByteArrayOutputStream directBytes = new ByteArrayOutputStream();
+
+			ObjTarget instanceTarget = createTarget(instanceBytes, reconstructFaces);
+			ObjTarget directTarget = createTarget(directBytes, reconstructFaces);
+
+			for (int i = 0; i < 3; i++) {
+
+				InstanceTransform t = new InstanceTransform(
+						new VectorXYZ(10 * i, 0, 5), new VectorXZ(i, 1), 2);
+
+				instanceTarget.drawInstance(geometry, t.getPosition(),
+						new VectorXZ(i, 1), t.getScale());
+
+				geometry.draw(directTarget, t);
+				directTarget.flushReconstructedFaces();
+
+			}
+
+			instanceTarget.finish();
+			directTarget.finish();
+
+			assertEquals(1, geometry.renderCount);
+
+			String instanceOutput = instanceBytes.toString();
+			String directOutput = directBytes.toString();
+
+			assertEquals(reconstructFaces ? 3 : 6, count(directOutput, "\nf "));
+			assertEquals(count(directOutput, "\nf "), count(instanceOutput, "\nf "));
+			assertEquals(count(directOutput, "\nv "), count(instanceOutput, "\nv "));
+
+		}
+
+	}
+
+	private static ObjTarget createTarget(ByteArrayOutputStream bytes,
+			boolean reconstructFaces) {
+
+		ObjTarget target = new ObjTarget(new PrintStream(bytes),
+				new PrintStream(new ByteArrayOutputStream()));
+
+		BaseConfiguration config = new BaseConfiguration();
+		config.addProperty("reconstructFaces", reconstructFaces);
+		target.setConfiguration(config);
+
+		return target;
+
+	}
+
+	private static int count(String string, String substring) {
+		return string.split(substring, -1).length - 1;
+	}
+
+}
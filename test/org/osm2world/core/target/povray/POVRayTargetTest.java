@@ -0,0 +1,83 @@
+package org.osm2world.core.target.povray;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.osm2world.core.test.TestUtil.assertAlmostEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.osm2world.core.math.TriangleXYZ;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.InstanceGeometry;
+import org.osm2world.core.target.Target;
+import org.osm2world.core.target.common.material.Materials;
+
+public class POVRayTargetTest {
+
+	private static final InstanceGeometry TRIANGLE_GEOMETRY = new InstanceGeometry() {
+		@Override
+		public void renderTo(Target<?> target) {
+			target.drawTriangles(Materials.STEEL, singletonList(new TriangleXYZ(
+					VectorXYZ.NULL_VECTOR, VectorXYZ.Z_UNIT, VectorXYZ.X_UNIT)),
+					Collections.<List<VectorXZ>>emptyList());
+		}
+	};
+
+	private static final Pattern OBJECT_PATTERN =
+			Pattern.compile("object \\{ (\\w+) matrix <([^>]*)> \\}");
+
+	@Test
+	public void testDrawInstance() {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		POVRayTarget target = new POVRayTarget(new PrintStream(bytes));
+
+		target.drawInstance(TRIANGLE_GEOMETRY,
+				new VectorXYZ(1, 2, 3), VectorXZ.Z_UNIT, 1);
+		target.drawInstance(TRIANGLE_GEOMETRY,
+				new VectorXYZ(-5, 0, 7), VectorXZ.X_UNIT, 2);
+
+		String output = bytes.toString();
+
+		/* the geometry is only declared once */
+
+		assertEquals(1, output.split("#declare instance_0 = union \\{", -1).length - 1);
+		assertEquals(1, output.split("triangle \\{", -1).length - 1);
+
+		/* each instance references it with a matrix */
+
+		Matcher matcher = OBJECT_PATTERN.matcher(output);
+
+		matcher.find();
+		assertEquals("instance_0", matcher.group(1));
+		assertMatrix(matcher.group(2),
+				1, 0, 0,  0, 1, 0,  0, 0, 1,  1, 2, 3);
+
+		// rotated towards +x and scaled: local x points to -z, local z to +x
+		matcher.find();
+		assertEquals("instance_0", matcher.group(1));
+		assertMatrix(matcher.group(2),
+				0, 0, -2,  0, 2, 0,  2, 0, 0,  -5, 0, 7);
+
+	}
+
+	private static void assertMatrix(String matrix, double... expected) {
+
+		String[] values = matrix.split(",");
+
+		assertEquals(expected.length, values.length);
+
+		for (int i = 0; i < expected.length; i++) {
+			assertAlmostEquals(expected[i], Double.parseDouble(values[i].trim()));
+		}
+
+	}
+
+}
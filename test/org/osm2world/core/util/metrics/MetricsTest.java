@@ -0,0 +1,204 @@
+package org.osm2world.core.util.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openstreetmap.josm.plugins.graphview.core.data.EmptyTagGroup;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMWay;
+import org.osm2world.core.util.metrics.Metrics.Timer;
+import org.osm2world.core.util.metrics.Metrics.TimerNode;
+import org.osm2world.core.util.metrics.MetricsUtil.Format;
+import org.osm2world.core.util.metrics.Profile.Cost;
+
+public class MetricsTest {
+
+	@Test
+	public void testTimerHierarchy() {
+
+		Metrics metrics = new Metrics(0);
+
+		Timer phase = metrics.startTimer("phase");
+
+		for (int i = 0; i < 3; i++) {
+			Timer module = metrics.startTimer("module");
+			metrics.startTimer("step").stop();
+			module.stop();
+		}
+
+		phase.stop();
+
+		metrics.startTimer("other").stop();
+
+		List<TimerNode> timers = metrics.getTimers();
+
+		assertEquals(2, timers.size());
+		assertEquals("phase", timers.get(0).getName());
+		assertEquals("other", timers.get(1).getName());
+
+		TimerNode step = metrics.getTimer("phase/module/step");
+
+		assertNotNull(step);
+		assertEquals(3, step.getCount());
+		assertEquals("phase/module/step", step.getPath());
+		assertEquals(3, metrics.getTimer("phase/module").getCount());
+
+		assertTrue(metrics.getTimer("phase").getTotalNanos()
+				>= metrics.getTimer("phase/module").getTotalNanos());
+
+		assertNull(metrics.getTimer("phase/step"));
+
+	}
+
+	@Test
+	public void testCountersFromMultipleThreads() throws InterruptedException {
+
+		final Metrics metrics = new Metrics(0);
+
+		Thread[] threads = new Thread[4];
+
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override public void run() {
+					for (int i = 0; i < 1000; i++) {
+						metrics.count("a");
+						metrics.count("b", 2);
+					}
+				}
+			});
+			threads[t].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(4000, metrics.getCounter("a"));
+		assertEquals(8000, metrics.getCounter("b"));
+		assertEquals(0, metrics.getCounter("c"));
+
+	}
+
+	@Test
+	public void testDisabled() {
+
+		assertSame(Metrics.DISABLED, Metrics.current());
+
+		Metrics.DISABLED.startTimer("phase").stop();
+		Metrics.DISABLED.count("a");
+
+		assertTrue(Metrics.DISABLED.getTimers().isEmpty());
+		assertTrue(Metrics.DISABLED.getCounters().isEmpty());
+
+		Metrics metrics = new Metrics(0);
+
+		Metrics previous = Metrics.setCurrent(metrics);
+		assertSame(Metrics.DISABLED, previous);
+		assertSame(metrics, Metrics.current());
+
+		Metrics.setCurrent(previous);
+		assertSame(Metrics.DISABLED, Metrics.current());
+
+	}
+
+	@Test
+	public void testExport() {
+
+		Metrics metrics = new Metrics(0);
+
+		Timer timer = metrics.startTimer("phase");
+		metrics.startTimer("step, with comma").stop();
+		timer.stop();
+
+		metrics.count("triangles", 42);
+		metrics.finish();
+
+		assertTrue(metrics.getPeakHeapBytes() > 0);
+
+		StringWriter json = new StringWriter();
+		MetricsUtil.write(metrics, Format.JSON, json);
+
+		assertTrue(json.toString().contains("\"name\": \"step, with comma\""));
+		assertTrue(json.toString().contains("\"triangles\": 42"));
+
+		StringWriter csv = new StringWriter();
+		MetricsUtil.write(metrics, Format.CSV, csv);
+
+		assertTrue(csv.toString().contains("timer,\"phase/step, with comma\",1,"));
+		assertTrue(csv.toString().contains("counter,triangles,42,,,"));
+
+	}
+
+	@Test
+	public void testProfile() {
+
+		Metrics metrics = new Metrics(0);
+
+		assertNull(metrics.getProfile());
+
+		metrics.enableProfile(2);
+
+		Profile profile = metrics.getProfile();
+
+		profile.addModuleCost("RoadModule", 100, 3);
+		profile.addWorldObjectCost("Road", 40, 2, 8);
+		profile.addWorldObjectCost("Road", 60, 1, 4);
+
+		profile.addElementCost("w1", 10);
+		profile.addElementCost("w2", 30);
+		profile.addElementCost("w1", 25);
+		profile.addElementCost("n3", 5);
+
+		assertEquals(3, profile.getModuleCosts().get("RoadModule").getCount());
+
+		Cost road = profile.getWorldObjectCosts().get("Road");
+		assertEquals(2, road.getCount());
+		assertEquals(100, road.getNanos());
+		assertEquals(3, road.getPrimitives());
+		assertEquals(12, road.getTriangles());
+
+		List<Map.Entry<String, Long>> topElements = profile.getTopElements();
+		assertEquals(2, topElements.size());
+		assertEquals("w1", topElements.get(0).getKey());
+		assertEquals(35, (long)topElements.get(0).getValue());
+		assertEquals("w2", topElements.get(1).getKey());
+
+		StringWriter csv = new StringWriter();
+		MetricsUtil.write(metrics, Format.CSV, csv);
+
+		assertTrue(csv.toString().contains("worldObject,Road,2,100,,,3,12"));
+		assertTrue(csv.toString().contains("element,w1,1,35,,,,"));
+
+		assertNull(Metrics.DISABLED.getProfile());
+		Metrics.DISABLED.enableProfile(2);
+		assertNull(Metrics.DISABLED.getProfile());
+
+	}
+
+	@Test
+	public void testProfileIgnoresSyntheticElements() {
+
+		Metrics metrics = new Metrics(0);
+		metrics.enableProfile(10);
+
+		Profile profile = metrics.getProfile();
+
+		profile.addElementCost(new OSMWay(EmptyTagGroup.EMPTY_TAG_GROUP, 0,
+				Collections.<OSMNode>emptyList()), 100);
+		profile.addElementCost(new OSMNode(0, 0,
+				EmptyTagGroup.EMPTY_TAG_GROUP, 0), 100);
+		profile.addElementCost(new OSMWay(EmptyTagGroup.EMPTY_TAG_GROUP, 42,
+				Collections.<OSMNode>emptyList()), 10);
+
+		List<Map.Entry<String, Long>> topElements = profile.getTopElements();
+		assertEquals(1, topElements.size());
+		assertEquals("w42", topElements.get(0).getKey());
+
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.osm2world.core.world.creation;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Test;
+import org.osm2world.core.ConversionFacade;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.map_data.data.MapArea;
+import org.osm2world.core.map_data.data.MapElement;
+import org.osm2world.core.map_data.data.MapNode;
+import org.osm2world.core.target.Target;
+import org.osm2world.core.target.obj.ObjTarget;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.world.data.WorldObject;
+import org.osm2world.core.world.modules.BuildingModule.Building;
+import org.osm2world.core.world.modules.RoadModule.RoadConnector;
+import org.osm2world.core.world.modules.RoadModule.RoadCrossingAtConnector;
+import org.osm2world.core.world.modules.RoadModule.RoadJunction;
+
+public class WorldCreatorTest {
+
+	/**
+	 * file with roads, junctions, neighboring buildings sharing an entrance,
+	 * a building with a part, trees and a forest
+	 */
+	private static final File TEST_FILE = new File("test" + File.separator
+			+ "files" + File.separator + "world_modules.osm");
+
+	private static class Conversion {
+		Results results;
+		String obj;
+	}
+
+	private static Conversion convert(int threadCount) throws IOException {
+
+		Configuration config = new BaseConfiguration();
+		config.setProperty(ParallelIterationUtil.THREAD_COUNT_KEY, threadCount);
+
+		ByteArrayOutputStream objBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream mtlBytes = new ByteArrayOutputStream();
+
+		List<Target<?>> targets = singletonList((Target<?>) new ObjTarget(
+				new PrintStream(objBytes), new PrintStream(mtlBytes)));
+
+		Conversion conversion = new Conversion();
+		conversion.results = new ConversionFacade().createRepresentations(
+				TEST_FILE, null, config, targets);
+		conversion.obj = removeForests(objBytes.toString());
+
+		return conversion;
+
+	}
+
+	@Test
+	public void testSameOutputForDifferentThreadCounts() throws IOException {
+
+		Conversion sequential = convert(1);
+		Conversion parallel = convert(4);
+
+		assertFalse(sequential.obj.isEmpty());
+		assertEquals(sequential.obj, parallel.obj);
+
+		List<MapElement> sequentialElements = newArrayList(
+				sequential.results.getMapData().getMapElements());
+		List<MapElement> parallelElements = newArrayList(
+				parallel.results.getMapData().getMapElements());
+
+		assertEquals(sequentialElements.size(), parallelElements.size());
+
+		for (int i = 0; i < sequentialElements.size(); i++) {
+			assertEquals(getRepresentationTypes(sequentialElements.get(i)),
+					getRepresentationTypes(parallelElements.get(i)));
+		}
+
+	}
+
+	@Test
+	public void testRepresentationsParallel() throws IOException {
+
+		Results results = convert(4).results;
+
+		int buildings = 0;
+
+		for (MapArea area : results.getMapData().getMapAreas()) {
+			if (area.getPrimaryRepresentation() instanceof Building) {
+				buildings += 1;
+			}
+		}
+
+		assertEquals(3, buildings);
+
+		assertTrue(getNode(results, 2).getPrimaryRepresentation()
+				instanceof RoadJunction);
+		assertTrue(getNode(results, 3).getPrimaryRepresentation()
+				instanceof RoadConnector);
+		assertTrue(getNode(results, 7).getPrimaryRepresentation()
+				instanceof RoadCrossingAtConnector);
+
+		/* the entrance shared by two buildings is only added once */
+
+		MapNode entranceNode = getNode(results, 16);
+		assertEquals(1, entranceNode.getRepresentations().size());
+		assertEquals("BuildingEntrance", entranceNode
+				.getPrimaryRepresentation().getClass().getSimpleName());
+
+	}
+
+	/**
+	 * removes the objects for forests from obj output.
+	 * Trees in forests have random heights, so they differ between runs.
+	 */
+	private static String removeForests(String obj) {
+
+		StringBuilder result = new StringBuilder();
+		boolean forest = false;
+
+		for (String line : obj.split("\n")) {
+			if (line.startsWith("o ")) {
+				forest = line.startsWith("o Forest");
+			}
+			if (!forest) {
+				result.append(line).append('\n');
+			}
+		}
+
+		return result.toString();
+
+	}
+
+	private static List<String> getRepresentationTypes(MapElement element) {
+		List<String> types = new ArrayList<String>();
+		for (WorldObject representation : element.getRepresentations()) {
+			types.add(representation.getClass().getSimpleName());
+		}
+		return types;
+	}
+
+	private static MapNode getNode(Results results, long id) {
+		for (MapNode node : results.getMapData().getMapNodes()) {
+			if (node.getOsmNode().id == id) {
+				return node;
+			}
+		}
+		throw new AssertionError("missing node " + id);
+	}
+
+}
@@ -2,8 +2,10 @@ package org.osm2world.core.world.modules;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.EMPTY_LIST;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -11,11 +13,15 @@ import java.util.List;
 import org.junit.Test;
 import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
 import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.osm2world.core.ConversionFacade;
 import org.osm2world.core.osm.data.OSMData;
 import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMRelation;
 import org.osm2world.core.osm.data.OSMWay;
 import org.osm2world.core.target.Target;
+import org.osm2world.core.target.obj.ObjTarget;
+import org.osm2world.core.target.povray.POVRayTarget;
 import org.osm2world.core.target.statistics.StatisticsTarget;
 import org.osm2world.core.target.statistics.StatisticsTarget.Stat;
 import org.osm2world.core.world.creation.WorldModule;
@@ -59,4 +65,67 @@ public class PowerModuleTest {
 		
 	}
 	
-}
+	@Test
+	public void testTowersAreInstanced() throws Exception {
+		
+		/* create fake data with three identical towers */
+		
+		List<OSMNode> nodes = asList(
+				new OSMNode(0, 0, new MapBasedTagGroup(new Tag("power","tower")), 101),
+				new OSMNode(0, 0.001, new MapBasedTagGroup(new Tag("power","tower")), 102),
+				new OSMNode(0, 0.002, new MapBasedTagGroup(new Tag("power","tower")), 103)
+				);
+		
+		List<OSMWay> ways = asList(
+				new OSMWay(new MapBasedTagGroup(new Tag("power","line"), new Tag("voltage","220000")), 201, nodes)
+				);
+		
+		OSMData osmData = new OSMData(Collections.<Bound>emptyList(), nodes, ways,
+				Collections.<OSMRelation>emptyList());
+		
+		/* render to POV-Ray, which supports instancing */
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		POVRayTarget target = new POVRayTarget(new PrintStream(bytes));
+		
+		new ConversionFacade().createRepresentations(osmData,
+				Collections.<WorldModule>singletonList(new PowerModule()), null,
+				Collections.<Target<?>>singletonList(target));
+		
+		/* check that the tower geometry has only been declared once */
+		
+		String output = bytes.toString();
+		
+		assertEquals(1, output.split("#declare instance_", -1).length - 1);
+		assertEquals(3, output.split("object \\{ instance_0 ", -1).length - 1);
+		
+	}
+	
+	@Test
+	public void testTowerWithoutLines() throws Exception {
+		
+		List<OSMNode> nodes = asList(
+				new OSMNode(0, 0, new MapBasedTagGroup(new Tag("power","tower")), 101)
+				);
+		
+		OSMData osmData = new OSMData(Collections.<Bound>emptyList(), nodes,
+				Collections.<OSMWay>emptyList(), Collections.<OSMRelation>emptyList());
+		
+		ByteArrayOutputStream objBytes = new ByteArrayOutputStream();
+		ObjTarget target = new ObjTarget(new PrintStream(objBytes),
+				new PrintStream(new ByteArrayOutputStream()));
+		
+		new ConversionFacade().createRepresentations(osmData,
+				Collections.<WorldModule>singletonList(new PowerModule()), null,
+				Collections.<Target<?>>singletonList(target));
+		
+		String output = objBytes.toString();
+		
+		/* ObjTarget writes vertices with NaN coordinates as 0 0 0 */
+		
+		assertTrue(output.contains("v "));
+		assertFalse(output.contains("v  0 0 0"));
+		
+	}
+	
+}
\ No newline at end of file